@@ -0,0 +1,158 @@
+package com.timvisee.axiomone;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Rect;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests of the glyph rasterizations and frame builds of the ambient renderer.
+ */
+@RunWith(AndroidJUnit4.class)
+public class AmbientRendererTest {
+
+    /**
+     * The bounds of the face.
+     */
+    private static final Rect BOUNDS = new Rect(0, 0, 320, 320);
+
+    /**
+     * The renderer.
+     */
+    private AmbientRenderer renderer;
+
+    /**
+     * The layout of the clock.
+     */
+    private ClockLayout layout;
+
+    /**
+     * The bitmap the face is drawn in, and its canvas.
+     */
+    private Bitmap bitmap;
+    private Canvas canvas;
+
+    @Before
+    public void setUp() {
+        Context context = InstrumentationRegistry.getTargetContext();
+        FaceStyle style = StyleCache.obtainStyle(context, true);
+        layout = new ClockLayout();
+        StyleCache.obtainMetrics(context, true, layout);
+        layout.update(BOUNDS);
+
+        renderer = new AmbientRenderer(4);
+        renderer.setPaints(style.getHourPaint(), style.getMinutePaint());
+        setLayout();
+
+        bitmap = Bitmap.createBitmap(BOUNDS.width(), BOUNDS.height(), Bitmap.Config.ARGB_8888);
+        canvas = new Canvas(bitmap);
+    }
+
+    @After
+    public void tearDown() {
+        renderer.release();
+        bitmap.recycle();
+    }
+
+    /**
+     * Set the layout of the clock on the renderer.
+     */
+    private void setLayout() {
+        renderer.setLayout(layout.getClockDigitsX(), layout.getHourDigitsY(), layout.getMinuteDigitsY(),
+                layout.getHourDigitsBounds(), layout.getMinuteDigitsBounds());
+    }
+
+    /**
+     * The glyphs are only rasterized for the first frame, and a frame is only built once for
+     * each minute, however often it's drawn.
+     */
+    @Test
+    public void testOneBuildPerMinute() {
+        for(int minute = 0; minute < 60; minute++)
+            for(int draw = 0; draw < 3; draw++)
+                renderer.draw(canvas, 10, minute);
+
+        assertEquals(1, renderer.getAtlasBuildCount());
+        assertEquals(60, renderer.getFrameBuildCount());
+    }
+
+    /**
+     * The hour changing builds a new frame, without rasterizing the glyphs again.
+     */
+    @Test
+    public void testHourRollover() {
+        renderer.draw(canvas, 10, 59);
+        renderer.draw(canvas, 11, 0);
+        renderer.draw(canvas, 23, 59);
+        renderer.draw(canvas, 0, 0);
+
+        assertEquals(1, renderer.getAtlasBuildCount());
+        assertEquals(4, renderer.getFrameBuildCount());
+    }
+
+    /**
+     * Burn-in protection only shifts the prerendered frame, it doesn't build a new one.
+     */
+    @Test
+    public void testBurnInProtection() {
+        renderer.draw(canvas, 10, 30);
+        renderer.setBurnInProtection(true);
+        renderer.draw(canvas, 10, 30);
+
+        assertEquals(1, renderer.getAtlasBuildCount());
+        assertEquals(1, renderer.getFrameBuildCount());
+    }
+
+    /**
+     * A new layout builds a new frame from the rasterized glyphs.
+     */
+    @Test
+    public void testLayout() {
+        renderer.draw(canvas, 10, 30);
+        setLayout();
+        renderer.draw(canvas, 10, 30);
+
+        assertEquals(1, renderer.getAtlasBuildCount());
+        assertEquals(2, renderer.getFrameBuildCount());
+    }
+
+    /**
+     * Toggling low-bit ambient mode rasterizes the glyphs again, with the new anti-aliasing mode.
+     */
+    @Test
+    public void testLowBitAmbient() {
+        renderer.draw(canvas, 10, 30);
+        renderer.setLowBitAmbient(false);
+        renderer.draw(canvas, 10, 30);
+        assertEquals(1, renderer.getAtlasBuildCount());
+
+        renderer.setLowBitAmbient(true);
+        renderer.draw(canvas, 10, 30);
+        renderer.draw(canvas, 10, 31);
+        assertEquals(2, renderer.getAtlasBuildCount());
+        assertEquals(3, renderer.getFrameBuildCount());
+    }
+
+    /**
+     * Releasing the caches rasterizes the glyphs again for the next frame.
+     */
+    @Test
+    public void testRelease() {
+        renderer.draw(canvas, 10, 30);
+        renderer.release();
+        assertEquals(0, renderer.getByteCount());
+        renderer.draw(canvas, 10, 30);
+
+        assertEquals(2, renderer.getAtlasBuildCount());
+        assertEquals(2, renderer.getFrameBuildCount());
+    }
+}
@@ -0,0 +1,313 @@
+package com.timvisee.axiomone;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Rect;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of the regions the canvas renderer redraws.
+ */
+@RunWith(AndroidJUnit4.class)
+public class CanvasFaceRendererTest {
+
+    /**
+     * The bounds of the face.
+     */
+    private static final Rect BOUNDS = new Rect(0, 0, 320, 320);
+
+    /**
+     * A color the face doesn't draw, to find the pixels that weren't drawn.
+     */
+    private static final int SENTINEL = Color.MAGENTA;
+
+    /**
+     * The bounds of a peek card covering the bottom half of the face.
+     */
+    private static final Rect CARD = new Rect(0, 160, 320, 320);
+
+    /**
+     * The style of the face.
+     */
+    private FaceStyle style;
+
+    /**
+     * The renderer.
+     */
+    private CanvasFaceRenderer renderer;
+
+    /**
+     * The geometry of the face, to find the ticks and the gleam.
+     */
+    private FaceGeometry geometry;
+
+    /**
+     * The bitmap the face is drawn in, and its canvas.
+     */
+    private Bitmap bitmap;
+    private Canvas canvas;
+
+    @Before
+    public void setUp() {
+        Context context = InstrumentationRegistry.getTargetContext();
+        style = StyleCache.obtainStyle(context, true);
+        ClockLayout layout = new ClockLayout();
+        StyleCache.obtainMetrics(context, true, layout);
+        layout.update(BOUNDS);
+
+        renderer = new CanvasFaceRenderer(new FrameStats(false), false, false);
+        renderer.setStyle(style, layout);
+        geometry = style.createGeometry();
+        geometry.setRadius(BOUNDS.width() / 2f);
+
+        bitmap = Bitmap.createBitmap(BOUNDS.width(), BOUNDS.height(), Bitmap.Config.ARGB_8888);
+        canvas = new Canvas(bitmap);
+    }
+
+    @After
+    public void tearDown() {
+        renderer.release();
+        bitmap.recycle();
+    }
+
+    /**
+     * Check whether the given region contains the given points.
+     *
+     * @param region The region.
+     * @param coords The point coordinates, as X and Y pairs.
+     * @param offset The offset of the first coordinate.
+     * @param count The number of coordinates.
+     *
+     * @return True if it contains all points.
+     */
+    private static boolean containsPoints(Rect region, float[] coords, int offset, int count) {
+        for(int i = offset; i < offset + count; i += 2)
+            if(coords[i] < region.left || coords[i] > region.right || coords[i + 1] < region.top || coords[i + 1] > region.bottom)
+                return false;
+        return true;
+    }
+
+    /**
+     * Assert the face drawn in the bitmap equals a fully drawn frame at the given time.
+     *
+     * @param minute The minute.
+     * @param secondPrecise The precise number of seconds.
+     */
+    private void assertFullFrame(int minute, float secondPrecise) {
+        Bitmap full = Bitmap.createBitmap(BOUNDS.width(), BOUNDS.height(), Bitmap.Config.ARGB_8888);
+        full.eraseColor(SENTINEL);
+        renderer.draw(new Canvas(full), BOUNDS, 10, minute, secondPrecise, true);
+
+        int[] pixels = new int[BOUNDS.width() * BOUNDS.height()];
+        int[] fullPixels = new int[pixels.length];
+        bitmap.getPixels(pixels, 0, BOUNDS.width(), 0, 0, BOUNDS.width(), BOUNDS.height());
+        full.getPixels(fullPixels, 0, BOUNDS.width(), 0, 0, BOUNDS.width(), BOUNDS.height());
+        full.recycle();
+        for(int i = 0; i < pixels.length; i++)
+            assertEquals("Pixel " + i % BOUNDS.width() + "," + i / BOUNDS.width(), fullPixels[i], pixels[i]);
+    }
+
+    /**
+     * The first frame is fully redrawn.
+     */
+    @Test
+    public void testFirstFrameFull() {
+        assertEquals(BOUNDS, renderer.update(BOUNDS, 10, 30, 5.0f, true));
+        assertTrue((renderer.getUpdatedLayers() & FrameTracer.FLAG_REDRAWN) != 0);
+    }
+
+    /**
+     * Nothing is redrawn if nothing changed, and the frame isn't marked as redrawn.
+     */
+    @Test
+    public void testNothingChanged() {
+        renderer.setGleamEnabled(false);
+        renderer.update(BOUNDS, 10, 30, 5.0f, true);
+        assertTrue(renderer.update(BOUNDS, 10, 30, 5.2f, true).isEmpty());
+        assertEquals(0, renderer.getUpdatedLayers() & FrameTracer.FLAG_REDRAWN);
+    }
+
+    /**
+     * A frame within the same tick only redraws the region of the gleam.
+     */
+    @Test
+    public void testGleamRegion() {
+        renderer.update(BOUNDS, 10, 30, 5.0f, true);
+        Rect region = new Rect(renderer.update(BOUNDS, 10, 30, 5.2f, true));
+
+        // Both the gleam of the previous and of the current frame are redrawn
+        float[] gleamCoords = new float[8];
+        geometry.getGleamCoords(5.0f, gleamCoords);
+        assertTrue(containsPoints(region, gleamCoords, 0, gleamCoords.length));
+        geometry.getGleamCoords(5.2f, gleamCoords);
+        assertTrue(containsPoints(region, gleamCoords, 0, gleamCoords.length));
+        assertTrue((long) region.width() * region.height() < (long) BOUNDS.width() * BOUNDS.height() / 10);
+        assertFalse(region.contains(BOUNDS.centerX(), BOUNDS.centerY()));
+    }
+
+    /**
+     * Moving the highlighted tick only redraws the previous and the new tick.
+     */
+    @Test
+    public void testTickRegion() {
+        renderer.setGleamEnabled(false);
+        renderer.update(BOUNDS, 10, 30, 5.0f, true);
+        Rect region = renderer.update(BOUNDS, 10, 30, 5.6f, true);
+
+        float[] tickCoords = geometry.getTickCoords();
+        assertTrue(containsPoints(region, tickCoords, 5 * 4, 4));
+        assertTrue(containsPoints(region, tickCoords, 6 * 4, 4));
+        assertFalse(containsPoints(region, tickCoords, 8 * 4, 4));
+        assertFalse(region.contains(BOUNDS.centerX(), BOUNDS.centerY()));
+    }
+
+    /**
+     * A new minute fully redraws the face.
+     */
+    @Test
+    public void testMinuteChange() {
+        renderer.update(BOUNDS, 10, 30, 59.9f, true);
+        assertEquals(BOUNDS, renderer.update(BOUNDS, 10, 31, 0.0f, true));
+    }
+
+    /**
+     * Rendering a region only draws inside it, so the rest of the previous frame is kept.
+     */
+    @Test
+    public void testRenderOnlyRegion() {
+        renderer.render(canvas, renderer.update(BOUNDS, 10, 30, 5.0f, true));
+        Rect region = new Rect(renderer.update(BOUNDS, 10, 30, 5.2f, true));
+        bitmap.eraseColor(SENTINEL);
+        renderer.render(canvas, region);
+
+        assertTrue(bitmap.getPixel(region.centerX(), region.centerY()) != SENTINEL);
+        assertEquals(SENTINEL, bitmap.getPixel(BOUNDS.centerX(), BOUNDS.centerY()));
+    }
+
+    /**
+     * The pixels the gleam left are cleared, so frames rendered incrementally at a low frame rate,
+     * where the gleam moves a whole tick each frame, equal fully drawn frames.
+     */
+    @Test
+    public void testGleamTrailCleared() {
+        bitmap.eraseColor(SENTINEL);
+        renderer.render(canvas, renderer.update(BOUNDS, 10, 30, 5.0f, true));
+        renderer.render(canvas, renderer.update(BOUNDS, 10, 30, 6.0f, true));
+        assertFullFrame(30, 6.0f);
+
+        // The gleam of the previous frame also lies on an axis with no slack around the box
+        renderer.render(canvas, renderer.update(BOUNDS, 10, 30, 15.0f, true));
+        renderer.render(canvas, renderer.update(BOUNDS, 10, 30, 15.2f, true));
+        assertFullFrame(30, 15.2f);
+    }
+
+    /**
+     * The last drawn gleam is cleared in the frame the gleam moves below a peek card.
+     */
+    @Test
+    public void testGleamTrailClearedOccluded() {
+        renderer.setOccludedBounds(CARD);
+        bitmap.eraseColor(SENTINEL);
+        renderer.render(canvas, renderer.update(BOUNDS, 10, 30, 0.0f, true));
+
+        // Find the first second at which the gleam is covered by the card
+        float second = 1.0f;
+        while(!renderer.isGleamOccluded(second, second))
+            second += 1.0f;
+        assertTrue(second < 30.0f);
+
+        renderer.render(canvas, renderer.update(BOUNDS, 10, 30, second - 1.0f, true));
+        renderer.render(canvas, renderer.update(BOUNDS, 10, 30, second, true));
+        assertEquals(0, renderer.getUpdatedLayers() & FrameTracer.LAYER_GLEAM);
+        assertFullFrame(30, second);
+    }
+
+    /**
+     * Drawing always redraws the whole face, also if nothing changed, as its canvas may hold any
+     * earlier frame.
+     */
+    @Test
+    public void testDrawFull() {
+        renderer.setGleamEnabled(false);
+        renderer.draw(canvas, BOUNDS, 10, 30, 5.0f, true);
+        bitmap.eraseColor(SENTINEL);
+        renderer.draw(canvas, BOUNDS, 10, 30, 5.2f, true);
+
+        assertTrue(bitmap.getPixel(0, 0) != SENTINEL);
+        assertTrue(bitmap.getPixel(BOUNDS.centerX(), BOUNDS.centerY()) != SENTINEL);
+    }
+
+    /**
+     * The gleam is only occluded while it's fully below a peek card, including the part that
+     * sticks out of the face.
+     */
+    @Test
+    public void testGleamOccluded() {
+        renderer.update(BOUNDS, 10, 30, 5.0f, true);
+        assertFalse(renderer.isGleamOccluded(30.0f, 31.0f));
+
+        renderer.setOccludedBounds(CARD);
+        assertTrue(renderer.isGleamOccluded(30.0f, 31.0f));
+        assertFalse(renderer.isGleamOccluded(0.0f, 1.0f));
+        assertFalse(renderer.isGleamOccluded(15.0f, 16.0f));
+
+        renderer.setOccludedBounds(null);
+        assertFalse(renderer.isGleamOccluded(30.0f, 31.0f));
+    }
+
+    /**
+     * Nothing is drawn below a peek card, while the rest of the face is drawn.
+     */
+    @Test
+    public void testCardUntouched() {
+        renderer.setOccludedBounds(CARD);
+        bitmap.eraseColor(SENTINEL);
+        renderer.draw(canvas, BOUNDS, 10, 30, 30.2f, true);
+
+        for(int y = CARD.top; y < CARD.bottom; y++)
+            for(int x = CARD.left; x < CARD.right; x++)
+                assertEquals("Pixel " + x + "," + y, SENTINEL, bitmap.getPixel(x, y));
+        assertTrue(bitmap.getPixel(BOUNDS.centerX(), CARD.top - 1) != SENTINEL);
+    }
+
+    /**
+     * A gleam below a peek card isn't drawn, so the gleam isn't marked as updated, while a gleam
+     * above it is.
+     */
+    @Test
+    public void testGleamLayerOccluded() {
+        renderer.setOccludedBounds(CARD);
+        renderer.render(canvas, renderer.update(BOUNDS, 10, 30, 30.0f, true));
+        renderer.render(canvas, renderer.update(BOUNDS, 10, 30, 30.2f, true));
+        assertEquals(0, renderer.getUpdatedLayers() & FrameTracer.LAYER_GLEAM);
+
+        renderer.render(canvas, renderer.update(BOUNDS, 10, 31, 0.2f, true));
+        assertTrue((renderer.getUpdatedLayers() & FrameTracer.LAYER_GLEAM) != 0);
+    }
+
+    /**
+     * Nothing is redrawn if only ticks below a peek card changed.
+     */
+    @Test
+    public void testOccludedTicksRegion() {
+        renderer.setGleamEnabled(false);
+        renderer.setOccludedBounds(CARD);
+        renderer.update(BOUNDS, 10, 30, 30.0f, true);
+
+        assertTrue(renderer.update(BOUNDS, 10, 30, 31.0f, true).isEmpty());
+        assertTrue(renderer.update(BOUNDS, 10, 30, 32.0f, true).isEmpty());
+        assertEquals(0, renderer.getUpdatedLayers() & FrameTracer.FLAG_REDRAWN);
+    }
+}
@@ -0,0 +1,120 @@
+package com.timvisee.axiomone;
+
+import android.graphics.Rect;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of the redraw regions of the damage tracker.
+ */
+@RunWith(AndroidJUnit4.class)
+public class DamageTrackerTest {
+
+    /**
+     * The bounds of the face.
+     */
+    private static final Rect BOUNDS = new Rect(0, 0, 320, 320);
+
+    /**
+     * The damage tracker.
+     */
+    private DamageTracker tracker;
+
+    @Before
+    public void setUp() {
+        tracker = new DamageTracker();
+    }
+
+    /**
+     * The first frame is fully redrawn.
+     */
+    @Test
+    public void testFirstFrameFull() {
+        assertEquals(BOUNDS, tracker.nextFrame(BOUNDS));
+    }
+
+    /**
+     * Nothing is redrawn if nothing was damaged.
+     */
+    @Test
+    public void testNoDamage() {
+        tracker.nextFrame(BOUNDS);
+        assertTrue(tracker.nextFrame(BOUNDS).isEmpty());
+    }
+
+    /**
+     * Only the damage since the previous frame is redrawn, not that of older frames.
+     */
+    @Test
+    public void testDamageOfPreviousFrameOnly() {
+        tracker.nextFrame(BOUNDS);
+        tracker.damage(10, 10, 20, 20);
+        assertEquals(new Rect(10, 10, 20, 20), tracker.nextFrame(BOUNDS));
+        tracker.damage(100, 100, 110, 120);
+        assertEquals(new Rect(100, 100, 110, 120), tracker.nextFrame(BOUNDS));
+        assertTrue(tracker.nextFrame(BOUNDS).isEmpty());
+    }
+
+    /**
+     * The damage of a frame is combined into its bounding box.
+     */
+    @Test
+    public void testDamageUnion() {
+        tracker.nextFrame(BOUNDS);
+        tracker.damage(10, 10, 20, 20);
+        tracker.damage(30, 5, 40, 15);
+        assertEquals(new Rect(10, 5, 40, 20), tracker.nextFrame(BOUNDS));
+    }
+
+    /**
+     * Damage is clipped to the bounds of the face.
+     */
+    @Test
+    public void testDamageClipped() {
+        tracker.nextFrame(BOUNDS);
+        tracker.damage(-5, 300, 10, 330);
+        assertEquals(new Rect(0, 300, 10, 320), tracker.nextFrame(BOUNDS));
+        tracker.damage(400, 400, 410, 410);
+        assertTrue(tracker.nextFrame(BOUNDS).isEmpty());
+    }
+
+    /**
+     * The bounding box of damaged points includes the margin, rounded outwards.
+     */
+    @Test
+    public void testDamagePoints() {
+        tracker.nextFrame(BOUNDS);
+        tracker.damagePoints(new float[] {0f, 0f, 10.5f, 20.2f, 30.7f, 25f}, 2, 4, 2f);
+        assertEquals(new Rect(8, 18, 33, 27), tracker.nextFrame(BOUNDS));
+    }
+
+    /**
+     * Invalidating the face fully redraws the next frame only.
+     */
+    @Test
+    public void testInvalidateAll() {
+        tracker.nextFrame(BOUNDS);
+        tracker.damage(10, 10, 20, 20);
+        tracker.invalidateAll();
+        assertEquals(BOUNDS, tracker.nextFrame(BOUNDS));
+        assertTrue(tracker.nextFrame(BOUNDS).isEmpty());
+    }
+
+    /**
+     * The pixel statistics count the redrawn pixels against full redraws.
+     */
+    @Test
+    public void testPixelStatistics() {
+        tracker.nextFrame(BOUNDS);
+        tracker.damage(0, 0, 32, 32);
+        tracker.nextFrame(BOUNDS);
+        assertEquals((320 * 320 + 32 * 32) / 2, tracker.getAveragePixels());
+        assertEquals((320f * 320f + 32f * 32f) / (2f * 320f * 320f), tracker.getPixelRatio(), 0.0001f);
+    }
+}
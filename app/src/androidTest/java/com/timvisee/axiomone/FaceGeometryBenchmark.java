@@ -0,0 +1,158 @@
+package com.timvisee.axiomone;
+
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Micro-benchmark of the gleam corners from the lookup tables of the face geometry, against the
+ * per-frame trigonometry they replaced.
+ *
+ * Each variant is warmed up until the JIT compiled it, after which the best of several rounds is
+ * logged in nanoseconds per frame. The results are summed into a sink, so the JIT can't eliminate
+ * the work. The unit tests check that both variants give the same corners.
+ */
+@RunWith(AndroidJUnit4.class)
+public class FaceGeometryBenchmark {
+
+    /**
+     * The log tag.
+     */
+    private static final String TAG = "AxiomOneFace";
+
+    /**
+     * The radius of the face, and the tick and gleam lengths, of a typical round watch.
+     */
+    private static final float RADIUS = 160f;
+    private static final float TICK_LENGTH_SMALL = 8f;
+    private static final float TICK_LENGTH_LARGE = 16f;
+    private static final float GLEAM_LENGTH = 24f;
+
+    /**
+     * The width of the gleam, one second of the minute, in radians.
+     */
+    private static final float GLEAM_WIDTH = (float) (1.0f / 60.0f * Math.PI * 2.0f);
+
+    /**
+     * The number of frames of each round, the number of warm-up rounds, and the number of measured rounds.
+     */
+    private static final int FRAMES = 100000;
+    private static final int WARM_UP_ROUNDS = 5;
+    private static final int ROUNDS = 5;
+
+    /**
+     * The sum of all calculated corners, so the JIT can't eliminate the calculations.
+     */
+    private static float sink;
+
+    /**
+     * Calculate the corners of the gleam with trigonometry, as each frame did before the tables.
+     *
+     * @param secondPrecise The precise second, 0 to 60.
+     * @param out The buffer to write the corners into, in the order of the face geometry.
+     */
+    private static void getGleamCoordsTrigonometry(float secondPrecise, float[] out) {
+        float gleamRadiusInside = RADIUS - GLEAM_LENGTH;
+        float gleamRadiusOutside = RADIUS + 2.0f;
+        float secondAngle = (float) ((secondPrecise - 15.0f) / 60.0f * Math.PI * 2.0f);
+        getCircleCoords(gleamRadiusInside, secondAngle - GLEAM_WIDTH, out, 0);
+        getCircleCoords(gleamRadiusOutside, secondAngle - GLEAM_WIDTH, out, 2);
+        getCircleCoords(gleamRadiusOutside, secondAngle, out, 4);
+        getCircleCoords(gleamRadiusInside, secondAngle, out, 6);
+    }
+
+    /**
+     * Calculate the coordinates on a circle around the center of the face.
+     *
+     * @param radius The radius of the circle.
+     * @param angle The angle.
+     * @param out The buffer to write the X and Y coordinate into.
+     * @param index The index to write the X coordinate at.
+     */
+    private static void getCircleCoords(float radius, float angle, float[] out, int index) {
+        out[index] = (float) (radius * Math.cos(angle)) + RADIUS;
+        out[index + 1] = (float) (radius * Math.sin(angle)) + RADIUS;
+    }
+
+    /**
+     * Get the precise second of the given frame, at 60 frames per second.
+     *
+     * @param frame The frame.
+     *
+     * @return The precise second, 0 to 60.
+     */
+    private static float getSecondPrecise(int frame) {
+        return frame % 3600 / 60f;
+    }
+
+    /**
+     * Run a round of frames with the lookup tables.
+     *
+     * @param geometry The geometry.
+     * @param coords The corner buffer.
+     *
+     * @return The duration in nanoseconds.
+     */
+    private static long runTables(FaceGeometry geometry, float[] coords) {
+        long start = System.nanoTime();
+        float sum = 0;
+        for(int frame = 0; frame < FRAMES; frame++) {
+            geometry.getGleamCoords(getSecondPrecise(frame), coords);
+            sum += coords[0] + coords[7];
+        }
+        long duration = System.nanoTime() - start;
+        sink += sum;
+        return duration;
+    }
+
+    /**
+     * Run a round of frames with trigonometry.
+     *
+     * @param coords The corner buffer.
+     *
+     * @return The duration in nanoseconds.
+     */
+    private static long runTrigonometry(float[] coords) {
+        long start = System.nanoTime();
+        float sum = 0;
+        for(int frame = 0; frame < FRAMES; frame++) {
+            getGleamCoordsTrigonometry(getSecondPrecise(frame), coords);
+            sum += coords[0] + coords[7];
+        }
+        long duration = System.nanoTime() - start;
+        sink += sum;
+        return duration;
+    }
+
+    /**
+     * Benchmark both variants, and log the best time of each.
+     */
+    @Test
+    public void benchmarkGleamCoords() {
+        FaceGeometry geometry = new FaceGeometry(TICK_LENGTH_SMALL, TICK_LENGTH_LARGE, GLEAM_LENGTH);
+        geometry.setRadius(RADIUS);
+        float[] coords = new float[8];
+
+        // Warm up both variants
+        for(int round = 0; round < WARM_UP_ROUNDS; round++) {
+            runTables(geometry, coords);
+            runTrigonometry(coords);
+        }
+
+        // Measure alternating rounds, keeping the best of each
+        long tables = Long.MAX_VALUE;
+        long trigonometry = Long.MAX_VALUE;
+        for(int round = 0; round < ROUNDS; round++) {
+            tables = Math.min(tables, runTables(geometry, coords));
+            trigonometry = Math.min(trigonometry, runTrigonometry(coords));
+        }
+
+        Log.i(TAG, String.format("Gleam corners: tables %.1f ns/frame, trigonometry %.1f ns/frame (sink %.0f)",
+                (double) tables / FRAMES, (double) trigonometry / FRAMES, sink));
+        assertTrue(tables > 0 && trigonometry > 0);
+    }
+}
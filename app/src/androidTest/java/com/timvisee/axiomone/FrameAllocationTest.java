@@ -0,0 +1,146 @@
+package com.timvisee.axiomone;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Rect;
+import android.os.Build;
+import android.os.Debug;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Allocation test of the steady-state animation frame of the interactive face.
+ *
+ * The frames are updated and partially rendered into an offscreen bitmap the way the engine
+ * draws its animation frames, through the clock layers, the ticks layer, the damage tracker and
+ * the frame statistics. The allocations are read from the runtime statistics of the process, so
+ * another thread may allocate during a round. A path that allocates in each frame allocates in
+ * each round, so the round that allocated least is checked.
+ */
+@RunWith(AndroidJUnit4.class)
+public class FrameAllocationTest {
+
+    /**
+     * The runtime statistic of the number of bytes allocated by the process.
+     */
+    private static final String STAT_BYTES_ALLOCATED = "art.gc.bytes-allocated";
+
+    /**
+     * The bounds of the face.
+     */
+    private static final Rect BOUNDS = new Rect(0, 0, 320, 320);
+
+    /**
+     * The interval between the frames in milliseconds, at 30 frames per second.
+     */
+    private static final int FRAME_MILLIS = 33;
+
+    /**
+     * The number of frames of each round, which cross a number of second boundaries within the
+     * same minute.
+     */
+    private static final int FRAMES = 1500;
+
+    /**
+     * The number of measured rounds.
+     */
+    private static final int ROUNDS = 5;
+
+    /**
+     * The renderer.
+     */
+    private CanvasFaceRenderer renderer;
+
+    /**
+     * The frame statistics, with the histograms recording.
+     */
+    private final FrameStats frameStats = new FrameStats(true);
+
+    /**
+     * The bitmap the frames are rendered in, and its canvas.
+     */
+    private Bitmap bitmap;
+    private Canvas canvas;
+
+    @Before
+    public void setUp() {
+        // The allocations are read from the runtime statistics, which are available since Marshmallow
+        assumeTrue(Build.VERSION.SDK_INT >= Build.VERSION_CODES.M);
+
+        Context context = InstrumentationRegistry.getTargetContext();
+        FaceStyle style = StyleCache.obtainStyle(context, true);
+        ClockLayout layout = new ClockLayout();
+        StyleCache.obtainMetrics(context, true, layout);
+        layout.update(BOUNDS);
+
+        frameStats.setExpectedFrameInterval(FRAME_MILLIS * 1000000L);
+        renderer = new CanvasFaceRenderer(frameStats, false, false);
+        renderer.setStyle(style, layout);
+        bitmap = Bitmap.createBitmap(BOUNDS.width(), BOUNDS.height(), Bitmap.Config.ARGB_8888);
+        canvas = new Canvas(bitmap);
+    }
+
+    @After
+    public void tearDown() {
+        if(renderer != null)
+            renderer.release();
+        if(bitmap != null)
+            bitmap.recycle();
+    }
+
+    /**
+     * Get the number of bytes the process allocated so far.
+     *
+     * @return The number of bytes.
+     */
+    private static long getBytesAllocated() {
+        return Long.parseLong(Debug.getRuntimeStat(STAT_BYTES_ALLOCATED));
+    }
+
+    /**
+     * Update and render the given animation frame, as the engine does.
+     *
+     * @param frame The frame number.
+     */
+    private void renderFrame(int frame) {
+        // Stay within the minute, so the clock layers aren't redrawn
+        float secondPrecise = (frame * FRAME_MILLIS) % 59000 / 1000.0f;
+
+        frameStats.beginFrame();
+        renderer.render(canvas, renderer.update(BOUNDS, 10, 30, secondPrecise, true));
+        frameStats.endFrame(true);
+    }
+
+    /**
+     * Updating and rendering animation frames doesn't allocate once the caches are built.
+     */
+    @Test
+    public void testAnimationFrame() {
+        // Build the caches and let the JIT compile the frame path
+        for(int frame = 0; frame < FRAMES; frame++)
+            renderFrame(frame);
+
+        // Measure the bytes allocated by each round, minus those of reading the statistic itself,
+        // and keep the least
+        long bytes = Long.MAX_VALUE;
+        for(int round = 0; round < ROUNDS; round++) {
+            long calibration = getBytesAllocated();
+            long start = getBytesAllocated();
+            for(int frame = 0; frame < FRAMES; frame++)
+                renderFrame(frame);
+            long end = getBytesAllocated();
+            bytes = Math.min(bytes, end - start - (start - calibration));
+        }
+
+        assertEquals("Animation frames allocated " + bytes + " bytes in " + FRAMES + " frames", 0, bytes);
+    }
+}
@@ -0,0 +1,233 @@
+package com.timvisee.axiomone;
+
+import android.content.Context;
+import android.graphics.Rect;
+import android.opengl.EGL14;
+import android.opengl.EGLConfig;
+import android.opengl.EGLContext;
+import android.opengl.EGLDisplay;
+import android.opengl.EGLSurface;
+import android.opengl.GLES20;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of the ambient mode of the OpenGL renderer.
+ *
+ * The face is drawn into an offscreen pbuffer surface, and its pixels are read back.
+ */
+@RunWith(AndroidJUnit4.class)
+public class GlFaceRendererTest {
+
+    /**
+     * The bounds of the face.
+     */
+    private static final Rect BOUNDS = new Rect(0, 0, 320, 320);
+
+    /**
+     * The maximum distance in pixels the face is shifted for burn-in protection.
+     */
+    private static final int BURN_IN_SHIFT = 4;
+
+    /**
+     * The hour the face is drawn at.
+     */
+    private static final int HOUR = 10;
+
+    /**
+     * The EGL display, and the context and pbuffer surface the face is drawn in.
+     */
+    private EGLDisplay display;
+    private EGLContext eglContext;
+    private EGLSurface surface;
+
+    /**
+     * The layout of the clock.
+     */
+    private ClockLayout layout;
+
+    /**
+     * The renderer.
+     */
+    private GlFaceRenderer renderer;
+
+    @Before
+    public void setUp() {
+        // Create an OpenGL ES 2.0 context with an offscreen surface of the face size, and make it current
+        display = EGL14.eglGetDisplay(EGL14.EGL_DEFAULT_DISPLAY);
+        int[] version = new int[2];
+        assertTrue(EGL14.eglInitialize(display, version, 0, version, 1));
+        int[] configAttributes = {
+                EGL14.EGL_RENDERABLE_TYPE, EGL14.EGL_OPENGL_ES2_BIT,
+                EGL14.EGL_SURFACE_TYPE, EGL14.EGL_PBUFFER_BIT,
+                EGL14.EGL_RED_SIZE, 8,
+                EGL14.EGL_GREEN_SIZE, 8,
+                EGL14.EGL_BLUE_SIZE, 8,
+                EGL14.EGL_ALPHA_SIZE, 8,
+                EGL14.EGL_NONE
+        };
+        EGLConfig[] configs = new EGLConfig[1];
+        int[] configCount = new int[1];
+        assertTrue(EGL14.eglChooseConfig(display, configAttributes, 0, configs, 0, 1, configCount, 0));
+        eglContext = EGL14.eglCreateContext(display, configs[0], EGL14.EGL_NO_CONTEXT,
+                new int[] {EGL14.EGL_CONTEXT_CLIENT_VERSION, 2, EGL14.EGL_NONE}, 0);
+        surface = EGL14.eglCreatePbufferSurface(display, configs[0],
+                new int[] {EGL14.EGL_WIDTH, BOUNDS.width(), EGL14.EGL_HEIGHT, BOUNDS.height(), EGL14.EGL_NONE}, 0);
+        assertTrue(EGL14.eglMakeCurrent(display, surface, surface, eglContext));
+
+        // Set up the renderer for a round face
+        Context context = InstrumentationRegistry.getTargetContext();
+        FaceStyle style = StyleCache.obtainStyle(context, true);
+        layout = new ClockLayout();
+        StyleCache.obtainMetrics(context, true, layout);
+        layout.update(BOUNDS);
+        renderer = new GlFaceRenderer(BURN_IN_SHIFT);
+        renderer.onContextCreated();
+        renderer.setStyle(style, layout);
+    }
+
+    @After
+    public void tearDown() {
+        renderer.release();
+        EGL14.eglMakeCurrent(display, EGL14.EGL_NO_SURFACE, EGL14.EGL_NO_SURFACE, EGL14.EGL_NO_CONTEXT);
+        EGL14.eglDestroySurface(display, surface);
+        EGL14.eglDestroyContext(display, eglContext);
+        EGL14.eglTerminate(display);
+    }
+
+    /**
+     * Draw a frame of the face, and read back its pixels.
+     *
+     * @param minute The minute.
+     * @param interactive True to draw the interactive face.
+     *
+     * @return The RGBA pixels of the face, row by row from the top.
+     */
+    private int[] drawPixels(int minute, boolean interactive) {
+        renderer.draw(null, BOUNDS, HOUR, minute, 0.0f, interactive);
+
+        // Read the pixels, OpenGL stores the rows from the bottom
+        int width = BOUNDS.width();
+        int height = BOUNDS.height();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(width * height * 4).order(ByteOrder.nativeOrder());
+        GLES20.glReadPixels(0, 0, width, height, GLES20.GL_RGBA, GLES20.GL_UNSIGNED_BYTE, buffer);
+        int[] pixels = new int[width * height];
+        for(int y = 0; y < height; y++)
+            for(int x = 0; x < width; x++)
+                pixels[(height - 1 - y) * width + x] = buffer.getInt((y * width + x) * 4);
+        return pixels;
+    }
+
+    /**
+     * Count the distinct colors of the given pixels.
+     *
+     * @param pixels The pixels.
+     *
+     * @return The number of colors.
+     */
+    private static int countColors(int[] pixels) {
+        Set<Integer> colors = new HashSet<Integer>();
+        for(int pixel : pixels)
+            colors.add(pixel);
+        return colors.size();
+    }
+
+    /**
+     * Get the bounding box of the pixels that differ from the background, the color of the top
+     * left pixel.
+     *
+     * @param pixels The pixels.
+     *
+     * @return The bounding box.
+     */
+    private static Rect getDrawnBounds(int[] pixels) {
+        int width = BOUNDS.width();
+        Rect bounds = new Rect(Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MIN_VALUE, Integer.MIN_VALUE);
+        for(int i = 0; i < pixels.length; i++) {
+            if(pixels[i] == pixels[0])
+                continue;
+            bounds.left = Math.min(bounds.left, i % width);
+            bounds.top = Math.min(bounds.top, i / width);
+            bounds.right = Math.max(bounds.right, i % width + 1);
+            bounds.bottom = Math.max(bounds.bottom, i / width + 1);
+        }
+        return bounds;
+    }
+
+    /**
+     * A low-bit ambient frame only has the background and the hour and minute colors, without
+     * anti-aliased edges.
+     */
+    @Test
+    public void testLowBitColors() {
+        assertTrue(countColors(drawPixels(8, false)) > 3);
+
+        renderer.setLowBitAmbient(true);
+        int colors = countColors(drawPixels(8, false));
+        assertTrue("Low-bit ambient frame has " + colors + " colors", colors <= 3);
+    }
+
+    /**
+     * Burn-in protection shifts the ambient face by the shift of each minute, which differs
+     * between consecutive minutes.
+     */
+    @Test
+    public void testBurnInShift() {
+        int[] minutes = {0, 1};
+        Rect[] shifts = new Rect[minutes.length];
+        for(int i = 0; i < minutes.length; i++) {
+            int minute = minutes[i];
+            renderer.setBurnInProtection(false);
+            Rect unshifted = getDrawnBounds(drawPixels(minute, false));
+            renderer.setBurnInProtection(true);
+            Rect shifted = getDrawnBounds(drawPixels(minute, false));
+
+            int dx = AmbientRenderer.getBurnInShiftX(HOUR, minute, BURN_IN_SHIFT);
+            int dy = AmbientRenderer.getBurnInShiftY(HOUR, minute, BURN_IN_SHIFT);
+            assertEquals(unshifted.left + dx, shifted.left);
+            assertEquals(unshifted.top + dy, shifted.top);
+            assertEquals(unshifted.width(), shifted.width());
+            assertEquals(unshifted.height(), shifted.height());
+            shifts[i] = new Rect(shifted.left - unshifted.left, shifted.top - unshifted.top, 0, 0);
+        }
+        assertFalse(shifts[0].equals(shifts[1]));
+    }
+
+    /**
+     * An interactive frame draws the digits, unshifted and anti-aliased even on low-bit displays
+     * with burn-in protection.
+     */
+    @Test
+    public void testInteractiveDigits() {
+        renderer.setLowBitAmbient(true);
+        renderer.setBurnInProtection(true);
+        int[] pixels = drawPixels(8, true);
+
+        // Count the drawn pixels within the bounds of the hour and of the minute digits
+        int background = pixels[0];
+        Rect[] digitBounds = {layout.getHourDigitsBounds(), layout.getMinuteDigitsBounds()};
+        for(Rect bounds : digitBounds) {
+            int drawn = 0;
+            for(int y = Math.max(bounds.top, 0); y < Math.min(bounds.bottom, BOUNDS.height()); y++)
+                for(int x = Math.max(bounds.left, 0); x < Math.min(bounds.right, BOUNDS.width()); x++)
+                    if(pixels[y * BOUNDS.width() + x] != background)
+                        drawn++;
+            assertTrue("No digits drawn in " + bounds, drawn > 0);
+        }
+        assertTrue(countColors(pixels) > 3);
+    }
+}
@@ -0,0 +1,189 @@
+package com.timvisee.axiomone;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Pixel comparison of the gleam sprite against the wedge path that was filled each frame before
+ * the sprite.
+ *
+ * Both are drawn on transparent bitmaps with the gleam paint, and their alpha is compared. The
+ * sprite is rotated with bitmap filtering, so its edges are slightly softer than those of the
+ * path, but the wedge must cover the same pixels with the same total alpha.
+ */
+@RunWith(AndroidJUnit4.class)
+public class GleamSpriteTest {
+
+    /**
+     * The size of the face.
+     */
+    private static final int SIZE = 320;
+
+    /**
+     * The precise seconds to compare the gleam at, including the axis-aligned positions.
+     */
+    private static final float[] SECONDS = {0f, 0.5f, 7.25f, 15f, 22.5f, 30f, 37.8f, 45f, 59.99f};
+
+    /**
+     * The maximum difference of the total alpha, relative to the total alpha of the path.
+     */
+    private static final float TOTAL_TOLERANCE = 0.05f;
+
+    /**
+     * The maximum sum of the alpha differences of all pixels, relative to the total alpha of the path.
+     */
+    private static final float DIFF_TOLERANCE = 0.25f;
+
+    /**
+     * The paint of the gleam.
+     */
+    private Paint paint;
+
+    /**
+     * The geometry of the face.
+     */
+    private FaceGeometry geometry;
+
+    /**
+     * The sprite.
+     */
+    private final GleamSprite sprite = new GleamSprite();
+
+    /**
+     * The bitmaps the path and the sprite are drawn in, and their canvases.
+     */
+    private Bitmap pathBitmap;
+    private Bitmap spriteBitmap;
+    private Canvas pathCanvas;
+    private Canvas spriteCanvas;
+
+    @Before
+    public void setUp() {
+        Context context = InstrumentationRegistry.getTargetContext();
+        FaceStyle style = StyleCache.obtainStyle(context, true);
+        paint = style.getGleamPaint();
+        geometry = style.createGeometry();
+        geometry.setRadius(SIZE / 2f);
+
+        sprite.setPaint(paint);
+        sprite.setGeometry(geometry);
+
+        pathBitmap = Bitmap.createBitmap(SIZE, SIZE, Bitmap.Config.ARGB_8888);
+        spriteBitmap = Bitmap.createBitmap(SIZE, SIZE, Bitmap.Config.ARGB_8888);
+        pathCanvas = new Canvas(pathBitmap);
+        spriteCanvas = new Canvas(spriteBitmap);
+    }
+
+    @After
+    public void tearDown() {
+        sprite.release();
+        pathBitmap.recycle();
+        spriteBitmap.recycle();
+    }
+
+    /**
+     * Fill the wedge through the gleam corners of the given second, as each frame did before the sprite.
+     *
+     * @param canvas The canvas to draw on.
+     * @param secondPrecise The precise second.
+     */
+    private void drawPath(Canvas canvas, float secondPrecise) {
+        float[] gleamCoords = new float[8];
+        geometry.getGleamCoords(secondPrecise, gleamCoords);
+        Path path = new Path();
+        path.moveTo(gleamCoords[0], gleamCoords[1]);
+        path.lineTo(gleamCoords[2], gleamCoords[3]);
+        path.lineTo(gleamCoords[4], gleamCoords[5]);
+        path.lineTo(gleamCoords[6], gleamCoords[7]);
+        path.close();
+        canvas.drawPath(path, paint);
+    }
+
+    /**
+     * Get the alpha of each pixel of the given bitmap.
+     *
+     * @param bitmap The bitmap.
+     *
+     * @return The alpha of each pixel, row by row.
+     */
+    private static int[] getAlpha(Bitmap bitmap) {
+        int[] pixels = new int[SIZE * SIZE];
+        bitmap.getPixels(pixels, 0, SIZE, 0, 0, SIZE, SIZE);
+        for(int i = 0; i < pixels.length; i++)
+            pixels[i] = Color.alpha(pixels[i]);
+        return pixels;
+    }
+
+    /**
+     * The sprite covers the same pixels as the path at each compared second.
+     */
+    @Test
+    public void testMatchesPath() {
+        for(float second : SECONDS) {
+            pathBitmap.eraseColor(Color.TRANSPARENT);
+            spriteBitmap.eraseColor(Color.TRANSPARENT);
+            drawPath(pathCanvas, second);
+            sprite.draw(spriteCanvas, second);
+
+            // Sum the alpha of both, and the alpha difference of each pixel
+            int[] pathAlpha = getAlpha(pathBitmap);
+            int[] spriteAlpha = getAlpha(spriteBitmap);
+            long pathTotal = 0;
+            long spriteTotal = 0;
+            long diff = 0;
+            for(int i = 0; i < pathAlpha.length; i++) {
+                pathTotal += pathAlpha[i];
+                spriteTotal += spriteAlpha[i];
+                diff += Math.abs(pathAlpha[i] - spriteAlpha[i]);
+            }
+
+            assertTrue("No gleam drawn at second " + second, pathTotal > 0);
+            assertEquals("Total alpha at second " + second, pathTotal, spriteTotal, pathTotal * TOTAL_TOLERANCE);
+            assertTrue("Alpha differs by " + diff + " of " + pathTotal + " at second " + second,
+                    diff <= pathTotal * DIFF_TOLERANCE);
+        }
+    }
+
+    /**
+     * The sprite doesn't draw anything outside the bounding box of the gleam corners.
+     */
+    @Test
+    public void testWithinCorners() {
+        float[] gleamCoords = new float[8];
+        for(float second : SECONDS) {
+            spriteBitmap.eraseColor(Color.TRANSPARENT);
+            sprite.draw(spriteCanvas, second);
+
+            // Determine the bounding box of the corners, with a pixel of margin for the filtering
+            geometry.getGleamCoords(second, gleamCoords);
+            float left = gleamCoords[0], top = gleamCoords[1], right = left, bottom = top;
+            for(int i = 2; i < gleamCoords.length; i += 2) {
+                left = Math.min(left, gleamCoords[i]);
+                top = Math.min(top, gleamCoords[i + 1]);
+                right = Math.max(right, gleamCoords[i]);
+                bottom = Math.max(bottom, gleamCoords[i + 1]);
+            }
+
+            int[] spriteAlpha = getAlpha(spriteBitmap);
+            for(int y = 0; y < SIZE; y++)
+                for(int x = 0; x < SIZE; x++)
+                    if(spriteAlpha[y * SIZE + x] != 0)
+                        assertTrue("Pixel " + x + "," + y + " drawn at second " + second,
+                                x >= left - 2 && x <= right + 2 && y >= top - 2 && y <= bottom + 2);
+        }
+    }
+}
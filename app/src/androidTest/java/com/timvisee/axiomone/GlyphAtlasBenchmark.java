@@ -0,0 +1,205 @@
+package com.timvisee.axiomone;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Rect;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Benchmark of the minute rollover of the clock layers, composed from the glyph atlas against
+ * shaping and rasterizing the digits as text as before the atlas.
+ *
+ * Both variants draw the layers of each minute of a day into the same mask layers. The best of
+ * several passes is logged in microseconds per rollover.
+ */
+@RunWith(AndroidJUnit4.class)
+public class GlyphAtlasBenchmark {
+
+    /**
+     * The log tag.
+     */
+    private static final String TAG = "AxiomOneFace";
+
+    /**
+     * The bounds of the face.
+     */
+    private static final Rect BOUNDS = new Rect(0, 0, 320, 320);
+
+    /**
+     * The number of minutes in a day.
+     */
+    private static final int MINUTES = 24 * 60;
+
+    /**
+     * The number of measured passes over a day.
+     */
+    private static final int PASSES = 3;
+
+    /**
+     * The style and the layout of the clock.
+     */
+    private FaceStyle style;
+    private ClockLayout layout;
+
+    /**
+     * The atlas of the digits.
+     */
+    private final GlyphAtlas atlas = new GlyphAtlas();
+
+    /**
+     * The mask layers of the hour and minute digits.
+     */
+    private final Layer hourLayer = new Layer(Bitmap.Config.ALPHA_8);
+    private final Layer minuteLayer = new Layer(Bitmap.Config.ALPHA_8);
+
+    /**
+     * The destination rectangle of the atlas blits.
+     */
+    private final Rect glyphDst = new Rect();
+
+    @Before
+    public void setUp() {
+        Context context = InstrumentationRegistry.getTargetContext();
+        style = StyleCache.obtainStyle(context, true);
+        layout = new ClockLayout();
+        StyleCache.obtainMetrics(context, true, layout);
+        layout.update(BOUNDS);
+
+        Rect hourBounds = layout.getHourDigitsBounds();
+        Rect minuteBounds = layout.getMinuteDigitsBounds();
+        hourLayer.setBounds(hourBounds.left, hourBounds.top, hourBounds.right, hourBounds.bottom);
+        minuteLayer.setBounds(minuteBounds.left, minuteBounds.top, minuteBounds.right, minuteBounds.bottom);
+    }
+
+    @After
+    public void tearDown() {
+        atlas.release();
+        hourLayer.release();
+        minuteLayer.release();
+    }
+
+    /**
+     * Draw the clock layers of the given time from the glyph atlas.
+     *
+     * @param hour The hour.
+     * @param minute The minute.
+     */
+    private void drawAtlas(int hour, int minute) {
+        hourLayer.clear();
+        minuteLayer.clear();
+        int digitsX = layout.getClockDigitsX();
+        atlas.drawText(hourLayer.getCanvas(), GlyphAtlas.STYLE_HOUR, DigitStrings.hour(hour), digitsX,
+                layout.getHourDigitsY(), true, style.getHourPaint(), glyphDst);
+        if(hour < 10)
+            atlas.drawText(hourLayer.getCanvas(), GlyphAtlas.STYLE_HOUR, "0", layout.getGhostDigitX(),
+                    layout.getHourDigitsY(), true, style.getHourGhostPaint(), glyphDst);
+        atlas.drawText(minuteLayer.getCanvas(), GlyphAtlas.STYLE_MINUTE, DigitStrings.minute(minute), digitsX,
+                layout.getMinuteDigitsY(), false, style.getMinutePaint(), glyphDst);
+    }
+
+    /**
+     * Draw the clock layers of the given time as text.
+     *
+     * @param hour The hour.
+     * @param minute The minute.
+     */
+    private void drawText(int hour, int minute) {
+        hourLayer.clear();
+        minuteLayer.clear();
+        int digitsX = layout.getClockDigitsX();
+        Canvas hourCanvas = hourLayer.getCanvas();
+        hourCanvas.drawText(DigitStrings.hour(hour), digitsX, layout.getHourDigitsY(), style.getHourPaint());
+        if(hour < 10)
+            hourCanvas.drawText("0", layout.getGhostDigitX(), layout.getHourDigitsY(), style.getHourGhostPaint());
+        minuteLayer.getCanvas().drawText(DigitStrings.minute(minute), digitsX, layout.getMinuteDigitsY(), style.getMinutePaint());
+    }
+
+    /**
+     * Draw the clock layers of each minute of a day.
+     *
+     * @param useAtlas True to compose the layers from the atlas, false to draw text.
+     *
+     * @return The duration in nanoseconds.
+     */
+    private long runDay(boolean useAtlas) {
+        long start = System.nanoTime();
+        for(int time = 0; time < MINUTES; time++)
+            if(useAtlas)
+                drawAtlas(time / 60, time % 60);
+            else
+                drawText(time / 60, time % 60);
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * Count the pixels of the given layer that are covered by a digit.
+     *
+     * @param layer The layer.
+     *
+     * @return The number of pixels.
+     */
+    private static int countCovered(Layer layer) {
+        Bitmap bitmap = layer.getBitmap();
+        int[] pixels = new int[bitmap.getWidth() * bitmap.getHeight()];
+        bitmap.getPixels(pixels, 0, bitmap.getWidth(), 0, 0, bitmap.getWidth(), bitmap.getHeight());
+        int covered = 0;
+        for(int pixel : pixels)
+            if(Color.alpha(pixel) != 0)
+                covered++;
+        return covered;
+    }
+
+    /**
+     * The atlas draws the digits at the same place and size as the text.
+     */
+    @Test
+    public void testMatchesText() {
+        atlas.build(style.getHourPaint(), style.getMinutePaint());
+        for(int time : new int[] {7 * 60 + 38, 23 * 60 + 59}) {
+            drawText(time / 60, time % 60);
+            int textHour = countCovered(hourLayer);
+            int textMinute = countCovered(minuteLayer);
+            drawAtlas(time / 60, time % 60);
+
+            assertEquals(textHour, countCovered(hourLayer), textHour / 10.0);
+            assertEquals(textMinute, countCovered(minuteLayer), textMinute / 10.0);
+        }
+    }
+
+    /**
+     * Measure the minute rollover of both variants, and log the best pass of each.
+     */
+    @Test
+    public void benchmarkRollover() {
+        // Measure building the atlas, which happens once for each style
+        long buildStart = System.nanoTime();
+        atlas.build(style.getHourPaint(), style.getMinutePaint());
+        long buildNanos = System.nanoTime() - buildStart;
+
+        // Warm up both variants, then measure alternating passes
+        runDay(false);
+        runDay(true);
+        long text = Long.MAX_VALUE;
+        long composed = Long.MAX_VALUE;
+        for(int pass = 0; pass < PASSES; pass++) {
+            text = Math.min(text, runDay(false));
+            composed = Math.min(composed, runDay(true));
+        }
+
+        Log.i(TAG, String.format("Minute rollover: text %.1f us, glyph atlas %.1f us, atlas build %.1f us",
+                text / 1000.0 / MINUTES, composed / 1000.0 / MINUTES, buildNanos / 1000.0));
+        assertTrue(text > 0 && composed > 0);
+    }
+}
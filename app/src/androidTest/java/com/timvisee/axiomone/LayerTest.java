@@ -0,0 +1,72 @@
+package com.timvisee.axiomone;
+
+import android.graphics.Bitmap;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of the bytes held by layers.
+ */
+@RunWith(AndroidJUnit4.class)
+public class LayerTest {
+
+    /**
+     * A mask layer holds one byte for each pixel of its bounds.
+     */
+    @Test
+    public void testMaskBytes() {
+        Layer layer = new Layer(Bitmap.Config.ALPHA_8);
+        layer.setBounds(20, 100, 120, 140);
+        assertEquals(100 * 40, layer.getByteCount());
+        layer.release();
+    }
+
+    /**
+     * A color layer holds four bytes for each pixel of its bounds.
+     */
+    @Test
+    public void testColorBytes() {
+        Layer layer = new Layer(Bitmap.Config.ARGB_8888);
+        layer.setBounds(20, 100, 120, 140);
+        assertEquals(100 * 40 * 4, layer.getByteCount());
+        layer.release();
+    }
+
+    /**
+     * A released layer holds no bytes.
+     */
+    @Test
+    public void testReleasedBytes() {
+        Layer layer = new Layer(Bitmap.Config.ALPHA_8);
+        assertEquals(0, layer.getByteCount());
+        layer.setBounds(0, 0, 64, 64);
+        layer.release();
+        assertEquals(0, layer.getByteCount());
+        assertFalse(layer.isAllocated());
+    }
+
+    /**
+     * Moving a layer keeps its bitmap, resizing it reallocates the bitmap at the new size.
+     */
+    @Test
+    public void testResize() {
+        Layer layer = new Layer(Bitmap.Config.ALPHA_8);
+        layer.setBounds(0, 0, 64, 32);
+        Bitmap bitmap = layer.getBitmap();
+
+        assertTrue(layer.setBounds(10, 10, 74, 42));
+        assertSame(bitmap, layer.getBitmap());
+        assertFalse(layer.setBounds(10, 10, 74, 42));
+
+        assertTrue(layer.setBounds(10, 10, 42, 42));
+        assertEquals(32 * 32, layer.getByteCount());
+        layer.release();
+    }
+}
@@ -0,0 +1,325 @@
+package com.timvisee.axiomone;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Rect;
+import android.os.Build;
+import android.os.Debug;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Offscreen rendering benchmark of the watch face.
+ *
+ * The renderers of the face are driven with a manual clock into an offscreen bitmap, for a fixed
+ * set of scenarios: a steady interactive second, a second rollover which redraws the ticks, a
+ * minute rollover which redraws the clock, a minute rollover of which the clock was prepared in
+ * the background, an ambient minute, a change of the face size and shape, and a steady second
+ * fully drawn each frame. The interactive scenarios update the frame and only render the region
+ * that changed, as the animation frames of the engine do, except the full frames, which are drawn
+ * the way the engine draws when the system asks it to. For each scenario the mean and maximum
+ * time, the number of pixels redrawn and the number of bytes allocated per frame are logged.
+ */
+@RunWith(AndroidJUnit4.class)
+public class RenderBenchmark {
+
+    /**
+     * The log tag.
+     */
+    private static final String TAG = "AxiomOneFace";
+
+    /**
+     * The runtime statistic of the number of bytes allocated by the process.
+     */
+    private static final String STAT_BYTES_ALLOCATED = "art.gc.bytes-allocated";
+
+    /**
+     * The number of frames rendered before each scenario is measured.
+     */
+    private static final int WARMUP_FRAMES = 30;
+
+    /**
+     * The number of frames measured for each scenario.
+     */
+    private static final int MEASURED_FRAMES = 300;
+
+    /**
+     * The bounds of the round and the square face.
+     */
+    private static final Rect ROUND_BOUNDS = new Rect(0, 0, 320, 320);
+    private static final Rect SQUARE_BOUNDS = new Rect(0, 0, 280, 280);
+
+    /**
+     * The wall clock time the scenarios start at, midnight at the start of a day.
+     */
+    private static final long START_MILLIS = 1451606400000L;
+
+    /**
+     * The benchmark scenarios.
+     */
+    private static final int SCENARIO_STEADY_SECOND = 0;
+    private static final int SCENARIO_SECOND_ROLLOVER = 1;
+    private static final int SCENARIO_MINUTE_ROLLOVER = 2;
+    private static final int SCENARIO_PREPARED_ROLLOVER = 3;
+    private static final int SCENARIO_AMBIENT_MINUTE = 4;
+    private static final int SCENARIO_SIZE_CHANGE = 5;
+    private static final int SCENARIO_FULL_FRAME = 6;
+
+    /**
+     * The number of benchmark scenarios.
+     */
+    private static final int SCENARIO_COUNT = 7;
+
+    /**
+     * The names of the scenarios, as logged with the results.
+     */
+    private static final String[] SCENARIO_NAMES = {
+            "steady second", "second rollover", "minute rollover", "prepared rollover", "ambient minute", "size change",
+            "full frame"
+    };
+
+    /**
+     * The current wall clock time of the clock.
+     */
+    private long millis;
+
+    /**
+     * Clock of which the time is set manually.
+     * The monotonic time follows the wall clock, as if time passed normally between frames.
+     */
+    private final TimeModel.Clock clock = new TimeModel.Clock() {
+        @Override
+        public long currentTimeMillis() {
+            return millis;
+        }
+
+        @Override
+        public long elapsedRealtime() {
+            return millis - START_MILLIS;
+        }
+    };
+
+    /**
+     * The context the style is loaded with.
+     */
+    private Context context;
+
+    /**
+     * The time model of the face, driven by the manual clock.
+     */
+    private TimeModel timeModel;
+
+    /**
+     * The style and the layout of the clock.
+     */
+    private FaceStyle style;
+    private final ClockLayout layout = new ClockLayout();
+
+    /**
+     * The renderers of the current scenario, or null.
+     */
+    private CanvasFaceRenderer renderer;
+    private AmbientRenderer ambientRenderer;
+
+    /**
+     * The bitmap the frames are rendered in, large enough for both face sizes, and its canvas.
+     */
+    private Bitmap bitmap;
+    private Canvas canvas;
+
+    @Before
+    public void setUp() {
+        // The allocations are read from the runtime statistics, which are available since Marshmallow
+        assumeTrue(Build.VERSION.SDK_INT >= Build.VERSION_CODES.M);
+
+        context = InstrumentationRegistry.getTargetContext();
+        timeModel = new TimeModel(clock, TimeZone.getTimeZone("GMT"));
+        bitmap = Bitmap.createBitmap(ROUND_BOUNDS.width(), ROUND_BOUNDS.height(), Bitmap.Config.ARGB_8888);
+        canvas = new Canvas(bitmap);
+    }
+
+    @After
+    public void tearDown() {
+        releaseRenderers();
+        if(bitmap != null)
+            bitmap.recycle();
+    }
+
+    /**
+     * Release the renderers of the previous scenario, if any.
+     */
+    private void releaseRenderers() {
+        if(renderer != null)
+            renderer.release();
+        if(ambientRenderer != null)
+            ambientRenderer.release();
+        renderer = null;
+        ambientRenderer = null;
+    }
+
+    /**
+     * Get the number of bytes the process allocated so far.
+     *
+     * @return The number of bytes.
+     */
+    private static long getBytesAllocated() {
+        return Long.parseLong(Debug.getRuntimeStat(STAT_BYTES_ALLOCATED));
+    }
+
+    /**
+     * Apply the style and text metrics for a round or square face, as the engine does when the
+     * window insets change.
+     *
+     * @param round True if the face is round.
+     */
+    private void applyMetrics(boolean round) {
+        style = StyleCache.obtainStyle(context, round);
+        StyleCache.obtainMetrics(context, round, layout);
+        renderer.setStyle(style, layout);
+        ambientRenderer.setPaints(style.getHourPaint(), style.getMinutePaint());
+    }
+
+    /**
+     * Render a frame of the face at the current time of the clock, as the engine does.
+     *
+     * @param bounds The bounds of the face.
+     * @param ambient True to render the ambient face.
+     * @param full True to fully draw the interactive face, false to only render the region that
+     *             changed since the previous frame.
+     *
+     * @return The number of pixels redrawn.
+     */
+    private long render(Rect bounds, boolean ambient, boolean full) {
+        // Update the time and the clock layout
+        timeModel.update();
+        if(layout.update(bounds))
+            ambientRenderer.setLayout(layout.getClockDigitsX(), layout.getHourDigitsY(), layout.getMinuteDigitsY(),
+                    layout.getHourDigitsBounds(), layout.getMinuteDigitsBounds());
+
+        // Draw the ambient face, or fully draw the interactive face
+        float secondPrecise = timeModel.getSecond() + timeModel.getMillisecond() / 1000.0f;
+        if(ambient) {
+            ambientRenderer.draw(canvas, timeModel.getHour(), timeModel.getMinute());
+            return (long) bounds.width() * bounds.height();
+        }
+        if(full) {
+            renderer.draw(canvas, bounds, timeModel.getHour(), timeModel.getMinute(), secondPrecise, true);
+            return (long) bounds.width() * bounds.height();
+        }
+
+        // Update the interactive face, and only render the region that changed
+        Rect redrawRegion = renderer.update(bounds, timeModel.getHour(), timeModel.getMinute(), secondPrecise, true);
+        renderer.render(canvas, redrawRegion);
+        return (long) redrawRegion.width() * redrawRegion.height();
+    }
+
+    /**
+     * Run the given scenario, and log its results.
+     *
+     * @param scenario The scenario.
+     *
+     * @return The mean time to render a frame in nanoseconds.
+     */
+    private long runScenario(int scenario) {
+        // Start each scenario from new renderers for a round face with all caches built. Only the
+        // prepared rollover prepares the clock of the next minute in the background, so the
+        // minute rollover measures the clock being drawn within the frame.
+        releaseRenderers();
+        renderer = new CanvasFaceRenderer(new FrameStats(false), false, scenario == SCENARIO_PREPARED_ROLLOVER);
+        ambientRenderer = new AmbientRenderer(4);
+        applyMetrics(true);
+        millis = START_MILLIS;
+        render(ROUND_BOUNDS, scenario == SCENARIO_AMBIENT_MINUTE, true);
+
+        // Warm up, so the first renders and the JIT don't affect the results
+        for(int frame = 1; frame <= WARMUP_FRAMES; frame++)
+            renderFrame(scenario, frame);
+
+        // Measure each frame, and count the allocations meanwhile
+        long bytes = getBytesAllocated();
+        long nanos = 0;
+        long maxNanos = 0;
+        long pixels = 0;
+        for(int frame = WARMUP_FRAMES + 1; frame <= WARMUP_FRAMES + MEASURED_FRAMES; frame++) {
+            // Give the renderer time to prepare the next minute, outside of the measured time
+            if(scenario == SCENARIO_PREPARED_ROLLOVER)
+                renderer.awaitPrepared();
+
+            long start = System.nanoTime();
+            pixels += renderFrame(scenario, frame);
+            long frameTime = System.nanoTime() - start;
+            nanos += frameTime;
+            maxNanos = Math.max(maxNanos, frameTime);
+        }
+        bytes = getBytesAllocated() - bytes;
+
+        Log.i(TAG, String.format("Render benchmark, %s: %d ns/frame, %d max ns, %d pixels/frame, %d bytes/frame",
+                SCENARIO_NAMES[scenario], nanos / MEASURED_FRAMES, maxNanos, pixels / MEASURED_FRAMES,
+                bytes / MEASURED_FRAMES));
+        return nanos / MEASURED_FRAMES;
+    }
+
+    /**
+     * Render the given frame of a scenario.
+     *
+     * @param scenario The scenario.
+     * @param frame The frame number, starting at one.
+     *
+     * @return The number of pixels redrawn.
+     */
+    private long renderFrame(int scenario, int frame) {
+        switch(scenario) {
+            case SCENARIO_STEADY_SECOND:
+            case SCENARIO_FULL_FRAME:
+                // Move the gleam through the first half of a second, so the highlighted tick doesn't change
+                millis = START_MILLIS + 10 * (frame % 40);
+                return render(ROUND_BOUNDS, false, scenario == SCENARIO_FULL_FRAME);
+
+            case SCENARIO_SECOND_ROLLOVER:
+                // Move to the next second each frame, within the same minute
+                millis = START_MILLIS + 1000L * (frame % 59);
+                return render(ROUND_BOUNDS, false, false);
+
+            case SCENARIO_MINUTE_ROLLOVER:
+            case SCENARIO_PREPARED_ROLLOVER:
+                // Move to the next minute each frame
+                millis = START_MILLIS + 60000L * frame;
+                return render(ROUND_BOUNDS, false, false);
+
+            case SCENARIO_AMBIENT_MINUTE:
+                // Move to the next minute each frame, ambient faces are only drawn once a minute
+                millis = START_MILLIS + 60000L * frame;
+                return render(ROUND_BOUNDS, true, false);
+
+            case SCENARIO_SIZE_CHANGE:
+                // Switch between a round and a square face each frame
+                boolean round = frame % 2 == 0;
+                applyMetrics(round);
+                return render(round ? ROUND_BOUNDS : SQUARE_BOUNDS, false, false);
+
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * Run all scenarios, and log the results of each.
+     */
+    @Test
+    public void benchmarkScenarios() {
+        for(int scenario = 0; scenario < SCENARIO_COUNT; scenario++)
+            assertTrue(runScenario(scenario) > 0);
+    }
+}
@@ -0,0 +1,144 @@
+package com.timvisee.axiomone;
+
+import android.content.Context;
+import android.graphics.Typeface;
+import android.os.Build;
+import android.os.Debug;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Benchmark of the style setup done when an engine is created.
+ *
+ * The style and text metrics of a round face are set up the way an engine does when it's created,
+ * for three cases: without the style cache, with a cold cache that has to load the style, and with
+ * a warm cache. For each case the time and the number of bytes allocated per engine are logged.
+ */
+@RunWith(AndroidJUnit4.class)
+public class StartupBenchmark {
+
+    /**
+     * The log tag.
+     */
+    private static final String TAG = "AxiomOneFace";
+
+    /**
+     * The runtime statistic of the number of bytes allocated by the process.
+     */
+    private static final String STAT_BYTES_ALLOCATED = "art.gc.bytes-allocated";
+
+    /**
+     * The number of engines set up for each case.
+     */
+    private static final int ITERATIONS = 20;
+
+    /**
+     * The benchmark cases.
+     */
+    private static final int CASE_UNCACHED = 0;
+    private static final int CASE_COLD = 1;
+    private static final int CASE_WARM = 2;
+
+    /**
+     * The number of benchmark cases.
+     */
+    private static final int CASE_COUNT = 3;
+
+    /**
+     * The names of the cases, as logged with the results.
+     */
+    private static final String[] CASE_NAMES = {"uncached", "cold cache", "warm cache"};
+
+    /**
+     * The context the style is loaded with.
+     */
+    private Context context;
+
+    @Before
+    public void setUp() {
+        // The allocations are read from the runtime statistics, which are available since Marshmallow
+        assumeTrue(Build.VERSION.SDK_INT >= Build.VERSION_CODES.M);
+
+        context = InstrumentationRegistry.getTargetContext();
+    }
+
+    /**
+     * Get the number of bytes the process allocated so far.
+     *
+     * @return The number of bytes.
+     */
+    private static long getBytesAllocated() {
+        return Long.parseLong(Debug.getRuntimeStat(STAT_BYTES_ALLOCATED));
+    }
+
+    /**
+     * Run the given case, and log its results.
+     *
+     * @param benchmarkCase The case.
+     *
+     * @return The mean time to set up an engine in nanoseconds.
+     */
+    private long runCase(int benchmarkCase) {
+        // Set up one engine first, so the JIT doesn't affect the results
+        setUpEngine(benchmarkCase);
+
+        // Measure the engines, and count the allocations meanwhile
+        long bytes = getBytesAllocated();
+        long start = System.nanoTime();
+        for(int i = 0; i < ITERATIONS; i++)
+            setUpEngine(benchmarkCase);
+        long nanos = System.nanoTime() - start;
+        bytes = getBytesAllocated() - bytes;
+
+        Log.i(TAG, String.format("Startup benchmark, %s: %d ns/engine, %d bytes/engine",
+                CASE_NAMES[benchmarkCase], nanos / ITERATIONS, bytes / ITERATIONS));
+        return nanos / ITERATIONS;
+    }
+
+    /**
+     * Set up the style and text metrics of an engine for the given case.
+     *
+     * @param benchmarkCase The case.
+     */
+    private void setUpEngine(int benchmarkCase) {
+        ClockLayout layout = new ClockLayout();
+        switch(benchmarkCase) {
+            case CASE_UNCACHED:
+                // Decode the font, load the theme, compile the style and measure its metrics
+                Typeface font = Typeface.createFromAsset(context.getAssets(), context.getString(R.string.font_path));
+                FaceStyle style = new FaceStyle(Theme.load(context), font);
+                style.setRound(true);
+                layout.setMetrics(style);
+                break;
+
+            case CASE_COLD:
+                // Clear the cache, so the style is loaded again
+                StyleCache.clear();
+                StyleCache.obtainStyle(context, true);
+                StyleCache.obtainMetrics(context, true, layout);
+                break;
+
+            case CASE_WARM:
+                StyleCache.obtainStyle(context, true);
+                StyleCache.obtainMetrics(context, true, layout);
+                break;
+        }
+    }
+
+    /**
+     * Run all cases, and log the results of each.
+     */
+    @Test
+    public void benchmarkStartup() {
+        for(int benchmarkCase = 0; benchmarkCase < CASE_COUNT; benchmarkCase++)
+            assertTrue(runCase(benchmarkCase) > 0);
+    }
+}
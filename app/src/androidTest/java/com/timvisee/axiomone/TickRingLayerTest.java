@@ -0,0 +1,189 @@
+package com.timvisee.axiomone;
+
+import android.graphics.Bitmap;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of the ring of tick layers.
+ */
+@RunWith(AndroidJUnit4.class)
+public class TickRingLayerTest {
+
+    /**
+     * The size of the face.
+     */
+    private static final int SIZE = 320;
+
+    /**
+     * The margin around the ticks.
+     */
+    private static final float MARGIN = 4f;
+
+    /**
+     * The geometry of the ticks.
+     */
+    private FaceGeometry geometry;
+
+    /**
+     * The ring of mask layers.
+     */
+    private TickRingLayer ring;
+
+    @Before
+    public void setUp() {
+        geometry = new FaceGeometry(8f, 16f, 24f);
+        geometry.setRadius(SIZE / 2f);
+        ring = new TickRingLayer(Bitmap.Config.ALPHA_8);
+        ring.setPaints(createPaint(2f), createPaint(4f), createPaint(3f), createPaint(5f));
+    }
+
+    @After
+    public void tearDown() {
+        ring.release();
+    }
+
+    /**
+     * Create a paint to draw ticks with.
+     *
+     * @param strokeWidth The width of the ticks.
+     *
+     * @return The paint.
+     */
+    private static Paint createPaint(float strokeWidth) {
+        Paint paint = new Paint();
+        paint.setStrokeWidth(strokeWidth);
+        return paint;
+    }
+
+    /**
+     * The segments together hold far fewer bytes than a single mask layer of the whole face.
+     */
+    @Test
+    public void testRingBytes() {
+        ring.setGeometry(geometry, MARGIN);
+        int bytes = ring.getByteCount();
+
+        assertTrue(bytes > 0);
+        assertTrue("Ring holds " + bytes + " bytes", bytes < SIZE * SIZE / 2);
+    }
+
+    /**
+     * Each segment only holds the bounding box of its own ticks, including the margin.
+     */
+    @Test
+    public void testSegmentBounds() {
+        ring.setGeometry(geometry, MARGIN);
+
+        // Sum the bounding boxes of the ticks of each segment
+        float[] tickCoords = geometry.getTickCoords();
+        int expected = 0;
+        for(int segment = 0; segment < TickRingLayer.SEGMENT_COUNT; segment++) {
+            Rect bounds = new Rect(Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MIN_VALUE, Integer.MIN_VALUE);
+            int first = segment * TickRingLayer.TICKS_PER_SEGMENT * 4;
+            for(int i = first; i < first + TickRingLayer.TICKS_PER_SEGMENT * 4; i += 2) {
+                bounds.left = Math.min(bounds.left, (int) Math.floor(tickCoords[i] - MARGIN));
+                bounds.top = Math.min(bounds.top, (int) Math.floor(tickCoords[i + 1] - MARGIN));
+                bounds.right = Math.max(bounds.right, (int) Math.ceil(tickCoords[i] + MARGIN));
+                bounds.bottom = Math.max(bounds.bottom, (int) Math.ceil(tickCoords[i + 1] + MARGIN));
+            }
+            expected += bounds.width() * bounds.height();
+        }
+        assertEquals(expected, ring.getByteCount());
+    }
+
+    /**
+     * A ring of color layers holds four times the bytes of a ring of mask layers.
+     */
+    @Test
+    public void testColorRingBytes() {
+        ring.setGeometry(geometry, MARGIN);
+        TickRingLayer colorRing = new TickRingLayer(Bitmap.Config.ARGB_8888);
+        colorRing.setGeometry(geometry, MARGIN);
+
+        assertEquals(ring.getByteCount() * 4, colorRing.getByteCount());
+        colorRing.release();
+    }
+
+    /**
+     * A released ring holds no bytes.
+     */
+    @Test
+    public void testReleasedBytes() {
+        ring.setGeometry(geometry, MARGIN);
+        ring.release();
+        assertEquals(0, ring.getByteCount());
+    }
+
+    /**
+     * Setting the first highlighted tick draws the whole ring, each of the 60 ticks once.
+     */
+    @Test
+    public void testFullDrawCount() {
+        ring.setGeometry(geometry, MARGIN);
+
+        assertTrue(ring.setHighlightedTick(0));
+        assertEquals(FaceGeometry.TICK_COUNT, ring.getTickDrawCount());
+        assertEquals(1, ring.getRebuildCount());
+    }
+
+    /**
+     * Changing the highlighted tick of a drawn ring only redraws the previously and the newly
+     * highlighted tick, for each second of a minute.
+     */
+    @Test
+    public void testHighlightChangeDrawCount() {
+        ring.setGeometry(geometry, MARGIN);
+        ring.setHighlightedTick(0);
+
+        for(int second = 1; second <= FaceGeometry.TICK_COUNT; second++) {
+            int draws = ring.getTickDrawCount();
+            assertFalse(ring.setHighlightedTick(second % FaceGeometry.TICK_COUNT));
+            assertEquals(2, ring.getTickDrawCount() - draws);
+        }
+        assertEquals(1, ring.getRebuildCount());
+    }
+
+    /**
+     * Setting the tick that is already highlighted draws nothing.
+     */
+    @Test
+    public void testSameTickDrawCount() {
+        ring.setGeometry(geometry, MARGIN);
+        ring.setHighlightedTick(7);
+        int draws = ring.getTickDrawCount();
+
+        assertFalse(ring.setHighlightedTick(7));
+        assertEquals(draws, ring.getTickDrawCount());
+    }
+
+    /**
+     * New paints or a new geometry make the next highlight change draw the whole ring again.
+     */
+    @Test
+    public void testFullDrawAfterInvalidate() {
+        ring.setGeometry(geometry, MARGIN);
+        ring.setHighlightedTick(0);
+
+        ring.setPaints(createPaint(2f), createPaint(4f), createPaint(3f), createPaint(5f));
+        int draws = ring.getTickDrawCount();
+        assertTrue(ring.setHighlightedTick(1));
+        assertEquals(FaceGeometry.TICK_COUNT, ring.getTickDrawCount() - draws);
+
+        ring.setGeometry(geometry, MARGIN);
+        draws = ring.getTickDrawCount();
+        assertTrue(ring.setHighlightedTick(2));
+        assertEquals(FaceGeometry.TICK_COUNT, ring.getTickDrawCount() - draws);
+        assertEquals(3, ring.getRebuildCount());
+    }
+}
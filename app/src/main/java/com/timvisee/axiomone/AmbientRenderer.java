@@ -0,0 +1,276 @@
+package com.timvisee.axiomone;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Rect;
+
+/**
+ * Renderer for the watch face in ambient mode.
+ *
+ * Ambient mode only shows the hour and minute digits, and is only rendered once a minute. The
+ * frame of each minute is prerendered once into an opaque bitmap, so rendering the face only
+ * takes a single bitmap blit. The renderer uses its own paints, so the interactive paints don't
+ * have to be toggled on each ambient transition. On devices with low-bit ambient mode the digits
+ * are rasterized without anti-aliasing, and on devices that require burn-in protection the frame
+ * is shifted by a few pixels each minute.
+ */
+public class AmbientRenderer implements LayerCache {
+
+    /**
+     * The number of burn-in protection positions on each axis.
+     */
+    private static final int BURN_IN_POSITIONS = 3;
+
+    /**
+     * The paints of the hour and minute digits.
+     */
+    private final Paint hourPaint = new Paint();
+    private final Paint minutePaint = new Paint();
+
+    /**
+     * The atlas of the ambient digit glyphs.
+     */
+    private final GlyphAtlas glyphAtlas = new GlyphAtlas();
+
+    /**
+     * The prerendered frame of the current minute.
+     */
+    private final Layer frame = new Layer(Bitmap.Config.RGB_565);
+
+    /**
+     * The maximum distance in pixels the frame is shifted for burn-in protection.
+     */
+    private final int burnInShift;
+
+    /**
+     * Whether the display supports fewer bits for each color in ambient mode.
+     */
+    private boolean lowBitAmbient = false;
+
+    /**
+     * Whether the display requires burn-in protection in ambient mode.
+     */
+    private boolean burnInProtection = false;
+
+    /**
+     * The position of the hour and minute digits.
+     */
+    private int clockDigitsX;
+    private int hourDigitsY;
+    private int minuteDigitsY;
+
+    /**
+     * The bounds of the frame on the face.
+     */
+    private final Rect frameBounds = new Rect();
+
+    /**
+     * The hour and minute the frame was rendered for, or -1 if the frame must be rendered.
+     */
+    private int frameHour = -1;
+    private int frameMinute = -1;
+
+    /**
+     * The number of times the glyph atlas and a frame were rendered.
+     */
+    private int atlasBuildCount = 0;
+    private int frameBuildCount = 0;
+
+    /**
+     * Constructor.
+     *
+     * @param burnInShift The maximum distance in pixels the frame is shifted for burn-in protection.
+     */
+    public AmbientRenderer(int burnInShift) {
+        this.burnInShift = burnInShift;
+    }
+
+    /**
+     * Set the paints of the hour and minute digits.
+     * The paints are copied, so they may be modified afterwards.
+     *
+     * @param hourPaint The paint of the hour digits.
+     * @param minutePaint The paint of the minute digits.
+     */
+    public void setPaints(Paint hourPaint, Paint minutePaint) {
+        this.hourPaint.set(hourPaint);
+        this.minutePaint.set(minutePaint);
+        this.hourPaint.setAntiAlias(!lowBitAmbient);
+        this.minutePaint.setAntiAlias(!lowBitAmbient);
+        invalidateGlyphs();
+    }
+
+    /**
+     * Set whether the display supports fewer bits for each color in ambient mode.
+     * The digits are rasterized without anti-aliasing if it does.
+     *
+     * @param lowBitAmbient True if the display supports low-bit ambient mode.
+     */
+    public void setLowBitAmbient(boolean lowBitAmbient) {
+        if(this.lowBitAmbient == lowBitAmbient)
+            return;
+        this.lowBitAmbient = lowBitAmbient;
+        hourPaint.setAntiAlias(!lowBitAmbient);
+        minutePaint.setAntiAlias(!lowBitAmbient);
+        invalidateGlyphs();
+    }
+
+    /**
+     * Set whether the display requires burn-in protection in ambient mode.
+     *
+     * @param burnInProtection True if the frame should be shifted each minute.
+     */
+    public void setBurnInProtection(boolean burnInProtection) {
+        this.burnInProtection = burnInProtection;
+    }
+
+    /**
+     * Set the layout of the clock.
+     *
+     * @param clockDigitsX The X coordinate the hour and minute digits are aligned to.
+     * @param hourDigitsY The baseline of the hour digits.
+     * @param minuteDigitsY The baseline of the minute digits.
+     * @param hourBounds The bounds of the hour digits.
+     * @param minuteBounds The bounds of the minute digits.
+     */
+    public void setLayout(int clockDigitsX, int hourDigitsY, int minuteDigitsY, Rect hourBounds, Rect minuteBounds) {
+        this.clockDigitsX = clockDigitsX;
+        this.hourDigitsY = hourDigitsY;
+        this.minuteDigitsY = minuteDigitsY;
+        frameBounds.set(hourBounds);
+        frameBounds.union(minuteBounds);
+        frameHour = -1;
+    }
+
+    /**
+     * Draw the ambient face for the given time.
+     * The frame is only rendered once for each minute, other calls blit the prerendered frame.
+     *
+     * @param canvas The canvas to draw on.
+     * @param hour The hour of the day.
+     * @param minute The minute.
+     */
+    public void draw(Canvas canvas, int hour, int minute) {
+        // Render the frame if it isn't up-to-date
+        if(frameHour != hour || frameMinute != minute || !frame.isAllocated()) {
+            // Rasterize the glyphs if they aren't rasterized yet
+            if(!glyphAtlas.isBuilt()) {
+                glyphAtlas.build(hourPaint, minutePaint);
+                atlasBuildCount++;
+            }
+
+            // Fit the frame to the clock, this only reallocates it if its size changed
+            frame.setBounds(frameBounds.left, frameBounds.top, frameBounds.right, frameBounds.bottom);
+
+            // Compose the digits on a black background
+            Canvas frameCanvas = frame.getCanvas();
+            frameCanvas.drawColor(Color.BLACK);
+            glyphAtlas.drawText(frameCanvas, GlyphAtlas.STYLE_HOUR, DigitStrings.hour(hour), clockDigitsX, hourDigitsY, true, hourPaint);
+            glyphAtlas.drawText(frameCanvas, GlyphAtlas.STYLE_MINUTE, DigitStrings.minute(minute), clockDigitsX, minuteDigitsY, false, minutePaint);
+
+            frameHour = hour;
+            frameMinute = minute;
+            frameBuildCount++;
+        }
+
+        // Determine the burn-in protection shift, which moves to a different position each minute
+        int dx = 0, dy = 0;
+        if(burnInProtection) {
+            dx = getBurnInShiftX(hour, minute, burnInShift);
+            dy = getBurnInShiftY(hour, minute, burnInShift);
+        }
+
+        // Draw the background and the frame
+        canvas.drawColor(Color.BLACK);
+        frame.drawShifted(canvas, dx, dy, null);
+    }
+
+    /**
+     * Get the horizontal burn-in protection shift of the given minute.
+     * The ambient face moves through a grid of positions around its center, one position each minute.
+     *
+     * @param hour The hour of the day.
+     * @param minute The minute.
+     * @param burnInShift The maximum distance in pixels the face is shifted.
+     *
+     * @return The shift in pixels.
+     */
+    public static int getBurnInShiftX(int hour, int minute, int burnInShift) {
+        return (getBurnInPosition(hour, minute) % BURN_IN_POSITIONS - 1) * burnInShift;
+    }
+
+    /**
+     * Get the vertical burn-in protection shift of the given minute.
+     * The ambient face moves through a grid of positions around its center, one position each minute.
+     *
+     * @param hour The hour of the day.
+     * @param minute The minute.
+     * @param burnInShift The maximum distance in pixels the face is shifted.
+     *
+     * @return The shift in pixels.
+     */
+    public static int getBurnInShiftY(int hour, int minute, int burnInShift) {
+        return (getBurnInPosition(hour, minute) / BURN_IN_POSITIONS - 1) * burnInShift;
+    }
+
+    /**
+     * Get the burn-in protection position of the given minute in the grid of positions.
+     *
+     * @param hour The hour of the day.
+     * @param minute The minute.
+     *
+     * @return The position index.
+     */
+    private static int getBurnInPosition(int hour, int minute) {
+        return (hour * 60 + minute) % (BURN_IN_POSITIONS * BURN_IN_POSITIONS);
+    }
+
+    /**
+     * Get the number of times the digit glyphs were rasterized.
+     *
+     * @return The number of glyph rasterizations.
+     */
+    public int getAtlasBuildCount() {
+        return atlasBuildCount;
+    }
+
+    /**
+     * Get the number of times a frame was rendered.
+     *
+     * @return The number of rendered frames.
+     */
+    public int getFrameBuildCount() {
+        return frameBuildCount;
+    }
+
+    /**
+     * Get the number of bytes used by the caches of the renderer.
+     *
+     * @return The number of bytes.
+     */
+    @Override
+    public int getByteCount() {
+        return glyphAtlas.getByteCount() + frame.getByteCount();
+    }
+
+    /**
+     * Release the caches of the renderer.
+     * They're rendered again the next time the ambient face is drawn.
+     */
+    @Override
+    public void release() {
+        glyphAtlas.release();
+        frame.release();
+        frameHour = -1;
+    }
+
+    /**
+     * Invalidate the rasterized glyphs and the frame.
+     */
+    private void invalidateGlyphs() {
+        glyphAtlas.release();
+        frameHour = -1;
+    }
+}
@@ -5,24 +5,27 @@ import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
 import android.content.res.Resources;
-import android.graphics.Bitmap;
 import android.graphics.Canvas;
-import android.graphics.Color;
-import android.graphics.Paint;
-import android.graphics.Path;
-import android.graphics.PorterDuff;
 import android.graphics.Rect;
-import android.graphics.Typeface;
+import android.os.BatteryManager;
 import android.os.Bundle;
+import android.os.Handler;
 import android.support.wearable.watchface.CanvasWatchFaceService;
 import android.support.wearable.watchface.WatchFaceStyle;
+import android.util.Log;
 import android.view.SurfaceHolder;
 import android.view.WindowInsets;
 
-import java.util.Calendar;
-import java.util.Date;
-import java.util.GregorianCalendar;
-import java.util.TimeZone;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Digital watch face with seconds. In ambient mode, the seconds aren't displayed. On devices with
@@ -30,227 +33,438 @@ import java.util.TimeZone;
  */
 public class AxiomOneFace extends CanvasWatchFaceService {
 
+    /**
+     * The engines that are currently created.
+     */
+    private final List<Engine> engines = new ArrayList<Engine>();
+
+    /**
+     * The name of the frame trace file in the app files directory.
+     */
+    private static final String TRACE_FILE_NAME = "frames.trace";
+
+    /**
+     * The tracer recording the frames of all engines, or null if frames aren't traced.
+     */
+    private FrameTracer frameTracer;
+
+    /**
+     * The source of the configuration pushed by the companion app, or null if it isn't synced.
+     */
+    private ConfigSource configSource;
+
+    /**
+     * The synchronization that applies the configuration of the companion app.
+     */
+    private ConfigSync configSync;
+
+    /**
+     * The highest frame rate of the animation set by the companion app, 0 for no limit.
+     */
+    private int maxFrameRate = 0;
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        Resources resources = getResources();
+
+        // Trace the frames from the start if enabled, tracing can also be started through dumpsys
+        if(resources.getBoolean(R.bool.frame_trace_enabled))
+            startTracing();
+
+        // Apply the configuration of the companion app, without restarting the engines
+        configSync = new ConfigSync(new HandlerScheduler(new Handler()), resources.getInteger(R.integer.config_sync_delay),
+                resources.getInteger(R.integer.config_sync_max_delay), new ConfigSync.Target() {
+            @Override
+            public void applyTheme(String theme) throws JSONException, IOException {
+                StyleCache.setTheme(Theme.store(AxiomOneFace.this, theme));
+                for(Engine engine : engines)
+                    engine.invalidate();
+            }
+
+            @Override
+            public void applyFrameRate(int frameRate) {
+                maxFrameRate = frameRate;
+                for(Engine engine : engines)
+                    engine.updateFrameRate();
+            }
+
+            @Override
+            public void reportFailure(String message, Exception e) {
+                Log.w(TAG, message, e);
+            }
+        });
+        if(resources.getBoolean(R.bool.companion_config_enabled)) {
+            configSource = new DataLayerConfigSource(this);
+            configSource.start(configSync);
+        }
+    }
+
+    @Override
+    public void onDestroy() {
+        if(configSource != null)
+            configSource.stop();
+        configSync.cancel();
+        stopTracing();
+        super.onDestroy();
+    }
+
     @Override
     public Engine onCreateEngine() {
         return new Engine();
     }
 
+    /**
+     * Start recording a new frame trace, which replaces the previous trace.
+     *
+     * @return True if the trace was started, false if the trace file couldn't be created.
+     */
+    private boolean startTracing() {
+        stopTracing();
+        try {
+            frameTracer = new FrameTracer(new File(getFilesDir(), TRACE_FILE_NAME), getResources().getInteger(R.integer.frame_trace_capacity));
+            return true;
+        } catch(IOException e) {
+            Log.w(TAG, "Failed to create the frame trace", e);
+            return false;
+        }
+    }
+
+    /**
+     * Stop recording the frame trace, and write it back to its file.
+     */
+    private void stopTracing() {
+        if(frameTracer == null)
+            return;
+        frameTracer.close();
+        frameTracer = null;
+    }
+
+    /**
+     * Dump the rendering statistics of all engines.
+     * Use {@code adb shell dumpsys activity service com.timvisee.axiomone/.AxiomOneFace [command]},
+     * where the command is one of {@code enable}, {@code disable}, {@code reset}, {@code log},
+     * {@code theme [json]}, {@code trace [stop]} or {@code config <json>}. The theme command
+     * applies and stores the given theme, or the default theme if no theme is given. The trace
+     * command starts a new frame trace, or stops it, which can be read with the
+     * trace analyzer of the unit tests. The config command passes a configuration to the synchronization as
+     * if it was pushed by the companion app.
+     */
+    @Override
+    protected void dump(FileDescriptor fd, PrintWriter writer, String[] args) {
+        String command = args != null && args.length > 0 ? args[0] : null;
+
+        // Apply and store the given theme, the engines obtain the new style the next frame
+        if("theme".equals(command)) {
+            try {
+                StyleCache.setTheme(Theme.store(this, args.length > 1 ? args[1] : null));
+                for(Engine engine : engines)
+                    engine.invalidate();
+                writer.println("Theme applied");
+            } catch(Exception e) {
+                writer.println("Failed to apply the theme: " + e.getMessage());
+            }
+        }
+
+        // Start or stop tracing the frames
+        if("trace".equals(command)) {
+            if(args.length > 1 && "stop".equals(args[1]))
+                stopTracing();
+            else if(!startTracing())
+                writer.println("Failed to start the frame trace");
+        }
+
+        // Receive the given configuration as if it was pushed by the companion app
+        if("config".equals(command)) {
+            try {
+                configSync.onConfigReceived(new JSONObject(args.length > 1 ? args[1] : "{}"));
+                writer.println("Configuration received");
+            } catch(JSONException e) {
+                writer.println("Invalid configuration: " + e.getMessage());
+            }
+        }
+
+        StyleCache.dump(writer, "");
+        configSync.dump(writer, "");
+        writer.println("Frame trace: " + (frameTracer != null
+                ? frameTracer.getWrittenCount() + " records in " + new File(getFilesDir(), TRACE_FILE_NAME) : "off"));
+        writer.println("Engines: " + engines.size() + " (commands: enable, disable, reset, log, theme, trace, config)");
+        for(int i = 0; i < engines.size(); i++)
+            engines.get(i).dump(writer, "Engine " + i + ": ", command);
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+
+        // Let each engine release the layer caches it can do without
+        for(Engine engine : engines)
+            engine.layerCaches.onTrimMemory(level);
+    }
+
+    /**
+     * The log tag.
+     */
+    private static final String TAG = "AxiomOneFace";
+
     private class Engine extends CanvasWatchFaceService.Engine {
         boolean mRegisteredTimeZoneReceiver = false;
-        Paint mTextPaint;
         boolean mAmbient;
         final BroadcastReceiver mTimeZoneReceiver = new BroadcastReceiver() {
             @Override
             public void onReceive(Context context, Intent intent) {
-                // Set the time zone
-                setTimeZoneById(intent.getStringExtra("time-zone"));
+                // Anchor the time again if the wall clock was changed, or set the new time zone,
+                // and update the time
+                if(timeChangeHandler.onReceive(intent.getAction(), intent.getStringExtra(TimeChangeHandler.EXTRA_TIME_ZONE)))
+                    updateTime();
+            }
+        };
 
-                // Update the time
-                updateTime();
+        /**
+         * The receiver for battery changes, which sets the battery state of the quality controller.
+         */
+        final BroadcastReceiver batteryReceiver = new BroadcastReceiver() {
+            @Override
+            public void onReceive(Context context, Intent intent) {
+                int level = intent.getIntExtra(BatteryManager.EXTRA_LEVEL, -1);
+                int scale = intent.getIntExtra(BatteryManager.EXTRA_SCALE, 100);
+                int status = intent.getIntExtra(BatteryManager.EXTRA_STATUS, -1);
+                boolean charging = status == BatteryManager.BATTERY_STATUS_CHARGING || status == BatteryManager.BATTERY_STATUS_FULL;
+                if(level >= 0 && scale > 0)
+                    qualityController.setBatteryState(level * 100 / scale, charging);
             }
         };
 
         /**
-         * The text painter for the hour digits.
+         * The time model that is used as time for the watch face.
          */
-        Paint mTextPaintHour;
+        TimeModel timeModel;
 
         /**
-         * The text painter for the faded hour digit.
+         * The handler that applies time and time zone changes to the time model.
          */
-        Paint mTextPaintHourGhost;
+        TimeChangeHandler timeChangeHandler;
 
         /**
-         * The text painter for the minute digits.
+         * The current hour of the day, updated by {@link #updateTime()}.
          */
-        Paint mTextPaintMinute;
+        int hour;
 
         /**
-         * The second glance painter.
+         * The current minute, updated by {@link #updateTime()}.
          */
-        Paint mGleamPaint;
+        int minute;
 
         /**
-         * The main small tick painter.
+         * The current second, updated by {@link #updateTime()}.
          */
-        Paint mTickSmallPaint;
+        int second;
 
         /**
-         * The faded small tick painter.
+         * The current millisecond, updated by {@link #updateTime()}.
          */
-        Paint mTickSmallFadedPaint;
+        int millisecond;
 
         /**
-         * The main large tick painter.
+         * Resources instance.
          */
-        Paint mTickLargePaint;
+        Resources resources;
 
         /**
-         * The faded large tick painter.
+         * Whether the display supports fewer bits for each color in ambient mode. When true, we
+         * disable anti-aliasing in ambient mode.
          */
-        Paint mTickLargeFadedPaint;
+        boolean mLowBitAmbient;
 
         /**
-         * The calendar instance that is used as time for the watch face.
+         * Whether the face is round, as reported by the last window insets.
          */
-        Calendar calendar;
+        boolean isRound;
 
         /**
-         * Resources instance.
+         * The version of the theme the style was obtained for.
          */
-        Resources resources;
+        int themeVersion;
 
         /**
-         * The background color.
+         * The renderer that draws the face in ambient mode.
          */
-        int backgroundColor;
+        AmbientRenderer ambientRenderer;
 
         /**
-         * Whether the display supports fewer bits for each color in ambient mode. When true, we
-         * disable anti-aliasing in ambient mode.
+         * The style of the face, shared by the interactive and the ambient renderer.
          */
-        boolean mLowBitAmbient;
+        FaceStyle style;
+
+        /**
+         * The layout of the hour and minute digits.
+         */
+        final ClockLayout clockLayout = new ClockLayout();
 
-        float hourDigitHeight;
-        float hourDigitWidth;
-        float hourDigitSpacing;
-        float minuteDigitHeight;
-        Path secondGleamPath;
-        float gleamWidth;
-        float gleamLength;
-        float tickLengthSmall;
-        float tickLengthLarge;
+        /**
+         * The renderer that draws the interactive face.
+         */
+        CanvasFaceRenderer renderer;
 
         /**
-         * The bitmap the clock digits are drawn in.
-         * This is only updated when the clock changes.
+         * The precise number of seconds of the current frame, which determines the gleam position.
          */
-        Bitmap clockBitmap;
+        float secondPrecise;
 
         /**
-         * The canvas the clock digits are drawn with.
+         * The frame scheduler that drives the redraws in interactive mode.
          */
-        Canvas clockCanvas;
+        FrameScheduler frameScheduler;
 
         /**
-         * The last time the clock bitmap was updated.
+         * True to log rendering statistics, such as the size of the layer caches.
          */
-        Date clockBitmapLastUpdate;
+        boolean logRendering;
 
         /**
-         * True to force-update the clock bitmap the next time the watch face is rendered.
+         * The region of the surface locked for an animation frame, which the surface may grow.
          */
-        boolean clockBitmapForceUpdate = false;
+        final Rect dirtyRegion = new Rect();
 
         /**
-         * The bitmap the second ticks are drawn in.
-         * This is only updated when the tick visuals change.
+         * The render-time statistics of the engine.
          */
-        Bitmap ticksBitmap;
+        FrameStats frameStats;
 
         /**
-         * The canvas the ticks are drawn with.
+         * The target frame rate of the animation.
          */
-        Canvas ticksCanvas;
+        int frameRate;
 
         /**
-         * The last time the ticks bitmap was updated.
+         * True to skip drawing the part of the face that is covered by a peek card.
          */
-        Date ticksBitmapLastUpdate;
+        boolean peekOcclusion;
 
+        /**
+         * True if the second gleam is covered by a peek card, so the face only ticks each second.
+         */
+        boolean gleamOccluded = false;
+
+        /**
+         * The controller that adapts the rendering quality, or null if the quality isn't adapted.
+         */
+        QualityController qualityController;
+
+        /**
+         * The manager that releases the layer caches when they aren't needed.
+         */
+        LayerCacheManager layerCaches;
 
         @Override
         public void onCreate(SurfaceHolder holder) {
             super.onCreate(holder);
 
+            // Set the resources instance
+            resources = AxiomOneFace.this.getResources();
+
+            // Peek cards are only opaque with a persistent background, which is required to skip
+            // drawing the part of the face they cover
+            peekOcclusion = resources.getBoolean(R.bool.peek_occlusion_enabled);
             setWatchFaceStyle(new WatchFaceStyle.Builder(AxiomOneFace.this)
                     .setCardPeekMode(WatchFaceStyle.PEEK_MODE_VARIABLE)
-                    .setBackgroundVisibility(WatchFaceStyle.BACKGROUND_VISIBILITY_INTERRUPTIVE)
+                    .setBackgroundVisibility(peekOcclusion
+                            ? WatchFaceStyle.BACKGROUND_VISIBILITY_PERSISTENT
+                            : WatchFaceStyle.BACKGROUND_VISIBILITY_INTERRUPTIVE)
                     .setShowSystemUiTime(false)
                     .build());
 
-            // Set the resources instance
-            resources = AxiomOneFace.this.getResources();
+            // Get the style of the face from the shared cache, square until the shape is known
+            themeVersion = StyleCache.getThemeVersion();
+            style = StyleCache.obtainStyle(AxiomOneFace.this, false);
 
-            // Get the background color
-            backgroundColor = resources.getColor(R.color.background);
-
-            // Create a typeface with the main font, set the font afterwards
-            Typeface font = Typeface.createFromAsset(getAssets(), getString(R.string.font_path));
-            mTextPaint = new Paint();
-            mTextPaint.setTypeface(font);
-            mTextPaint.setColor(resources.getColor(R.color.digital_text));
-            mTextPaint.setAntiAlias(true);
-
-            // Create the hour and minute text painters
-            mTextPaintHour = new Paint(mTextPaint);
-            mTextPaintHour.setColor(resources.getColor(R.color.digit_hour_color));
-            mTextPaintHour.setAlpha(resources.getInteger(R.integer.digit_alpha_normal));
-            mTextPaintHour.setTextAlign(Paint.Align.RIGHT);
-            mTextPaintHourGhost = new Paint(mTextPaintHour);
-            mTextPaintHourGhost.setAlpha(resources.getInteger(R.integer.digit_alpha_ghost));
-            mTextPaintMinute = new Paint(mTextPaint);
-            mTextPaintMinute.setColor(resources.getColor(R.color.digit_minute_color));
-            mTextPaintMinute.setAlpha(resources.getInteger(R.integer.digit_alpha_normal));
-            mTextPaintMinute.setTextAlign(Paint.Align.LEFT);
-
-            // Create the second gleam painter
-            mGleamPaint = new Paint();
-            mGleamPaint.setColor(Color.WHITE);
-            mGleamPaint.setAlpha(resources.getInteger(R.integer.gleam_alpha));
-            mGleamPaint.setStyle(Paint.Style.FILL);
-            mGleamPaint.setAntiAlias(true);
-
-            // Create the tick painters
-            mTickLargePaint = new Paint();
-            //noinspection deprecation
-            mTickLargePaint.setColor(resources.getColor(R.color.tick_color_large));
-            mTickLargePaint.setAlpha(resources.getInteger(R.integer.tick_alpha_large));
-            mTickLargePaint.setAntiAlias(true);
-            mTickLargePaint.setStrokeWidth(resources.getDimension(R.dimen.tick_width_large));
-            mTickLargeFadedPaint = new Paint(mTickLargePaint);
-            mTickLargeFadedPaint.setAlpha(resources.getInteger(R.integer.tick_alpha_faded_large));
-            mTickSmallPaint = new Paint(mTickLargePaint);
-            //noinspection deprecation
-            mTickSmallPaint.setColor(resources.getColor(R.color.tick_color_small));
-            mTickSmallPaint.setAlpha(resources.getInteger(R.integer.tick_alpha_small));
-            mTickSmallPaint.setAntiAlias(true);
-            mTickSmallPaint.setStrokeWidth(resources.getDimension(R.dimen.tick_width_small));
-            mTickSmallFadedPaint = new Paint(mTickSmallPaint);
-            mTickSmallFadedPaint.setAlpha(resources.getInteger(R.integer.tick_alpha_faded_small));
-
-            // Set the calendar instance
-            calendar = new GregorianCalendar(TimeZone.getDefault());
-
-            // Initialize the second glance path
-            secondGleamPath = new Path();
-
-            // Determine the gleam width and height
-            gleamWidth = (float) (1.0f / 60.0f * Math.PI * 2.0f);
-        }
+            // Set the time model instance, and the handler of its changes
+            timeModel = new TimeModel();
+            timeChangeHandler = new TimeChangeHandler(timeModel);
 
-        @Override
-        public void onVisibilityChanged(boolean visible) {
-            super.onVisibilityChanged(visible);
+            // Keep listening for time and time zone changes while the engine exists, so the time
+            // zone doesn't have to be looked up again each time the face becomes visible
+            registerReceiver();
+
+            // Create the ambient renderer
+            ambientRenderer = new AmbientRenderer((int) resources.getDimension(R.dimen.burn_in_shift));
+
+            // Log rendering statistics if debug logging is enabled for this face
+            logRendering = Log.isLoggable(TAG, Log.DEBUG);
 
-            if(visible) {
-                registerReceiver();
+            // Create the frame statistics, these are only recorded if enabled
+            frameStats = new FrameStats(resources.getBoolean(R.bool.frame_stats_enabled));
 
-                // Update time zone in case it changed while we weren't visible.
-                setTimeZone(null);
+            // Create the renderer of the interactive face
+            renderer = new CanvasFaceRenderer(frameStats, logRendering, resources.getBoolean(R.bool.clock_prepare_enabled));
+            renderer.setStyle(style, clockLayout);
 
-                // Update the time
-                updateTime();
-            } else {
-                unregisterReceiver();
+            // Create the frame scheduler to redraw the face at the target frame rate
+            frameRate = resources.getInteger(R.integer.frame_rate);
+            frameScheduler = new FrameScheduler(frameRate, new FrameScheduler.Callback() {
+                @Override
+                public void onFrame() {
+                    drawAnimationFrame();
+                }
+            });
+            frameStats.setExpectedFrameInterval(frameScheduler.getFrameIntervalNanos());
+            updateFrameRate();
+
+            // Manage the layer caches of the interactive and the ambient renderer
+            layerCaches = new LayerCacheManager(new HandlerScheduler(new Handler()), resources.getInteger(R.integer.layer_release_delay),
+                    renderer, ambientRenderer);
+
+            // Adapt the rendering quality to the frame cost and the battery state if enabled, the
+            // battery state is sticky so it's received as soon as the receiver is registered
+            if(resources.getBoolean(R.bool.adaptive_quality_enabled)) {
+                qualityController = new QualityController(
+                        resources.getIntArray(R.array.quality_frame_rates),
+                        resources.getIntArray(R.array.quality_battery_levels),
+                        resources.getInteger(R.integer.quality_initial_tier),
+                        new QualityController.Listener() {
+                            @Override
+                            public void onTierChanged(int tier) {
+                                applyQuality();
+                            }
+                        }
+                );
+                applyQuality();
+                AxiomOneFace.this.registerReceiver(batteryReceiver, new IntentFilter(Intent.ACTION_BATTERY_CHANGED));
             }
 
+            // Register the engine, to dump its statistics
+            engines.add(this);
+        }
+
+        @Override
+        public void onDestroy() {
+            // Stop scheduling frames, and stop listening for time changes
+            frameScheduler.stop();
+            unregisterReceiver();
+            if(qualityController != null)
+                AxiomOneFace.this.unregisterReceiver(batteryReceiver);
+
+            // Release the layers, and unregister the engine
+            layerCaches.destroy();
+            engines.remove(this);
+
+            super.onDestroy();
+        }
+
+        @Override
+        public void onVisibilityChanged(boolean visible) {
+            super.onVisibilityChanged(visible);
+            if(frameTracer != null)
+                frameTracer.record(visible ? FrameTracer.EVENT_VISIBLE : FrameTracer.EVENT_INVISIBLE);
+
             // Force update the clock bitmap the next time the watch face is rendered
-            clockBitmapForceUpdate = true;
+            renderer.invalidate();
 
-            // Invalidate the face for smooth animations if it's visible and not in ambient mode
-            if(isVisible() && !isInAmbientMode())
-                invalidate();
+            // Keep the layer caches while visible, release them a while after the face is hidden
+            layerCaches.setState(visible, isInAmbientMode());
+
+            // Start or stop the frame scheduler
+            updateFrameScheduler();
         }
 
         private void registerReceiver() {
@@ -259,6 +473,7 @@ public class AxiomOneFace extends CanvasWatchFaceService {
             }
             mRegisteredTimeZoneReceiver = true;
             IntentFilter filter = new IntentFilter(Intent.ACTION_TIMEZONE_CHANGED);
+            filter.addAction(Intent.ACTION_TIME_CHANGED);
             AxiomOneFace.this.registerReceiver(mTimeZoneReceiver, filter);
         }
 
@@ -274,289 +489,359 @@ public class AxiomOneFace extends CanvasWatchFaceService {
         public void onApplyWindowInsets(WindowInsets insets) {
             super.onApplyWindowInsets(insets);
 
-            // Load resources that have alternate values for round watches.
-            Resources resources = AxiomOneFace.this.getResources();
-            boolean isRound = insets.isRound();
-            float textSize = resources.getDimension(isRound
-                    ? R.dimen.digital_text_size_round : R.dimen.digital_text_size);
-
-            mTextPaint.setTextSize(textSize);
-
-            // Determine the size of the hour and minute digits
-            float hourTextSize = resources.getDimension(isRound
-                    ? R.dimen.hour_text_size_round : R.dimen.hour_text_size);
-            float minuteTextSize = resources.getDimension(isRound
-                    ? R.dimen.minute_text_size_round : R.dimen.minute_text_size);
-
-            // Set the font size of the hour and minute digits painter
-            mTextPaintHour.setTextSize(hourTextSize);
-            mTextPaintHourGhost.setTextSize(hourTextSize);
-            mTextPaintMinute.setTextSize(minuteTextSize);
-
-            // Determine the width and height of the hour digits
-            Rect hourDigitBounds = new Rect();
-            Rect hourDigitBoundsDouble = new Rect();
-            mTextPaintHour.getTextBounds("0", 0, 1, hourDigitBounds);
-            mTextPaintHour.getTextBounds("00", 0, 2, hourDigitBoundsDouble);
-            hourDigitHeight = hourDigitBounds.height();
-            hourDigitWidth = hourDigitBounds.width();
-            hourDigitSpacing = hourDigitBoundsDouble.width() - hourDigitWidth * 2;
-
-            // Determine the height of the minute digits
-            Rect minuteDigitBounds = new Rect();
-            mTextPaintMinute.getTextBounds("0", 0, 1, minuteDigitBounds);
-            minuteDigitHeight = minuteDigitBounds.height();
-
-            // Determine the second gleam length
-            gleamLength = resources.getDimension(R.dimen.second_gleam_length);
-
-            // Determine the length of the ticks
-            tickLengthSmall = resources.getDimension(R.dimen.tick_length_small);
-            tickLengthLarge = resources.getDimension(R.dimen.tick_length_large);
+            // Apply the metrics for the shape of the face
+            isRound = insets.isRound();
+            applyMetrics(isRound);
+        }
+
+        /**
+         * Apply the style, text metrics and geometry of the current theme for a round or square face.
+         * The clock layers and ticks are redrawn the next time the face is rendered.
+         *
+         * @param round True if the face is round.
+         */
+        private void applyMetrics(boolean round) {
+            // Get the style and text metrics for the shape of the face from the shared cache
+            // for the current theme
+            int version = StyleCache.getThemeVersion();
+            if(style.isRound() != round || themeVersion != version) {
+                themeVersion = version;
+                style = StyleCache.obtainStyle(AxiomOneFace.this, round);
+            }
+            StyleCache.obtainMetrics(AxiomOneFace.this, round, clockLayout);
+
+            // Rebuild the renderers with the new text metrics and geometry, and redraw everything
+            renderer.setStyle(style, clockLayout);
+            ambientRenderer.setPaints(style.getHourPaint(), style.getMinutePaint());
+        }
+
+        /**
+         * Apply the style of the current theme, only rebuilding the parts of the face that changed
+         * since the theme the style was obtained for.
+         */
+        private void applyTheme() {
+            // Get the style of the new theme, and its text metrics if the digits changed
+            int version = StyleCache.getThemeVersion();
+            int parts = StyleCache.getThemeChanges(themeVersion, version);
+            themeVersion = version;
+            style = StyleCache.obtainStyle(AxiomOneFace.this, isRound);
+            if((parts & Theme.PART_DIGITS) != 0)
+                StyleCache.obtainMetrics(AxiomOneFace.this, isRound, clockLayout);
+
+            // Rebuild the layers of the changed parts
+            renderer.updateStyle(style, parts);
+            if((parts & (Theme.PART_DIGITS | Theme.PART_DIGIT_COLORS)) != 0)
+                ambientRenderer.setPaints(style.getHourPaint(), style.getMinutePaint());
+        }
+
+        @Override
+        public void onSurfaceChanged(SurfaceHolder holder, int format, int width, int height) {
+            super.onSurfaceChanged(holder, format, width, height);
+
+            // The surface buffers have been recreated, redraw everything
+            renderer.invalidate();
+
+            // Release the layers if the size changed, they're reallocated at the new size
+            layerCaches.onSurfaceChanged(width, height);
         }
 
         @Override
         public void onPropertiesChanged(Bundle properties) {
             super.onPropertiesChanged(properties);
             mLowBitAmbient = properties.getBoolean(PROPERTY_LOW_BIT_AMBIENT, false);
+
+            // Configure the ambient renderer for the display
+            ambientRenderer.setLowBitAmbient(mLowBitAmbient);
+            ambientRenderer.setBurnInProtection(properties.getBoolean(PROPERTY_BURN_IN_PROTECTION, false));
         }
 
         @Override
         public void onTimeTick() {
             super.onTimeTick();
+            if(frameTracer != null)
+                frameTracer.record(FrameTracer.EVENT_TIME_TICK);
             invalidate();
         }
 
         @Override
         public void onAmbientModeChanged(boolean inAmbientMode) {
             super.onAmbientModeChanged(inAmbientMode);
+            if(frameTracer != null)
+                frameTracer.record(inAmbientMode ? FrameTracer.EVENT_AMBIENT : FrameTracer.EVENT_INTERACTIVE);
             if (mAmbient != inAmbientMode) {
                 mAmbient = inAmbientMode;
-                if (mLowBitAmbient) {
-                    mTextPaint.setAntiAlias(!inAmbientMode);
-
-                    // Set the low-bit modes for the digit painters
-                    mTextPaintHour.setAntiAlias(!inAmbientMode);
-                    mTextPaintHourGhost.setAntiAlias(!inAmbientMode);
-                    mTextPaintMinute.setAntiAlias(!inAmbientMode);
-                    mGleamPaint.setAntiAlias(!inAmbientMode);
-                    mTickLargePaint.setAntiAlias(!inAmbientMode);
-                    mTickLargeFadedPaint.setAntiAlias(!inAmbientMode);
-                    mTickSmallPaint.setAntiAlias(!inAmbientMode);
-                    mTickSmallFadedPaint.setAntiAlias(!inAmbientMode);
-                }
 
-                // Force update the clock bitmap the next time the watch face is rendered
-                clockBitmapForceUpdate = true;
+                // The ambient renderer has its own low-bit paints, so only the interactive clock
+                // has to be force updated the next time the watch face is rendered
+                renderer.invalidate();
 
                 // Invalidate the frame
                 invalidate();
             }
+            layerCaches.setState(isVisible(), inAmbientMode);
 
-            // Invalidate the face for smooth animations if it's visible and not in ambient mode
-            if(isVisible() && !isInAmbientMode())
-                invalidate();
+            // Start or stop the frame scheduler
+            updateFrameScheduler();
         }
 
         @Override
         public void onDraw(Canvas canvas, Rect bounds) {
-            // NOTE: This drawing code is fairly complex, to improve the performance as much as
-            //       possible which increases the battery life of the Android Wear devices when the
-            //       watch face is rendered.
-            //       All different elements are only drawn/rendered when their visuals change.
-            //       For example; the time digits are only drawn/rendered once each minute when the
-            //       digits change.
-
-            // Draw the background.
-            canvas.drawColor(!isInAmbientMode() ? backgroundColor : Color.BLACK);
-
-            // Update the time
-            updateTime();
+            // The whole surface is locked for this frame, so the whole face is redrawn
+            // The surface was locked before, so the whole frame is rendering
+            long frameStart = beginFrame();
+            int layers = renderFrame(canvas, bounds, isInAmbientMode(), isVisible());
+            endFrame(frameStart, System.nanoTime() - frameStart, layers);
+        }
 
-            // Draw the clock bitmap if it isn't up-to-date
-            // TODO: Also force-update this when the screen goes to ambient mode!
-            if(clockBitmapLastUpdate == null
-                    || clockBitmapForceUpdate
-                    || clockBitmapLastUpdate.getMinutes() != calendar.get(Calendar.MINUTE)
-                    || clockBitmapLastUpdate.getHours() != calendar.get(Calendar.HOUR_OF_DAY)) {
-                // Get the offset for the hour and minute digits
-                int clockDigitsX = (bounds.width() / 2) + (int) resources.getDimension(R.dimen.digit_x_offset);
-                int hourDigitsY = (int) ((bounds.height() / 2) - ((mTextPaintHour.descent() + mTextPaintHour.ascent()) / 2));
-                int minuteDigitsY = (int) (hourDigitsY - hourDigitHeight + minuteDigitHeight);
-
-                // Create the clock bitmap if it hasn't been initialized yet
-                if(clockBitmap == null) {
-                    clockBitmap = Bitmap.createBitmap(bounds.width(), bounds.height(), Bitmap.Config.ARGB_8888);
-                    clockCanvas = new Canvas(clockBitmap);
-
-                } else if(clockCanvas == null) // Create the canvas if it doesn't exist yet
-                    clockCanvas = new Canvas(clockBitmap);
-
-                // Clear the current bitmap (transparent)
-                clockCanvas.drawColor(Color.TRANSPARENT, PorterDuff.Mode.CLEAR);
-
-                // Draw the hour digits and draw a ghost digit if it's only one digit
-                clockCanvas.drawText(String.valueOf(calendar.get(Calendar.HOUR_OF_DAY)), clockDigitsX, hourDigitsY, mTextPaintHour);
-                if(isVisible() && !isInAmbientMode() && calendar.get(Calendar.HOUR_OF_DAY) < 10)
-                    clockCanvas.drawText("0", clockDigitsX - hourDigitWidth - hourDigitSpacing, hourDigitsY, mTextPaintHourGhost);
-
-                // Draw the minute digits
-                clockCanvas.drawText(String.format("%02d", calendar.get(Calendar.MINUTE)), clockDigitsX, minuteDigitsY, mTextPaintMinute);
-
-                // Update the last bitmap update time
-                clockBitmapLastUpdate = calendar.getTime();
+        /**
+         * Draw a frame of the animation, only redrawing the region of the face that changed.
+         * The surface is only locked for that region, so it keeps the previous frame around it.
+         */
+        private void drawAnimationFrame() {
+            long frameStart = beginFrame();
+            SurfaceHolder holder = getSurfaceHolder();
+            Rect bounds = holder.getSurfaceFrame();
+            prepareFrame(bounds);
+
+            // Determine the region that changed, don't post a frame if nothing did
+            Rect redrawRegion = renderer.update(bounds, hour, minute, secondPrecise, true);
+            long renderNanos = System.nanoTime() - frameStart;
+            if(!redrawRegion.isEmpty()) {
+                // Lock the region, which the surface grows if it can't copy the rest of the
+                // previous frame, and redraw the locked region. Waiting for the surface to lock
+                // and post the buffer isn't part of the render time, and is timed as its own stage.
+                dirtyRegion.set(redrawRegion);
+                Canvas canvas = holder.lockCanvas(dirtyRegion);
+                frameStats.endStage(FrameStats.STAGE_SURFACE);
+                if(canvas != null) {
+                    long renderStart = System.nanoTime();
+                    renderer.render(canvas, dirtyRegion);
+                    renderNanos += System.nanoTime() - renderStart;
+                    holder.unlockCanvasAndPost(canvas);
+                    frameStats.endStage(FrameStats.STAGE_SURFACE);
+                } else
+                    // The surface isn't available, fully redraw the next frame
+                    renderer.invalidate();
             }
+            endFrame(frameStart, renderNanos, renderer.getUpdatedLayers());
+        }
 
-            // Only draw the following if the screen is on and not in ambient mode
-            if(isVisible() && !isInAmbientMode()) {
-                // Determine the screen radius
-                float screenRadius = bounds.width() / 2.0f;
-
-                // Determine the precise number of seconds as a float
-                float secondPrecise = calendar.get(Calendar.SECOND) + (float) (calendar.get(Calendar.MILLISECOND) % 1000) / 1000.0f;
-
-                // Draw the clock bitmap if it isn't up-to-date
-                if(ticksBitmapLastUpdate == null || ticksBitmapLastUpdate.getSeconds() != calendar.get(Calendar.SECOND)) {
-                    // Create the ticks bitmap if it hasn't been initialized yet
-                    if(ticksBitmap == null) {
-                        ticksBitmap = Bitmap.createBitmap(bounds.width(), bounds.height(), Bitmap.Config.ARGB_8888);
-                        ticksCanvas = new Canvas(ticksBitmap);
-
-                    } else if(ticksCanvas == null) // Create the canvas if it doesn't exist yet
-                        ticksCanvas = new Canvas(ticksBitmap);
-
-                    // Clear the current bitmap (transparent)
-                    ticksCanvas.drawColor(Color.TRANSPARENT, PorterDuff.Mode.CLEAR);
-
-                    // Draw all ticks
-                    for(int i = 0; i < 60; i++) {
-                        // Determine whether to draw a large or small tick
-                        boolean largeTick = i % 5 == 0;
-
-                        // Calculate the angle and the length of the current tick
-                        float angle = (float) ((i - 15.0f) / 60.0f * Math.PI * 2.0f);
-                        float tickLength = largeTick ? tickLengthLarge : tickLengthSmall;
-
-                        // Select the correct tick paint
-                        Paint tickPaint = largeTick ? mTickLargeFadedPaint : mTickSmallFadedPaint;
-                        if((int) (secondPrecise + 0.5f) % 60 == i)
-                            tickPaint = largeTick ? mTickLargePaint : mTickSmallPaint;
-
-                        // Calculate the coordinates of the tick to draw
-                        float[][] pointsTick = {
-                                getCircleCoords(screenRadius - tickLength, angle, screenRadius, screenRadius),
-                                getCircleCoords(screenRadius, angle, screenRadius, screenRadius),
-                        };
-
-                        // Draw the tick
-                        ticksCanvas.drawLine(
-                                pointsTick[0][0], pointsTick[0][1],
-                                pointsTick[1][0], pointsTick[1][1],
-                                tickPaint
-                        );
-                    }
-
-                    // Update the last bitmap update time
-                    ticksBitmapLastUpdate = calendar.getTime();
-                }
+        /**
+         * Mark the start of a frame.
+         *
+         * @return The time the frame started at, in nanoseconds.
+         */
+        private long beginFrame() {
+            frameStats.beginFrame();
+            return System.nanoTime();
+        }
 
-                // Calculate the radius for the second gleam
-                float gleamRadiusInside = screenRadius - gleamLength;
-                float gleamRadiusOutside = screenRadius + 2.0f;
-
-                // Calculate the precise angle for the current second
-                float secondAngle = (float) ((secondPrecise - 15.0f) / 60.0f * Math.PI * 2.0f);
-
-                // Create the path of the second gleam
-                float[][] points = {
-                        getCircleCoords(gleamRadiusInside, secondAngle - gleamWidth, screenRadius, screenRadius),
-                        getCircleCoords(gleamRadiusOutside, secondAngle - gleamWidth, screenRadius, screenRadius),
-                        getCircleCoords(gleamRadiusOutside, secondAngle, screenRadius, screenRadius),
-                        getCircleCoords(gleamRadiusInside, secondAngle, screenRadius, screenRadius),
-                };
-
-                // Reset the current path
-                secondGleamPath.reset();
-
-                // Draw the second glance path
-                secondGleamPath.moveTo(points[0][0], points[0][1]);
-                secondGleamPath.lineTo(points[1][0], points[1][1]);
-                secondGleamPath.lineTo(points[2][0], points[2][1]);
-                secondGleamPath.lineTo(points[3][0], points[3][1]);
-                secondGleamPath.close();
-
-                // Draw the second gleam
-                canvas.drawPath(secondGleamPath, mGleamPaint);
+        /**
+         * Mark the end of a frame, and record its statistics.
+         *
+         * @param frameStart The time the frame started at, in nanoseconds.
+         * @param renderNanos The time spent updating and rendering the frame, without waiting for
+         *                    the surface, in nanoseconds.
+         * @param layers The layers the frame updated, a combination of the {@link FrameTracer} layer flags.
+         */
+        private void endFrame(long frameStart, long renderNanos, int layers) {
+            frameStats.endFrame(frameScheduler.isRunning());
+            long frameNanos = System.nanoTime() - frameStart;
+
+            // Trace the frame with the layers it updated
+            if(frameTracer != null)
+                frameTracer.record(FrameTracer.EVENT_DRAW, layers, frameStart, frameNanos);
+
+            // Let the quality controller adapt to the render cost of the animated frames, a surface
+            // that blocks on the display doesn't make rendering cheaper
+            if(qualityController != null && frameScheduler.isRunning())
+                qualityController.onFrame(renderNanos);
+
+            // Tick once each second while a peek card covers the gleam for the whole next second
+            boolean occluded = peekOcclusion && shouldAnimate() && renderer.isGleamOccluded(secondPrecise, secondPrecise + 1.0f);
+            if(occluded != gleamOccluded) {
+                gleamOccluded = occluded;
+                updateFrameRate();
             }
+        }
 
-            // Draw and render the clock bitmap
-            canvas.drawBitmap(clockBitmap, 0, 0, null);
+        @Override
+        public void onPeekCardPositionUpdate(Rect rect) {
+            super.onPeekCardPositionUpdate(rect);
 
-            // Draw and render the clock bitmap
-            if(isVisible() && !isInAmbientMode())
-                canvas.drawBitmap(ticksBitmap, 0, 0, null);
+            // Don't draw the part of the face that is covered by the peek card
+            if(peekOcclusion) {
+                renderer.setOccludedBounds(rect);
+                invalidate();
+            }
+        }
 
-            // Reset the clock bitmap force redraw flag
-            clockBitmapForceUpdate = false;
+        /**
+         * Set the frame rate of the frame scheduler, which is the target frame rate unless the
+         * second gleam is covered by a peek card, limited to the frame rate set by the companion.
+         */
+        private void updateFrameRate() {
+            int rate = gleamOccluded ? FrameScheduler.FRAME_RATE_TICK : frameRate;
+            if(maxFrameRate > 0)
+                rate = Math.min(rate, maxFrameRate);
+            if(frameScheduler.getFrameRate() == rate)
+                return;
+            frameScheduler.setFrameRate(rate);
+            frameStats.setExpectedFrameInterval(frameScheduler.getFrameIntervalNanos());
+        }
 
-            // Invalidate the face for smooth animations if it's visible and not in ambient mode
-            if(isVisible() && !isInAmbientMode())
-                invalidate();
+        /**
+         * Apply the quality tier of the quality controller to the frame scheduler and the renderer.
+         */
+        private void applyQuality() {
+            frameRate = qualityController.getFrameRate();
+            updateFrameRate();
+            renderer.setGleamEnabled(qualityController.isGleamEnabled());
+            renderer.setAntiAlias(qualityController.isAntiAliasEnabled());
+            invalidate();
         }
 
         /**
-         * Calculate the coordinates in a circle for the given radius and angle.
+         * Render a frame of the watch face.
          *
-         * @param radius The radius.
-         * @param angle The angle.
-         * @param offsetX The X offset.
-         * @param offsetY The Y offset.
+         * @param canvas The canvas to draw on.
+         * @param bounds The bounds of the face.
+         * @param ambient True to render the ambient face.
+         * @param interactive True to draw the interactive elements, the ticks and the second gleam.
          *
-         * @return The coordinates.
+         * @return The layers updated, a combination of the {@link FrameTracer} layer flags.
          */
-        public float[] getCircleCoords(float radius, float angle, float offsetX, float offsetY) {
-            return new float[] {
-                    (float) (radius * Math.cos(angle)) + offsetX,
-                    (float) (radius * Math.sin(angle)) + offsetY
-            };
+        private int renderFrame(Canvas canvas, Rect bounds, boolean ambient, boolean interactive) {
+            // NOTE: The rendering code is fairly complex, to improve the performance as much as
+            //       possible which increases the battery life of the Android Wear devices when the
+            //       watch face is rendered. See the renderers for details.
+            prepareFrame(bounds);
+
+            // Render the ambient face with the dedicated ambient renderer, which only renders a
+            // new frame once a minute
+            if(ambient) {
+                int frameBuilds = ambientRenderer.getFrameBuildCount();
+                int atlasBuilds = ambientRenderer.getAtlasBuildCount();
+                ambientRenderer.draw(canvas, hour, minute);
+                frameStats.endStage(FrameStats.STAGE_AMBIENT);
+                return FrameTracer.FLAG_AMBIENT | FrameTracer.FLAG_REDRAWN
+                        | (ambientRenderer.getFrameBuildCount() != frameBuilds ? FrameTracer.LAYER_AMBIENT_FRAME : 0)
+                        | (ambientRenderer.getAtlasBuildCount() != atlasBuilds ? FrameTracer.LAYER_AMBIENT_ATLAS : 0);
+            }
+
+            // Draw the whole interactive face
+            renderer.draw(canvas, bounds, hour, minute, secondPrecise, interactive);
+            return renderer.getUpdatedLayers();
         }
 
         /**
-         * Update the current time stored in the calendar instance.
-         * This method must be called to properly update the millis field in the calendar.
+         * Prepare a frame of the watch face, applying a new theme and updating the time and the
+         * clock layout.
+         *
+         * @param bounds The bounds of the face.
          */
-        public void updateTime() {
-            calendar.setTimeInMillis(System.currentTimeMillis());
+        private void prepareFrame(Rect bounds) {
+            // Apply the style of the theme if another theme was applied, which doesn't lock
+            if(themeVersion != StyleCache.getThemeVersion())
+                applyTheme();
+
+            // Update the time and the clock layout
+            updateTime();
+            updateClockLayout(bounds);
+            frameStats.endStage(FrameStats.STAGE_TIME);
         }
 
         /**
-         * Set the timezone of the calendar instance.
+         * Dump the rendering statistics of this engine, after handling the given command.
          *
-         * @param timeZone The time zone, or null to use the default time zone.
+         * @param writer The writer to dump to.
+         * @param prefix The prefix of each line.
+         * @param command The command to handle, one of {@code enable}, {@code disable},
+         *                {@code reset} or {@code log}, or null to only dump.
          */
-        public void setTimeZone(TimeZone timeZone) {
-            // Set the default timezone
-            if(timeZone == null)
-                calendar.setTimeZone(TimeZone.getDefault());
+        public void dump(PrintWriter writer, String prefix, String command) {
+            // Handle the command
+            if("enable".equals(command))
+                frameStats.setEnabled(true);
+            else if("disable".equals(command))
+                frameStats.setEnabled(false);
+            else if("reset".equals(command)) {
+                frameStats.reset();
+                renderer.resetStatistics();
+            }
 
-            else
-                // Set the given timezone
-                calendar.setTimeZone(timeZone);
+            // Dump the statistics
+            writer.println(prefix + (isVisible() ? "visible" : "invisible") + (isInAmbientMode() ? ", ambient" : "")
+                    + ", " + frameScheduler.getFrameRate() + " fps target");
+            layerCaches.dump(writer, prefix + "  ");
+            renderer.dump(writer, prefix + "  ");
+            if(qualityController != null)
+                qualityController.dump(writer, prefix + "  ");
+            frameStats.dump(writer, prefix + "  ");
+
+            // Write the statistics to logcat as well if requested
+            if("log".equals(command)) {
+                StringWriter log = new StringWriter();
+                PrintWriter logWriter = new PrintWriter(log);
+                frameStats.dump(logWriter, prefix);
+                logWriter.flush();
+                Log.i(TAG, log.toString());
+            }
         }
 
         /**
-         * Set the timezone of the calendar instance by it's ID.
+         * Determine the position of the hour and minute digits for the given face bounds, and
+         * update the layout of the ambient renderer if it changed.
          *
-         * @param timeZoneId The time zone ID, or null to use the default time zone.
+         * @param bounds The bounds of the face.
          */
-        public void setTimeZoneById(String timeZoneId) {
-            // If the timezone ID is null, set it to the default
-            if(timeZoneId == null) {
-                setTimeZone(null);
-                return;
+        private void updateClockLayout(Rect bounds) {
+            if(clockLayout.update(bounds))
+                ambientRenderer.setLayout(
+                        clockLayout.getClockDigitsX(),
+                        clockLayout.getHourDigitsY(),
+                        clockLayout.getMinuteDigitsY(),
+                        clockLayout.getHourDigitsBounds(),
+                        clockLayout.getMinuteDigitsBounds()
+                );
+        }
+
+        /**
+         * Check whether the face has anything to animate.
+         * The second gleam and ticks are only animated if the face is visible and not in ambient mode.
+         *
+         * @return True if the face should be animated, false if not.
+         */
+        public boolean shouldAnimate() {
+            return isVisible() && !isInAmbientMode();
+        }
+
+        /**
+         * Start the frame scheduler if the face should be animated, stop it otherwise.
+         */
+        public void updateFrameScheduler() {
+            // Don't measure the frame interval or cost over a pause of the animation
+            if(!frameScheduler.isRunning()) {
+                frameStats.resetFrameInterval();
+                if(qualityController != null)
+                    qualityController.resetWindow();
             }
 
-            // FIXME: Determine the time zone, and set it afterwards!
+            frameScheduler.setRunning(shouldAnimate());
+        }
+
+        /**
+         * Update the current time of the time model, and the hour, minute, second and millisecond
+         * fields.
+         * This method must be called to properly update the time before rendering.
+         */
+        public void updateTime() {
+            timeModel.update();
+            hour = timeModel.getHour();
+            minute = timeModel.getMinute();
+            second = timeModel.getSecond();
+            millisecond = timeModel.getMillisecond();
+            secondPrecise = second + millisecond / 1000.0f;
         }
     }
 }
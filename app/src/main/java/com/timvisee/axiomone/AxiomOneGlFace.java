@@ -0,0 +1,267 @@
+package com.timvisee.axiomone;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.graphics.Rect;
+import android.os.Bundle;
+import android.support.wearable.watchface.Gles2WatchFaceService;
+import android.support.wearable.watchface.WatchFaceStyle;
+import android.view.SurfaceHolder;
+import android.view.WindowInsets;
+
+import java.io.FileDescriptor;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The Axiom One watch face rendered with OpenGL ES.
+ * It shares the style, layout and time model with the software rendered face, and is only offered
+ * in the watch face picker if the {@code gl_face_enabled} resource is set.
+ */
+public class AxiomOneGlFace extends Gles2WatchFaceService {
+
+    /**
+     * The engines that are currently created.
+     */
+    private final List<Engine> engines = new ArrayList<Engine>();
+
+    @Override
+    public Engine onCreateEngine() {
+        return new Engine();
+    }
+
+    /**
+     * Dump the rendering statistics of all engines.
+     * Use {@code adb shell dumpsys activity service com.timvisee.axiomone/.AxiomOneGlFace [reset]}.
+     */
+    @Override
+    protected void dump(FileDescriptor fd, PrintWriter writer, String[] args) {
+        boolean reset = args != null && args.length > 0 && "reset".equals(args[0]);
+        writer.println("Engines: " + engines.size() + " (commands: reset)");
+        for(int i = 0; i < engines.size(); i++) {
+            if(reset)
+                engines.get(i).renderer.resetStatistics();
+            engines.get(i).renderer.dump(writer, "Engine " + i + ": ");
+        }
+    }
+
+    private class Engine extends Gles2WatchFaceService.Engine {
+
+        /**
+         * True if the time receiver is registered.
+         */
+        boolean registeredTimeReceiver = false;
+
+        /**
+         * The receiver for time and time zone changes.
+         */
+        final BroadcastReceiver timeReceiver = new BroadcastReceiver() {
+            @Override
+            public void onReceive(Context context, Intent intent) {
+                // Anchor the time again if the wall clock was changed, or set the new time zone
+                if(timeChangeHandler.onReceive(intent.getAction(), intent.getStringExtra(TimeChangeHandler.EXTRA_TIME_ZONE)))
+                    invalidate();
+            }
+        };
+
+        /**
+         * The time model that is used as time for the watch face.
+         */
+        TimeModel timeModel;
+
+        /**
+         * The handler that applies time and time zone changes to the time model.
+         */
+        TimeChangeHandler timeChangeHandler;
+
+        /**
+         * The style of the face.
+         */
+        FaceStyle style;
+
+        /**
+         * The version of the theme the style was obtained for.
+         */
+        int themeVersion;
+
+        /**
+         * True if the face is round.
+         */
+        boolean isRound;
+
+        /**
+         * The layout of the hour and minute digits.
+         */
+        final ClockLayout clockLayout = new ClockLayout();
+
+        /**
+         * The renderer that draws the face.
+         */
+        final GlFaceRenderer renderer = new GlFaceRenderer((int) getResources().getDimension(R.dimen.burn_in_shift));
+
+        /**
+         * The bounds of the surface.
+         */
+        final Rect faceBounds = new Rect();
+
+        /**
+         * The frame scheduler that drives the redraws in interactive mode.
+         */
+        FrameScheduler frameScheduler;
+
+        @Override
+        public void onCreate(SurfaceHolder holder) {
+            super.onCreate(holder);
+
+            setWatchFaceStyle(new WatchFaceStyle.Builder(AxiomOneGlFace.this)
+                    .setCardPeekMode(WatchFaceStyle.PEEK_MODE_VARIABLE)
+                    .setBackgroundVisibility(WatchFaceStyle.BACKGROUND_VISIBILITY_INTERRUPTIVE)
+                    .setShowSystemUiTime(false)
+                    .build());
+
+            // Get the style of the face from the shared cache, and set it on the renderer
+            themeVersion = StyleCache.getThemeVersion();
+            style = StyleCache.obtainStyle(AxiomOneGlFace.this, false);
+            renderer.setStyle(style, clockLayout);
+
+            // Set the time model instance, and listen for time and time zone changes
+            timeModel = new TimeModel();
+            timeChangeHandler = new TimeChangeHandler(timeModel);
+            registeredTimeReceiver = true;
+            IntentFilter filter = new IntentFilter(Intent.ACTION_TIMEZONE_CHANGED);
+            filter.addAction(Intent.ACTION_TIME_CHANGED);
+            AxiomOneGlFace.this.registerReceiver(timeReceiver, filter);
+
+            // Create the frame scheduler to redraw the face at the target frame rate
+            frameScheduler = new FrameScheduler(getResources().getInteger(R.integer.frame_rate), new FrameScheduler.Callback() {
+                @Override
+                public void onFrame() {
+                    invalidate();
+                }
+            });
+
+            // Register the engine, to dump its statistics
+            engines.add(this);
+        }
+
+        @Override
+        public void onDestroy() {
+            // Stop scheduling frames, and stop listening for time changes
+            frameScheduler.stop();
+            if(registeredTimeReceiver)
+                AxiomOneGlFace.this.unregisterReceiver(timeReceiver);
+            registeredTimeReceiver = false;
+
+            // Release the textures and buffers while the context still exists
+            renderer.release();
+            engines.remove(this);
+
+            super.onDestroy();
+        }
+
+        @Override
+        public void onGlContextCreated() {
+            super.onGlContextCreated();
+            renderer.onContextCreated();
+        }
+
+        @Override
+        public void onGlSurfaceCreated(int width, int height) {
+            super.onGlSurfaceCreated(width, height);
+            faceBounds.set(0, 0, width, height);
+        }
+
+        @Override
+        public void onApplyWindowInsets(WindowInsets insets) {
+            super.onApplyWindowInsets(insets);
+
+            isRound = insets.isRound();
+            applyStyle();
+        }
+
+        /**
+         * Get the style and text metrics of the current theme for the shape of the face, and
+         * rebuild the renderer with them.
+         */
+        private void applyStyle() {
+            int version = StyleCache.getThemeVersion();
+            if(style.isRound() != isRound || themeVersion != version) {
+                themeVersion = version;
+                style = StyleCache.obtainStyle(AxiomOneGlFace.this, isRound);
+            }
+            StyleCache.obtainMetrics(AxiomOneGlFace.this, isRound, clockLayout);
+            renderer.setStyle(style, clockLayout);
+        }
+
+        @Override
+        public void onPropertiesChanged(Bundle properties) {
+            super.onPropertiesChanged(properties);
+
+            // Configure the ambient mode of the renderer for the display
+            renderer.setLowBitAmbient(properties.getBoolean(PROPERTY_LOW_BIT_AMBIENT, false));
+            renderer.setBurnInProtection(properties.getBoolean(PROPERTY_BURN_IN_PROTECTION, false));
+            invalidate();
+        }
+
+        @Override
+        public void onVisibilityChanged(boolean visible) {
+            super.onVisibilityChanged(visible);
+            updateFrameScheduler();
+        }
+
+        @Override
+        public void onAmbientModeChanged(boolean inAmbientMode) {
+            super.onAmbientModeChanged(inAmbientMode);
+            invalidate();
+            updateFrameScheduler();
+        }
+
+        @Override
+        public void onTimeTick() {
+            super.onTimeTick();
+            invalidate();
+        }
+
+        @Override
+        public void onDraw() {
+            // Apply the style of the theme if another theme was applied, which doesn't lock
+            if(themeVersion != StyleCache.getThemeVersion())
+                applyStyle();
+
+            // Update the time and the clock layout
+            timeModel.update();
+            if(clockLayout.update(faceBounds))
+                renderer.invalidate();
+
+            // Draw the face, the interactive elements are only drawn if they're animated
+            renderer.draw(
+                    null,
+                    faceBounds,
+                    timeModel.getHour(),
+                    timeModel.getMinute(),
+                    timeModel.getSecond() + timeModel.getMillisecond() / 1000.0f,
+                    shouldAnimate()
+            );
+        }
+
+        /**
+         * Check whether the face has anything to animate.
+         * The second gleam and ticks are only animated if the face is visible and not in ambient mode.
+         *
+         * @return True if the face should be animated, false if not.
+         */
+        public boolean shouldAnimate() {
+            return isVisible() && !isInAmbientMode();
+        }
+
+        /**
+         * Start the frame scheduler if the face should be animated, stop it otherwise.
+         */
+        public void updateFrameScheduler() {
+            frameScheduler.setRunning(shouldAnimate());
+        }
+    }
+}
@@ -0,0 +1,564 @@
+package com.timvisee.axiomone;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.Region;
+import android.util.Log;
+
+import java.io.PrintWriter;
+
+/**
+ * Software renderer of the interactive watch face, which draws on a canvas.
+ *
+ * All different elements are only drawn/rendered when their visuals change. For example; the
+ * time digits are only drawn/rendered once each minute when the digits change. A frame is first
+ * updated, which determines the region of the face that changed since the previous frame, after
+ * which only that region is rendered into a surface locked for it. Changes that are fully covered
+ * by a peek card aren't redrawn, and the region of the card is never drawn.
+ */
+public class CanvasFaceRenderer implements FaceRenderer<Canvas> {
+
+    /**
+     * The log tag.
+     */
+    private static final String TAG = "AxiomOneFace";
+
+    /**
+     * The margin around the second gleam that is redrawn, to include anti-aliased edges.
+     */
+    private static final float GLEAM_DAMAGE_MARGIN = 2.0f;
+
+    /**
+     * The padding around the content of a layer, to include anti-aliased edges.
+     */
+    private static final int LAYER_PADDING = 2;
+
+    /**
+     * The style of the face.
+     */
+    private FaceStyle style;
+
+    /**
+     * The layout of the clock.
+     */
+    private ClockLayout layout;
+
+    /**
+     * The precomputed geometry of the ticks and the second gleam.
+     */
+    private FaceGeometry geometry;
+
+    /**
+     * The double-buffered pipeline of the layers the hour and minute digits are drawn in.
+     * These are only updated when the clock changes, and only store the alpha of the digits.
+     */
+    private final ClockLayerPipeline clockLayers;
+
+    /**
+     * The paints the hour and minute layers are drawn with, which define the digit colors.
+     */
+    private final Paint hourLayerPaint = new Paint();
+    private final Paint minuteLayerPaint = new Paint();
+
+    /**
+     * The layer the ticks are drawn in, split in segments along the edge of the face.
+     */
+    private TickRingLayer ticksLayer;
+
+    /**
+     * The paint the ticks layer is drawn with, which defines the tick color if it's a mask.
+     */
+    private final Paint ticksLayerPaint = new Paint();
+
+    /**
+     * The paints the faded and highlighted small and large ticks are drawn with in the ticks layer.
+     * These are copies of the style paints, so anti-aliasing can be disabled.
+     */
+    private final Paint tickSmallFadedPaint = new Paint();
+    private final Paint tickLargeFadedPaint = new Paint();
+    private final Paint tickSmallPaint = new Paint();
+    private final Paint tickLargePaint = new Paint();
+
+    /**
+     * True to draw the second gleam.
+     */
+    private boolean gleamEnabled = true;
+
+    /**
+     * True to draw the ticks anti-aliased.
+     */
+    private boolean antiAlias = true;
+
+    /**
+     * True if the second gleam is drawn in the current frame, false if it's disabled or covered.
+     */
+    private boolean gleamVisible = false;
+
+    /**
+     * True if the interactive elements are drawn in the current frame.
+     */
+    private boolean frameInteractive = false;
+
+    /**
+     * The precise number of seconds of the current frame.
+     */
+    private float frameSecondPrecise;
+
+    /**
+     * The layers updated in the last frame, a combination of the {@link FrameTracer} layer flags.
+     */
+    private int updatedLayers = 0;
+
+    /**
+     * The prerasterized sprite of the second gleam.
+     */
+    private final GleamSprite gleamSprite = new GleamSprite();
+
+    /**
+     * Coordinate buffer for the four corners of the second gleam, to prevent allocations while rendering.
+     */
+    private final float[] gleamCoords = new float[8];
+
+    /**
+     * The corners of the second gleam that was drawn in the previous frame.
+     */
+    private final float[] lastGleamCoords = new float[8];
+
+    /**
+     * True if the second gleam was drawn in the previous frame, so its region must be redrawn
+     * to remove it.
+     */
+    private boolean lastGleamDrawn = false;
+
+    /**
+     * Coordinate buffer for the corners of the second gleam at the start and end of a sweep.
+     */
+    private final float[] gleamSweepCoords = new float[16];
+
+    /**
+     * The bounds of the face that are covered by a peek card, empty if nothing is covered.
+     */
+    private final Rect occludedBounds = new Rect();
+
+    /**
+     * The tracker of the regions that changed, which determines the region redrawn each frame.
+     */
+    private final DamageTracker damageTracker = new DamageTracker();
+
+    /**
+     * The render-time statistics the stages of each frame are recorded in.
+     */
+    private final FrameStats frameStats;
+
+    /**
+     * True to log rendering statistics, such as the size of the layer caches.
+     */
+    private final boolean logRendering;
+
+    /**
+     * Constructor.
+     *
+     * @param frameStats The frame statistics to record the render stages in.
+     * @param logRendering True to log rendering statistics.
+     * @param prepareClock True to prepare the clock layers of the next minute on a worker thread.
+     */
+    public CanvasFaceRenderer(FrameStats frameStats, boolean logRendering, boolean prepareClock) {
+        this.frameStats = frameStats;
+        this.logRendering = logRendering;
+        this.clockLayers = new ClockLayerPipeline(prepareClock);
+    }
+
+    @Override
+    public void setStyle(FaceStyle style, ClockLayout layout) {
+        this.layout = layout;
+        updateStyle(style, Theme.PARTS_ALL);
+    }
+
+    /**
+     * Set a style that only differs from the current style in the given parts of its theme, with
+     * the same text metrics. Only the layers that depend on these parts are rebuilt, the layers
+     * that are stored as mask are colored with the new paints.
+     *
+     * @param style The face style.
+     * @param parts The parts that changed, a combination of the {@link Theme} {@code PART_} constants.
+     */
+    public void updateStyle(FaceStyle style, int parts) {
+        this.style = style;
+
+        // Redraw the clock layers if the digits changed, and color them with the new paints
+        if((parts & Theme.PART_DIGITS) != 0)
+            clockLayers.setStyle(style, layout);
+        hourLayerPaint.setColor(style.getHourPaint().getColor());
+        hourLayerPaint.setAlpha(255);
+        minuteLayerPaint.setColor(style.getMinutePaint().getColor());
+        minuteLayerPaint.setAlpha(255);
+
+        // Rebuild the ticks and their geometry if they changed, and store them as a mask if all
+        // ticks have the same color
+        if((parts & Theme.PART_TICKS) != 0) {
+            if(ticksLayer != null)
+                ticksLayer.release();
+            ticksLayer = new TickRingLayer(style.isSingleTickColor() ? Bitmap.Config.ALPHA_8 : Bitmap.Config.ARGB_8888);
+            tickSmallFadedPaint.set(style.getTickSmallFadedPaint());
+            tickLargeFadedPaint.set(style.getTickLargeFadedPaint());
+            tickSmallPaint.set(style.getTickSmallPaint());
+            tickLargePaint.set(style.getTickLargePaint());
+            updateTickPaints();
+            ticksLayerPaint.setColor(style.getTickLargePaint().getColor());
+            ticksLayerPaint.setAlpha(255);
+            geometry = style.createGeometry();
+        }
+
+        // Rasterize the second gleam again if its paint or geometry changed
+        if((parts & (Theme.PART_TICKS | Theme.PART_GLEAM)) != 0) {
+            gleamSprite.release();
+            gleamSprite.setPaint(style.getGleamPaint());
+        }
+
+        // Redraw the whole face with the new style
+        damageTracker.invalidateAll();
+    }
+
+    /**
+     * Set whether the second gleam is drawn.
+     *
+     * @param gleamEnabled True to draw the gleam.
+     */
+    public void setGleamEnabled(boolean gleamEnabled) {
+        if(this.gleamEnabled == gleamEnabled)
+            return;
+        this.gleamEnabled = gleamEnabled;
+        damageTracker.invalidateAll();
+    }
+
+    /**
+     * Set whether the ticks are drawn anti-aliased.
+     * The ticks layer is fully drawn again if this changed.
+     *
+     * @param antiAlias True to anti-alias the ticks.
+     */
+    public void setAntiAlias(boolean antiAlias) {
+        if(this.antiAlias == antiAlias)
+            return;
+        this.antiAlias = antiAlias;
+        updateTickPaints();
+        damageTracker.invalidateAll();
+    }
+
+    /**
+     * Apply the anti-aliasing setting to the tick paints, and set them on the ticks layer.
+     */
+    private void updateTickPaints() {
+        tickSmallFadedPaint.setAntiAlias(antiAlias);
+        tickLargeFadedPaint.setAntiAlias(antiAlias);
+        tickSmallPaint.setAntiAlias(antiAlias);
+        tickLargePaint.setAntiAlias(antiAlias);
+        if(ticksLayer != null)
+            ticksLayer.setPaints(tickSmallFadedPaint, tickLargeFadedPaint, tickSmallPaint, tickLargePaint);
+    }
+
+    /**
+     * Set the bounds of the face that are covered by a peek card.
+     * Nothing is drawn inside these bounds, and the whole face is redrawn if they changed.
+     *
+     * @param bounds The covered bounds, or null or empty if nothing is covered.
+     */
+    public void setOccludedBounds(Rect bounds) {
+        // Skip if the covered bounds didn't change
+        if(bounds == null || bounds.isEmpty()) {
+            if(occludedBounds.isEmpty())
+                return;
+            occludedBounds.setEmpty();
+        } else {
+            if(occludedBounds.equals(bounds))
+                return;
+            occludedBounds.set(bounds);
+        }
+
+        // Draw the parts of the face that were covered, and stop drawing the parts that are covered
+        damageTracker.invalidateAll();
+    }
+
+    /**
+     * Check whether the second gleam is fully covered by a peek card during the given time span.
+     *
+     * @param fromSecond The precise second the time span starts at.
+     * @param toSecond The precise second the time span ends at, at most one second later.
+     *
+     * @return True if the gleam is covered during the whole time span.
+     */
+    public boolean isGleamOccluded(float fromSecond, float toSecond) {
+        if(occludedBounds.isEmpty() || geometry == null || geometry.getRadius() <= 0.0f)
+            return false;
+
+        // The gleam moves less than one tick, so the corners of both ends enclose the sweep
+        geometry.getGleamCoords(fromSecond, gleamSweepCoords);
+        System.arraycopy(gleamSweepCoords, 0, gleamSweepCoords, 8, 8);
+        geometry.getGleamCoords(toSecond, gleamSweepCoords);
+        return isOccluded(gleamSweepCoords, 0, gleamSweepCoords.length, GLEAM_DAMAGE_MARGIN);
+    }
+
+    /**
+     * Check whether the given points, including a margin, are fully covered by a peek card.
+     * The parts outside of the face are never visible, so a card along the edge of the face also
+     * covers the points that stick out of the face.
+     *
+     * @param coords The point coordinates, as X and Y pairs.
+     * @param offset The offset of the first coordinate.
+     * @param count The number of coordinates.
+     * @param margin The margin around the points.
+     *
+     * @return True if covered.
+     */
+    private boolean isOccluded(float[] coords, int offset, int count, float margin) {
+        if(occludedBounds.isEmpty())
+            return false;
+        float size = geometry.getRadius() * 2.0f;
+        for(int i = offset; i < offset + count; i += 2)
+            if(Math.max(coords[i] - margin, 0.0f) < occludedBounds.left
+                    || Math.min(coords[i] + margin, size) > occludedBounds.right
+                    || Math.max(coords[i + 1] - margin, 0.0f) < occludedBounds.top
+                    || Math.min(coords[i + 1] + margin, size) > occludedBounds.bottom)
+                return false;
+        return true;
+    }
+
+    /**
+     * Check whether the given tick is fully covered by a peek card.
+     *
+     * @param tick The tick index.
+     *
+     * @return True if covered.
+     */
+    private boolean isTickOccluded(int tick) {
+        return isOccluded(geometry.getTickCoords(), tick * 4, 4, style.getTickLargePaint().getStrokeWidth() + 1.0f);
+    }
+
+    @Override
+    public void invalidate() {
+        clockLayers.invalidate();
+        damageTracker.invalidateAll();
+    }
+
+    /**
+     * Draw a frame of the interactive face, fully redrawing the face.
+     * Used for canvases of which the content is undefined, such as a fully locked surface.
+     *
+     * @param canvas The canvas to draw on.
+     * @param bounds The bounds of the face.
+     * @param hour The hour of the day.
+     * @param minute The minute.
+     * @param secondPrecise The precise number of seconds.
+     * @param interactive True to draw the interactive elements, the ticks and the second gleam.
+     */
+    @Override
+    public void draw(Canvas canvas, Rect bounds, int hour, int minute, float secondPrecise, boolean interactive) {
+        damageTracker.invalidateAll();
+        render(canvas, update(bounds, hour, minute, secondPrecise, interactive));
+    }
+
+    /**
+     * Update the layers for a frame of the interactive face, and determine the region of the face
+     * that changed since the previous frame.
+     * The frame is drawn by rendering that region into a canvas that still holds the previous frame.
+     *
+     * @param bounds The bounds of the face.
+     * @param hour The hour of the day.
+     * @param minute The minute.
+     * @param secondPrecise The precise number of seconds.
+     * @param interactive True to draw the interactive elements, the ticks and the second gleam.
+     *
+     * @return The region to redraw, empty if nothing changed. The returned instance is reused for
+     *         each frame.
+     */
+    public Rect update(Rect bounds, int hour, int minute, float secondPrecise, boolean interactive) {
+        updatedLayers = 0;
+        frameInteractive = interactive;
+        frameSecondPrecise = secondPrecise;
+
+        // Update the clock layers if they aren't up-to-date, which swaps in the layers prepared
+        // for this minute if they're ready and draws them otherwise
+        int clockSwaps = clockLayers.getSwapCount();
+        if(clockLayers.update(hour, minute, interactive)) {
+            // Log the size of the layer caches
+            if(logRendering)
+                Log.d(TAG, "Layer caches: " + getByteCount() + " bytes");
+
+            // The clock changed, redraw the whole face
+            damageTracker.invalidateAll();
+            boolean swapped = clockLayers.getSwapCount() != clockSwaps;
+            updatedLayers |= swapped ? FrameTracer.LAYER_CLOCK_PREPARED : FrameTracer.LAYER_CLOCK;
+            frameStats.count(swapped ? FrameStats.COUNTER_CLOCK_SWAPS : FrameStats.COUNTER_CLOCK_REBUILDS);
+        }
+        frameStats.endStage(FrameStats.STAGE_CLOCK_LAYER);
+
+        // Update the ticks and the second gleam if the screen is on and not in ambient mode
+        if(interactive) {
+            // Update the geometry for the screen radius, and fit the ticks layer and redraw everything if it changed
+            if(geometry.setRadius(bounds.width() / 2.0f) || !ticksLayer.isAllocated()) {
+                if(ticksLayer.setGeometry(geometry, style.getTickLargePaint().getStrokeWidth() + LAYER_PADDING) && logRendering)
+                    Log.d(TAG, "Layer caches: " + getByteCount() + " bytes");
+                damageTracker.invalidateAll();
+            }
+
+            // Rasterize the second gleam sprite if it isn't rasterized for the geometry yet
+            gleamSprite.setGeometry(geometry);
+
+            // Determine the tick to highlight
+            int highlightedTick = (int) (secondPrecise + 0.5f) % 60;
+
+            // Update the highlighted tick if it changed, which only redraws the changed ticks
+            // unless the ticks layer must be fully drawn. Skip the update while both ticks are
+            // covered by a peek card, the layer catches up once a highlighted tick is visible.
+            int lastTick = ticksLayer.getHighlightedTick();
+            if(lastTick != highlightedTick && lastTick >= 0 && isTickOccluded(lastTick) && isTickOccluded(highlightedTick))
+                frameStats.count(FrameStats.COUNTER_OCCLUDED_TICKS);
+            else if(lastTick != highlightedTick) {
+                boolean ringDrawn = ticksLayer.setHighlightedTick(highlightedTick);
+                updatedLayers |= ringDrawn ? FrameTracer.LAYER_TICK_RING : FrameTracer.LAYER_TICK;
+
+                // Only the previously and the currently highlighted tick changed
+                damageTick(lastTick);
+                damageTick(highlightedTick);
+                frameStats.count(FrameStats.COUNTER_TICKS_REBUILDS);
+            }
+            frameStats.endStage(FrameStats.STAGE_TICKS_LAYER);
+
+            // Damage the region of the gleam of the previous frame, so the region it left is
+            // cleared, also if the gleam is covered or disabled now
+            if(lastGleamDrawn)
+                damageTracker.damagePoints(lastGleamCoords, 0, lastGleamCoords.length, GLEAM_DAMAGE_MARGIN);
+
+            // Calculate the corners of the second gleam, and damage its region unless it's covered
+            // by a peek card
+            gleamVisible = false;
+            if(gleamEnabled) {
+                geometry.getGleamCoords(secondPrecise, gleamCoords);
+                if(isOccluded(gleamCoords, 0, gleamCoords.length, GLEAM_DAMAGE_MARGIN))
+                    frameStats.count(FrameStats.COUNTER_OCCLUDED_GLEAMS);
+                else {
+                    damageTracker.damagePoints(gleamCoords, 0, gleamCoords.length, GLEAM_DAMAGE_MARGIN);
+                    System.arraycopy(gleamCoords, 0, lastGleamCoords, 0, gleamCoords.length);
+                    gleamVisible = true;
+                }
+                frameStats.endStage(FrameStats.STAGE_GLEAM);
+            }
+
+        } else {
+            // Always fully redraw when the face isn't visible
+            damageTracker.invalidateAll();
+            gleamVisible = false;
+        }
+        lastGleamDrawn = gleamVisible;
+
+        // Determine the region to redraw
+        Rect redrawRegion = damageTracker.nextFrame(bounds);
+        if(!redrawRegion.isEmpty())
+            updatedLayers |= FrameTracer.FLAG_REDRAWN;
+        return redrawRegion;
+    }
+
+    /**
+     * Render the given region of the updated frame.
+     * Does nothing if the region is empty.
+     *
+     * @param canvas The canvas to draw on, which holds the previous frame outside the region.
+     * @param redrawRegion The region to redraw, at least the region returned by the update.
+     */
+    public void render(Canvas canvas, Rect redrawRegion) {
+        if(redrawRegion.isEmpty())
+            return;
+
+        // Only draw inside the redraw region, and not below a peek card
+        canvas.save();
+        canvas.clipRect(redrawRegion);
+        if(!occludedBounds.isEmpty())
+            canvas.clipRect(occludedBounds, Region.Op.DIFFERENCE);
+
+        // Draw the background.
+        canvas.drawColor(style.getBackgroundColor());
+        frameStats.endStage(FrameStats.STAGE_BACKGROUND);
+
+        // Draw the second gleam if the screen is on and not in ambient mode, and it isn't covered
+        if(frameInteractive && gleamVisible) {
+            // Draw the second gleam sprite, rotated to its position
+            gleamSprite.draw(canvas, frameSecondPrecise);
+            updatedLayers |= FrameTracer.LAYER_GLEAM;
+            frameStats.endStage(FrameStats.STAGE_GLEAM);
+        }
+
+        // Draw and render the part of the clock layers that is redrawn
+        clockLayers.draw(canvas, redrawRegion, hourLayerPaint, minuteLayerPaint);
+
+        // Draw and render the part of the ticks layer that is redrawn
+        if(frameInteractive)
+            ticksLayer.draw(canvas, redrawRegion, ticksLayerPaint);
+
+        canvas.restore();
+        frameStats.endStage(FrameStats.STAGE_COMPOSITE);
+    }
+
+    /**
+     * Mark the region of the given tick as damaged, so it's redrawn in the next frame.
+     * Ticks that are covered by a peek card aren't damaged.
+     *
+     * @param tick The tick index, or -1 to ignore.
+     */
+    private void damageTick(int tick) {
+        if(tick < 0 || isTickOccluded(tick))
+            return;
+        damageTracker.damagePoints(geometry.getTickCoords(), tick * 4, 4, style.getTickLargePaint().getStrokeWidth() + 1.0f);
+    }
+
+    /**
+     * Get the layers that were updated in the last frame.
+     *
+     * @return A combination of the {@link FrameTracer} layer flags, including
+     *         {@link FrameTracer#FLAG_REDRAWN} if any pixels were redrawn.
+     */
+    public int getUpdatedLayers() {
+        return updatedLayers;
+    }
+
+    /**
+     * Wait until the clock layers of the next minute are prepared.
+     * This blocks the calling thread, so it's only meant for benchmarks.
+     */
+    public void awaitPrepared() {
+        clockLayers.awaitPrepared();
+    }
+
+    @Override
+    public int getByteCount() {
+        return clockLayers.getByteCount()
+                + (ticksLayer != null ? ticksLayer.getByteCount() : 0) + gleamSprite.getByteCount();
+    }
+
+    @Override
+    public void release() {
+        clockLayers.release();
+        if(ticksLayer != null)
+            ticksLayer.release();
+        gleamSprite.release();
+        invalidate();
+    }
+
+    @Override
+    public void resetStatistics() {
+        damageTracker.resetStatistics();
+    }
+
+    @Override
+    public void dump(PrintWriter writer, String prefix) {
+        writer.println(prefix + "Layer caches: " + getByteCount() + " bytes");
+        writer.println(prefix + "Clock updates: " + clockLayers.getSwapCount() + " prepared, "
+                + clockLayers.getSynchronousCount() + " drawn synchronously");
+        if(ticksLayer != null)
+            writer.println(prefix + "Tick draws: " + ticksLayer.getTickDrawCount()
+                    + " (" + ticksLayer.getRebuildCount() + " full ring draws)");
+        writer.println(prefix + "Pixels touched: average " + damageTracker.getAveragePixels()
+                + " per frame (" + (int) (damageTracker.getPixelRatio() * 100.0f) + "% of full redraws)");
+    }
+}
@@ -0,0 +1,406 @@
+package com.timvisee.axiomone;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Double-buffered pipeline of the hour and minute layers.
+ *
+ * The front buffer holds the clock that is drawn on the face. While the face shows a minute, the
+ * back buffer is drawn for the next minute on a worker thread, so at the minute boundary the
+ * buffers only have to be swapped instead of drawing the clock in that frame. A prepared buffer
+ * is handed back to the drawing thread through an atomic reference, so drawing the face never
+ * waits for the worker. If the back buffer isn't prepared for the time that is drawn, for example
+ * because the time or layout changed, the front buffer is drawn synchronously instead.
+ */
+public class ClockLayerPipeline {
+
+    /**
+     * The name of the worker thread.
+     */
+    private static final String WORKER_NAME = "AxiomOneClockLayers";
+
+    /**
+     * The style of the face.
+     */
+    private FaceStyle style;
+
+    /**
+     * The layout of the clock.
+     */
+    private ClockLayout layout;
+
+    /**
+     * The atlas of prerendered digit glyphs the clock layers are composed from.
+     * It's only modified while the worker isn't running.
+     */
+    private final GlyphAtlas glyphAtlas = new GlyphAtlas();
+
+    /**
+     * True to prepare the back buffer on the worker thread, false to always draw synchronously.
+     */
+    private final boolean prepareEnabled;
+
+    /**
+     * The buffer that is drawn on the face. Only used on the drawing thread.
+     */
+    private ClockBuffer front = new ClockBuffer();
+
+    /**
+     * The back buffer if it's owned by the drawing thread, or null if it's being prepared.
+     */
+    private ClockBuffer back = new ClockBuffer();
+
+    /**
+     * The back buffer once it's prepared by the worker, until the drawing thread takes it.
+     */
+    private final AtomicReference<ClockBuffer> prepared = new AtomicReference<ClockBuffer>();
+
+    /**
+     * The worker thread the back buffer is prepared on, and its handler, or null if not started.
+     */
+    private HandlerThread worker;
+    private Handler workerHandler;
+
+    /**
+     * True if the front buffer must be drawn again, even if the time didn't change.
+     */
+    private boolean forceUpdate = true;
+
+    /**
+     * The number of clock updates that swapped in a prepared buffer, and that drew synchronously.
+     */
+    private int swapCount = 0;
+    private int synchronousCount = 0;
+
+    /**
+     * Buffer of the hour and minute layers, drawn for a specific time and layout.
+     * The buffer is drawn on the worker thread when it's posted to it.
+     */
+    private class ClockBuffer implements Runnable {
+
+        /**
+         * The layers the hour and minute digits are drawn in.
+         * These only store the alpha of the digits.
+         */
+        final Layer hourLayer = new Layer(Bitmap.Config.ALPHA_8);
+        final Layer minuteLayer = new Layer(Bitmap.Config.ALPHA_8);
+
+        /**
+         * The time the buffer is drawn for, and whether the ghost digit is drawn.
+         */
+        int hour = -1;
+        int minute = -1;
+        boolean interactive;
+
+        /**
+         * The layout the buffer is drawn for.
+         */
+        int digitsX;
+        int hourY;
+        int minuteY;
+        float ghostX;
+        final Rect hourBounds = new Rect();
+        final Rect minuteBounds = new Rect();
+
+        /**
+         * True if the layers are drawn for the target of the buffer.
+         */
+        boolean drawn = false;
+
+        /**
+         * Destination rectangle to draw glyphs with, to prevent allocations.
+         */
+        final Rect glyphDst = new Rect();
+
+        /**
+         * Set the time and layout to draw the buffer for.
+         *
+         * @param hour The hour of the day.
+         * @param minute The minute.
+         * @param interactive True to draw the ghost digit in front of single hour digits.
+         */
+        void setTarget(int hour, int minute, boolean interactive) {
+            this.hour = hour;
+            this.minute = minute;
+            this.interactive = interactive;
+            digitsX = layout.getClockDigitsX();
+            hourY = layout.getHourDigitsY();
+            minuteY = layout.getMinuteDigitsY();
+            ghostX = layout.getGhostDigitX();
+            hourBounds.set(layout.getHourDigitsBounds());
+            minuteBounds.set(layout.getMinuteDigitsBounds());
+            drawn = false;
+        }
+
+        /**
+         * Check whether the buffer is drawn for the given time and the current layout.
+         *
+         * @param hour The hour of the day.
+         * @param minute The minute.
+         * @param interactive True if the ghost digit is drawn.
+         *
+         * @return True if the buffer can be drawn on the face.
+         */
+        boolean isDrawnFor(int hour, int minute, boolean interactive) {
+            return drawn
+                    && this.hour == hour
+                    && this.minute == minute
+                    && this.interactive == interactive
+                    && digitsX == layout.getClockDigitsX()
+                    && hourY == layout.getHourDigitsY()
+                    && minuteY == layout.getMinuteDigitsY()
+                    && hourBounds.equals(layout.getHourDigitsBounds())
+                    && minuteBounds.equals(layout.getMinuteDigitsBounds());
+        }
+
+        /**
+         * Draw the layers for the target of the buffer.
+         *
+         * @return True if a layer was reallocated, false if not.
+         */
+        boolean draw() {
+            // Fit the hour and minute layers around the digits, which reallocates them if their size changed
+            boolean reallocated = hourLayer.setBounds(hourBounds.left, hourBounds.top, hourBounds.right, hourBounds.bottom);
+            reallocated |= minuteLayer.setBounds(minuteBounds.left, minuteBounds.top, minuteBounds.right, minuteBounds.bottom);
+
+            // Clear the current layers (transparent)
+            hourLayer.clear();
+            minuteLayer.clear();
+
+            // Draw the hour digits and draw a ghost digit if it's only one digit
+            glyphAtlas.drawText(hourLayer.getCanvas(), GlyphAtlas.STYLE_HOUR, DigitStrings.hour(hour), digitsX, hourY, true, style.getHourPaint(), glyphDst);
+            if(interactive && hour < 10)
+                glyphAtlas.drawText(hourLayer.getCanvas(), GlyphAtlas.STYLE_HOUR, "0", ghostX, hourY, true, style.getHourGhostPaint(), glyphDst);
+
+            // Draw the minute digits
+            glyphAtlas.drawText(minuteLayer.getCanvas(), GlyphAtlas.STYLE_MINUTE, DigitStrings.minute(minute), digitsX, minuteY, false, style.getMinutePaint(), glyphDst);
+
+            drawn = true;
+            return reallocated;
+        }
+
+        @Override
+        public void run() {
+            // Draw the buffer on the worker thread, and hand it back to the drawing thread
+            draw();
+            prepared.set(this);
+        }
+
+        /**
+         * Get the number of bytes used by the layers.
+         *
+         * @return The number of bytes.
+         */
+        int getByteCount() {
+            return hourLayer.getByteCount() + minuteLayer.getByteCount();
+        }
+
+        /**
+         * Release the layers.
+         */
+        void release() {
+            hourLayer.release();
+            minuteLayer.release();
+            drawn = false;
+        }
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param prepareEnabled True to prepare the next minute on a worker thread.
+     */
+    public ClockLayerPipeline(boolean prepareEnabled) {
+        this.prepareEnabled = prepareEnabled;
+    }
+
+    /**
+     * Set the style and layout the clock is drawn with.
+     * The worker is stopped, and the buffers are drawn again.
+     *
+     * @param style The face style.
+     * @param layout The clock layout.
+     */
+    public void setStyle(FaceStyle style, ClockLayout layout) {
+        stopWorker();
+        this.style = style;
+        this.layout = layout;
+
+        // Rebuild the glyph atlas with the new text metrics
+        glyphAtlas.release();
+        front.drawn = false;
+        back.drawn = false;
+        invalidate();
+    }
+
+    /**
+     * Draw the front buffer again the next update, even if the time didn't change.
+     */
+    public void invalidate() {
+        forceUpdate = true;
+    }
+
+    /**
+     * Update the front buffer for the given time, and prepare the back buffer for the next minute.
+     * Must be called on the drawing thread.
+     *
+     * @param hour The hour of the day.
+     * @param minute The minute.
+     * @param interactive True to draw the ghost digit in front of single hour digits.
+     *
+     * @return True if the front buffer changed, false if not.
+     */
+    public boolean update(int hour, int minute, boolean interactive) {
+        // Take the back buffer if the worker prepared it
+        ClockBuffer preparedBuffer = prepared.getAndSet(null);
+        if(preparedBuffer != null)
+            back = preparedBuffer;
+
+        // Update the front buffer if it isn't drawn for this time
+        boolean changed = false;
+        if(forceUpdate || !front.isDrawnFor(hour, minute, interactive)) {
+            if(back != null && back.isDrawnFor(hour, minute, interactive)) {
+                // Swap in the prepared buffer
+                ClockBuffer swap = front;
+                front = back;
+                back = swap;
+                swapCount++;
+            } else {
+                // Draw the front buffer synchronously, build the glyph atlas first if it isn't built yet
+                buildAtlas();
+                front.setTarget(hour, minute, interactive);
+                front.draw();
+                synchronousCount++;
+            }
+            forceUpdate = false;
+            changed = true;
+        }
+
+        // Prepare the back buffer for the next minute if it's idle and not prepared for it yet
+        int nextMinute = (minute + 1) % 60;
+        int nextHour = nextMinute == 0 ? (hour + 1) % 24 : hour;
+        if(prepareEnabled && back != null && !back.isDrawnFor(nextHour, nextMinute, interactive)) {
+            buildAtlas();
+            startWorker();
+            back.setTarget(nextHour, nextMinute, interactive);
+            workerHandler.post(back);
+            back = null;
+        }
+
+        return changed;
+    }
+
+    /**
+     * Get the number of updates that swapped in a prepared buffer.
+     *
+     * @return The number of updates that swapped in a prepared buffer.
+     */
+    public int getSwapCount() {
+        return swapCount;
+    }
+
+    /**
+     * Get the number of updates that drew the clock synchronously.
+     *
+     * @return The number of synchronous updates.
+     */
+    public int getSynchronousCount() {
+        return synchronousCount;
+    }
+
+    /**
+     * Wait until the back buffer isn't being prepared by the worker anymore.
+     * This blocks the calling thread, so it's only meant for benchmarks.
+     */
+    public void awaitPrepared() {
+        while(back == null && prepared.get() == null)
+            Thread.yield();
+    }
+
+    /**
+     * Build the glyph atlas if it isn't built yet.
+     */
+    private void buildAtlas() {
+        if(!glyphAtlas.isBuilt())
+            glyphAtlas.build(style.getHourPaint(), style.getMinutePaint());
+    }
+
+    /**
+     * Start the worker thread if it isn't running.
+     */
+    private void startWorker() {
+        if(worker != null)
+            return;
+        worker = new HandlerThread(WORKER_NAME, Process.THREAD_PRIORITY_BACKGROUND);
+        worker.start();
+        workerHandler = new Handler(worker.getLooper());
+    }
+
+    /**
+     * Stop the worker thread if it's running, and wait for it to finish the buffer it's drawing.
+     * The back buffer is owned by the drawing thread again afterwards.
+     */
+    private void stopWorker() {
+        if(worker == null)
+            return;
+
+        // Let the worker finish the posted buffer, and wait for it
+        worker.quitSafely();
+        try {
+            worker.join();
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        worker = null;
+        workerHandler = null;
+
+        // Take the back buffer back, it's only missing if the worker was interrupted
+        ClockBuffer preparedBuffer = prepared.getAndSet(null);
+        if(preparedBuffer != null)
+            back = preparedBuffer;
+        if(back == null)
+            back = new ClockBuffer();
+    }
+
+    /**
+     * Draw the part of the front buffer inside the given region on the given canvas.
+     *
+     * @param canvas The canvas to draw on.
+     * @param region The region of the face to draw.
+     * @param hourPaint The paint to draw the hour layer with, which defines the hour color.
+     * @param minutePaint The paint to draw the minute layer with, which defines the minute color.
+     */
+    public void draw(Canvas canvas, Rect region, Paint hourPaint, Paint minutePaint) {
+        front.hourLayer.draw(canvas, region, hourPaint);
+        front.minuteLayer.draw(canvas, region, minutePaint);
+    }
+
+    /**
+     * Get the number of bytes used by the glyph atlas and the buffers owned by the drawing thread.
+     *
+     * @return The number of bytes.
+     */
+    public int getByteCount() {
+        return glyphAtlas.getByteCount() + front.getByteCount() + (back != null ? back.getByteCount() : 0);
+    }
+
+    /**
+     * Stop the worker, and release the glyph atlas and the buffers.
+     * Everything is drawn again the next update.
+     */
+    public void release() {
+        stopWorker();
+        glyphAtlas.release();
+        front.release();
+        back.release();
+        invalidate();
+    }
+}
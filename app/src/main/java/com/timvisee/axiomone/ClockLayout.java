@@ -0,0 +1,232 @@
+package com.timvisee.axiomone;
+
+import android.graphics.Paint;
+import android.graphics.Rect;
+
+/**
+ * Layout of the hour and minute digits on the face.
+ * The text metrics are measured once when the style changes, and the position of the digits is
+ * only determined again when the size of the face changes. The layout is shared by all
+ * renderers.
+ */
+public class ClockLayout {
+
+    /**
+     * The padding around the digit bounds, to include anti-aliased edges.
+     */
+    public static final int PADDING = 2;
+
+    /**
+     * All digits, to measure the bounds of the digits with.
+     */
+    private static final String ALL_DIGITS = "0123456789";
+
+    /**
+     * The width and height of a hour digit, and the spacing between two hour digits.
+     */
+    private float hourDigitWidth;
+    private float hourDigitHeight;
+    private float hourDigitSpacing;
+
+    /**
+     * The height of a minute digit.
+     */
+    private float minuteDigitHeight;
+
+    /**
+     * The offset from the vertical center of the hour text to its baseline.
+     */
+    private float hourBaselineOffset;
+
+    /**
+     * The maximum width of the hour text, including the ghost digit, and of the minute text.
+     */
+    private float hourTextWidth;
+    private float minuteTextWidth;
+
+    /**
+     * The bounds of the hour and minute digits, relative to the text baseline.
+     */
+    private final Rect hourTextBounds = new Rect();
+    private final Rect minuteTextBounds = new Rect();
+
+    /**
+     * The horizontal offset of the digits from the center of the face.
+     */
+    private int digitOffsetX;
+
+    /**
+     * The X coordinate the hour and minute digits are aligned to, and the baselines of the
+     * hour and minute digits.
+     */
+    private int clockDigitsX;
+    private int hourDigitsY;
+    private int minuteDigitsY;
+
+    /**
+     * The bounds of the hour and minute digits on the face, including padding.
+     */
+    private final Rect hourDigitsBounds = new Rect();
+    private final Rect minuteDigitsBounds = new Rect();
+
+    /**
+     * The bounds of the face the layout was determined for.
+     */
+    private final Rect faceBounds = new Rect();
+
+    /**
+     * True if the layout must be determined again.
+     */
+    private boolean invalid = true;
+
+    /**
+     * Measure the text metrics of the given style.
+     * The layout is determined again on the next update.
+     *
+     * @param style The face style.
+     */
+    public void setMetrics(FaceStyle style) {
+        Paint hourPaint = style.getHourPaint();
+        Paint minutePaint = style.getMinutePaint();
+
+        // Determine the width and height of the hour digits
+        Rect hourDigitBounds = new Rect();
+        Rect hourDigitBoundsDouble = new Rect();
+        hourPaint.getTextBounds("0", 0, 1, hourDigitBounds);
+        hourPaint.getTextBounds("00", 0, 2, hourDigitBoundsDouble);
+        hourDigitHeight = hourDigitBounds.height();
+        hourDigitWidth = hourDigitBounds.width();
+        hourDigitSpacing = hourDigitBoundsDouble.width() - hourDigitWidth * 2;
+        hourBaselineOffset = -(hourPaint.descent() + hourPaint.ascent()) / 2;
+
+        // Determine the height of the minute digits
+        Rect minuteDigitBounds = new Rect();
+        minutePaint.getTextBounds("0", 0, 1, minuteDigitBounds);
+        minuteDigitHeight = minuteDigitBounds.height();
+
+        // Determine the bounds of all digits relative to the baseline, to fit the clock layers
+        hourPaint.getTextBounds(ALL_DIGITS, 0, ALL_DIGITS.length(), hourTextBounds);
+        minutePaint.getTextBounds(ALL_DIGITS, 0, ALL_DIGITS.length(), minuteTextBounds);
+
+        // Determine the maximum width of the hour and minute text
+        hourTextWidth = hourDigitWidth + hourDigitSpacing + style.getHourGhostPaint().measureText("0");
+        for(int hour = 0; hour < 24; hour++)
+            hourTextWidth = Math.max(hourTextWidth, hourPaint.measureText(DigitStrings.hour(hour)));
+        minuteTextWidth = 0.0f;
+        for(int minute = 0; minute < 60; minute++)
+            minuteTextWidth = Math.max(minuteTextWidth, minutePaint.measureText(DigitStrings.minute(minute)));
+
+        digitOffsetX = style.getDigitOffsetX();
+        invalid = true;
+    }
+
+    /**
+     * Copy the text metrics measured by another layout, instead of measuring them again.
+     * The layout is determined again on the next update.
+     *
+     * @param source The layout to copy the text metrics from.
+     */
+    public void setMetrics(ClockLayout source) {
+        hourDigitWidth = source.hourDigitWidth;
+        hourDigitHeight = source.hourDigitHeight;
+        hourDigitSpacing = source.hourDigitSpacing;
+        minuteDigitHeight = source.minuteDigitHeight;
+        hourBaselineOffset = source.hourBaselineOffset;
+        hourTextWidth = source.hourTextWidth;
+        minuteTextWidth = source.minuteTextWidth;
+        hourTextBounds.set(source.hourTextBounds);
+        minuteTextBounds.set(source.minuteTextBounds);
+        digitOffsetX = source.digitOffsetX;
+        invalid = true;
+    }
+
+    /**
+     * Determine the position of the hour and minute digits for the given face bounds.
+     * The layout is only determined again if the bounds or the text metrics changed.
+     *
+     * @param bounds The bounds of the face.
+     *
+     * @return True if the layout changed, false if not.
+     */
+    public boolean update(Rect bounds) {
+        // Skip if the layout is up-to-date
+        if(!invalid && faceBounds.equals(bounds))
+            return false;
+        faceBounds.set(bounds);
+        invalid = false;
+
+        // Get the offset for the hour and minute digits
+        clockDigitsX = (bounds.width() / 2) + digitOffsetX;
+        hourDigitsY = (int) ((bounds.height() / 2) + hourBaselineOffset);
+        minuteDigitsY = (int) (hourDigitsY - hourDigitHeight + minuteDigitHeight);
+
+        // Determine the bounds of the hour and minute digits
+        hourDigitsBounds.set(
+                (int) Math.floor(clockDigitsX - hourTextWidth) - PADDING,
+                hourDigitsY + hourTextBounds.top - PADDING,
+                clockDigitsX + PADDING,
+                hourDigitsY + hourTextBounds.bottom + PADDING
+        );
+        minuteDigitsBounds.set(
+                clockDigitsX - PADDING,
+                minuteDigitsY + minuteTextBounds.top - PADDING,
+                (int) Math.ceil(clockDigitsX + minuteTextWidth) + PADDING,
+                minuteDigitsY + minuteTextBounds.bottom + PADDING
+        );
+        return true;
+    }
+
+    /**
+     * Get the X coordinate the hour and minute digits are aligned to.
+     *
+     * @return The X coordinate.
+     */
+    public int getClockDigitsX() {
+        return clockDigitsX;
+    }
+
+    /**
+     * Get the X coordinate the ghost digit in front of a single hour digit is right aligned to.
+     *
+     * @return The X coordinate.
+     */
+    public float getGhostDigitX() {
+        return clockDigitsX - hourDigitWidth - hourDigitSpacing;
+    }
+
+    /**
+     * Get the baseline of the hour digits.
+     *
+     * @return The Y coordinate of the baseline.
+     */
+    public int getHourDigitsY() {
+        return hourDigitsY;
+    }
+
+    /**
+     * Get the baseline of the minute digits.
+     *
+     * @return The Y coordinate of the baseline.
+     */
+    public int getMinuteDigitsY() {
+        return minuteDigitsY;
+    }
+
+    /**
+     * Get the bounds of the hour digits on the face, including padding.
+     *
+     * @return The hour digit bounds.
+     */
+    public Rect getHourDigitsBounds() {
+        return hourDigitsBounds;
+    }
+
+    /**
+     * Get the bounds of the minute digits on the face, including padding.
+     *
+     * @return The minute digit bounds.
+     */
+    public Rect getMinuteDigitsBounds() {
+        return minuteDigitsBounds;
+    }
+}
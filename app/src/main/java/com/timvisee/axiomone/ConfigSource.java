@@ -0,0 +1,39 @@
+package com.timvisee.axiomone;
+
+import org.json.JSONObject;
+
+/**
+ * Source of the face configuration pushed by the companion app.
+ *
+ * A source delivers the complete configuration each time it changes, as a JSON object of which
+ * the keys are the {@link Theme} parameters and the {@link ConfigSync#KEY_FRAME_RATE} limit. The
+ * listener is called on the main thread.
+ */
+public interface ConfigSource {
+
+    /**
+     * Listener for configuration changes.
+     */
+    interface Listener {
+
+        /**
+         * Called when a configuration is received.
+         *
+         * @param config The complete configuration.
+         */
+        void onConfigReceived(JSONObject config);
+    }
+
+    /**
+     * Start delivering configurations to the given listener, starting with the current
+     * configuration if there is one.
+     *
+     * @param listener The listener.
+     */
+    void start(Listener listener);
+
+    /**
+     * Stop delivering configurations.
+     */
+    void stop();
+}
@@ -0,0 +1,271 @@
+package com.timvisee.axiomone;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Applies the configurations received from a {@link ConfigSource}.
+ *
+ * Configurations are debounced: a configuration is applied once no newer configuration was
+ * received for a short delay, so a burst of changes while the user edits the configuration on the
+ * phone is applied once. A configuration is always applied within the maximum delay though. The
+ * applied configuration is diffed against the previous one, so the theme and the frame rate are
+ * only applied if they changed. The theme is diffed further when it's applied, so the face only
+ * rebuilds the layers of the parts the theme changed. Must be used on the thread of the scheduler.
+ */
+public class ConfigSync implements ConfigSource.Listener {
+
+    /**
+     * The configuration key of the highest frame rate of the animation, 0 for no limit.
+     */
+    public static final String KEY_FRAME_RATE = "frame_rate";
+
+    /**
+     * Target the configuration is applied to.
+     */
+    public interface Target {
+
+        /**
+         * Apply and store the given theme.
+         *
+         * @param theme The theme as JSON object, or null to use the default theme.
+         *
+         * @throws JSONException If the theme is invalid.
+         * @throws IOException If the theme couldn't be stored.
+         */
+        void applyTheme(String theme) throws JSONException, IOException;
+
+        /**
+         * Apply the highest frame rate of the animation.
+         *
+         * @param frameRate The frame rate, or 0 for no limit.
+         */
+        void applyFrameRate(int frameRate);
+
+        /**
+         * Report a configuration value that failed to apply.
+         *
+         * @param message The description of the failure.
+         * @param e The cause of the failure.
+         */
+        void reportFailure(String message, Exception e);
+    }
+
+    /**
+     * The scheduler the configuration is applied on.
+     */
+    private final Scheduler scheduler;
+
+    /**
+     * The delay after the last received configuration to apply it at, and the maximum delay after
+     * the first configuration that wasn't applied yet, in milliseconds.
+     */
+    private final long debounceDelay;
+    private final long maxDelay;
+
+    /**
+     * The target to apply the configuration to.
+     */
+    private final Target target;
+
+    /**
+     * The last received configuration that isn't applied yet, or null if there is none.
+     */
+    private JSONObject pending;
+
+    /**
+     * The uptime in milliseconds at which the first configuration that isn't applied yet was received.
+     */
+    private long pendingSince;
+
+    /**
+     * The applied theme, or null if the default theme is applied.
+     */
+    private String appliedTheme;
+
+    /**
+     * True if a theme was applied, false if the theme of the face is still used.
+     */
+    private boolean themeApplied = false;
+
+    /**
+     * The applied frame rate limit, 0 for no limit.
+     */
+    private int appliedFrameRate = 0;
+
+    /**
+     * The number of received configurations, applied configurations, configurations that didn't
+     * change anything, and configurations that failed to apply.
+     */
+    private int receivedCount = 0;
+    private int appliedCount = 0;
+    private int unchangedCount = 0;
+    private int failedCount = 0;
+
+    /**
+     * The runnable that applies the pending configuration.
+     */
+    private final Runnable applyRunnable = new Runnable() {
+        @Override
+        public void run() {
+            apply();
+        }
+    };
+
+    /**
+     * Constructor.
+     *
+     * @param scheduler The scheduler to apply the configuration on.
+     * @param debounceDelay The delay after the last received configuration to apply it at, in milliseconds.
+     * @param maxDelay The maximum delay to apply a configuration at, in milliseconds.
+     * @param target The target to apply the configuration to.
+     */
+    public ConfigSync(Scheduler scheduler, long debounceDelay, long maxDelay, Target target) {
+        this.scheduler = scheduler;
+        this.debounceDelay = debounceDelay;
+        this.maxDelay = maxDelay;
+        this.target = target;
+    }
+
+    @Override
+    public void onConfigReceived(JSONObject config) {
+        receivedCount++;
+
+        // Replace the pending configuration, each configuration is complete
+        long now = scheduler.uptimeMillis();
+        if(pending == null)
+            pendingSince = now;
+        pending = config;
+
+        // Postpone applying it until no configuration was received for a while
+        scheduler.remove(applyRunnable);
+        scheduler.postDelayed(applyRunnable, Math.min(now + debounceDelay, pendingSince + maxDelay) - now);
+    }
+
+    /**
+     * Apply the pending configuration, only applying the values that changed.
+     * The theme and the frame rate are applied independently, so an invalid theme doesn't keep a
+     * valid frame rate from being applied.
+     */
+    private void apply() {
+        JSONObject config = pending;
+        pending = null;
+        if(config == null)
+            return;
+
+        // Apply each value, a configuration changed something if any value changed
+        boolean themeChanged = applyTheme(config);
+        boolean frameRateChanged = applyFrameRate(config);
+        if(themeChanged || frameRateChanged)
+            appliedCount++;
+        else
+            unchangedCount++;
+    }
+
+    /**
+     * Apply the theme of the given configuration if it changed.
+     * A theme that fails to apply is counted as failure.
+     *
+     * @param config The configuration.
+     *
+     * @return True if the theme was applied, false if it didn't change or failed to apply.
+     */
+    private boolean applyTheme(JSONObject config) {
+        try {
+            String theme = getTheme(config);
+            if(themeApplied && (theme == null ? appliedTheme == null : theme.equals(appliedTheme)))
+                return false;
+            target.applyTheme(theme);
+            appliedTheme = theme;
+            themeApplied = true;
+            return true;
+        } catch(JSONException e) {
+            target.reportFailure("Invalid theme in the configuration", e);
+        } catch(IllegalArgumentException e) {
+            target.reportFailure("Invalid color in the configuration", e);
+        } catch(IOException e) {
+            target.reportFailure("Failed to store the theme of the configuration", e);
+        }
+        failedCount++;
+        return false;
+    }
+
+    /**
+     * Apply the frame rate limit of the given configuration if it changed.
+     *
+     * @param config The configuration.
+     *
+     * @return True if the frame rate was applied, false if it didn't change.
+     */
+    private boolean applyFrameRate(JSONObject config) {
+        int frameRate = Math.max(0, config.optInt(KEY_FRAME_RATE, 0));
+        if(frameRate == appliedFrameRate)
+            return false;
+        target.applyFrameRate(frameRate);
+        appliedFrameRate = frameRate;
+        return true;
+    }
+
+    /**
+     * Get the theme of the given configuration, with its keys in a fixed order so themes can be
+     * compared as text.
+     *
+     * @param config The configuration.
+     *
+     * @return The theme as JSON object, or null if the configuration doesn't override the theme.
+     *
+     * @throws JSONException If a value is invalid.
+     */
+    private static String getTheme(JSONObject config) throws JSONException {
+        Map<String, Object> values = new TreeMap<String, Object>();
+        Iterator<String> keys = config.keys();
+        while(keys.hasNext()) {
+            String key = keys.next();
+            if(Theme.isKey(key))
+                values.put(key, config.get(key));
+        }
+        if(values.isEmpty())
+            return null;
+
+        JSONObject theme = new JSONObject();
+        for(Map.Entry<String, Object> value : values.entrySet())
+            theme.put(value.getKey(), value.getValue());
+        return theme.toString();
+    }
+
+    /**
+     * Cancel applying the pending configuration.
+     */
+    public void cancel() {
+        scheduler.remove(applyRunnable);
+        pending = null;
+    }
+
+    /**
+     * Get the applied frame rate limit.
+     *
+     * @return The frame rate, or 0 for no limit.
+     */
+    public int getFrameRate() {
+        return appliedFrameRate;
+    }
+
+    /**
+     * Dump the state of the synchronization in a human readable format.
+     *
+     * @param writer The writer to dump to.
+     * @param prefix The prefix of each line.
+     */
+    public void dump(PrintWriter writer, String prefix) {
+        writer.println(prefix + "Config sync: " + receivedCount + " received, " + appliedCount + " applied, "
+                + unchangedCount + " unchanged, " + failedCount + " failed" + (pending != null ? ", pending" : ""));
+        writer.println(prefix + "  Theme: " + (themeApplied ? (appliedTheme != null ? appliedTheme : "default") : "not synced")
+                + ", frame rate limit: " + (appliedFrameRate > 0 ? appliedFrameRate : "none"));
+    }
+}
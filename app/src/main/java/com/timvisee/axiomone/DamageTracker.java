@@ -0,0 +1,141 @@
+package com.timvisee.axiomone;
+
+import android.graphics.Rect;
+
+/**
+ * Damage tracker, which determines the region of the face that has to be redrawn for a frame.
+ *
+ * Only the damage since the previous frame is redrawn. The surface must be locked for exactly that
+ * region, so the surface copies the rest of the previous frame into the new buffer, or grows the
+ * region if it can't. A frame drawn into a fully locked surface must fully redraw the face.
+ */
+public class DamageTracker {
+
+    /**
+     * The damage that is collected for the current frame.
+     */
+    private final Rect frameDamage = new Rect();
+
+    /**
+     * The region to redraw for the current frame.
+     */
+    private final Rect redrawRegion = new Rect();
+
+    /**
+     * True if the next frame has to be fully redrawn.
+     */
+    private boolean fullRedraw = true;
+
+    /**
+     * The total number of pixels that were touched, and the number of frames that were drawn.
+     */
+    private long totalPixels = 0;
+    private long totalFrames = 0;
+
+    /**
+     * The total number of pixels a full redraw would have touched for the drawn frames.
+     */
+    private long totalFullPixels = 0;
+
+    /**
+     * Force the whole face to be redrawn in the next frame.
+     */
+    public void invalidateAll() {
+        fullRedraw = true;
+    }
+
+    /**
+     * Mark the given region as damaged for the current frame.
+     *
+     * @param left The left of the region.
+     * @param top The top of the region.
+     * @param right The right of the region.
+     * @param bottom The bottom of the region.
+     */
+    public void damage(int left, int top, int right, int bottom) {
+        frameDamage.union(left, top, right, bottom);
+    }
+
+    /**
+     * Mark the bounding box of the given points as damaged for the current frame.
+     *
+     * @param coords The X and Y coordinates of the points.
+     * @param offset The index of the first coordinate to include.
+     * @param count The number of coordinates to include, twice the number of points.
+     * @param margin The margin to add around the bounding box, for anti-aliasing and line widths.
+     */
+    public void damagePoints(float[] coords, int offset, int count, float margin) {
+        // Determine the bounding box of the points
+        float left = coords[offset], top = coords[offset + 1], right = left, bottom = top;
+        for(int i = offset + 2; i < offset + count; i += 2) {
+            left = Math.min(left, coords[i]);
+            top = Math.min(top, coords[i + 1]);
+            right = Math.max(right, coords[i]);
+            bottom = Math.max(bottom, coords[i + 1]);
+        }
+
+        // Damage the bounding box, rounded outwards
+        damage(
+                (int) Math.floor(left - margin), (int) Math.floor(top - margin),
+                (int) Math.ceil(right + margin), (int) Math.ceil(bottom + margin)
+        );
+    }
+
+    /**
+     * Determine the region to redraw for the current frame, and start collecting the damage for
+     * the next frame.
+     *
+     * @param bounds The bounds of the face.
+     *
+     * @return The region to redraw, which may be empty if nothing changed. The returned instance
+     *         is reused for each frame.
+     */
+    public Rect nextFrame(Rect bounds) {
+        // Determine the region to redraw, the whole face or the damage since the previous frame
+        if(fullRedraw) {
+            fullRedraw = false;
+            redrawRegion.set(bounds);
+        } else {
+            redrawRegion.set(frameDamage);
+            if(!redrawRegion.intersect(bounds))
+                redrawRegion.setEmpty();
+        }
+
+        // Start collecting the damage of the next frame
+        frameDamage.setEmpty();
+
+        // Update the statistics
+        totalPixels += (long) redrawRegion.width() * redrawRegion.height();
+        totalFullPixels += (long) bounds.width() * bounds.height();
+        totalFrames++;
+
+        return redrawRegion;
+    }
+
+    /**
+     * Get the average number of pixels that were touched each frame.
+     *
+     * @return The average number of pixels.
+     */
+    public long getAveragePixels() {
+        return totalFrames > 0 ? totalPixels / totalFrames : 0;
+    }
+
+    /**
+     * Get the ratio of touched pixels, compared to fully redrawing each frame.
+     *
+     * @return The ratio, from 0 to 1.
+     */
+    public float getPixelRatio() {
+        return totalFullPixels > 0 ? (float) totalPixels / totalFullPixels : 0.0f;
+    }
+
+    /**
+     * Reset the pixel statistics.
+     */
+    public void resetStatistics() {
+        totalPixels = 0;
+        totalFullPixels = 0;
+        totalFrames = 0;
+    }
+}
@@ -0,0 +1,137 @@
+package com.timvisee.axiomone;
+
+import android.content.Context;
+import android.net.Uri;
+import android.os.Bundle;
+import android.util.Log;
+
+import com.google.android.gms.common.ConnectionResult;
+import com.google.android.gms.common.api.GoogleApiClient;
+import com.google.android.gms.common.api.ResultCallback;
+import com.google.android.gms.wearable.DataApi;
+import com.google.android.gms.wearable.DataEvent;
+import com.google.android.gms.wearable.DataEventBuffer;
+import com.google.android.gms.wearable.DataItem;
+import com.google.android.gms.wearable.DataItemBuffer;
+import com.google.android.gms.wearable.DataMap;
+import com.google.android.gms.wearable.DataMapItem;
+import com.google.android.gms.wearable.PutDataRequest;
+import com.google.android.gms.wearable.Wearable;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Configuration source backed by the Wearable Data Layer.
+ *
+ * The companion app puts the configuration as a data item at {@link #CONFIG_PATH}, of which the
+ * data map holds the configuration values. Colors are color strings, other values are numbers. The
+ * current item is read once connected, after which changes to it are delivered.
+ */
+public class DataLayerConfigSource implements ConfigSource, DataApi.DataListener,
+        GoogleApiClient.ConnectionCallbacks, GoogleApiClient.OnConnectionFailedListener {
+
+    /**
+     * The log tag.
+     */
+    private static final String TAG = "AxiomOneFace";
+
+    /**
+     * The path of the configuration data item.
+     */
+    public static final String CONFIG_PATH = "/axiomone/config";
+
+    /**
+     * The client of the Data Layer.
+     */
+    private final GoogleApiClient client;
+
+    /**
+     * The listener to deliver configurations to, or null if stopped.
+     */
+    private Listener listener;
+
+    /**
+     * Constructor.
+     *
+     * @param context The context to connect to the Data Layer with.
+     */
+    public DataLayerConfigSource(Context context) {
+        client = new GoogleApiClient.Builder(context)
+                .addApi(Wearable.API)
+                .addConnectionCallbacks(this)
+                .addOnConnectionFailedListener(this)
+                .build();
+    }
+
+    @Override
+    public void start(Listener listener) {
+        this.listener = listener;
+        client.connect();
+    }
+
+    @Override
+    public void stop() {
+        listener = null;
+        if(client.isConnected())
+            Wearable.DataApi.removeListener(client, this);
+        client.disconnect();
+    }
+
+    @Override
+    public void onConnected(Bundle connectionHint) {
+        // Listen for changes, and deliver the current configuration
+        Wearable.DataApi.addListener(client, this);
+        Uri uri = new Uri.Builder().scheme(PutDataRequest.WEAR_URI_SCHEME).path(CONFIG_PATH).build();
+        Wearable.DataApi.getDataItems(client, uri).setResultCallback(new ResultCallback<DataItemBuffer>() {
+            @Override
+            public void onResult(DataItemBuffer items) {
+                try {
+                    for(DataItem item : items)
+                        deliver(item);
+                } finally {
+                    items.release();
+                }
+            }
+        });
+    }
+
+    @Override
+    public void onConnectionSuspended(int cause) {
+        // The client reconnects by itself, after which the current configuration is read again
+    }
+
+    @Override
+    public void onConnectionFailed(ConnectionResult result) {
+        Log.w(TAG, "Failed to connect to the Data Layer, error " + result.getErrorCode());
+    }
+
+    @Override
+    public void onDataChanged(DataEventBuffer events) {
+        for(DataEvent event : events)
+            if(event.getType() == DataEvent.TYPE_CHANGED && CONFIG_PATH.equals(event.getDataItem().getUri().getPath()))
+                deliver(event.getDataItem());
+    }
+
+    /**
+     * Deliver the configuration of the given data item to the listener.
+     *
+     * @param item The configuration data item.
+     */
+    private void deliver(DataItem item) {
+        if(listener == null)
+            return;
+
+        // Convert the data map to a JSON object
+        DataMap map = DataMapItem.fromDataItem(item).getDataMap();
+        JSONObject config = new JSONObject();
+        try {
+            for(String key : map.keySet())
+                config.put(key, map.get(key));
+        } catch(JSONException e) {
+            Log.w(TAG, "Invalid configuration value, ignoring the configuration", e);
+            return;
+        }
+        listener.onConfigReceived(config);
+    }
+}
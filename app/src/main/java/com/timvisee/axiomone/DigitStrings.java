@@ -0,0 +1,52 @@
+package com.timvisee.axiomone;
+
+/**
+ * Cached digit strings for the clock, so no strings have to be formatted while rendering.
+ */
+public final class DigitStrings {
+
+    /**
+     * The hours as text, without leading zero, indexed by the hour of the day.
+     */
+    private static final String[] HOURS = new String[24];
+
+    /**
+     * The minutes as two digit text, indexed by the minute.
+     */
+    private static final String[] MINUTES = new String[60];
+
+    static {
+        // Build the hour and minute string tables
+        for(int i = 0; i < HOURS.length; i++)
+            HOURS[i] = String.valueOf(i);
+        for(int i = 0; i < MINUTES.length; i++)
+            MINUTES[i] = (i < 10 ? "0" : "") + i;
+    }
+
+    /**
+     * Private constructor, this class can't be instantiated.
+     */
+    private DigitStrings() { }
+
+    /**
+     * Get the text for the given hour, without a leading zero.
+     *
+     * @param hour The hour of the day, 0 to 23.
+     *
+     * @return The hour text.
+     */
+    public static String hour(int hour) {
+        return HOURS[hour];
+    }
+
+    /**
+     * Get the two digit text for the given minute.
+     *
+     * @param minute The minute, 0 to 59.
+     *
+     * @return The minute text.
+     */
+    public static String minute(int minute) {
+        return MINUTES[minute];
+    }
+}
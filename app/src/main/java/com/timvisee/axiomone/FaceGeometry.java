@@ -0,0 +1,205 @@
+package com.timvisee.axiomone;
+
+/**
+ * Precomputed geometry of the watch face, for the ticks and the second gleam.
+ * All trigonometry is done up front, so no sine or cosine has to be calculated while rendering.
+ */
+public class FaceGeometry {
+
+    /**
+     * The number of ticks on the face.
+     */
+    public static final int TICK_COUNT = 60;
+
+    /**
+     * The number of steps in the gleam lookup table for each second.
+     */
+    public static final int GLEAM_STEPS_PER_SECOND = 10;
+
+    /**
+     * The total number of steps in the gleam lookup table, for a full minute.
+     */
+    private static final int GLEAM_STEPS = TICK_COUNT * GLEAM_STEPS_PER_SECOND;
+
+    /**
+     * The cosine and sine of the angle of each tick.
+     */
+    private static final float[] TICK_COS = new float[TICK_COUNT];
+    private static final float[] TICK_SIN = new float[TICK_COUNT];
+
+    /**
+     * The cosine and sine of the gleam angle for each step.
+     * The tables have one extra step, to interpolate the last step without wrapping.
+     */
+    private static final float[] GLEAM_COS = new float[GLEAM_STEPS + 1];
+    private static final float[] GLEAM_SIN = new float[GLEAM_STEPS + 1];
+
+    static {
+        // Build the tick tables, the first tick is at the top of the face
+        for(int i = 0; i < TICK_COUNT; i++) {
+            double angle = (i - 15.0) / TICK_COUNT * Math.PI * 2.0;
+            TICK_COS[i] = (float) Math.cos(angle);
+            TICK_SIN[i] = (float) Math.sin(angle);
+        }
+
+        // Build the gleam tables
+        for(int i = 0; i <= GLEAM_STEPS; i++) {
+            double angle = (i - 15.0 * GLEAM_STEPS_PER_SECOND) / GLEAM_STEPS * Math.PI * 2.0;
+            GLEAM_COS[i] = (float) Math.cos(angle);
+            GLEAM_SIN[i] = (float) Math.sin(angle);
+        }
+    }
+
+    /**
+     * The length of a small and a large tick.
+     */
+    private final float tickLengthSmall;
+    private final float tickLengthLarge;
+
+    /**
+     * The length of the second gleam.
+     */
+    private final float gleamLength;
+
+    /**
+     * The radius of the face the geometry is calculated for, or zero if it hasn't been calculated yet.
+     */
+    private float radius = 0.0f;
+
+    /**
+     * The start and end point of each tick, four coordinates for each tick.
+     */
+    private final float[] tickCoords = new float[TICK_COUNT * 4];
+
+    /**
+     * The inner and outer radius of the second gleam.
+     */
+    private float gleamRadiusInside;
+    private float gleamRadiusOutside;
+
+    /**
+     * Constructor.
+     *
+     * @param tickLengthSmall The length of a small tick.
+     * @param tickLengthLarge The length of a large tick.
+     * @param gleamLength The length of the second gleam.
+     */
+    public FaceGeometry(float tickLengthSmall, float tickLengthLarge, float gleamLength) {
+        this.tickLengthSmall = tickLengthSmall;
+        this.tickLengthLarge = tickLengthLarge;
+        this.gleamLength = gleamLength;
+    }
+
+    /**
+     * Set the radius of the face, and recalculate the geometry if it changed.
+     *
+     * @param radius The radius of the face.
+     *
+     * @return True if the geometry was recalculated, false if it was already up-to-date.
+     */
+    public boolean setRadius(float radius) {
+        // Don't recalculate if the radius didn't change
+        if(this.radius == radius)
+            return false;
+        this.radius = radius;
+
+        // Calculate the start and end point of each tick
+        for(int i = 0; i < TICK_COUNT; i++) {
+            float innerRadius = radius - (isLargeTick(i) ? tickLengthLarge : tickLengthSmall);
+            tickCoords[i * 4] = innerRadius * TICK_COS[i] + radius;
+            tickCoords[i * 4 + 1] = innerRadius * TICK_SIN[i] + radius;
+            tickCoords[i * 4 + 2] = radius * TICK_COS[i] + radius;
+            tickCoords[i * 4 + 3] = radius * TICK_SIN[i] + radius;
+        }
+
+        // Calculate the radius of the second gleam
+        gleamRadiusInside = radius - gleamLength;
+        gleamRadiusOutside = radius + 2.0f;
+        return true;
+    }
+
+    /**
+     * Get the radius of the face the geometry is calculated for.
+     *
+     * @return The radius.
+     */
+    public float getRadius() {
+        return radius;
+    }
+
+    /**
+     * Get the distance from the center of the face to the inside of the second gleam.
+     *
+     * @return The inner radius of the gleam.
+     */
+    public float getGleamRadiusInside() {
+        return gleamRadiusInside;
+    }
+
+    /**
+     * Get the distance from the center of the face to the outside of the second gleam.
+     *
+     * @return The outer radius of the gleam.
+     */
+    public float getGleamRadiusOutside() {
+        return gleamRadiusOutside;
+    }
+
+    /**
+     * Check whether the given tick is a large tick.
+     *
+     * @param tick The tick index, 0 to 59.
+     *
+     * @return True if it's a large tick, false if it's a small tick.
+     */
+    public static boolean isLargeTick(int tick) {
+        return tick % 5 == 0;
+    }
+
+    /**
+     * Get the start and end point of all ticks.
+     * The coordinates of tick {@code i} are stored at index {@code i * 4} as start X, start Y,
+     * end X and end Y. The returned array must not be modified.
+     *
+     * @return The tick coordinates.
+     */
+    public float[] getTickCoords() {
+        return tickCoords;
+    }
+
+    /**
+     * Calculate the four corners of the second gleam for the given precise second.
+     * The gleam spans one second, trailing the given second.
+     *
+     * @param secondPrecise The precise second, 0 to 60.
+     * @param out The buffer to write the corners into, as eight coordinates: inner and outer
+     *            corner of the trailing edge, followed by the outer and inner corner of the
+     *            leading edge.
+     */
+    public void getGleamCoords(float secondPrecise, float[] out) {
+        // Determine the lookup step and the interpolation fraction for the leading edge
+        float position = secondPrecise * GLEAM_STEPS_PER_SECOND;
+        int step = (int) position;
+        float fraction = position - step;
+        step %= GLEAM_STEPS;
+
+        // Determine the step of the trailing edge, one second behind
+        int trailingStep = (step - GLEAM_STEPS_PER_SECOND + GLEAM_STEPS) % GLEAM_STEPS;
+
+        // Interpolate the cosine and sine of both edges
+        float trailingCos = GLEAM_COS[trailingStep] + (GLEAM_COS[trailingStep + 1] - GLEAM_COS[trailingStep]) * fraction;
+        float trailingSin = GLEAM_SIN[trailingStep] + (GLEAM_SIN[trailingStep + 1] - GLEAM_SIN[trailingStep]) * fraction;
+        float leadingCos = GLEAM_COS[step] + (GLEAM_COS[step + 1] - GLEAM_COS[step]) * fraction;
+        float leadingSin = GLEAM_SIN[step] + (GLEAM_SIN[step + 1] - GLEAM_SIN[step]) * fraction;
+
+        // Calculate the corners
+        out[0] = gleamRadiusInside * trailingCos + radius;
+        out[1] = gleamRadiusInside * trailingSin + radius;
+        out[2] = gleamRadiusOutside * trailingCos + radius;
+        out[3] = gleamRadiusOutside * trailingSin + radius;
+        out[4] = gleamRadiusOutside * leadingCos + radius;
+        out[5] = gleamRadiusOutside * leadingSin + radius;
+        out[6] = gleamRadiusInside * leadingCos + radius;
+        out[7] = gleamRadiusInside * leadingSin + radius;
+    }
+}
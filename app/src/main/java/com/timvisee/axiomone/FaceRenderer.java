@@ -0,0 +1,59 @@
+package com.timvisee.axiomone;
+
+import android.graphics.Rect;
+
+import java.io.PrintWriter;
+
+/**
+ * Rendering backend of the interactive watch face.
+ *
+ * All backends draw the same face from a shared {@link FaceStyle} and {@link ClockLayout}, and
+ * the time of the shared time model. Each backend draws on its own target, such as a canvas or
+ * the current OpenGL surface. The caches of a renderer are released through {@link LayerCache},
+ * after which they're rebuilt the next time the face is drawn.
+ *
+ * @param <T> The type of the target the face is drawn on, {@link Void} if the backend doesn't
+ *            need one.
+ */
+public interface FaceRenderer<T> extends LayerCache {
+
+    /**
+     * Set the style and the layout of the face.
+     * Everything that depends on the style is rebuilt the next time the face is drawn.
+     *
+     * @param style The face style.
+     * @param layout The clock layout, which is updated by the owner of the renderer.
+     */
+    void setStyle(FaceStyle style, ClockLayout layout);
+
+    /**
+     * Redraw the whole face the next time it's drawn, including the clock.
+     */
+    void invalidate();
+
+    /**
+     * Draw a frame of the face.
+     * The clock layout must be up-to-date for the given bounds.
+     *
+     * @param target The target to draw on.
+     * @param bounds The bounds of the face.
+     * @param hour The hour of the day.
+     * @param minute The minute.
+     * @param secondPrecise The precise number of seconds.
+     * @param interactive True to draw the interactive elements, the ticks and the second gleam.
+     */
+    void draw(T target, Rect bounds, int hour, int minute, float secondPrecise, boolean interactive);
+
+    /**
+     * Reset the rendering statistics of the renderer.
+     */
+    void resetStatistics();
+
+    /**
+     * Dump the rendering statistics of the renderer in a human readable format.
+     *
+     * @param writer The writer to dump to.
+     * @param prefix The prefix of each line.
+     */
+    void dump(PrintWriter writer, String prefix);
+}
@@ -0,0 +1,310 @@
+package com.timvisee.axiomone;
+
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Typeface;
+
+/**
+ * The visual style of the watch face: its paints, colors and dimensions.
+ * The style is compiled from a {@link Theme} once, so rendering never has to look up the theme or
+ * the resources. The style is shared by all renderers, so every rendering backend draws the same
+ * face.
+ */
+public class FaceStyle {
+
+    /**
+     * The theme the style is compiled from.
+     */
+    private final Theme theme;
+
+    /**
+     * The background color.
+     */
+    private final int backgroundColor;
+
+    /**
+     * The text painter for the hour digits.
+     */
+    private final Paint hourPaint;
+
+    /**
+     * The text painter for the faded hour digit.
+     */
+    private final Paint hourGhostPaint;
+
+    /**
+     * The text painter for the minute digits.
+     */
+    private final Paint minutePaint;
+
+    /**
+     * The second gleam painter.
+     */
+    private final Paint gleamPaint;
+
+    /**
+     * The main and faded small tick painters.
+     */
+    private final Paint tickSmallPaint;
+    private final Paint tickSmallFadedPaint;
+
+    /**
+     * The main and faded large tick painters.
+     */
+    private final Paint tickLargePaint;
+    private final Paint tickLargeFadedPaint;
+
+    /**
+     * The length of the small and large ticks, and of the second gleam.
+     */
+    private final float tickLengthSmall;
+    private final float tickLengthLarge;
+    private final float gleamLength;
+
+    /**
+     * The horizontal offset of the digits from the center of the face.
+     */
+    private final int digitOffsetX;
+
+    /**
+     * Whether the style is sized for a round face.
+     */
+    private boolean round = false;
+
+    /**
+     * Constructor.
+     *
+     * @param theme The theme to compile the style from.
+     * @param font The typeface of the digits.
+     */
+    public FaceStyle(Theme theme, Typeface font) {
+        this.theme = theme;
+
+        // Get the background color
+        backgroundColor = theme.getColor(Theme.COLOR_BACKGROUND);
+
+        // Create the hour and minute text painters
+        Paint textPaint = new Paint();
+        textPaint.setTypeface(font);
+        textPaint.setAntiAlias(true);
+        hourPaint = new Paint(textPaint);
+        hourPaint.setColor(theme.getColor(Theme.COLOR_HOUR));
+        hourPaint.setAlpha(theme.getAlpha(Theme.ALPHA_DIGIT));
+        hourPaint.setTextAlign(Paint.Align.RIGHT);
+        hourGhostPaint = new Paint(hourPaint);
+        hourGhostPaint.setAlpha(theme.getAlpha(Theme.ALPHA_DIGIT_GHOST));
+        minutePaint = new Paint(textPaint);
+        minutePaint.setColor(theme.getColor(Theme.COLOR_MINUTE));
+        minutePaint.setAlpha(theme.getAlpha(Theme.ALPHA_DIGIT));
+        minutePaint.setTextAlign(Paint.Align.LEFT);
+
+        // Create the second gleam painter
+        gleamPaint = new Paint();
+        gleamPaint.setColor(Color.WHITE);
+        gleamPaint.setAlpha(theme.getAlpha(Theme.ALPHA_GLEAM));
+        gleamPaint.setStyle(Paint.Style.FILL);
+        gleamPaint.setAntiAlias(true);
+
+        // Create the tick painters
+        tickLargePaint = new Paint();
+        tickLargePaint.setColor(theme.getColor(Theme.COLOR_TICK_LARGE));
+        tickLargePaint.setAlpha(theme.getAlpha(Theme.ALPHA_TICK_LARGE));
+        tickLargePaint.setAntiAlias(true);
+        tickLargePaint.setStrokeWidth(theme.getDimension(Theme.DIMEN_TICK_WIDTH_LARGE));
+        tickLargeFadedPaint = new Paint(tickLargePaint);
+        tickLargeFadedPaint.setAlpha(theme.getAlpha(Theme.ALPHA_TICK_LARGE_FADED));
+        tickSmallPaint = new Paint(tickLargePaint);
+        tickSmallPaint.setColor(theme.getColor(Theme.COLOR_TICK_SMALL));
+        tickSmallPaint.setAlpha(theme.getAlpha(Theme.ALPHA_TICK_SMALL));
+        tickSmallPaint.setStrokeWidth(theme.getDimension(Theme.DIMEN_TICK_WIDTH_SMALL));
+        tickSmallFadedPaint = new Paint(tickSmallPaint);
+        tickSmallFadedPaint.setAlpha(theme.getAlpha(Theme.ALPHA_TICK_SMALL_FADED));
+
+        // Get the dimensions of the ticks, the second gleam and the digits
+        tickLengthSmall = theme.getDimension(Theme.DIMEN_TICK_LENGTH_SMALL);
+        tickLengthLarge = theme.getDimension(Theme.DIMEN_TICK_LENGTH_LARGE);
+        gleamLength = theme.getDimension(Theme.DIMEN_GLEAM_LENGTH);
+        digitOffsetX = (int) theme.getDimension(Theme.DIMEN_DIGIT_OFFSET_X);
+
+        // Size the digits for a square face until the shape of the face is known
+        setRound(false);
+    }
+
+    /**
+     * Copy constructor.
+     * The paints are copied, so the copy may be modified without affecting the given style.
+     *
+     * @param source The style to copy.
+     */
+    public FaceStyle(FaceStyle source) {
+        theme = source.theme;
+        backgroundColor = source.backgroundColor;
+        hourPaint = new Paint(source.hourPaint);
+        hourGhostPaint = new Paint(source.hourGhostPaint);
+        minutePaint = new Paint(source.minutePaint);
+        gleamPaint = new Paint(source.gleamPaint);
+        tickSmallPaint = new Paint(source.tickSmallPaint);
+        tickSmallFadedPaint = new Paint(source.tickSmallFadedPaint);
+        tickLargePaint = new Paint(source.tickLargePaint);
+        tickLargeFadedPaint = new Paint(source.tickLargeFadedPaint);
+        tickLengthSmall = source.tickLengthSmall;
+        tickLengthLarge = source.tickLengthLarge;
+        gleamLength = source.gleamLength;
+        digitOffsetX = source.digitOffsetX;
+        round = source.round;
+    }
+
+    /**
+     * Size the digits for a round or a square face.
+     *
+     * @param round True if the face is round.
+     */
+    public void setRound(boolean round) {
+        this.round = round;
+
+        // Set the font size of the hour and minute digits painters
+        float hourTextSize = theme.getDimension(round
+                ? Theme.DIMEN_HOUR_TEXT_SIZE_ROUND : Theme.DIMEN_HOUR_TEXT_SIZE);
+        float minuteTextSize = theme.getDimension(round
+                ? Theme.DIMEN_MINUTE_TEXT_SIZE_ROUND : Theme.DIMEN_MINUTE_TEXT_SIZE);
+        hourPaint.setTextSize(hourTextSize);
+        hourGhostPaint.setTextSize(hourTextSize);
+        minutePaint.setTextSize(minuteTextSize);
+    }
+
+    /**
+     * Check whether the style is sized for a round face.
+     *
+     * @return True if round, false if square.
+     */
+    public boolean isRound() {
+        return round;
+    }
+
+    /**
+     * Create the geometry of the ticks and the second gleam for this style.
+     *
+     * @return The face geometry, of which the radius must still be set.
+     */
+    public FaceGeometry createGeometry() {
+        return new FaceGeometry(tickLengthSmall, tickLengthLarge, gleamLength);
+    }
+
+    /**
+     * Check whether the small and large ticks have the same color, so the ticks can be stored as
+     * a mask that is colored when it's drawn.
+     *
+     * @return True if all ticks have the same color.
+     */
+    public boolean isSingleTickColor() {
+        return (tickSmallPaint.getColor() & 0xFFFFFF) == (tickLargePaint.getColor() & 0xFFFFFF);
+    }
+
+    /**
+     * Get the background color.
+     *
+     * @return The background color.
+     */
+    public int getBackgroundColor() {
+        return backgroundColor;
+    }
+
+    /**
+     * Get the paint of the hour digits.
+     *
+     * @return The hour paint.
+     */
+    public Paint getHourPaint() {
+        return hourPaint;
+    }
+
+    /**
+     * Get the paint of the faded hour digit, drawn in front of single hour digits.
+     *
+     * @return The hour ghost paint.
+     */
+    public Paint getHourGhostPaint() {
+        return hourGhostPaint;
+    }
+
+    /**
+     * Get the paint of the minute digits.
+     *
+     * @return The minute paint.
+     */
+    public Paint getMinutePaint() {
+        return minutePaint;
+    }
+
+    /**
+     * Get the paint of the second gleam.
+     *
+     * @return The gleam paint.
+     */
+    public Paint getGleamPaint() {
+        return gleamPaint;
+    }
+
+    /**
+     * Get the paint of the highlighted small tick.
+     *
+     * @return The small tick paint.
+     */
+    public Paint getTickSmallPaint() {
+        return tickSmallPaint;
+    }
+
+    /**
+     * Get the paint of the faded small ticks.
+     *
+     * @return The faded small tick paint.
+     */
+    public Paint getTickSmallFadedPaint() {
+        return tickSmallFadedPaint;
+    }
+
+    /**
+     * Get the paint of the highlighted large tick.
+     *
+     * @return The large tick paint.
+     */
+    public Paint getTickLargePaint() {
+        return tickLargePaint;
+    }
+
+    /**
+     * Get the paint of the faded large ticks.
+     *
+     * @return The faded large tick paint.
+     */
+    public Paint getTickLargeFadedPaint() {
+        return tickLargeFadedPaint;
+    }
+
+    /**
+     * Get the length of the small ticks.
+     *
+     * @return The length in pixels.
+     */
+    public float getTickLengthSmall() {
+        return tickLengthSmall;
+    }
+
+    /**
+     * Get the length of the large ticks.
+     *
+     * @return The length in pixels.
+     */
+    public float getTickLengthLarge() {
+        return tickLengthLarge;
+    }
+
+    /**
+     * Get the horizontal offset of the digits from the center of the face.
+     *
+     * @return The offset in pixels.
+     */
+    public int getDigitOffsetX() {
+        return digitOffsetX;
+    }
+}
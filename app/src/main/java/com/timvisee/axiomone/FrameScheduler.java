@@ -0,0 +1,233 @@
+package com.timvisee.axiomone;
+
+import android.os.Handler;
+import android.os.Looper;
+
+/**
+ * Frame scheduler, which drives the redraws of the watch face at a fixed target frame rate.
+ * Frames are aligned to the frame boundaries of the wall clock, so that each frame is rendered
+ * at the same point in a second. The boundaries are spread over each second in whole
+ * milliseconds, so a second always holds exactly the target number of frames, even if the frame
+ * interval isn't a whole number of milliseconds. The scheduler doesn't schedule any frames while
+ * it isn't running, so the watch face isn't redrawn when there's nothing to animate.
+ */
+public class FrameScheduler {
+
+    /**
+     * The frame rate to tick once each second.
+     */
+    public static final int FRAME_RATE_TICK = 1;
+
+    /**
+     * The maximum supported frame rate.
+     */
+    public static final int FRAME_RATE_MAX = 60;
+
+    /**
+     * Time source used by the scheduler to align the frames.
+     */
+    public interface Clock {
+
+        /**
+         * Get the current wall clock time.
+         *
+         * @return The current time in milliseconds.
+         */
+        long currentTimeMillis();
+    }
+
+    /**
+     * Callback that is invoked for each scheduled frame.
+     */
+    public interface Callback {
+
+        /**
+         * Called when a new frame should be rendered.
+         */
+        void onFrame();
+    }
+
+    /**
+     * The system clock, used when no other clock is given.
+     */
+    public static final Clock SYSTEM_CLOCK = new Clock() {
+        @Override
+        public long currentTimeMillis() {
+            return System.currentTimeMillis();
+        }
+    };
+
+    /**
+     * The number of milliseconds in a second.
+     */
+    private static final long SECOND_MILLIS = 1000L;
+
+    /**
+     * The scheduler the frames are scheduled on.
+     */
+    private final Scheduler scheduler;
+
+    /**
+     * The clock used to align the frames.
+     */
+    private final Clock clock;
+
+    /**
+     * The callback that is invoked for each frame.
+     */
+    private final Callback callback;
+
+    /**
+     * The runnable that is posted to the handler for each frame.
+     */
+    private final Runnable frameRunnable = new Runnable() {
+        @Override
+        public void run() {
+            // Don't render the frame if the scheduler has been stopped in the meanwhile
+            if(!running)
+                return;
+
+            // Render the frame, and schedule the next one
+            callback.onFrame();
+            scheduleNextFrame();
+        }
+    };
+
+    /**
+     * The target frame rate in frames per second.
+     */
+    private int frameRate;
+
+    /**
+     * True if the scheduler is running.
+     */
+    private boolean running = false;
+
+    /**
+     * Constructor, using the looper of the current thread and the system clock.
+     *
+     * @param frameRate The target frame rate in frames per second.
+     * @param callback The callback that is invoked for each frame.
+     */
+    public FrameScheduler(int frameRate, Callback callback) {
+        this(new HandlerScheduler(new Handler(Looper.myLooper())), SYSTEM_CLOCK, frameRate, callback);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param scheduler The scheduler to schedule the frames on.
+     * @param clock The clock used to align the frames.
+     * @param frameRate The target frame rate in frames per second.
+     * @param callback The callback that is invoked for each frame.
+     */
+    public FrameScheduler(Scheduler scheduler, Clock clock, int frameRate, Callback callback) {
+        this.scheduler = scheduler;
+        this.clock = clock;
+        this.callback = callback;
+        setFrameRate(frameRate);
+    }
+
+    /**
+     * Get the target frame rate.
+     *
+     * @return The frame rate in frames per second.
+     */
+    public int getFrameRate() {
+        return frameRate;
+    }
+
+    /**
+     * Set the target frame rate.
+     * If the scheduler is running, the next frame is rescheduled to match the new frame rate.
+     *
+     * @param frameRate The frame rate in frames per second, clamped between
+     *                  {@link #FRAME_RATE_TICK} and {@link #FRAME_RATE_MAX}.
+     */
+    public void setFrameRate(int frameRate) {
+        // Clamp the frame rate
+        this.frameRate = Math.max(FRAME_RATE_TICK, Math.min(frameRate, FRAME_RATE_MAX));
+
+        // Reschedule the next frame
+        if(running) {
+            scheduler.remove(frameRunnable);
+            scheduleNextFrame();
+        }
+    }
+
+    /**
+     * Get the mean interval between two frames.
+     *
+     * @return The frame interval in nanoseconds.
+     */
+    public long getFrameIntervalNanos() {
+        return 1000000000L / frameRate;
+    }
+
+    /**
+     * Check whether the scheduler is running.
+     *
+     * @return True if running, false if not.
+     */
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Start or stop the scheduler.
+     *
+     * @param running True to start the scheduler, false to stop it.
+     */
+    public void setRunning(boolean running) {
+        if(running)
+            start();
+        else
+            stop();
+    }
+
+    /**
+     * Start scheduling frames. Does nothing if the scheduler is already running.
+     */
+    public void start() {
+        if(running)
+            return;
+        running = true;
+        scheduleNextFrame();
+    }
+
+    /**
+     * Stop scheduling frames. A frame that was already scheduled is cancelled.
+     */
+    public void stop() {
+        if(!running)
+            return;
+        running = false;
+        scheduler.remove(frameRunnable);
+    }
+
+    /**
+     * Get the delay until the next frame boundary.
+     *
+     * @param timeMillis The current time in milliseconds.
+     *
+     * @return The delay in milliseconds, always larger than zero.
+     */
+    public long getDelayUntilNextFrame(long timeMillis) {
+        // Find the first frame of the current second after the given time, frame k of a second is
+        // at k * 1000 / frameRate milliseconds into it
+        long offset = timeMillis % SECOND_MILLIS;
+        long frame = offset * frameRate / SECOND_MILLIS + 1;
+        while(frame * SECOND_MILLIS / frameRate <= offset)
+            frame++;
+
+        // Frame frameRate of this second is the first frame of the next second
+        return frame * SECOND_MILLIS / frameRate - offset;
+    }
+
+    /**
+     * Schedule the next frame on the next frame boundary.
+     */
+    private void scheduleNextFrame() {
+        scheduler.postDelayed(frameRunnable, getDelayUntilNextFrame(clock.currentTimeMillis()));
+    }
+}
@@ -0,0 +1,258 @@
+package com.timvisee.axiomone;
+
+import java.io.PrintWriter;
+
+/**
+ * Opt-in render-time instrumentation for the watch face.
+ *
+ * The time spent in each stage of a frame is recorded into fixed-size histograms, and counters
+ * track layer rebuilds and late or dropped frames. Recording doesn't allocate, and does nothing
+ * but a single check while the statistics are disabled.
+ */
+public class FrameStats {
+
+    /**
+     * The render stages that are timed.
+     */
+    public static final int STAGE_TIME = 0;
+    public static final int STAGE_CLOCK_LAYER = 1;
+    public static final int STAGE_TICKS_LAYER = 2;
+    public static final int STAGE_GLEAM = 3;
+    public static final int STAGE_BACKGROUND = 4;
+    public static final int STAGE_COMPOSITE = 5;
+    public static final int STAGE_AMBIENT = 6;
+    public static final int STAGE_SURFACE = 7;
+    public static final int STAGE_FRAME = 8;
+
+    /**
+     * The number of render stages.
+     */
+    public static final int STAGE_COUNT = 9;
+
+    /**
+     * The names of the render stages, as shown in the dump.
+     */
+    private static final String[] STAGE_NAMES = {
+            "time", "clock layer", "ticks layer", "gleam", "background", "composite", "ambient", "surface", "frame"
+    };
+
+    /**
+     * The counters that are tracked.
+     */
+    public static final int COUNTER_FRAMES = 0;
+    public static final int COUNTER_CLOCK_REBUILDS = 1;
+    public static final int COUNTER_TICKS_REBUILDS = 2;
+    public static final int COUNTER_LATE_FRAMES = 3;
+    public static final int COUNTER_DROPPED_FRAMES = 4;
+    public static final int COUNTER_CLOCK_SWAPS = 5;
+    public static final int COUNTER_OCCLUDED_TICKS = 6;
+    public static final int COUNTER_OCCLUDED_GLEAMS = 7;
+
+    /**
+     * The number of counters.
+     */
+    public static final int COUNTER_COUNT = 8;
+
+    /**
+     * The names of the counters, as shown in the dump.
+     */
+    private static final String[] COUNTER_NAMES = {
+            "frames", "clock layer rebuilds", "ticks layer rebuilds", "late frames", "dropped frames", "clock layer swaps",
+            "occluded tick updates", "occluded gleam frames"
+    };
+
+    /**
+     * A frame is late if its interval is this factor larger than the expected frame interval.
+     */
+    private static final float LATE_FRAME_FACTOR = 1.5f;
+
+    /**
+     * True if the statistics are recorded.
+     */
+    private boolean enabled;
+
+    /**
+     * The timing histogram of each stage.
+     */
+    private final TimingHistogram[] histograms = new TimingHistogram[STAGE_COUNT];
+
+    /**
+     * The values of the counters.
+     */
+    private final long[] counters = new long[COUNTER_COUNT];
+
+    /**
+     * The time spent in each stage in the current frame, and a bit mask of the stages that ran.
+     */
+    private final long[] frameStageNanos = new long[STAGE_COUNT];
+    private int frameStages = 0;
+
+    /**
+     * The time the current frame started, and the time of the last stage mark.
+     */
+    private long frameStart = 0;
+    private long lastMark = 0;
+
+    /**
+     * The start time of the last animated frame, or zero if the interval should not be measured.
+     */
+    private long lastAnimatedFrameStart = 0;
+
+    /**
+     * The expected interval between animated frames in nanoseconds.
+     */
+    private long expectedFrameInterval = 0;
+
+    /**
+     * Constructor.
+     *
+     * @param enabled True to record the statistics.
+     */
+    public FrameStats(boolean enabled) {
+        this.enabled = enabled;
+        for(int i = 0; i < STAGE_COUNT; i++)
+            histograms[i] = new TimingHistogram();
+    }
+
+    /**
+     * Check whether the statistics are recorded.
+     *
+     * @return True if enabled, false if not.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Enable or disable recording the statistics.
+     *
+     * @param enabled True to enable, false to disable.
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+        lastAnimatedFrameStart = 0;
+    }
+
+    /**
+     * Set the expected interval between animated frames, to detect late and dropped frames.
+     *
+     * @param intervalNanos The frame interval in nanoseconds.
+     */
+    public void setExpectedFrameInterval(long intervalNanos) {
+        expectedFrameInterval = intervalNanos;
+        lastAnimatedFrameStart = 0;
+    }
+
+    /**
+     * Don't measure the interval to the next frame, for example because the animation was paused.
+     */
+    public void resetFrameInterval() {
+        lastAnimatedFrameStart = 0;
+    }
+
+    /**
+     * Mark the start of a frame.
+     */
+    public void beginFrame() {
+        if(!enabled)
+            return;
+        frameStart = System.nanoTime();
+        lastMark = frameStart;
+        frameStages = 0;
+    }
+
+    /**
+     * Mark the end of the given stage. The time since the previous mark is added to the stage.
+     *
+     * @param stage The stage that ended.
+     */
+    public void endStage(int stage) {
+        if(!enabled)
+            return;
+        long now = System.nanoTime();
+        if((frameStages & (1 << stage)) == 0)
+            frameStageNanos[stage] = 0;
+        frameStageNanos[stage] += now - lastMark;
+        frameStages |= 1 << stage;
+        lastMark = now;
+    }
+
+    /**
+     * Increase the given counter.
+     *
+     * @param counter The counter.
+     */
+    public void count(int counter) {
+        if(!enabled)
+            return;
+        counters[counter]++;
+    }
+
+    /**
+     * Mark the end of a frame, and record the timings of its stages.
+     *
+     * @param animated True if the frame is part of the animation, to detect late and dropped frames.
+     */
+    public void endFrame(boolean animated) {
+        if(!enabled)
+            return;
+
+        // Record the stages that ran, and the total frame time
+        for(int stage = 0; stage < STAGE_COUNT; stage++)
+            if((frameStages & (1 << stage)) != 0)
+                histograms[stage].record(frameStageNanos[stage]);
+        histograms[STAGE_FRAME].record(System.nanoTime() - frameStart);
+        counters[COUNTER_FRAMES]++;
+
+        // Detect late and dropped frames from the interval to the previous animated frame
+        if(animated && lastAnimatedFrameStart != 0 && expectedFrameInterval > 0) {
+            long interval = frameStart - lastAnimatedFrameStart;
+            if(interval > expectedFrameInterval * LATE_FRAME_FACTOR) {
+                counters[COUNTER_LATE_FRAMES]++;
+                counters[COUNTER_DROPPED_FRAMES] += interval / expectedFrameInterval - 1;
+            }
+        }
+        lastAnimatedFrameStart = animated ? frameStart : 0;
+    }
+
+    /**
+     * Reset all statistics.
+     */
+    public void reset() {
+        for(TimingHistogram histogram : histograms)
+            histogram.reset();
+        for(int i = 0; i < COUNTER_COUNT; i++)
+            counters[i] = 0;
+        lastAnimatedFrameStart = 0;
+    }
+
+    /**
+     * Dump the statistics in a human readable format.
+     *
+     * @param writer The writer to dump to.
+     * @param prefix The prefix of each line.
+     */
+    public void dump(PrintWriter writer, String prefix) {
+        writer.println(prefix + "Frame stats (" + (enabled ? "enabled" : "disabled") + "):");
+
+        // Dump the counters
+        for(int i = 0; i < COUNTER_COUNT; i++)
+            writer.println(prefix + "  " + COUNTER_NAMES[i] + ": " + counters[i]);
+
+        // Dump the stage timings in microseconds
+        writer.println(String.format("%s  %-12s %8s %8s %8s %8s %8s %8s", prefix, "stage (us)", "count", "mean", "p50", "p95", "p99", "max"));
+        for(int stage = 0; stage < STAGE_COUNT; stage++) {
+            TimingHistogram histogram = histograms[stage];
+            writer.println(String.format("%s  %-12s %8d %8d %8d %8d %8d %8d",
+                    prefix,
+                    STAGE_NAMES[stage],
+                    histogram.getCount(),
+                    histogram.getMean() / 1000,
+                    histogram.getPercentile(50) / 1000,
+                    histogram.getPercentile(95) / 1000,
+                    histogram.getPercentile(99) / 1000,
+                    histogram.getMax() / 1000
+            ));
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package com.timvisee.axiomone;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Opt-in tracer that records a fixed-size binary record for each frame and lifecycle event.
+ *
+ * The records are written into a ring buffer in a memory-mapped file, so recording doesn't
+ * allocate and doesn't make system calls. The kernel writes the file back, even if the process is
+ * killed, and the newest records overwrite the oldest once the buffer is full. The trace is read by
+ * the trace analyzer of the unit tests. This class only uses the Java runtime, so traces can also be written
+ * and replayed on a desktop JVM. The tracer must be used from a single thread.
+ *
+ * The file starts with a header of {@link #HEADER_SIZE} bytes: the magic number, the version, the
+ * record size and the capacity in records, followed by the total number of records written. Each
+ * record holds the timestamp and the duration of the event in nanoseconds, the event type and the
+ * layers that were updated. All values are big-endian.
+ */
+public class FrameTracer {
+
+    /**
+     * The magic number at the start of a trace file, "AXTR".
+     */
+    public static final int MAGIC = 0x41585452;
+
+    /**
+     * The version of the file format.
+     */
+    public static final int VERSION = 1;
+
+    /**
+     * The size of the header and of each record in bytes.
+     */
+    public static final int HEADER_SIZE = 24;
+    public static final int RECORD_SIZE = 16;
+
+    /**
+     * The offsets of the values in the header.
+     */
+    public static final int HEADER_MAGIC = 0;
+    public static final int HEADER_VERSION = 4;
+    public static final int HEADER_RECORD_SIZE = 6;
+    public static final int HEADER_CAPACITY = 8;
+    public static final int HEADER_WRITTEN = 16;
+
+    /**
+     * The offsets of the values in a record.
+     */
+    public static final int RECORD_TIMESTAMP = 0;
+    public static final int RECORD_DURATION = 8;
+    public static final int RECORD_EVENT = 12;
+    public static final int RECORD_LAYERS = 14;
+
+    /**
+     * The event types.
+     */
+    public static final int EVENT_DRAW = 0;
+    public static final int EVENT_TIME_TICK = 1;
+    public static final int EVENT_VISIBLE = 2;
+    public static final int EVENT_INVISIBLE = 3;
+    public static final int EVENT_AMBIENT = 4;
+    public static final int EVENT_INTERACTIVE = 5;
+
+    /**
+     * The number of event types.
+     */
+    public static final int EVENT_COUNT = 6;
+
+    /**
+     * The names of the event types, as shown in reports.
+     */
+    public static final String[] EVENT_NAMES = {"draw", "time tick", "visible", "invisible", "ambient", "interactive"};
+
+    /**
+     * The layer flags of a draw record: the layers that were drawn or updated, and whether any
+     * pixels were redrawn.
+     */
+    public static final int LAYER_CLOCK = 1;
+    public static final int LAYER_CLOCK_PREPARED = 1 << 1;
+    public static final int LAYER_TICK = 1 << 2;
+    public static final int LAYER_TICK_RING = 1 << 3;
+    public static final int LAYER_GLEAM = 1 << 4;
+    public static final int LAYER_AMBIENT_FRAME = 1 << 5;
+    public static final int LAYER_AMBIENT_ATLAS = 1 << 6;
+    public static final int FLAG_AMBIENT = 1 << 14;
+    public static final int FLAG_REDRAWN = 1 << 15;
+
+    /**
+     * The layers that are rebuilt as a whole, rather than updated a little each frame.
+     */
+    public static final int LAYERS_REBUILT = LAYER_CLOCK | LAYER_CLOCK_PREPARED | LAYER_TICK_RING
+            | LAYER_AMBIENT_FRAME | LAYER_AMBIENT_ATLAS;
+
+    /**
+     * The names of the layer flags by their bit, as shown in reports.
+     */
+    public static final String[] LAYER_NAMES = {
+            "clock", "prepared clock", "tick", "tick ring", "gleam", "ambient frame", "ambient atlas"
+    };
+
+    /**
+     * The mapped file.
+     */
+    private MappedByteBuffer buffer;
+
+    /**
+     * The capacity of the ring buffer in records.
+     */
+    private final int capacity;
+
+    /**
+     * The total number of records written.
+     */
+    private long written = 0;
+
+    /**
+     * Constructor, starting a new trace in the given file.
+     * An existing file is overwritten.
+     *
+     * @param file The trace file.
+     * @param capacity The capacity of the ring buffer in records.
+     *
+     * @throws IOException If the file couldn't be created or mapped.
+     */
+    public FrameTracer(File file, int capacity) throws IOException {
+        this.capacity = capacity;
+
+        // Size and map the file, the mapping stays valid after the file is closed
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        try {
+            long size = HEADER_SIZE + (long) capacity * RECORD_SIZE;
+            randomAccessFile.setLength(size);
+            buffer = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+        } finally {
+            randomAccessFile.close();
+        }
+
+        // Write the header
+        buffer.putInt(HEADER_MAGIC, MAGIC);
+        buffer.putShort(HEADER_VERSION, (short) VERSION);
+        buffer.putShort(HEADER_RECORD_SIZE, (short) RECORD_SIZE);
+        buffer.putInt(HEADER_CAPACITY, capacity);
+        buffer.putLong(HEADER_WRITTEN, 0);
+    }
+
+    /**
+     * Record an event that has no duration and didn't update any layers, at the current time.
+     *
+     * @param event The event type, one of the {@code EVENT_} constants.
+     */
+    public void record(int event) {
+        record(event, 0, System.nanoTime(), 0);
+    }
+
+    /**
+     * Record an event.
+     * The record is written before the number of written records is updated, so a reader never
+     * sees a record that is only partially written.
+     *
+     * @param event The event type, one of the {@code EVENT_} constants.
+     * @param layers The layer flags, a combination of the {@code LAYER_} and {@code FLAG_} constants.
+     * @param timestamp The time the event started at, in nanoseconds.
+     * @param duration The duration of the event in nanoseconds.
+     */
+    public void record(int event, int layers, long timestamp, long duration) {
+        if(buffer == null)
+            return;
+        int offset = HEADER_SIZE + (int) (written % capacity) * RECORD_SIZE;
+        buffer.putLong(offset + RECORD_TIMESTAMP, timestamp);
+        buffer.putInt(offset + RECORD_DURATION, (int) Math.min(duration, Integer.MAX_VALUE));
+        buffer.putShort(offset + RECORD_EVENT, (short) event);
+        buffer.putShort(offset + RECORD_LAYERS, (short) layers);
+        buffer.putLong(HEADER_WRITTEN, ++written);
+    }
+
+    /**
+     * Get the total number of records written, including those that were overwritten.
+     *
+     * @return The number of records.
+     */
+    public long getWrittenCount() {
+        return written;
+    }
+
+    /**
+     * Get the capacity of the ring buffer.
+     *
+     * @return The capacity in records.
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Write the trace back to the file, and stop recording.
+     * Events recorded after this are ignored.
+     */
+    public void close() {
+        if(buffer == null)
+            return;
+        buffer.force();
+        buffer = null;
+    }
+}
@@ -0,0 +1,817 @@
+package com.timvisee.axiomone;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.opengl.GLES20;
+import android.opengl.GLUtils;
+import android.util.Log;
+
+import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+/**
+ * OpenGL ES 2.0 renderer of the watch face.
+ *
+ * The digit glyphs, the tick sprites and the second gleam are rasterized and uploaded as
+ * textures once, and drawn as textured quads from vertex buffers. The quads of the ticks and the
+ * gleam are only uploaded when the geometry changes, and those of the digits once a minute. Each
+ * frame only the highlighted tick and the rotation of the gleam are passed to the shader as
+ * uniforms. In ambient mode the shader drops the anti-aliased edges on low-bit displays, and
+ * shifts the face each minute on displays that require burn-in protection. The face is drawn on
+ * the current OpenGL surface, so the renderer takes no target.
+ *
+ * All methods must be called on the thread that owns the OpenGL context.
+ */
+public class GlFaceRenderer implements FaceRenderer<Void> {
+
+    /**
+     * The log tag.
+     */
+    private static final String TAG = "AxiomOneFace";
+
+    /**
+     * The padding around the tick sprites, to include their anti-aliased edges.
+     */
+    private static final int TICK_PADDING = 2;
+
+    /**
+     * The maximum number of digit quads, two hour digits, a ghost digit and two minute digits.
+     */
+    private static final int MAX_DIGIT_QUADS = 5;
+
+    /**
+     * The number of floats of each vertex: the position, texture coordinate, color, highlight
+     * color and tick index.
+     */
+    private static final int VERTEX_SIZE = 2 + 2 + 4 + 4 + 1;
+
+    /**
+     * The number of vertices of each quad, drawn as two triangles.
+     */
+    private static final int VERTICES_PER_QUAD = 6;
+
+    /**
+     * The tick index of vertices that don't belong to a tick, so they're never highlighted.
+     */
+    private static final float NO_TICK = -10.0f;
+
+    /**
+     * The texture alpha from which a pixel is drawn on a low-bit ambient display.
+     */
+    private static final float LOW_BIT_ALPHA_THRESHOLD = 0.5f;
+
+    /**
+     * The vertex shader, which rotates the vertices around the center of the face, shifts them by
+     * the burn-in protection offset and selects the highlight color of the highlighted tick.
+     */
+    private static final String VERTEX_SHADER =
+            "uniform vec2 u_viewSize;\n" +
+            "uniform vec2 u_center;\n" +
+            "uniform vec2 u_rotation;\n" +
+            "uniform vec2 u_offset;\n" +
+            "uniform float u_highlightTick;\n" +
+            "attribute vec2 a_position;\n" +
+            "attribute vec2 a_texCoord;\n" +
+            "attribute vec4 a_color;\n" +
+            "attribute vec4 a_highlightColor;\n" +
+            "attribute float a_tick;\n" +
+            "varying vec2 v_texCoord;\n" +
+            "varying vec4 v_color;\n" +
+            "void main() {\n" +
+            "    vec2 p = a_position - u_center;\n" +
+            "    p = vec2(p.x * u_rotation.x - p.y * u_rotation.y, p.x * u_rotation.y + p.y * u_rotation.x) + u_center + u_offset;\n" +
+            "    gl_Position = vec4(p.x / u_viewSize.x * 2.0 - 1.0, 1.0 - p.y / u_viewSize.y * 2.0, 0.0, 1.0);\n" +
+            "    v_texCoord = a_texCoord;\n" +
+            "    v_color = abs(a_tick - u_highlightTick) < 0.5 ? a_highlightColor : a_color;\n" +
+            "}\n";
+
+    /**
+     * The fragment shader, which colors the alpha of the texture with the premultiplied color.
+     * If the alpha threshold is set, the alpha is rounded to fully transparent or opaque.
+     */
+    private static final String FRAGMENT_SHADER =
+            "precision mediump float;\n" +
+            "uniform sampler2D u_texture;\n" +
+            "uniform float u_alphaThreshold;\n" +
+            "varying vec2 v_texCoord;\n" +
+            "varying vec4 v_color;\n" +
+            "void main() {\n" +
+            "    float alpha = texture2D(u_texture, v_texCoord).a;\n" +
+            "    if(u_alphaThreshold > 0.0)\n" +
+            "        alpha = step(u_alphaThreshold, alpha);\n" +
+            "    gl_FragColor = v_color * alpha;\n" +
+            "}\n";
+
+    /**
+     * Buffer of textured quads, which is uploaded to a vertex buffer object.
+     */
+    private static class QuadBuffer {
+
+        /**
+         * The vertex data of the quads.
+         */
+        private final FloatBuffer data;
+
+        /**
+         * The number of quads in the buffer.
+         */
+        private int quadCount = 0;
+
+        /**
+         * The vertex buffer object the quads are uploaded to, or zero if it isn't created.
+         */
+        private int buffer = 0;
+
+        /**
+         * Constructor.
+         *
+         * @param maxQuads The maximum number of quads in the buffer.
+         */
+        public QuadBuffer(int maxQuads) {
+            data = ByteBuffer.allocateDirect(maxQuads * VERTICES_PER_QUAD * VERTEX_SIZE * 4)
+                    .order(ByteOrder.nativeOrder())
+                    .asFloatBuffer();
+        }
+
+        /**
+         * Remove all quads.
+         */
+        public void clear() {
+            data.clear();
+            quadCount = 0;
+        }
+
+        /**
+         * Add a quad.
+         *
+         * @param corners The four corners of the quad on the face, as X and Y coordinates.
+         *                Their texture coordinates are the top left, top right, bottom right and
+         *                bottom left of the texture rectangle.
+         * @param texLeft The left of the texture rectangle.
+         * @param texTop The top of the texture rectangle.
+         * @param texRight The right of the texture rectangle.
+         * @param texBottom The bottom of the texture rectangle.
+         * @param color The premultiplied color.
+         * @param highlightColor The premultiplied color if the quad is the highlighted tick.
+         * @param tick The tick index of the quad.
+         */
+        public void add(float[] corners, float texLeft, float texTop, float texRight, float texBottom, float[] color, float[] highlightColor, float tick) {
+            putVertex(corners[0], corners[1], texLeft, texTop, color, highlightColor, tick);
+            putVertex(corners[2], corners[3], texRight, texTop, color, highlightColor, tick);
+            putVertex(corners[4], corners[5], texRight, texBottom, color, highlightColor, tick);
+            putVertex(corners[0], corners[1], texLeft, texTop, color, highlightColor, tick);
+            putVertex(corners[4], corners[5], texRight, texBottom, color, highlightColor, tick);
+            putVertex(corners[6], corners[7], texLeft, texBottom, color, highlightColor, tick);
+            quadCount++;
+        }
+
+        /**
+         * Put a vertex in the buffer.
+         */
+        private void putVertex(float x, float y, float u, float v, float[] color, float[] highlightColor, float tick) {
+            data.put(x).put(y).put(u).put(v);
+            data.put(color);
+            data.put(highlightColor);
+            data.put(tick);
+        }
+
+        /**
+         * Upload the quads to the vertex buffer object, which is created if it doesn't exist.
+         */
+        public void upload() {
+            if(buffer == 0) {
+                int[] buffers = new int[1];
+                GLES20.glGenBuffers(1, buffers, 0);
+                buffer = buffers[0];
+            }
+            data.position(0);
+            GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, buffer);
+            GLES20.glBufferData(GLES20.GL_ARRAY_BUFFER, Math.max(quadCount, 1) * VERTICES_PER_QUAD * VERTEX_SIZE * 4, data, GLES20.GL_STATIC_DRAW);
+        }
+
+        /**
+         * Bind the vertex buffer object.
+         */
+        public void bind() {
+            GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, buffer);
+        }
+
+        /**
+         * Get the number of vertices in the buffer.
+         *
+         * @return The number of vertices.
+         */
+        public int getVertexCount() {
+            return quadCount * VERTICES_PER_QUAD;
+        }
+
+        /**
+         * Get the number of bytes of the vertex data.
+         *
+         * @return The number of bytes.
+         */
+        public int getByteCount() {
+            return data.capacity() * 4;
+        }
+
+        /**
+         * Delete the vertex buffer object.
+         *
+         * @param deleteObject True to delete the object, false if the OpenGL context was lost.
+         */
+        public void release(boolean deleteObject) {
+            if(buffer != 0 && deleteObject)
+                GLES20.glDeleteBuffers(1, new int[]{buffer}, 0);
+            buffer = 0;
+        }
+    }
+
+    /**
+     * The style of the face.
+     */
+    private FaceStyle style;
+
+    /**
+     * The layout of the clock.
+     */
+    private ClockLayout layout;
+
+    /**
+     * The precomputed geometry of the ticks and the second gleam.
+     */
+    private FaceGeometry geometry;
+
+    /**
+     * The atlas of the digit glyphs.
+     */
+    private final GlyphAtlas glyphAtlas = new GlyphAtlas();
+
+    /**
+     * The prerasterized sprite of the second gleam.
+     */
+    private final GleamSprite gleamSprite = new GleamSprite();
+
+    /**
+     * The bitmap holding the sprite of a small and of a large tick, and the width of these sprites.
+     */
+    private Bitmap tickSprites;
+    private int tickSpriteSmallWidth;
+    private int tickSpriteLargeWidth;
+
+    /**
+     * The quads of the digits, the ticks and the second gleam.
+     */
+    private final QuadBuffer digitQuads = new QuadBuffer(MAX_DIGIT_QUADS);
+    private final QuadBuffer tickQuads = new QuadBuffer(FaceGeometry.TICK_COUNT);
+    private final QuadBuffer gleamQuads = new QuadBuffer(1);
+
+    /**
+     * The textures of the glyph atlas, the tick sprites and the gleam sprite, or zero if they
+     * aren't uploaded.
+     */
+    private int glyphTexture = 0;
+    private int tickTexture = 0;
+    private int gleamTexture = 0;
+
+    /**
+     * The shader program, and the locations of its attributes and uniforms.
+     */
+    private int program = 0;
+    private int positionAttribute;
+    private int texCoordAttribute;
+    private int colorAttribute;
+    private int highlightColorAttribute;
+    private int tickAttribute;
+    private int viewSizeUniform;
+    private int centerUniform;
+    private int rotationUniform;
+    private int offsetUniform;
+    private int highlightTickUniform;
+    private int textureUniform;
+    private int alphaThresholdUniform;
+
+    /**
+     * The size of the surface the viewport is set for.
+     */
+    private int width = 0;
+    private int height = 0;
+
+    /**
+     * The maximum distance in pixels the face is shifted for burn-in protection.
+     */
+    private final int burnInShift;
+
+    /**
+     * Whether the display supports fewer bits for each color in ambient mode.
+     */
+    private boolean lowBitAmbient = false;
+
+    /**
+     * Whether the display requires burn-in protection in ambient mode.
+     */
+    private boolean burnInProtection = false;
+
+    /**
+     * True if the textures must be rasterized and uploaded again.
+     */
+    private boolean texturesInvalid = true;
+
+    /**
+     * True if the quads of the ticks and the gleam must be built again.
+     */
+    private boolean geometryInvalid = true;
+
+    /**
+     * The hour and minute, and the interactive state, the digit quads were built for.
+     */
+    private int digitsHour = -1;
+    private int digitsMinute = -1;
+    private boolean digitsInteractive = false;
+
+    /**
+     * Buffers for the corners of a quad, and for the glyph rectangles of a text, to prevent
+     * allocations while rendering.
+     */
+    private final float[] quadCorners = new float[8];
+    private final float[] glyphRects = new float[8 * 2];
+
+    /**
+     * The premultiplied colors of the quads.
+     */
+    private final float[] hourColor = new float[4];
+    private final float[] hourGhostColor = new float[4];
+    private final float[] minuteColor = new float[4];
+
+    /**
+     * The number of texture and vertex buffer uploads.
+     */
+    private int textureUploadCount = 0;
+    private int bufferUploadCount = 0;
+
+    /**
+     * Constructor.
+     *
+     * @param burnInShift The maximum distance in pixels the face is shifted for burn-in protection.
+     */
+    public GlFaceRenderer(int burnInShift) {
+        this.burnInShift = burnInShift;
+    }
+
+    @Override
+    public void setStyle(FaceStyle style, ClockLayout layout) {
+        this.style = style;
+        this.layout = layout;
+        geometry = style.createGeometry();
+        gleamSprite.setPaint(style.getGleamPaint());
+
+        // Rebuild the textures and quads with the new style
+        premultiply(style.getHourPaint().getColor(), hourColor);
+        premultiply(style.getHourGhostPaint().getColor(), hourGhostColor);
+        premultiply(style.getMinutePaint().getColor(), minuteColor);
+        texturesInvalid = true;
+        invalidate();
+    }
+
+    @Override
+    public void invalidate() {
+        geometryInvalid = true;
+        digitsHour = -1;
+    }
+
+    /**
+     * Set whether the display supports fewer bits for each color in ambient mode.
+     * The anti-aliased edges are dropped in ambient mode if it does.
+     *
+     * @param lowBitAmbient True if the display supports low-bit ambient mode.
+     */
+    public void setLowBitAmbient(boolean lowBitAmbient) {
+        this.lowBitAmbient = lowBitAmbient;
+    }
+
+    /**
+     * Set whether the display requires burn-in protection in ambient mode.
+     *
+     * @param burnInProtection True if the face should be shifted each minute.
+     */
+    public void setBurnInProtection(boolean burnInProtection) {
+        this.burnInProtection = burnInProtection;
+    }
+
+    /**
+     * Create the shader program in the current OpenGL context.
+     * This must be called each time the context is created, all objects of a previous context
+     * are dropped and recreated when the face is drawn.
+     */
+    public void onContextCreated() {
+        // Forget the objects of the previous context
+        program = 0;
+        releaseObjects(false);
+
+        // Compile and link the shader program
+        program = GLES20.glCreateProgram();
+        GLES20.glAttachShader(program, compileShader(GLES20.GL_VERTEX_SHADER, VERTEX_SHADER));
+        GLES20.glAttachShader(program, compileShader(GLES20.GL_FRAGMENT_SHADER, FRAGMENT_SHADER));
+        GLES20.glLinkProgram(program);
+        int[] status = new int[1];
+        GLES20.glGetProgramiv(program, GLES20.GL_LINK_STATUS, status, 0);
+        if(status[0] != GLES20.GL_TRUE)
+            Log.e(TAG, "Failed to link the shader program: " + GLES20.glGetProgramInfoLog(program));
+
+        // Get the locations of the attributes and uniforms
+        positionAttribute = GLES20.glGetAttribLocation(program, "a_position");
+        texCoordAttribute = GLES20.glGetAttribLocation(program, "a_texCoord");
+        colorAttribute = GLES20.glGetAttribLocation(program, "a_color");
+        highlightColorAttribute = GLES20.glGetAttribLocation(program, "a_highlightColor");
+        tickAttribute = GLES20.glGetAttribLocation(program, "a_tick");
+        viewSizeUniform = GLES20.glGetUniformLocation(program, "u_viewSize");
+        centerUniform = GLES20.glGetUniformLocation(program, "u_center");
+        rotationUniform = GLES20.glGetUniformLocation(program, "u_rotation");
+        offsetUniform = GLES20.glGetUniformLocation(program, "u_offset");
+        highlightTickUniform = GLES20.glGetUniformLocation(program, "u_highlightTick");
+        textureUniform = GLES20.glGetUniformLocation(program, "u_texture");
+        alphaThresholdUniform = GLES20.glGetUniformLocation(program, "u_alphaThreshold");
+
+        // Set the viewport again the next time the face is drawn
+        width = 0;
+        height = 0;
+    }
+
+    /**
+     * Draw a frame of the face on the surface of the current OpenGL context.
+     * The viewport is set to the bounds if their size changed.
+     */
+    @Override
+    public void draw(Void target, Rect bounds, int hour, int minute, float secondPrecise, boolean interactive) {
+        // Fit the viewport to the surface, and build the geometry for its size
+        if(bounds.width() != width || bounds.height() != height) {
+            width = bounds.width();
+            height = bounds.height();
+            GLES20.glViewport(0, 0, width, height);
+            invalidate();
+        }
+
+        // Upload the textures and quads that aren't up-to-date
+        if(texturesInvalid || glyphTexture == 0)
+            uploadTextures();
+        if(geometryInvalid)
+            buildGeometry();
+        if(digitsHour != hour || digitsMinute != minute || digitsInteractive != interactive)
+            buildDigits(hour, minute, interactive);
+
+        // Clear the surface with the background color
+        int background = style.getBackgroundColor();
+        GLES20.glClearColor(
+                ((background >> 16) & 0xFF) / 255.0f,
+                ((background >> 8) & 0xFF) / 255.0f,
+                (background & 0xFF) / 255.0f,
+                1.0f
+        );
+        GLES20.glClear(GLES20.GL_COLOR_BUFFER_BIT);
+
+        // Set up the program, for premultiplied colors
+        GLES20.glUseProgram(program);
+        GLES20.glEnable(GLES20.GL_BLEND);
+        GLES20.glBlendFunc(GLES20.GL_ONE, GLES20.GL_ONE_MINUS_SRC_ALPHA);
+        GLES20.glUniform2f(viewSizeUniform, width, height);
+        GLES20.glUniform2f(centerUniform, geometry.getRadius(), geometry.getRadius());
+        GLES20.glUniform1i(textureUniform, 0);
+        GLES20.glActiveTexture(GLES20.GL_TEXTURE0);
+
+        // Drop the anti-aliased edges and shift the face in ambient mode, if the display needs it
+        GLES20.glUniform1f(alphaThresholdUniform, lowBitAmbient && !interactive ? LOW_BIT_ALPHA_THRESHOLD : 0.0f);
+        if(burnInProtection && !interactive)
+            GLES20.glUniform2f(offsetUniform,
+                    AmbientRenderer.getBurnInShiftX(hour, minute, burnInShift),
+                    AmbientRenderer.getBurnInShiftY(hour, minute, burnInShift));
+        else
+            GLES20.glUniform2f(offsetUniform, 0.0f, 0.0f);
+
+        // Draw the second gleam, rotated to its position
+        if(interactive) {
+            double angle = Math.toRadians((secondPrecise - 0.5f) * 360.0f / FaceGeometry.TICK_COUNT);
+            GLES20.glUniform2f(rotationUniform, (float) Math.cos(angle), (float) Math.sin(angle));
+            GLES20.glUniform1f(highlightTickUniform, NO_TICK);
+            drawQuads(gleamQuads, gleamTexture);
+        }
+
+        // Draw the digits
+        GLES20.glUniform2f(rotationUniform, 1.0f, 0.0f);
+        GLES20.glUniform1f(highlightTickUniform, NO_TICK);
+        drawQuads(digitQuads, glyphTexture);
+
+        // Draw the ticks, with the current tick highlighted
+        if(interactive) {
+            GLES20.glUniform1f(highlightTickUniform, (int) (secondPrecise + 0.5f) % FaceGeometry.TICK_COUNT);
+            drawQuads(tickQuads, tickTexture);
+        }
+    }
+
+    /**
+     * Draw the quads of the given buffer with the given texture.
+     *
+     * @param quads The quads.
+     * @param texture The texture.
+     */
+    private void drawQuads(QuadBuffer quads, int texture) {
+        if(quads.getVertexCount() == 0)
+            return;
+
+        // Bind the texture and vertex buffer, and point the attributes into the interleaved vertices
+        int stride = VERTEX_SIZE * 4;
+        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, texture);
+        quads.bind();
+        GLES20.glEnableVertexAttribArray(positionAttribute);
+        GLES20.glVertexAttribPointer(positionAttribute, 2, GLES20.GL_FLOAT, false, stride, 0);
+        GLES20.glEnableVertexAttribArray(texCoordAttribute);
+        GLES20.glVertexAttribPointer(texCoordAttribute, 2, GLES20.GL_FLOAT, false, stride, 2 * 4);
+        GLES20.glEnableVertexAttribArray(colorAttribute);
+        GLES20.glVertexAttribPointer(colorAttribute, 4, GLES20.GL_FLOAT, false, stride, 4 * 4);
+        GLES20.glEnableVertexAttribArray(highlightColorAttribute);
+        GLES20.glVertexAttribPointer(highlightColorAttribute, 4, GLES20.GL_FLOAT, false, stride, 8 * 4);
+        GLES20.glEnableVertexAttribArray(tickAttribute);
+        GLES20.glVertexAttribPointer(tickAttribute, 1, GLES20.GL_FLOAT, false, stride, 12 * 4);
+
+        GLES20.glDrawArrays(GLES20.GL_TRIANGLES, 0, quads.getVertexCount());
+    }
+
+    /**
+     * Rasterize the glyph atlas and the tick sprites, and upload them as textures.
+     * The gleam sprite is uploaded with the geometry, as it depends on the face radius.
+     */
+    private void uploadTextures() {
+        // Rasterize the glyphs and upload them
+        glyphAtlas.build(style.getHourPaint(), style.getMinutePaint());
+        glyphTexture = uploadTexture(glyphTexture, glyphAtlas.getBitmap());
+
+        // Rasterize a small and a large tick next to each other, as opaque vertical lines
+        Paint smallPaint = new Paint(style.getTickSmallPaint());
+        Paint largePaint = new Paint(style.getTickLargePaint());
+        smallPaint.setAlpha(255);
+        largePaint.setAlpha(255);
+        float smallLength = style.getTickLengthSmall();
+        float largeLength = style.getTickLengthLarge();
+        tickSpriteSmallWidth = (int) Math.ceil(smallPaint.getStrokeWidth()) + TICK_PADDING * 2;
+        tickSpriteLargeWidth = (int) Math.ceil(largePaint.getStrokeWidth()) + TICK_PADDING * 2;
+        int spriteHeight = (int) Math.ceil(Math.max(smallLength, largeLength)) + TICK_PADDING * 2;
+        if(tickSprites != null)
+            tickSprites.recycle();
+        tickSprites = Bitmap.createBitmap(tickSpriteSmallWidth + tickSpriteLargeWidth, spriteHeight, Bitmap.Config.ALPHA_8);
+        Canvas canvas = new Canvas(tickSprites);
+        canvas.drawLine(tickSpriteSmallWidth / 2.0f, TICK_PADDING, tickSpriteSmallWidth / 2.0f, TICK_PADDING + smallLength, smallPaint);
+        canvas.drawLine(tickSpriteSmallWidth + tickSpriteLargeWidth / 2.0f, TICK_PADDING, tickSpriteSmallWidth + tickSpriteLargeWidth / 2.0f, TICK_PADDING + largeLength, largePaint);
+        tickTexture = uploadTexture(tickTexture, tickSprites);
+
+        texturesInvalid = false;
+        geometryInvalid = true;
+        digitsHour = -1;
+    }
+
+    /**
+     * Build and upload the quads of the ticks and the second gleam for the surface size.
+     */
+    private void buildGeometry() {
+        // Update the geometry for the surface radius, and rasterize and upload the gleam sprite
+        geometry.setRadius(width / 2.0f);
+        gleamSprite.setGeometry(geometry);
+        Layer gleamLayer = gleamSprite.getLayer();
+        gleamTexture = uploadTexture(gleamTexture, gleamLayer.getBitmap());
+
+        // Build the quad of the gleam at the top of the face, it's rotated by the shader
+        Rect gleamBounds = gleamLayer.getBounds();
+        float[] gleamColor = new float[4];
+        premultiply(style.getGleamPaint().getColor(), gleamColor);
+        setRectCorners(gleamBounds.left, gleamBounds.top, gleamBounds.right, gleamBounds.bottom);
+        gleamQuads.clear();
+        gleamQuads.add(quadCorners, 0.0f, 0.0f, 1.0f, 1.0f, gleamColor, gleamColor, NO_TICK);
+        gleamQuads.upload();
+
+        // Build a quad along each tick, textured with the small or large tick sprite
+        float[] smallColor = new float[4];
+        float[] smallHighlightColor = new float[4];
+        float[] largeColor = new float[4];
+        float[] largeHighlightColor = new float[4];
+        premultiply(style.getTickSmallFadedPaint().getColor(), smallColor);
+        premultiply(style.getTickSmallPaint().getColor(), smallHighlightColor);
+        premultiply(style.getTickLargeFadedPaint().getColor(), largeColor);
+        premultiply(style.getTickLargePaint().getColor(), largeHighlightColor);
+        float spritesWidth = tickSprites.getWidth();
+        float spriteHeight = tickSprites.getHeight();
+        float[] tickCoords = geometry.getTickCoords();
+        tickQuads.clear();
+        for(int i = 0; i < FaceGeometry.TICK_COUNT; i++) {
+            boolean largeTick = FaceGeometry.isLargeTick(i);
+            int spriteLeft = largeTick ? tickSpriteSmallWidth : 0;
+            int spriteWidth = largeTick ? tickSpriteLargeWidth : tickSpriteSmallWidth;
+
+            // Determine the direction along the tick from the inside out, and its normal
+            float startX = tickCoords[i * 4], startY = tickCoords[i * 4 + 1];
+            float dx = tickCoords[i * 4 + 2] - startX, dy = tickCoords[i * 4 + 3] - startY;
+            float length = (float) Math.sqrt(dx * dx + dy * dy);
+            dx /= length;
+            dy /= length;
+            float nx = -dy * spriteWidth / 2.0f, ny = dx * spriteWidth / 2.0f;
+
+            // Map the sprite onto the tick, its top is at the inside of the tick
+            float beforeX = startX - dx * TICK_PADDING, beforeY = startY - dy * TICK_PADDING;
+            float afterX = startX + dx * (spriteHeight - TICK_PADDING), afterY = startY + dy * (spriteHeight - TICK_PADDING);
+            quadCorners[0] = beforeX - nx;
+            quadCorners[1] = beforeY - ny;
+            quadCorners[2] = beforeX + nx;
+            quadCorners[3] = beforeY + ny;
+            quadCorners[4] = afterX + nx;
+            quadCorners[5] = afterY + ny;
+            quadCorners[6] = afterX - nx;
+            quadCorners[7] = afterY - ny;
+            tickQuads.add(
+                    quadCorners,
+                    spriteLeft / spritesWidth, 0.0f, (spriteLeft + spriteWidth) / spritesWidth, 1.0f,
+                    largeTick ? largeColor : smallColor,
+                    largeTick ? largeHighlightColor : smallHighlightColor,
+                    i
+            );
+        }
+        tickQuads.upload();
+        bufferUploadCount += 2;
+
+        geometryInvalid = false;
+    }
+
+    /**
+     * Build and upload the quads of the digits for the given time.
+     *
+     * @param hour The hour of the day.
+     * @param minute The minute.
+     * @param interactive True to draw the ghost digit in front of single hour digits.
+     */
+    private void buildDigits(int hour, int minute, boolean interactive) {
+        digitQuads.clear();
+        addText(GlyphAtlas.STYLE_HOUR, DigitStrings.hour(hour), layout.getClockDigitsX(), layout.getHourDigitsY(), true, hourColor);
+        if(interactive && hour < 10)
+            addText(GlyphAtlas.STYLE_HOUR, "0", layout.getGhostDigitX(), layout.getHourDigitsY(), true, hourGhostColor);
+        addText(GlyphAtlas.STYLE_MINUTE, DigitStrings.minute(minute), layout.getClockDigitsX(), layout.getMinuteDigitsY(), false, minuteColor);
+        digitQuads.upload();
+        bufferUploadCount++;
+
+        digitsHour = hour;
+        digitsMinute = minute;
+        digitsInteractive = interactive;
+    }
+
+    /**
+     * Add the quads of the glyphs of the given text to the digit quads.
+     *
+     * @param style The text style.
+     * @param text The digits.
+     * @param x The X coordinate to align the text to.
+     * @param baseline The Y coordinate of the baseline.
+     * @param alignRight True to right align the text.
+     * @param color The premultiplied color of the text.
+     */
+    private void addText(int style, String text, float x, float baseline, boolean alignRight, float[] color) {
+        float atlasWidth = glyphAtlas.getBitmap().getWidth();
+        float atlasHeight = glyphAtlas.getBitmap().getHeight();
+        int glyphs = glyphAtlas.layoutText(style, text, x, baseline, alignRight, glyphRects, 0);
+        for(int i = 0; i < glyphs; i++) {
+            int index = i * 8;
+            setRectCorners(glyphRects[index], glyphRects[index + 1], glyphRects[index + 2], glyphRects[index + 3]);
+            digitQuads.add(
+                    quadCorners,
+                    glyphRects[index + 4] / atlasWidth, glyphRects[index + 5] / atlasHeight,
+                    glyphRects[index + 6] / atlasWidth, glyphRects[index + 7] / atlasHeight,
+                    color, color, NO_TICK
+            );
+        }
+    }
+
+    /**
+     * Set the quad corners to the corners of the given rectangle.
+     */
+    private void setRectCorners(float left, float top, float right, float bottom) {
+        quadCorners[0] = left;
+        quadCorners[1] = top;
+        quadCorners[2] = right;
+        quadCorners[3] = top;
+        quadCorners[4] = right;
+        quadCorners[5] = bottom;
+        quadCorners[6] = left;
+        quadCorners[7] = bottom;
+    }
+
+    /**
+     * Upload the given alpha bitmap to a texture.
+     *
+     * @param texture The texture to upload to, or zero to create a texture.
+     * @param bitmap The bitmap.
+     *
+     * @return The texture.
+     */
+    private int uploadTexture(int texture, Bitmap bitmap) {
+        // Create the texture if it doesn't exist yet
+        if(texture == 0) {
+            int[] textures = new int[1];
+            GLES20.glGenTextures(1, textures, 0);
+            texture = textures[0];
+        }
+
+        // Upload the bitmap, with filtering so rotated sprites keep smooth edges
+        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, texture);
+        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MIN_FILTER, GLES20.GL_LINEAR);
+        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MAG_FILTER, GLES20.GL_LINEAR);
+        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_S, GLES20.GL_CLAMP_TO_EDGE);
+        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_T, GLES20.GL_CLAMP_TO_EDGE);
+        GLES20.glPixelStorei(GLES20.GL_UNPACK_ALIGNMENT, 1);
+        GLUtils.texImage2D(GLES20.GL_TEXTURE_2D, 0, bitmap, 0);
+        textureUploadCount++;
+        return texture;
+    }
+
+    /**
+     * Compile a shader.
+     *
+     * @param type The shader type.
+     * @param source The shader source.
+     *
+     * @return The shader.
+     */
+    private static int compileShader(int type, String source) {
+        int shader = GLES20.glCreateShader(type);
+        GLES20.glShaderSource(shader, source);
+        GLES20.glCompileShader(shader);
+        int[] status = new int[1];
+        GLES20.glGetShaderiv(shader, GLES20.GL_COMPILE_STATUS, status, 0);
+        if(status[0] != GLES20.GL_TRUE)
+            Log.e(TAG, "Failed to compile a shader: " + GLES20.glGetShaderInfoLog(shader));
+        return shader;
+    }
+
+    /**
+     * Convert the given color to premultiplied color components.
+     *
+     * @param color The color.
+     * @param out The array to write the red, green, blue and alpha components to.
+     */
+    private static void premultiply(int color, float[] out) {
+        float alpha = ((color >>> 24) & 0xFF) / 255.0f;
+        out[0] = ((color >> 16) & 0xFF) / 255.0f * alpha;
+        out[1] = ((color >> 8) & 0xFF) / 255.0f * alpha;
+        out[2] = (color & 0xFF) / 255.0f * alpha;
+        out[3] = alpha;
+    }
+
+    /**
+     * Release the textures and vertex buffer objects.
+     *
+     * @param deleteObjects True to delete the objects, false if the OpenGL context was lost.
+     */
+    private void releaseObjects(boolean deleteObjects) {
+        if(deleteObjects) {
+            int[] textures = {glyphTexture, tickTexture, gleamTexture};
+            GLES20.glDeleteTextures(textures.length, textures, 0);
+        }
+        glyphTexture = 0;
+        tickTexture = 0;
+        gleamTexture = 0;
+        digitQuads.release(deleteObjects);
+        tickQuads.release(deleteObjects);
+        gleamQuads.release(deleteObjects);
+        texturesInvalid = true;
+        invalidate();
+    }
+
+    @Override
+    public int getByteCount() {
+        return glyphAtlas.getByteCount() + gleamSprite.getByteCount()
+                + (tickSprites != null ? tickSprites.getByteCount() : 0)
+                + digitQuads.getByteCount() + tickQuads.getByteCount() + gleamQuads.getByteCount();
+    }
+
+    /**
+     * Release the bitmaps and the OpenGL objects, except for the shader program.
+     * This must be called while the OpenGL context is current.
+     */
+    @Override
+    public void release() {
+        releaseObjects(true);
+        glyphAtlas.release();
+        gleamSprite.release();
+        if(tickSprites != null)
+            tickSprites.recycle();
+        tickSprites = null;
+    }
+
+    @Override
+    public void resetStatistics() {
+        textureUploadCount = 0;
+        bufferUploadCount = 0;
+    }
+
+    @Override
+    public void dump(PrintWriter writer, String prefix) {
+        writer.println(prefix + "Texture and vertex caches: " + getByteCount() + " bytes");
+        writer.println(prefix + "Uploads: " + textureUploadCount + " textures, " + bufferUploadCount + " vertex buffers");
+    }
+}
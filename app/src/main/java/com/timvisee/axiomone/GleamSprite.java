@@ -0,0 +1,136 @@
+package com.timvisee.axiomone;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Path;
+
+/**
+ * Prerasterized sprite of the second gleam.
+ *
+ * The gleam is a wedge along the edge of the face that spans one second. Its shape is the same
+ * at every position, so it's rasterized once at the top of the face, and drawn each frame by
+ * rotating the sprite around the center of the face. This replaces filling an anti-aliased path
+ * each frame with a single filtered bitmap blit.
+ */
+public class GleamSprite {
+
+    /**
+     * The number of degrees the gleam moves each second.
+     */
+    private static final float DEGREES_PER_SECOND = 360.0f / FaceGeometry.TICK_COUNT;
+
+    /**
+     * The padding around the wedge in the sprite, to include its anti-aliased edges.
+     */
+    private static final int PADDING = 2;
+
+    /**
+     * The layer the wedge is rasterized in, at the top of the face. It only stores the alpha of
+     * the wedge.
+     */
+    private final Layer sprite = new Layer(Bitmap.Config.ALPHA_8);
+
+    /**
+     * The paint the sprite is drawn with, which defines the color of the gleam.
+     */
+    private final Paint paint = new Paint();
+
+    /**
+     * The radius of the face the sprite is rasterized for, or zero if it isn't rasterized.
+     */
+    private float radius = 0.0f;
+
+    /**
+     * Set the paint of the gleam.
+     * The paint is copied, so it may be modified afterwards.
+     *
+     * @param paint The paint.
+     */
+    public void setPaint(Paint paint) {
+        this.paint.set(paint);
+        this.paint.setFilterBitmap(true);
+    }
+
+    /**
+     * Rasterize the sprite for the given geometry, if it isn't rasterized for it yet.
+     *
+     * @param geometry The face geometry.
+     */
+    public void setGeometry(FaceGeometry geometry) {
+        // Skip if the sprite is up-to-date
+        if(geometry.getRadius() == radius && sprite.isAllocated())
+            return;
+        radius = geometry.getRadius();
+
+        // Determine the corners of the wedge at the top of the face, spanning one second
+        float radiusInside = geometry.getGleamRadiusInside();
+        float radiusOutside = geometry.getGleamRadiusOutside();
+        double halfAngle = Math.toRadians(DEGREES_PER_SECOND / 2.0f);
+        float sin = (float) Math.sin(halfAngle);
+        float cos = (float) Math.cos(halfAngle);
+
+        // Fit the sprite around the wedge
+        sprite.setBounds(
+                (int) Math.floor(radius - radiusOutside * sin) - PADDING,
+                (int) Math.floor(radius - radiusOutside) - PADDING,
+                (int) Math.ceil(radius + radiusOutside * sin) + PADDING,
+                (int) Math.ceil(radius - radiusInside * cos) + PADDING
+        );
+
+        // Rasterize the wedge, opaque since the paint defines the alpha of the gleam
+        Path wedge = new Path();
+        wedge.moveTo(radius - radiusInside * sin, radius - radiusInside * cos);
+        wedge.lineTo(radius - radiusOutside * sin, radius - radiusOutside * cos);
+        wedge.lineTo(radius + radiusOutside * sin, radius - radiusOutside * cos);
+        wedge.lineTo(radius + radiusInside * sin, radius - radiusInside * cos);
+        wedge.close();
+        Paint wedgePaint = new Paint();
+        wedgePaint.setStyle(Paint.Style.FILL);
+        wedgePaint.setAntiAlias(true);
+        sprite.clear();
+        sprite.getCanvas().drawPath(wedge, wedgePaint);
+    }
+
+    /**
+     * Draw the gleam for the given time.
+     *
+     * @param canvas The canvas to draw on.
+     * @param secondPrecise The precise number of seconds, the gleam ends at this second.
+     */
+    public void draw(Canvas canvas, float secondPrecise) {
+        // The wedge is centered half a second before its leading edge
+        canvas.save();
+        canvas.rotate((secondPrecise - 0.5f) * DEGREES_PER_SECOND, radius, radius);
+        sprite.drawShifted(canvas, 0, 0, paint);
+        canvas.restore();
+    }
+
+    /**
+     * Get the layer the wedge is rasterized in, at the top of the face.
+     * Renderers that don't draw on a canvas can draw the gleam from its bitmap and bounds.
+     *
+     * @return The sprite layer.
+     */
+    public Layer getLayer() {
+        return sprite;
+    }
+
+    /**
+     * Get the number of bytes used by the sprite.
+     *
+     * @return The number of bytes.
+     */
+    public int getByteCount() {
+        return sprite.getByteCount();
+    }
+
+    /**
+     * Release the sprite.
+     * It's rasterized again the next time the geometry is set.
+     */
+    public void release() {
+        sprite.release();
+        radius = 0.0f;
+    }
+}
@@ -0,0 +1,282 @@
+package com.timvisee.axiomone;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+
+/**
+ * Atlas of prerendered digit glyphs, for the hour and the minute digits.
+ * The glyphs are rasterized once into a single alpha mask, so composing the clock only takes a
+ * bitmap blit for each digit instead of shaping and rasterizing text. The alpha and color of the
+ * digits are defined by the paint the glyphs are drawn with.
+ */
+public class GlyphAtlas {
+
+    /**
+     * The glyph style of the hour digits.
+     */
+    public static final int STYLE_HOUR = 0;
+
+    /**
+     * The glyph style of the minute digits.
+     */
+    public static final int STYLE_MINUTE = 1;
+
+    /**
+     * The number of glyph styles.
+     */
+    private static final int STYLE_COUNT = 2;
+
+    /**
+     * The number of digits.
+     */
+    private static final int DIGIT_COUNT = 10;
+
+    /**
+     * All digits, in order.
+     */
+    private static final String ALL_DIGITS = "0123456789";
+
+    /**
+     * The padding around each glyph, to include anti-aliased edges.
+     */
+    private static final int PADDING = 2;
+
+    /**
+     * The bitmap of the atlas, or null if it isn't built.
+     */
+    private Bitmap bitmap;
+
+    /**
+     * The rectangle of each glyph in the atlas, for each style.
+     */
+    private final Rect[][] glyphRects = new Rect[STYLE_COUNT][DIGIT_COUNT];
+
+    /**
+     * The advance width of each glyph, for each style.
+     */
+    private final float[][] glyphAdvances = new float[STYLE_COUNT][DIGIT_COUNT];
+
+    /**
+     * The horizontal offset of each glyph rectangle from the pen position, for each style.
+     */
+    private final int[][] glyphOffsets = new int[STYLE_COUNT][DIGIT_COUNT];
+
+    /**
+     * The vertical offset of the glyph rectangles from the baseline, for each style.
+     */
+    private final int[] glyphTops = new int[STYLE_COUNT];
+
+    /**
+     * The destination rectangle to draw a glyph with, to prevent allocations.
+     */
+    private final Rect dst = new Rect();
+
+    /**
+     * Constructor.
+     */
+    public GlyphAtlas() {
+        for(int style = 0; style < STYLE_COUNT; style++)
+            for(int digit = 0; digit < DIGIT_COUNT; digit++)
+                glyphRects[style][digit] = new Rect();
+    }
+
+    /**
+     * Build the atlas, rasterizing the digits with the given paints.
+     * The text size, typeface and anti-aliasing of the paints are used, the color and alpha are
+     * defined when drawing.
+     *
+     * @param hourPaint The paint of the hour digits.
+     * @param minutePaint The paint of the minute digits.
+     */
+    public void build(Paint hourPaint, Paint minutePaint) {
+        // Create opaque left aligned paints to rasterize the glyphs with
+        Paint[] paints = {new Paint(hourPaint), new Paint(minutePaint)};
+        Rect glyphBounds = new Rect();
+        for(Paint paint : paints) {
+            paint.setAlpha(255);
+            paint.setTextAlign(Paint.Align.LEFT);
+        }
+
+        // Lay out the glyphs, each style on its own row
+        int width = 0;
+        int height = 0;
+        int[] rowBaselines = new int[STYLE_COUNT];
+        for(int style = 0; style < STYLE_COUNT; style++) {
+            // Determine the height of the row from the bounds of all digits
+            paints[style].getTextBounds(ALL_DIGITS, 0, DIGIT_COUNT, glyphBounds);
+            int rowTop = height;
+            glyphTops[style] = glyphBounds.top - PADDING;
+            rowBaselines[style] = rowTop - glyphTops[style];
+            int rowBottom = rowBaselines[style] + glyphBounds.bottom + PADDING;
+
+            // Place the glyphs next to each other
+            int x = 0;
+            for(int digit = 0; digit < DIGIT_COUNT; digit++) {
+                float advance = paints[style].measureText(ALL_DIGITS, digit, digit + 1);
+                paints[style].getTextBounds(ALL_DIGITS, digit, digit + 1, glyphBounds);
+                int left = Math.min(0, glyphBounds.left) - PADDING;
+                int right = Math.max((int) Math.ceil(advance), glyphBounds.right) + PADDING;
+
+                glyphAdvances[style][digit] = advance;
+                glyphOffsets[style][digit] = left;
+                glyphRects[style][digit].set(x, rowTop, x + right - left, rowBottom);
+                x += right - left;
+            }
+
+            width = Math.max(width, x);
+            height = rowBottom;
+        }
+
+        // Allocate the atlas bitmap
+        release();
+        bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ALPHA_8);
+        Canvas canvas = new Canvas(bitmap);
+
+        // Rasterize the glyphs
+        for(int style = 0; style < STYLE_COUNT; style++)
+            for(int digit = 0; digit < DIGIT_COUNT; digit++)
+                canvas.drawText(
+                        ALL_DIGITS, digit, digit + 1,
+                        glyphRects[style][digit].left - glyphOffsets[style][digit],
+                        rowBaselines[style],
+                        paints[style]
+                );
+    }
+
+    /**
+     * Check whether the atlas is built.
+     *
+     * @return True if built, false if not.
+     */
+    public boolean isBuilt() {
+        return bitmap != null;
+    }
+
+    /**
+     * Measure the advance width of the given digits.
+     *
+     * @param style The glyph style.
+     * @param text The digits.
+     *
+     * @return The width.
+     */
+    public float measureText(int style, String text) {
+        float width = 0.0f;
+        for(int i = 0; i < text.length(); i++)
+            width += glyphAdvances[style][text.charAt(i) - '0'];
+        return width;
+    }
+
+    /**
+     * Draw the given digits on the given canvas.
+     *
+     * @param canvas The canvas to draw on.
+     * @param style The glyph style.
+     * @param text The digits.
+     * @param x The X coordinate of the text, its left or right edge depending on the alignment.
+     * @param baseline The Y coordinate of the text baseline.
+     * @param alignRight True to align the text to the right of the X coordinate, false for left.
+     * @param paint The paint to draw with, which defines the color and alpha of the digits.
+     */
+    public void drawText(Canvas canvas, int style, String text, float x, float baseline, boolean alignRight, Paint paint) {
+        drawText(canvas, style, text, x, baseline, alignRight, paint, dst);
+    }
+
+    /**
+     * Draw the given digits on the given canvas, using the given destination rectangle.
+     * The atlas isn't modified while drawing, so it may be drawn from on multiple threads at once
+     * if each thread uses its own destination rectangle.
+     *
+     * @param canvas The canvas to draw on.
+     * @param style The glyph style.
+     * @param text The digits.
+     * @param x The X coordinate of the text, its left or right edge depending on the alignment.
+     * @param baseline The Y coordinate of the text baseline.
+     * @param alignRight True to align the text to the right of the X coordinate, false for left.
+     * @param paint The paint to draw with, which defines the color and alpha of the digits.
+     * @param dst The rectangle to use as destination of each glyph, to prevent allocations.
+     */
+    public void drawText(Canvas canvas, int style, String text, float x, float baseline, boolean alignRight, Paint paint, Rect dst) {
+        // Determine the pen position of the first digit
+        float pen = alignRight ? x - measureText(style, text) : x;
+        int top = Math.round(baseline) + glyphTops[style];
+
+        // Blit each digit from the atlas
+        for(int i = 0; i < text.length(); i++) {
+            int digit = text.charAt(i) - '0';
+            Rect src = glyphRects[style][digit];
+            int left = Math.round(pen) + glyphOffsets[style][digit];
+            dst.set(left, top, left + src.width(), top + src.height());
+            canvas.drawBitmap(bitmap, src, dst, paint);
+            pen += glyphAdvances[style][digit];
+        }
+    }
+
+    /**
+     * Lay out the given text, and write the face and atlas rectangles of each glyph.
+     * For each glyph, the left, top, right and bottom of its rectangle on the face are written,
+     * followed by the left, top, right and bottom of its rectangle in the atlas.
+     *
+     * @param style The text style, {@link #STYLE_HOUR} or {@link #STYLE_MINUTE}.
+     * @param text The digits to lay out.
+     * @param x The X coordinate to align the text to.
+     * @param baseline The Y coordinate of the baseline.
+     * @param alignRight True to right align the text to the X coordinate, false to left align.
+     * @param out The array to write the rectangles to, 8 values for each glyph.
+     * @param offset The offset in the array to start writing at.
+     *
+     * @return The number of glyphs written.
+     */
+    public int layoutText(int style, String text, float x, float baseline, boolean alignRight, float[] out, int offset) {
+        // Determine the pen position of the first digit
+        float pen = alignRight ? x - measureText(style, text) : x;
+        int top = Math.round(baseline) + glyphTops[style];
+
+        // Write the rectangles of each digit
+        for(int i = 0; i < text.length(); i++) {
+            int digit = text.charAt(i) - '0';
+            Rect src = glyphRects[style][digit];
+            int left = Math.round(pen) + glyphOffsets[style][digit];
+            int index = offset + i * 8;
+            out[index] = left;
+            out[index + 1] = top;
+            out[index + 2] = left + src.width();
+            out[index + 3] = top + src.height();
+            out[index + 4] = src.left;
+            out[index + 5] = src.top;
+            out[index + 6] = src.right;
+            out[index + 7] = src.bottom;
+            pen += glyphAdvances[style][digit];
+        }
+        return text.length();
+    }
+
+    /**
+     * Get the atlas bitmap.
+     *
+     * @return The bitmap, or null if the atlas isn't built.
+     */
+    public Bitmap getBitmap() {
+        return bitmap;
+    }
+
+    /**
+     * Get the number of bytes used by the bitmap of the atlas.
+     *
+     * @return The number of bytes.
+     */
+    public int getByteCount() {
+        return bitmap != null ? bitmap.getByteCount() : 0;
+    }
+
+    /**
+     * Release the bitmap of the atlas.
+     */
+    public void release() {
+        if(bitmap != null)
+            bitmap.recycle();
+        bitmap = null;
+    }
+}
@@ -0,0 +1,39 @@
+package com.timvisee.axiomone;
+
+import android.os.Handler;
+import android.os.SystemClock;
+
+/**
+ * Scheduler that runs the tasks on the thread of a handler.
+ */
+public class HandlerScheduler implements Scheduler {
+
+    /**
+     * The handler the tasks are posted to.
+     */
+    private final Handler handler;
+
+    /**
+     * Constructor.
+     *
+     * @param handler The handler to post the tasks to.
+     */
+    public HandlerScheduler(Handler handler) {
+        this.handler = handler;
+    }
+
+    @Override
+    public void postDelayed(Runnable task, long delayMillis) {
+        handler.postDelayed(task, delayMillis);
+    }
+
+    @Override
+    public void remove(Runnable task) {
+        handler.removeCallbacks(task);
+    }
+
+    @Override
+    public long uptimeMillis() {
+        return SystemClock.uptimeMillis();
+    }
+}
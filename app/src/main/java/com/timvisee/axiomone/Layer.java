@@ -0,0 +1,181 @@
+package com.timvisee.axiomone;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.PorterDuff;
+import android.graphics.Rect;
+
+/**
+ * Cached layer of the watch face, backed by a bitmap that only covers the bounds of its content.
+ * The canvas of the layer uses the coordinates of the face, so content can be drawn at its
+ * position on the face.
+ *
+ * Layers that are created with {@link Bitmap.Config#ALPHA_8} only store a mask, and are drawn
+ * with the color of the paint that is used to draw the layer.
+ */
+public class Layer {
+
+    /**
+     * The bitmap configuration of the layer.
+     */
+    private final Bitmap.Config config;
+
+    /**
+     * The bitmap of the layer, or null if it isn't allocated.
+     */
+    private Bitmap bitmap;
+
+    /**
+     * The canvas to draw on the layer with, translated to the coordinates of the face.
+     */
+    private Canvas canvas;
+
+    /**
+     * The bounds of the layer on the face.
+     */
+    private final Rect bounds = new Rect();
+
+    /**
+     * Source and destination rectangles to draw the layer with, to prevent allocations.
+     */
+    private final Rect src = new Rect();
+    private final Rect dst = new Rect();
+
+    /**
+     * Constructor.
+     *
+     * @param config The bitmap configuration of the layer.
+     */
+    public Layer(Bitmap.Config config) {
+        this.config = config;
+    }
+
+    /**
+     * Set the bounds of the layer on the face.
+     * The bitmap is reallocated if the size of the layer changed, the content of the layer must be
+     * redrawn if the bounds changed.
+     *
+     * @param left The left of the layer.
+     * @param top The top of the layer.
+     * @param right The right of the layer.
+     * @param bottom The bottom of the layer.
+     *
+     * @return True if the bounds changed, false if not.
+     */
+    public boolean setBounds(int left, int top, int right, int bottom) {
+        // Don't change anything if the bounds are the same
+        if(bitmap != null && bounds.left == left && bounds.top == top && bounds.right == right && bounds.bottom == bottom)
+            return false;
+
+        // Reallocate the bitmap if the size changed
+        int width = Math.max(right - left, 1);
+        int height = Math.max(bottom - top, 1);
+        if(bitmap == null || bitmap.getWidth() != width || bitmap.getHeight() != height) {
+            release();
+            bitmap = Bitmap.createBitmap(width, height, config);
+        }
+
+        // Create a canvas that draws in face coordinates
+        bounds.set(left, top, right, bottom);
+        canvas = new Canvas(bitmap);
+        canvas.translate(-left, -top);
+        return true;
+    }
+
+    /**
+     * Get the bounds of the layer on the face.
+     *
+     * @return The bounds, which must not be modified.
+     */
+    public Rect getBounds() {
+        return bounds;
+    }
+
+    /**
+     * Get the canvas to draw on the layer with, in the coordinates of the face.
+     *
+     * @return The canvas, or null if the layer isn't allocated.
+     */
+    public Canvas getCanvas() {
+        return canvas;
+    }
+
+    /**
+     * Get the bitmap of the layer.
+     *
+     * @return The bitmap, or null if the layer isn't allocated.
+     */
+    public Bitmap getBitmap() {
+        return bitmap;
+    }
+
+    /**
+     * Check whether the layer is allocated.
+     *
+     * @return True if allocated, false if not.
+     */
+    public boolean isAllocated() {
+        return bitmap != null;
+    }
+
+    /**
+     * Clear the content of the layer.
+     */
+    public void clear() {
+        if(canvas != null)
+            canvas.drawColor(Color.TRANSPARENT, PorterDuff.Mode.CLEAR);
+    }
+
+    /**
+     * Draw the part of the layer inside the given region on the given canvas.
+     *
+     * @param canvas The canvas to draw on.
+     * @param region The region of the face to draw.
+     * @param paint The paint to draw with, which defines the color of mask layers.
+     */
+    public void draw(Canvas canvas, Rect region, Paint paint) {
+        // Determine the part of the layer to draw, skip if it's outside the region
+        if(bitmap == null || !dst.setIntersect(bounds, region))
+            return;
+        src.set(dst);
+        src.offset(-bounds.left, -bounds.top);
+
+        // Draw the part of the layer
+        canvas.drawBitmap(bitmap, src, dst, paint);
+    }
+
+    /**
+     * Draw the whole layer on the given canvas, shifted by the given offset.
+     *
+     * @param canvas The canvas to draw on.
+     * @param dx The horizontal offset to shift the layer by.
+     * @param dy The vertical offset to shift the layer by.
+     * @param paint The paint to draw with, which defines the color of mask layers.
+     */
+    public void drawShifted(Canvas canvas, int dx, int dy, Paint paint) {
+        if(bitmap != null)
+            canvas.drawBitmap(bitmap, bounds.left + dx, bounds.top + dy, paint);
+    }
+
+    /**
+     * Get the number of bytes used by the bitmap of the layer.
+     *
+     * @return The number of bytes.
+     */
+    public int getByteCount() {
+        return bitmap != null ? bitmap.getByteCount() : 0;
+    }
+
+    /**
+     * Release the bitmap of the layer.
+     */
+    public void release() {
+        if(bitmap != null)
+            bitmap.recycle();
+        bitmap = null;
+        canvas = null;
+        bounds.setEmpty();
+    }
+}
@@ -0,0 +1,20 @@
+package com.timvisee.axiomone;
+
+/**
+ * A set of cached layers, which can be released and are rebuilt the next time they're drawn.
+ */
+public interface LayerCache {
+
+    /**
+     * Get the number of bytes held by the cache.
+     *
+     * @return The number of bytes.
+     */
+    int getByteCount();
+
+    /**
+     * Release the cache.
+     * Everything is rebuilt the next time it's drawn.
+     */
+    void release();
+}
@@ -0,0 +1,192 @@
+package com.timvisee.axiomone;
+
+import android.content.ComponentCallbacks2;
+
+import java.io.PrintWriter;
+
+/**
+ * Manager of the lifecycle of the layer caches of an engine.
+ *
+ * The engine has an interactive and an ambient set of caches. Both are kept while the face is
+ * visible, since the face switches between interactive and ambient mode often. Once the face
+ * becomes invisible, all caches are released after a grace period, so briefly hiding the face
+ * doesn't rebuild everything. On memory pressure the caches are released right away, or only the
+ * caches of the mode that isn't shown if the face is visible. The caches are also released when the
+ * size of the surface changes, so no bitmaps of the old size are kept, and when the engine is
+ * destroyed. All methods must be called on the thread of the given scheduler.
+ */
+public class LayerCacheManager {
+
+    /**
+     * The reasons caches are released for.
+     */
+    public static final int REASON_HIDDEN = 0;
+    public static final int REASON_TRIM_MEMORY = 1;
+    public static final int REASON_SURFACE_CHANGED = 2;
+    public static final int REASON_DESTROYED = 3;
+
+    /**
+     * The number of release reasons.
+     */
+    public static final int REASON_COUNT = 4;
+
+    /**
+     * The names of the release reasons, as shown in the dump.
+     */
+    private static final String[] REASON_NAMES = {"hidden", "trim memory", "surface changed", "destroyed"};
+
+    /**
+     * The scheduler the delayed release is scheduled on.
+     */
+    private final Scheduler scheduler;
+
+    /**
+     * The grace period after which the caches of an invisible face are released, in milliseconds.
+     */
+    private final long releaseDelay;
+
+    /**
+     * The caches of the interactive and the ambient face.
+     */
+    private final LayerCache interactiveCache;
+    private final LayerCache ambientCache;
+
+    /**
+     * True if the face is visible, and true if it's in ambient mode.
+     */
+    private boolean visible = false;
+    private boolean ambient = false;
+
+    /**
+     * The size of the surface, or zero if it isn't known yet.
+     */
+    private int surfaceWidth = 0;
+    private int surfaceHeight = 0;
+
+    /**
+     * The number of times the caches were released, for each reason.
+     */
+    private final int[] releaseCounts = new int[REASON_COUNT];
+
+    /**
+     * The runnable that releases the caches after the grace period.
+     */
+    private final Runnable releaseRunnable = new Runnable() {
+        @Override
+        public void run() {
+            releaseAll(REASON_HIDDEN);
+        }
+    };
+
+    /**
+     * Constructor.
+     *
+     * @param scheduler The scheduler to schedule the delayed release on.
+     * @param releaseDelay The grace period after which the caches of an invisible face are
+     *                     released, in milliseconds.
+     * @param interactiveCache The caches of the interactive face.
+     * @param ambientCache The caches of the ambient face.
+     */
+    public LayerCacheManager(Scheduler scheduler, long releaseDelay, LayerCache interactiveCache, LayerCache ambientCache) {
+        this.scheduler = scheduler;
+        this.releaseDelay = releaseDelay;
+        this.interactiveCache = interactiveCache;
+        this.ambientCache = ambientCache;
+    }
+
+    /**
+     * Set the visibility and mode of the face.
+     * The caches are released after the grace period if the face becomes invisible, and kept if it
+     * becomes visible before then.
+     *
+     * @param visible True if the face is visible.
+     * @param ambient True if the face is in ambient mode.
+     */
+    public void setState(boolean visible, boolean ambient) {
+        this.ambient = ambient;
+        if(this.visible == visible)
+            return;
+        this.visible = visible;
+
+        // Keep the caches while visible, release them after the grace period otherwise
+        scheduler.remove(releaseRunnable);
+        if(!visible)
+            scheduler.postDelayed(releaseRunnable, releaseDelay);
+    }
+
+    /**
+     * Release caches for the given memory trim level.
+     * The caches of an invisible face are released right away. If the face is visible and memory
+     * is low, the caches of the mode that isn't shown are released.
+     *
+     * @param level The trim level, one of the {@code TRIM_MEMORY_} constants of
+     *              {@link ComponentCallbacks2}.
+     */
+    public void onTrimMemory(int level) {
+        if(!visible) {
+            releaseAll(REASON_TRIM_MEMORY);
+            return;
+        }
+        if(level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            (ambient ? interactiveCache : ambientCache).release();
+            releaseCounts[REASON_TRIM_MEMORY]++;
+        }
+    }
+
+    /**
+     * Set the size of the surface.
+     * All caches are released if the size changed, they're rebuilt at the new size.
+     *
+     * @param width The width of the surface.
+     * @param height The height of the surface.
+     */
+    public void onSurfaceChanged(int width, int height) {
+        boolean changed = surfaceWidth != 0 && (surfaceWidth != width || surfaceHeight != height);
+        surfaceWidth = width;
+        surfaceHeight = height;
+        if(changed)
+            releaseAll(REASON_SURFACE_CHANGED);
+    }
+
+    /**
+     * Release all caches because the engine is destroyed, and cancel the delayed release.
+     */
+    public void destroy() {
+        releaseAll(REASON_DESTROYED);
+    }
+
+    /**
+     * Release all caches, and cancel the delayed release.
+     *
+     * @param reason The reason the caches are released for.
+     */
+    private void releaseAll(int reason) {
+        scheduler.remove(releaseRunnable);
+        interactiveCache.release();
+        ambientCache.release();
+        releaseCounts[reason]++;
+    }
+
+    /**
+     * Get the number of bytes held by all caches.
+     *
+     * @return The number of bytes.
+     */
+    public int getByteCount() {
+        return interactiveCache.getByteCount() + ambientCache.getByteCount();
+    }
+
+    /**
+     * Dump the cache footprint and releases in a human readable format.
+     *
+     * @param writer The writer to dump to.
+     * @param prefix The prefix of each line.
+     */
+    public void dump(PrintWriter writer, String prefix) {
+        StringBuilder releases = new StringBuilder();
+        for(int reason = 0; reason < REASON_COUNT; reason++)
+            releases.append(reason > 0 ? ", " : "").append(releaseCounts[reason]).append(' ').append(REASON_NAMES[reason]);
+        writer.println(prefix + "Layer caches: " + interactiveCache.getByteCount() + " bytes interactive, "
+                + ambientCache.getByteCount() + " bytes ambient, released: " + releases);
+    }
+}
@@ -0,0 +1,284 @@
+package com.timvisee.axiomone;
+
+import java.io.PrintWriter;
+
+/**
+ * Adaptive controller of the rendering quality of the interactive face.
+ *
+ * The face is rendered in one of a fixed set of quality tiers, from full quality to the cheapest
+ * face. The controller steps down a tier when the measured cost of the recent frames takes too
+ * large a part of the frame interval, and steps back up once there has been enough headroom for a
+ * while. To prevent the tier from flapping, stepping up requires the frames to be much cheaper
+ * than what triggers a step down, and each step down doubles the time required to step up again.
+ * The battery state caps the best tier that may be used, unless the device is charging.
+ */
+public class QualityController {
+
+    /**
+     * The quality tiers, from the best to the cheapest.
+     * Full quality at the highest frame rate.
+     */
+    public static final int TIER_FULL = 0;
+
+    /**
+     * Full quality at a reduced frame rate.
+     */
+    public static final int TIER_REDUCED = 1;
+
+    /**
+     * The ticks are updated once each second, without the second gleam.
+     */
+    public static final int TIER_TICK = 2;
+
+    /**
+     * The ticks are updated once each second, without the second gleam and without anti-aliasing.
+     */
+    public static final int TIER_MINIMAL = 3;
+
+    /**
+     * The number of quality tiers.
+     */
+    public static final int TIER_COUNT = 4;
+
+    /**
+     * The names of the tiers, as shown in the dump.
+     */
+    private static final String[] TIER_NAMES = {"full", "reduced", "tick", "minimal"};
+
+    /**
+     * The number of frames the frame cost is averaged over before it's evaluated.
+     */
+    private static final int WINDOW_FRAMES = 30;
+
+    /**
+     * Step down a tier if the frames take more than this part of the frame interval.
+     */
+    private static final float STEP_DOWN_LOAD = 0.5f;
+
+    /**
+     * Step up a tier if the frames take less than this part of the frame interval of the better tier.
+     */
+    private static final float STEP_UP_LOAD = 0.25f;
+
+    /**
+     * The initial and the maximum number of consecutive windows with headroom before stepping up.
+     */
+    private static final int STEP_UP_WINDOWS = 4;
+    private static final int STEP_UP_WINDOWS_MAX = 64;
+
+    /**
+     * Listener for tier changes.
+     */
+    public interface Listener {
+
+        /**
+         * Called when the tier changed.
+         *
+         * @param tier The new tier.
+         */
+        void onTierChanged(int tier);
+    }
+
+    /**
+     * The frame rate of each tier.
+     */
+    private final int[] frameRates;
+
+    /**
+     * The minimum battery level in percent to use each tier at while not charging.
+     */
+    private final int[] batteryLevels;
+
+    /**
+     * The listener that is notified of tier changes, or null.
+     */
+    private final Listener listener;
+
+    /**
+     * The tier the frame cost allows, and the best tier the battery state allows.
+     */
+    private int loadTier;
+    private int batteryTier = TIER_FULL;
+
+    /**
+     * The effective tier, the cheapest of the load and battery tier.
+     */
+    private int tier;
+
+    /**
+     * The total frame cost in nanoseconds, and the number of frames in the current window.
+     */
+    private long windowNanos = 0;
+    private int windowFrames = 0;
+
+    /**
+     * The number of consecutive windows with headroom, and the number required to step up.
+     */
+    private int headroomWindows = 0;
+    private int stepUpWindows = STEP_UP_WINDOWS;
+
+    /**
+     * The number of times the controller stepped down and up.
+     */
+    private int stepDownCount = 0;
+    private int stepUpCount = 0;
+
+    /**
+     * Constructor.
+     *
+     * @param frameRates The frame rate of each tier, {@link #TIER_COUNT} values.
+     * @param batteryLevels The minimum battery level in percent to use each tier at while not
+     *                      charging, {@link #TIER_COUNT} values.
+     * @param initialTier The tier to start at.
+     * @param listener The listener to notify of tier changes, or null.
+     */
+    public QualityController(int[] frameRates, int[] batteryLevels, int initialTier, Listener listener) {
+        if(frameRates.length != TIER_COUNT || batteryLevels.length != TIER_COUNT)
+            throw new IllegalArgumentException("Expected " + TIER_COUNT + " frame rates and battery levels");
+        this.frameRates = frameRates;
+        this.batteryLevels = batteryLevels;
+        this.listener = listener;
+        this.loadTier = initialTier;
+        this.tier = initialTier;
+    }
+
+    /**
+     * Record the cost of a rendered frame of the animation.
+     *
+     * @param frameNanos The time it took to update and render the frame, without waiting for the
+     *                   surface, in nanoseconds.
+     */
+    public void onFrame(long frameNanos) {
+        // Collect a full window of frames
+        windowNanos += frameNanos;
+        windowFrames++;
+        if(windowFrames < WINDOW_FRAMES)
+            return;
+        long meanNanos = windowNanos / windowFrames;
+        windowNanos = 0;
+        windowFrames = 0;
+
+        // Step down if the frames are too expensive for the current tier
+        if(meanNanos > getFrameIntervalNanos(tier) * STEP_DOWN_LOAD) {
+            headroomWindows = 0;
+            if(tier < TIER_COUNT - 1) {
+                loadTier = tier + 1;
+                stepUpWindows = Math.min(stepUpWindows * 2, STEP_UP_WINDOWS_MAX);
+                stepDownCount++;
+                updateTier();
+            }
+            return;
+        }
+
+        // Step up if the frames would be cheap enough for the better tier for long enough
+        if(loadTier > TIER_FULL && meanNanos < getFrameIntervalNanos(loadTier - 1) * STEP_UP_LOAD) {
+            if(++headroomWindows >= stepUpWindows) {
+                headroomWindows = 0;
+                loadTier--;
+                stepUpCount++;
+                updateTier();
+            }
+        } else
+            headroomWindows = 0;
+    }
+
+    /**
+     * Set the battery state.
+     *
+     * @param level The battery level in percent.
+     * @param charging True if the device is charging.
+     */
+    public void setBatteryState(int level, boolean charging) {
+        // Use the best tier the battery level allows
+        int best = TIER_COUNT - 1;
+        if(charging)
+            best = TIER_FULL;
+        else
+            for(int i = TIER_COUNT - 1; i >= 0; i--)
+                if(level >= batteryLevels[i])
+                    best = i;
+        batteryTier = best;
+        updateTier();
+    }
+
+    /**
+     * Discard the frames of the current window, for example because the animation was paused.
+     */
+    public void resetWindow() {
+        windowNanos = 0;
+        windowFrames = 0;
+    }
+
+    /**
+     * Determine the effective tier, and notify the listener if it changed.
+     */
+    private void updateTier() {
+        int newTier = Math.max(loadTier, batteryTier);
+        if(newTier == tier)
+            return;
+        tier = newTier;
+        resetWindow();
+        if(listener != null)
+            listener.onTierChanged(tier);
+    }
+
+    /**
+     * Get the frame interval of the given tier.
+     *
+     * @param tier The tier.
+     *
+     * @return The frame interval in nanoseconds.
+     */
+    private long getFrameIntervalNanos(int tier) {
+        return 1000000000L / Math.max(frameRates[tier], 1);
+    }
+
+    /**
+     * Get the effective tier.
+     *
+     * @return The tier.
+     */
+    public int getTier() {
+        return tier;
+    }
+
+    /**
+     * Get the frame rate of the effective tier.
+     *
+     * @return The frame rate in frames per second.
+     */
+    public int getFrameRate() {
+        return frameRates[tier];
+    }
+
+    /**
+     * Check whether the second gleam is drawn in the effective tier.
+     *
+     * @return True if the gleam is drawn.
+     */
+    public boolean isGleamEnabled() {
+        return tier < TIER_TICK;
+    }
+
+    /**
+     * Check whether the ticks are anti-aliased in the effective tier.
+     *
+     * @return True if anti-aliased.
+     */
+    public boolean isAntiAliasEnabled() {
+        return tier < TIER_MINIMAL;
+    }
+
+    /**
+     * Dump the state of the controller in a human readable format.
+     *
+     * @param writer The writer to dump to.
+     * @param prefix The prefix of each line.
+     */
+    public void dump(PrintWriter writer, String prefix) {
+        writer.println(prefix + "Quality: " + TIER_NAMES[tier] + " tier (" + frameRates[tier] + " fps), load allows "
+                + TIER_NAMES[loadTier] + ", battery allows " + TIER_NAMES[batteryTier]);
+        writer.println(prefix + "  " + stepDownCount + " steps down, " + stepUpCount + " steps up, "
+                + headroomWindows + "/" + stepUpWindows + " windows with headroom");
+    }
+}
@@ -0,0 +1,30 @@
+package com.timvisee.axiomone;
+
+/**
+ * Runs tasks after a delay on a single thread.
+ * Lets the classes that schedule work be driven by a fake scheduler in tests.
+ */
+public interface Scheduler {
+
+    /**
+     * Run the given task after the given delay.
+     *
+     * @param task The task.
+     * @param delayMillis The delay in milliseconds.
+     */
+    void postDelayed(Runnable task, long delayMillis);
+
+    /**
+     * Remove the scheduled runs of the given task that didn't run yet.
+     *
+     * @param task The task.
+     */
+    void remove(Runnable task);
+
+    /**
+     * Get the time of the clock the delays are measured with.
+     *
+     * @return The time in milliseconds.
+     */
+    long uptimeMillis();
+}
@@ -0,0 +1,216 @@
+package com.timvisee.axiomone;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.graphics.Typeface;
+
+import java.io.PrintWriter;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Process-wide cache of the face style.
+ *
+ * The system creates engines often, for the face itself, its preview and the watch face picker.
+ * Decoding the font, compiling the theme into a style and measuring the digits is only done once
+ * for each face shape and screen density, after which engines get a copy of the cached style and
+ * metrics. When a new theme is applied the cache is emptied and its version is increased, so
+ * engines know to obtain their style again, and only rebuild the parts of the face it changed. The
+ * cache may be used from any thread.
+ */
+public final class StyleCache {
+
+    /**
+     * The decoded font of the digits, or null if it isn't decoded yet.
+     */
+    private static Typeface font;
+
+    /**
+     * The theme the styles are compiled from, or null if it isn't loaded yet.
+     */
+    private static Theme theme;
+
+    /**
+     * The version of the theme, increased each time a theme is applied.
+     */
+    private static volatile int themeVersion = 0;
+
+    /**
+     * The parts of the face changed by the last applied theme, compared to the theme before it.
+     */
+    private static int themeChanges = Theme.PARTS_ALL;
+
+    /**
+     * The cached styles by their key.
+     */
+    private static final Map<Integer, Entry> entries = new HashMap<Integer, Entry>();
+
+    /**
+     * The number of lookups that were served from the cache, and that had to load the style.
+     */
+    private static int hitCount = 0;
+    private static int missCount = 0;
+
+    /**
+     * A cached style, with the text metrics measured for it.
+     * The style and layout of an entry are never modified after they're created.
+     */
+    private static class Entry {
+
+        /**
+         * The style.
+         */
+        final FaceStyle style;
+
+        /**
+         * The layout holding the measured text metrics of the style.
+         */
+        final ClockLayout metrics = new ClockLayout();
+
+        /**
+         * Constructor.
+         *
+         * @param style The style, of which the text metrics are measured.
+         */
+        Entry(FaceStyle style) {
+            this.style = style;
+            metrics.setMetrics(style);
+        }
+    }
+
+    /**
+     * Private constructor, this class only has static members.
+     */
+    private StyleCache() { }
+
+    /**
+     * Get the font of the digits, decoding it the first time.
+     *
+     * @param context The context to load the font with.
+     *
+     * @return The font.
+     */
+    public static synchronized Typeface getFont(Context context) {
+        if(font == null)
+            font = Typeface.createFromAsset(context.getAssets(), context.getString(R.string.font_path));
+        return font;
+    }
+
+    /**
+     * Get a copy of the style for the given face shape.
+     * The copy may be modified by the caller.
+     *
+     * @param context The context to load the style with.
+     * @param round True if the face is round.
+     *
+     * @return The style.
+     */
+    public static synchronized FaceStyle obtainStyle(Context context, boolean round) {
+        return new FaceStyle(getEntry(context, round).style);
+    }
+
+    /**
+     * Copy the text metrics of the style for the given face shape into a layout.
+     *
+     * @param context The context to load the style with.
+     * @param round True if the face is round.
+     * @param layout The layout to set the metrics on.
+     */
+    public static synchronized void obtainMetrics(Context context, boolean round, ClockLayout layout) {
+        layout.setMetrics(getEntry(context, round).metrics);
+    }
+
+    /**
+     * Get the cache entry for the given face shape and the screen density of the context, and
+     * create it if it isn't cached yet.
+     *
+     * @param context The context to load the style with.
+     * @param round True if the face is round.
+     *
+     * @return The cache entry.
+     */
+    private static Entry getEntry(Context context, boolean round) {
+        // Hold on to the application context only, so no service is leaked by the cache
+        context = context.getApplicationContext();
+        Resources resources = context.getResources();
+
+        // Return the cached entry
+        int key = resources.getDisplayMetrics().densityDpi * 2 + (round ? 1 : 0);
+        Entry entry = entries.get(key);
+        if(entry != null) {
+            hitCount++;
+            return entry;
+        }
+
+        // Compile the style of the theme for this shape, and measure its metrics
+        missCount++;
+        if(theme == null)
+            theme = Theme.load(context);
+        FaceStyle style = new FaceStyle(theme, getFont(context));
+        style.setRound(round);
+        entry = new Entry(style);
+        entries.put(key, entry);
+        return entry;
+    }
+
+    /**
+     * Apply the given theme.
+     * Styles that were obtained before remain valid, engines should obtain their style again once
+     * the theme version changed.
+     *
+     * @param newTheme The theme.
+     */
+    public static synchronized void setTheme(Theme newTheme) {
+        themeChanges = theme != null ? theme.diff(newTheme) : Theme.PARTS_ALL;
+        theme = newTheme;
+        entries.clear();
+        themeVersion++;
+    }
+
+    /**
+     * Get the version of the theme, which is increased each time a theme is applied.
+     * This doesn't lock, so it may be checked each frame.
+     *
+     * @return The theme version.
+     */
+    public static int getThemeVersion() {
+        return themeVersion;
+    }
+
+    /**
+     * Get the parts of the face that changed between two theme versions.
+     * Only the changes of the last applied theme are known, all parts are returned for older
+     * versions.
+     *
+     * @param fromVersion The theme version the style was obtained for.
+     * @param toVersion The current theme version.
+     *
+     * @return The changed parts, a combination of the {@link Theme} {@code PART_} constants.
+     */
+    public static synchronized int getThemeChanges(int fromVersion, int toVersion) {
+        if(fromVersion == toVersion)
+            return 0;
+        return fromVersion + 1 == toVersion && toVersion == themeVersion ? themeChanges : Theme.PARTS_ALL;
+    }
+
+    /**
+     * Clear the cache, including the decoded font and the loaded theme.
+     * Styles that were obtained before remain valid.
+     */
+    public static synchronized void clear() {
+        font = null;
+        theme = null;
+        entries.clear();
+    }
+
+    /**
+     * Dump the state of the cache in a human readable format.
+     *
+     * @param writer The writer to dump to.
+     * @param prefix The prefix of each line.
+     */
+    public static synchronized void dump(PrintWriter writer, String prefix) {
+        writer.println(prefix + "Style cache: theme version " + themeVersion + ", " + entries.size() + " styles, font " + (font != null ? "decoded" : "not decoded")
+                + ", " + hitCount + " hits, " + missCount + " misses");
+    }
+}
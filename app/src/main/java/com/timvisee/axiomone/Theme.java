@@ -0,0 +1,346 @@
+package com.timvisee.axiomone;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.graphics.Color;
+import android.util.Log;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.Arrays;
+
+/**
+ * The visual parameters of the watch face: its colors, alphas and dimensions.
+ *
+ * The default theme is loaded from the resources. A theme can be overridden with a JSON object,
+ * of which the keys are the resource names of the parameters, for example
+ * {@code {"digit_minute_color": "#FF8800", "tick_length_large": 20}}. Colors are color strings,
+ * alphas range from 0 to 255, and dimensions are in dp. A theme is immutable, and is compiled into
+ * a {@link FaceStyle} to render the face with.
+ */
+public class Theme {
+
+    /**
+     * The log tag.
+     */
+    private static final String TAG = "AxiomOneFace";
+
+    /**
+     * The name of the file in the app files directory that overrides the default theme.
+     */
+    public static final String FILE_NAME = "theme.json";
+
+    /**
+     * The colors of the theme.
+     */
+    public static final int COLOR_BACKGROUND = 0;
+    public static final int COLOR_HOUR = 1;
+    public static final int COLOR_MINUTE = 2;
+    public static final int COLOR_TICK_SMALL = 3;
+    public static final int COLOR_TICK_LARGE = 4;
+
+    /**
+     * The number of colors.
+     */
+    public static final int COLOR_COUNT = 5;
+
+    /**
+     * The alphas of the theme.
+     */
+    public static final int ALPHA_DIGIT = 0;
+    public static final int ALPHA_DIGIT_GHOST = 1;
+    public static final int ALPHA_GLEAM = 2;
+    public static final int ALPHA_TICK_SMALL = 3;
+    public static final int ALPHA_TICK_SMALL_FADED = 4;
+    public static final int ALPHA_TICK_LARGE = 5;
+    public static final int ALPHA_TICK_LARGE_FADED = 6;
+
+    /**
+     * The number of alphas.
+     */
+    public static final int ALPHA_COUNT = 7;
+
+    /**
+     * The dimensions of the theme.
+     */
+    public static final int DIMEN_HOUR_TEXT_SIZE = 0;
+    public static final int DIMEN_HOUR_TEXT_SIZE_ROUND = 1;
+    public static final int DIMEN_MINUTE_TEXT_SIZE = 2;
+    public static final int DIMEN_MINUTE_TEXT_SIZE_ROUND = 3;
+    public static final int DIMEN_DIGIT_OFFSET_X = 4;
+    public static final int DIMEN_GLEAM_LENGTH = 5;
+    public static final int DIMEN_TICK_LENGTH_SMALL = 6;
+    public static final int DIMEN_TICK_LENGTH_LARGE = 7;
+    public static final int DIMEN_TICK_WIDTH_SMALL = 8;
+    public static final int DIMEN_TICK_WIDTH_LARGE = 9;
+
+    /**
+     * The number of dimensions.
+     */
+    public static final int DIMEN_COUNT = 10;
+
+    /**
+     * The parts of the face that depend on the theme, which are rebuilt when a theme is applied
+     * that changes them.
+     */
+    public static final int PART_BACKGROUND = 1;
+    public static final int PART_DIGIT_COLORS = 1 << 1;
+    public static final int PART_DIGITS = 1 << 2;
+    public static final int PART_TICKS = 1 << 3;
+    public static final int PART_GLEAM = 1 << 4;
+
+    /**
+     * All parts of the face.
+     */
+    public static final int PARTS_ALL = PART_BACKGROUND | PART_DIGIT_COLORS | PART_DIGITS | PART_TICKS | PART_GLEAM;
+
+    /**
+     * The parts of the face that depend on each color, alpha and dimension.
+     */
+    private static final int[] COLOR_PARTS = {
+            PART_BACKGROUND, PART_DIGIT_COLORS, PART_DIGIT_COLORS, PART_TICKS, PART_TICKS
+    };
+    private static final int[] ALPHA_PARTS = {
+            PART_DIGITS, PART_DIGITS, PART_GLEAM, PART_TICKS, PART_TICKS, PART_TICKS, PART_TICKS
+    };
+    private static final int[] DIMEN_PARTS = {
+            PART_DIGITS, PART_DIGITS, PART_DIGITS, PART_DIGITS, PART_DIGITS,
+            PART_TICKS | PART_GLEAM, PART_TICKS, PART_TICKS, PART_TICKS, PART_TICKS
+    };
+
+    /**
+     * The resources and JSON keys of the colors, alphas and dimensions.
+     */
+    private static final int[] COLOR_RESOURCES = {
+            R.color.background, R.color.digit_hour_color, R.color.digit_minute_color,
+            R.color.tick_color_small, R.color.tick_color_large
+    };
+    private static final String[] COLOR_KEYS = {
+            "background", "digit_hour_color", "digit_minute_color", "tick_color_small", "tick_color_large"
+    };
+    private static final int[] ALPHA_RESOURCES = {
+            R.integer.digit_alpha_normal, R.integer.digit_alpha_ghost, R.integer.gleam_alpha,
+            R.integer.tick_alpha_small, R.integer.tick_alpha_faded_small,
+            R.integer.tick_alpha_large, R.integer.tick_alpha_faded_large
+    };
+    private static final String[] ALPHA_KEYS = {
+            "digit_alpha_normal", "digit_alpha_ghost", "gleam_alpha",
+            "tick_alpha_small", "tick_alpha_faded_small", "tick_alpha_large", "tick_alpha_faded_large"
+    };
+    private static final int[] DIMEN_RESOURCES = {
+            R.dimen.hour_text_size, R.dimen.hour_text_size_round,
+            R.dimen.minute_text_size, R.dimen.minute_text_size_round,
+            R.dimen.digit_x_offset, R.dimen.second_gleam_length,
+            R.dimen.tick_length_small, R.dimen.tick_length_large,
+            R.dimen.tick_width_small, R.dimen.tick_width_large
+    };
+    private static final String[] DIMEN_KEYS = {
+            "hour_text_size", "hour_text_size_round", "minute_text_size", "minute_text_size_round",
+            "digit_x_offset", "second_gleam_length", "tick_length_small", "tick_length_large",
+            "tick_width_small", "tick_width_large"
+    };
+
+    /**
+     * The colors, alphas and dimensions in pixels.
+     */
+    private final int[] colors = new int[COLOR_COUNT];
+    private final int[] alphas = new int[ALPHA_COUNT];
+    private final float[] dimensions = new float[DIMEN_COUNT];
+
+    /**
+     * Constructor, loading the default theme from the resources.
+     *
+     * @param resources The resources to load the theme from.
+     */
+    public Theme(Resources resources) {
+        for(int i = 0; i < COLOR_COUNT; i++)
+            //noinspection deprecation
+            colors[i] = resources.getColor(COLOR_RESOURCES[i]);
+        for(int i = 0; i < ALPHA_COUNT; i++)
+            alphas[i] = resources.getInteger(ALPHA_RESOURCES[i]);
+        for(int i = 0; i < DIMEN_COUNT; i++)
+            dimensions[i] = resources.getDimension(DIMEN_RESOURCES[i]);
+    }
+
+    /**
+     * Constructor, overriding the parameters of a base theme with the given JSON object.
+     * Parameters that aren't in the object are taken from the base theme, unknown keys are ignored.
+     *
+     * @param base The base theme.
+     * @param json The JSON object to override the parameters with.
+     * @param density The display density, to convert dimensions in dp to pixels.
+     *
+     * @throws JSONException If a parameter has an invalid type.
+     * @throws IllegalArgumentException If a color is invalid.
+     */
+    public Theme(Theme base, JSONObject json, float density) throws JSONException {
+        for(int i = 0; i < COLOR_COUNT; i++)
+            colors[i] = json.has(COLOR_KEYS[i]) ? Color.parseColor(json.getString(COLOR_KEYS[i])) : base.colors[i];
+        for(int i = 0; i < ALPHA_COUNT; i++)
+            alphas[i] = json.has(ALPHA_KEYS[i]) ? Math.max(0, Math.min(json.getInt(ALPHA_KEYS[i]), 255)) : base.alphas[i];
+        for(int i = 0; i < DIMEN_COUNT; i++)
+            dimensions[i] = json.has(DIMEN_KEYS[i]) ? (float) json.getDouble(DIMEN_KEYS[i]) * density : base.dimensions[i];
+    }
+
+    /**
+     * Load the theme of the face.
+     * This is the default theme, overridden by the theme file if it exists and is valid.
+     *
+     * @param context The context to load the theme with.
+     *
+     * @return The theme.
+     */
+    public static Theme load(Context context) {
+        Resources resources = context.getResources();
+        Theme theme = new Theme(resources);
+
+        // Use the default theme if it isn't overridden
+        File file = new File(context.getFilesDir(), FILE_NAME);
+        if(!file.exists())
+            return theme;
+
+        // Override the default theme with the theme file
+        try {
+            return new Theme(theme, new JSONObject(readFile(file)), resources.getDisplayMetrics().density);
+        } catch(IOException e) {
+            Log.w(TAG, "Failed to read the theme file, using the default theme", e);
+        } catch(JSONException e) {
+            Log.w(TAG, "Invalid theme file, using the default theme", e);
+        } catch(IllegalArgumentException e) {
+            Log.w(TAG, "Invalid color in the theme file, using the default theme", e);
+        }
+        return theme;
+    }
+
+    /**
+     * Parse the given theme, and store it as theme file if it's valid.
+     *
+     * @param context The context to store the theme with.
+     * @param json The theme as JSON object, or null to remove the theme file and use the default theme.
+     *
+     * @return The parsed theme.
+     *
+     * @throws JSONException If the theme is invalid JSON or a parameter has an invalid type.
+     * @throws IllegalArgumentException If a color is invalid.
+     * @throws IOException If the theme file couldn't be written.
+     */
+    public static Theme store(Context context, String json) throws JSONException, IOException {
+        Resources resources = context.getResources();
+        File file = new File(context.getFilesDir(), FILE_NAME);
+
+        // Remove the theme file to use the default theme
+        if(json == null) {
+            if(file.exists() && !file.delete())
+                throw new IOException("Failed to delete " + file);
+            return new Theme(resources);
+        }
+
+        // Parse the theme before it's stored, so an invalid theme is never stored
+        Theme theme = new Theme(new Theme(resources), new JSONObject(json), resources.getDisplayMetrics().density);
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        try {
+            writer.write(json);
+        } finally {
+            writer.close();
+        }
+        return theme;
+    }
+
+    /**
+     * Read the given file as UTF-8 text.
+     *
+     * @param file The file.
+     *
+     * @return The content of the file.
+     *
+     * @throws IOException If the file couldn't be read.
+     */
+    private static String readFile(File file) throws IOException {
+        Reader reader = new InputStreamReader(new FileInputStream(file), "UTF-8");
+        try {
+            StringBuilder builder = new StringBuilder();
+            char[] buffer = new char[1024];
+            int count;
+            while((count = reader.read(buffer)) != -1)
+                builder.append(buffer, 0, count);
+            return builder.toString();
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Determine the parts of the face that differ between this and the given theme.
+     *
+     * @param other The theme to compare with.
+     *
+     * @return The parts that differ, a combination of the {@code PART_} constants.
+     */
+    public int diff(Theme other) {
+        int parts = 0;
+        for(int i = 0; i < COLOR_COUNT; i++)
+            if(colors[i] != other.colors[i])
+                parts |= COLOR_PARTS[i];
+        for(int i = 0; i < ALPHA_COUNT; i++)
+            if(alphas[i] != other.alphas[i])
+                parts |= ALPHA_PARTS[i];
+        for(int i = 0; i < DIMEN_COUNT; i++)
+            if(dimensions[i] != other.dimensions[i])
+                parts |= DIMEN_PARTS[i];
+        return parts;
+    }
+
+    /**
+     * Check whether the given JSON key is a parameter of the theme.
+     *
+     * @param key The key.
+     *
+     * @return True if it's the key of a color, alpha or dimension.
+     */
+    public static boolean isKey(String key) {
+        return Arrays.asList(COLOR_KEYS).contains(key) || Arrays.asList(ALPHA_KEYS).contains(key)
+                || Arrays.asList(DIMEN_KEYS).contains(key);
+    }
+
+    /**
+     * Get a color of the theme.
+     *
+     * @param color The color, one of the {@code COLOR_} constants.
+     *
+     * @return The color.
+     */
+    public int getColor(int color) {
+        return colors[color];
+    }
+
+    /**
+     * Get an alpha of the theme.
+     *
+     * @param alpha The alpha, one of the {@code ALPHA_} constants.
+     *
+     * @return The alpha, from 0 to 255.
+     */
+    public int getAlpha(int alpha) {
+        return alphas[alpha];
+    }
+
+    /**
+     * Get a dimension of the theme.
+     *
+     * @param dimension The dimension, one of the {@code DIMEN_} constants.
+     *
+     * @return The dimension in pixels.
+     */
+    public float getDimension(int dimension) {
+        return dimensions[dimension];
+    }
+}
@@ -0,0 +1,313 @@
+package com.timvisee.axiomone;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.PorterDuff;
+import android.graphics.PorterDuffXfermode;
+import android.graphics.Rect;
+
+/**
+ * Cached layer of the ticks on the face.
+ * The ticks form a ring along the edge of the face, so a single layer would mostly hold empty
+ * pixels. The ring is therefore split in segments of five ticks, each stored in a layer that
+ * only covers its own ticks.
+ *
+ * The ring is only fully drawn when its geometry or paints change. When the highlighted tick
+ * changes, only the previously and the newly highlighted tick are erased and redrawn in place.
+ */
+public class TickRingLayer {
+
+    /**
+     * The number of ticks in each segment.
+     */
+    public static final int TICKS_PER_SEGMENT = 5;
+
+    /**
+     * The number of segments.
+     */
+    public static final int SEGMENT_COUNT = FaceGeometry.TICK_COUNT / TICKS_PER_SEGMENT;
+
+    /**
+     * The distance in pixels around a tick that is erased before it's redrawn, to include its
+     * anti-aliased edges.
+     */
+    private static final float ERASE_MARGIN = 1.0f;
+
+    /**
+     * The layers of the segments.
+     */
+    private final Layer[] segments = new Layer[SEGMENT_COUNT];
+
+    /**
+     * The geometry of the ticks.
+     */
+    private FaceGeometry geometry;
+
+    /**
+     * The paints of the small and large ticks, and of the highlighted small and large tick.
+     */
+    private Paint smallPaint;
+    private Paint largePaint;
+    private Paint smallHighlightPaint;
+    private Paint largeHighlightPaint;
+
+    /**
+     * The paint a tick is erased with before it's redrawn.
+     */
+    private final Paint erasePaint = new Paint();
+
+    /**
+     * The tick that is drawn highlighted, or -1 if the ring must be fully drawn.
+     */
+    private int highlightedTick = -1;
+
+    /**
+     * The number of times the ring was fully drawn, and the number of ticks that were drawn.
+     */
+    private int rebuildCount = 0;
+    private int tickDrawCount = 0;
+
+    /**
+     * Constructor.
+     *
+     * @param config The bitmap configuration of the segment layers.
+     */
+    public TickRingLayer(Bitmap.Config config) {
+        for(int i = 0; i < SEGMENT_COUNT; i++)
+            segments[i] = new Layer(config);
+
+        // Erase without anti-aliasing, so the erased pixels are fully cleared
+        erasePaint.setXfermode(new PorterDuffXfermode(PorterDuff.Mode.CLEAR));
+        erasePaint.setStrokeCap(Paint.Cap.SQUARE);
+    }
+
+    /**
+     * Set the paints of the ticks.
+     * The ring is fully drawn again the next time the highlighted tick is set.
+     *
+     * @param smallPaint The paint of the small ticks.
+     * @param largePaint The paint of the large ticks.
+     * @param smallHighlightPaint The paint of a highlighted small tick.
+     * @param largeHighlightPaint The paint of a highlighted large tick.
+     */
+    public void setPaints(Paint smallPaint, Paint largePaint, Paint smallHighlightPaint, Paint largeHighlightPaint) {
+        this.smallPaint = smallPaint;
+        this.largePaint = largePaint;
+        this.smallHighlightPaint = smallHighlightPaint;
+        this.largeHighlightPaint = largeHighlightPaint;
+        invalidate();
+    }
+
+    /**
+     * Fit the segments around the ticks of the given geometry.
+     *
+     * @param geometry The face geometry.
+     * @param margin The margin around the ticks, for line widths and anti-aliasing.
+     *
+     * @return True if the bounds of any segment changed, and the segments were reallocated.
+     */
+    public boolean setGeometry(FaceGeometry geometry, float margin) {
+        // The ticks moved, so the ring must be fully drawn again
+        this.geometry = geometry;
+        invalidate();
+
+        float[] tickCoords = geometry.getTickCoords();
+        boolean changed = false;
+        for(int segment = 0; segment < SEGMENT_COUNT; segment++) {
+            // Determine the bounding box of the ticks in this segment
+            int first = segment * TICKS_PER_SEGMENT * 4;
+            float left = tickCoords[first], top = tickCoords[first + 1], right = left, bottom = top;
+            for(int i = first; i < first + TICKS_PER_SEGMENT * 4; i += 2) {
+                left = Math.min(left, tickCoords[i]);
+                top = Math.min(top, tickCoords[i + 1]);
+                right = Math.max(right, tickCoords[i]);
+                bottom = Math.max(bottom, tickCoords[i + 1]);
+            }
+
+            // Fit the layer of the segment
+            changed |= segments[segment].setBounds(
+                    (int) Math.floor(left - margin), (int) Math.floor(top - margin),
+                    (int) Math.ceil(right + margin), (int) Math.ceil(bottom + margin)
+            );
+        }
+        return changed;
+    }
+
+    /**
+     * Set the tick that is drawn highlighted.
+     * If the ring is drawn, only the previously and the newly highlighted tick are redrawn.
+     * Otherwise the whole ring is drawn.
+     *
+     * @param tick The tick index, 0 to 59.
+     *
+     * @return True if the whole ring was drawn, false if only the changed ticks were redrawn.
+     */
+    public boolean setHighlightedTick(int tick) {
+        // Skip if the tick is already highlighted
+        if(tick == highlightedTick)
+            return false;
+
+        // Draw the whole ring if it isn't drawn yet
+        if(highlightedTick < 0) {
+            clear();
+            for(int i = 0; i < FaceGeometry.TICK_COUNT; i++)
+                drawTick(i, i == tick);
+            highlightedTick = tick;
+            rebuildCount++;
+            return true;
+        }
+
+        // Redraw the previously highlighted tick as normal tick, and highlight the new tick
+        redrawTick(highlightedTick, false);
+        redrawTick(tick, true);
+        highlightedTick = tick;
+        return false;
+    }
+
+    /**
+     * Get the tick that is drawn highlighted.
+     *
+     * @return The tick index, or -1 if the ring must be fully drawn.
+     */
+    public int getHighlightedTick() {
+        return highlightedTick;
+    }
+
+    /**
+     * Fully draw the ring again the next time the highlighted tick is set.
+     */
+    public void invalidate() {
+        highlightedTick = -1;
+    }
+
+    /**
+     * Erase the given tick, and draw it again.
+     *
+     * @param tick The tick index.
+     * @param highlighted True to draw the tick highlighted.
+     */
+    private void redrawTick(int tick, boolean highlighted) {
+        // Erase the tick with a slightly wider line, neighbouring ticks are far enough away to be untouched
+        float[] tickCoords = geometry.getTickCoords();
+        erasePaint.setStrokeWidth(getPaint(tick, highlighted).getStrokeWidth() + ERASE_MARGIN * 2.0f);
+        getCanvas(tick).drawLine(
+                tickCoords[tick * 4], tickCoords[tick * 4 + 1],
+                tickCoords[tick * 4 + 2], tickCoords[tick * 4 + 3],
+                erasePaint
+        );
+
+        // Draw the tick
+        drawTick(tick, highlighted);
+    }
+
+    /**
+     * Draw the given tick.
+     *
+     * @param tick The tick index.
+     * @param highlighted True to draw the tick highlighted.
+     */
+    private void drawTick(int tick, boolean highlighted) {
+        float[] tickCoords = geometry.getTickCoords();
+        getCanvas(tick).drawLine(
+                tickCoords[tick * 4], tickCoords[tick * 4 + 1],
+                tickCoords[tick * 4 + 2], tickCoords[tick * 4 + 3],
+                getPaint(tick, highlighted)
+        );
+        tickDrawCount++;
+    }
+
+    /**
+     * Get the paint of the given tick.
+     *
+     * @param tick The tick index.
+     * @param highlighted True if the tick is highlighted.
+     *
+     * @return The paint.
+     */
+    private Paint getPaint(int tick, boolean highlighted) {
+        if(FaceGeometry.isLargeTick(tick))
+            return highlighted ? largeHighlightPaint : largePaint;
+        return highlighted ? smallHighlightPaint : smallPaint;
+    }
+
+    /**
+     * Get the canvas to draw the given tick with, in the coordinates of the face.
+     *
+     * @param tick The tick index, 0 to 59.
+     *
+     * @return The canvas of the segment that holds the tick.
+     */
+    private Canvas getCanvas(int tick) {
+        return segments[tick / TICKS_PER_SEGMENT].getCanvas();
+    }
+
+    /**
+     * Check whether the segments are allocated.
+     *
+     * @return True if allocated, false if not.
+     */
+    public boolean isAllocated() {
+        return segments[0].isAllocated();
+    }
+
+    /**
+     * Clear all segments.
+     */
+    private void clear() {
+        for(Layer segment : segments)
+            segment.clear();
+    }
+
+    /**
+     * Draw the part of the ring inside the given region on the given canvas.
+     *
+     * @param canvas The canvas to draw on.
+     * @param region The region of the face to draw.
+     * @param paint The paint to draw with, which defines the color of mask layers.
+     */
+    public void draw(Canvas canvas, Rect region, Paint paint) {
+        for(Layer segment : segments)
+            segment.draw(canvas, region, paint);
+    }
+
+    /**
+     * Get the number of bytes used by the bitmaps of all segments.
+     *
+     * @return The number of bytes.
+     */
+    public int getByteCount() {
+        int bytes = 0;
+        for(Layer segment : segments)
+            bytes += segment.getByteCount();
+        return bytes;
+    }
+
+    /**
+     * Get the number of times the whole ring was drawn.
+     *
+     * @return The number of full draws.
+     */
+    public int getRebuildCount() {
+        return rebuildCount;
+    }
+
+    /**
+     * Get the number of ticks that were drawn.
+     *
+     * @return The number of tick draws.
+     */
+    public int getTickDrawCount() {
+        return tickDrawCount;
+    }
+
+    /**
+     * Release the bitmaps of all segments.
+     * The ring is fully drawn again the next time the highlighted tick is set.
+     */
+    public void release() {
+        for(Layer segment : segments)
+            segment.release();
+        invalidate();
+    }
+}
@@ -0,0 +1,56 @@
+package com.timvisee.axiomone;
+
+import android.content.Intent;
+
+/**
+ * Handler of the broadcasts of time and time zone changes, which applies them to a time model.
+ * The receivers of the faces pass the action and the time zone extra of each broadcast.
+ */
+public class TimeChangeHandler {
+
+    /**
+     * The extra of a time zone change broadcast that holds the ID of the new time zone.
+     */
+    public static final String EXTRA_TIME_ZONE = "time-zone";
+
+    /**
+     * The time model the changes are applied to.
+     */
+    private final TimeModel timeModel;
+
+    /**
+     * The resolver that looks up time zones by their ID.
+     */
+    private final TimeZoneResolver timeZoneResolver = new TimeZoneResolver();
+
+    /**
+     * Constructor.
+     *
+     * @param timeModel The time model to apply the changes to.
+     */
+    public TimeChangeHandler(TimeModel timeModel) {
+        this.timeModel = timeModel;
+    }
+
+    /**
+     * Apply a received broadcast.
+     * A change of the wall clock anchors the time model again, a time zone change sets the time
+     * zone of the given ID, or the default time zone if the ID is missing or unknown.
+     *
+     * @param action The action of the broadcast.
+     * @param timeZoneId The time zone ID of the {@link #EXTRA_TIME_ZONE} extra, or null if there is none.
+     *
+     * @return True if the time model changed, false if the action isn't a time or time zone change.
+     */
+    public boolean onReceive(String action, String timeZoneId) {
+        if(Intent.ACTION_TIME_CHANGED.equals(action)) {
+            timeModel.invalidate();
+            return true;
+        }
+        if(Intent.ACTION_TIMEZONE_CHANGED.equals(action)) {
+            timeModel.setTimeZone(timeZoneResolver.resolve(timeZoneId));
+            return true;
+        }
+        return false;
+    }
+}
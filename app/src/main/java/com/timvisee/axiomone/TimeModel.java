@@ -0,0 +1,231 @@
+package com.timvisee.axiomone;
+
+import android.os.SystemClock;
+
+import java.util.TimeZone;
+
+/**
+ * Lightweight time source for the watch face.
+ *
+ * The wall clock is only read once a minute, or when the time or time zone changed, and the time
+ * zone offset is cached until its next transition. The local time of each frame is derived from a monotonic clock relative to that
+ * anchor using integer arithmetic, which is much cheaper than a calendar, and isn't affected by
+ * wall clock jumps within a minute.
+ */
+public class TimeModel {
+
+    /**
+     * The number of milliseconds in a second, minute, hour and day.
+     */
+    private static final long SECOND_MILLIS = 1000L;
+    private static final long MINUTE_MILLIS = 60L * SECOND_MILLIS;
+    private static final long HOUR_MILLIS = 60L * MINUTE_MILLIS;
+    private static final long DAY_MILLIS = 24L * HOUR_MILLIS;
+
+    /**
+     * Time source used by the time model.
+     */
+    public interface Clock {
+
+        /**
+         * Get the current wall clock time.
+         *
+         * @return The current time in milliseconds since the epoch.
+         */
+        long currentTimeMillis();
+
+        /**
+         * Get the time of a monotonic clock, which keeps counting while the device is asleep.
+         *
+         * @return The monotonic time in milliseconds.
+         */
+        long elapsedRealtime();
+    }
+
+    /**
+     * The system clock, used when no other clock is given.
+     */
+    public static final Clock SYSTEM_CLOCK = new Clock() {
+        @Override
+        public long currentTimeMillis() {
+            return System.currentTimeMillis();
+        }
+
+        @Override
+        public long elapsedRealtime() {
+            return SystemClock.elapsedRealtime();
+        }
+    };
+
+    /**
+     * The clock the time is read from.
+     */
+    private final Clock clock;
+
+    /**
+     * The time zone of the local time.
+     */
+    private TimeZone timeZone;
+
+    /**
+     * The cached offset of the time zone, and the wall clock range in which it's valid.
+     */
+    private int zoneOffset;
+    private long zoneOffsetValidFrom = Long.MAX_VALUE;
+    private long zoneOffsetValidUntil = Long.MIN_VALUE;
+
+    /**
+     * The monotonic time of the anchor.
+     */
+    private long anchorRealtime;
+
+    /**
+     * The local time in milliseconds at the anchor, the wall clock time including the time zone offset.
+     */
+    private long anchorLocalMillis;
+
+    /**
+     * The monotonic time until which the anchor is valid, the end of the anchored minute.
+     */
+    private long anchorValidUntil;
+
+    /**
+     * True if the model must be anchored again on the next update.
+     */
+    private boolean anchorInvalid = true;
+
+    /**
+     * The current hour of the day, minute, second and millisecond.
+     */
+    private int hour;
+    private int minute;
+    private int second;
+    private int millisecond;
+
+    /**
+     * Constructor, using the system clock and the default time zone.
+     */
+    public TimeModel() {
+        this(SYSTEM_CLOCK, TimeZone.getDefault());
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param clock The clock to read the time from.
+     * @param timeZone The time zone of the local time.
+     */
+    public TimeModel(Clock clock, TimeZone timeZone) {
+        this.clock = clock;
+        this.timeZone = timeZone;
+    }
+
+    /**
+     * Get the time zone of the local time.
+     *
+     * @return The time zone.
+     */
+    public TimeZone getTimeZone() {
+        return timeZone;
+    }
+
+    /**
+     * Set the time zone of the local time.
+     * The model is anchored again on the next update.
+     *
+     * @param timeZone The time zone.
+     */
+    public void setTimeZone(TimeZone timeZone) {
+        this.timeZone = timeZone;
+        zoneOffsetValidFrom = Long.MAX_VALUE;
+        zoneOffsetValidUntil = Long.MIN_VALUE;
+        invalidate();
+    }
+
+    /**
+     * Anchor the model again on the next update, for example when the wall clock was changed.
+     */
+    public void invalidate() {
+        anchorInvalid = true;
+    }
+
+    /**
+     * Update the current time.
+     */
+    public void update() {
+        // Anchor the model if the anchor is invalid, or the anchored minute has passed
+        long realtime = clock.elapsedRealtime();
+        if(anchorInvalid || realtime >= anchorValidUntil || realtime < anchorRealtime)
+            anchor(realtime);
+
+        // Derive the time of day from the anchor
+        long localMillis = anchorLocalMillis + (realtime - anchorRealtime);
+        long dayMillis = localMillis % DAY_MILLIS;
+        if(dayMillis < 0)
+            dayMillis += DAY_MILLIS;
+        hour = (int) (dayMillis / HOUR_MILLIS);
+        minute = (int) (dayMillis / MINUTE_MILLIS % 60);
+        second = (int) (dayMillis / SECOND_MILLIS % 60);
+        millisecond = (int) (dayMillis % SECOND_MILLIS);
+    }
+
+    /**
+     * Anchor the model to the current wall clock time and time zone offset.
+     *
+     * @param realtime The current monotonic time.
+     */
+    private void anchor(long realtime) {
+        // Read the wall clock, and look up the time zone offset if the cached offset isn't valid
+        long wallMillis = clock.currentTimeMillis();
+        if(wallMillis < zoneOffsetValidFrom || wallMillis >= zoneOffsetValidUntil) {
+            zoneOffset = timeZone.getOffset(wallMillis);
+            zoneOffsetValidFrom = wallMillis;
+            zoneOffsetValidUntil = TimeZoneResolver.findNextTransition(timeZone, wallMillis);
+        }
+        anchorRealtime = realtime;
+        anchorLocalMillis = wallMillis + zoneOffset;
+
+        // The anchor is valid until the end of the current local minute
+        long minuteMillis = anchorLocalMillis % MINUTE_MILLIS;
+        if(minuteMillis < 0)
+            minuteMillis += MINUTE_MILLIS;
+        anchorValidUntil = realtime + MINUTE_MILLIS - minuteMillis;
+        anchorInvalid = false;
+    }
+
+    /**
+     * Get the current hour of the day.
+     *
+     * @return The hour, 0 to 23.
+     */
+    public int getHour() {
+        return hour;
+    }
+
+    /**
+     * Get the current minute.
+     *
+     * @return The minute, 0 to 59.
+     */
+    public int getMinute() {
+        return minute;
+    }
+
+    /**
+     * Get the current second.
+     *
+     * @return The second, 0 to 59.
+     */
+    public int getSecond() {
+        return second;
+    }
+
+    /**
+     * Get the current millisecond.
+     *
+     * @return The millisecond, 0 to 999.
+     */
+    public int getMillisecond() {
+        return millisecond;
+    }
+}
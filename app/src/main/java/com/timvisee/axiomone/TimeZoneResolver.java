@@ -0,0 +1,100 @@
+package com.timvisee.axiomone;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TimeZone;
+
+/**
+ * Resolver for time zones by their ID, which caches the resolved time zones.
+ * It also determines when the offset of a time zone changes next, so the offset doesn't have to
+ * be looked up again until then.
+ */
+public class TimeZoneResolver {
+
+    /**
+     * The ID of the GMT time zone, which is returned for unknown time zone IDs.
+     */
+    private static final String GMT_ID = "GMT";
+
+    /**
+     * The number of milliseconds in a day.
+     */
+    private static final long DAY_MILLIS = 24L * 60L * 60L * 1000L;
+
+    /**
+     * The maximum number of days to search for the next offset transition.
+     */
+    private static final int TRANSITION_SEARCH_DAYS = 366;
+
+    /**
+     * The resolved time zones by their ID.
+     */
+    private final Map<String, TimeZone> timeZones = new HashMap<String, TimeZone>();
+
+    /**
+     * Resolve the time zone with the given ID.
+     *
+     * @param timeZoneId The time zone ID, or null to use the default time zone.
+     *
+     * @return The time zone, or the default time zone if the ID is unknown.
+     */
+    public TimeZone resolve(String timeZoneId) {
+        // Use the default time zone if no ID is given
+        if(timeZoneId == null)
+            return TimeZone.getDefault();
+
+        // Return the cached time zone
+        TimeZone timeZone = timeZones.get(timeZoneId);
+        if(timeZone != null)
+            return timeZone;
+
+        // Look up the time zone, unknown IDs resolve to GMT and fall back to the default time zone
+        timeZone = TimeZone.getTimeZone(timeZoneId);
+        if(GMT_ID.equals(timeZone.getID()) && !GMT_ID.equals(timeZoneId))
+            return TimeZone.getDefault();
+
+        // Cache and return the time zone
+        timeZones.put(timeZoneId, timeZone);
+        return timeZone;
+    }
+
+    /**
+     * Find the moment the offset of the given time zone changes next.
+     * Only the coming year is searched, if the offset doesn't change in that year the end of the
+     * searched range is returned so the offset is checked again at that moment.
+     *
+     * @param timeZone The time zone.
+     * @param fromMillis The time to search from, in milliseconds since the epoch.
+     *
+     * @return The first moment after the given time that has a different offset, in milliseconds
+     *         since the epoch.
+     */
+    public static long findNextTransition(TimeZone timeZone, long fromMillis) {
+        // Find the first day on which the offset differs
+        int offset = timeZone.getOffset(fromMillis);
+        long low = fromMillis;
+        long high = -1;
+        for(int day = 1; day <= TRANSITION_SEARCH_DAYS; day++) {
+            long time = fromMillis + day * DAY_MILLIS;
+            if(timeZone.getOffset(time) != offset) {
+                high = time;
+                break;
+            }
+            low = time;
+        }
+
+        // The offset doesn't change within the searched range
+        if(high < 0)
+            return low;
+
+        // Narrow the transition down to the millisecond
+        while(high - low > 1) {
+            long middle = low + (high - low) / 2;
+            if(timeZone.getOffset(middle) == offset)
+                low = middle;
+            else
+                high = middle;
+        }
+        return high;
+    }
+}
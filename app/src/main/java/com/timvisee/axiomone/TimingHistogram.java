@@ -0,0 +1,180 @@
+package com.timvisee.axiomone;
+
+/**
+ * Fixed-size histogram of nanosecond timings, which doesn't allocate when recording values.
+ *
+ * Values are recorded in logarithmic buckets, each power of two is split into four sub-buckets.
+ * Percentiles are interpolated linearly within their bucket, so they are accurate to within 25%,
+ * and usually much closer. The minimum and maximum values are tracked exactly.
+ */
+public class TimingHistogram {
+
+    /**
+     * The number of sub-buckets for each power of two, as a power of two.
+     */
+    private static final int SUB_BUCKET_BITS = 2;
+
+    /**
+     * The number of sub-buckets for each power of two.
+     */
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    /**
+     * The number of powers of two that are tracked, up to about 18 minutes in nanoseconds.
+     */
+    private static final int POWERS = 40;
+
+    /**
+     * The number of recorded values in each bucket.
+     */
+    private final long[] buckets = new long[POWERS * SUB_BUCKETS];
+
+    /**
+     * The number of recorded values.
+     */
+    private long count = 0;
+
+    /**
+     * The sum of all recorded values.
+     */
+    private long total = 0;
+
+    /**
+     * The smallest recorded value, or the largest possible value if no values were recorded.
+     */
+    private long min = Long.MAX_VALUE;
+
+    /**
+     * The largest recorded value.
+     */
+    private long max = 0;
+
+    /**
+     * Record a value.
+     *
+     * @param nanos The value in nanoseconds.
+     */
+    public void record(long nanos) {
+        if(nanos < 0)
+            nanos = 0;
+        buckets[bucketOf(nanos)]++;
+        count++;
+        total += nanos;
+        if(nanos < min)
+            min = nanos;
+        if(nanos > max)
+            max = nanos;
+    }
+
+    /**
+     * Get the number of recorded values.
+     *
+     * @return The number of values.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Get the mean of the recorded values.
+     *
+     * @return The mean in nanoseconds, or zero if no values were recorded.
+     */
+    public long getMean() {
+        return count > 0 ? total / count : 0;
+    }
+
+    /**
+     * Get the smallest recorded value.
+     *
+     * @return The minimum in nanoseconds, or zero if no values were recorded.
+     */
+    public long getMin() {
+        return count > 0 ? min : 0;
+    }
+
+    /**
+     * Get the largest recorded value.
+     *
+     * @return The maximum in nanoseconds.
+     */
+    public long getMax() {
+        return max;
+    }
+
+    /**
+     * Get the given percentile of the recorded values.
+     *
+     * @param percentile The percentile, from 0 to 100.
+     *
+     * @return The percentile in nanoseconds, interpolated linearly between the bounds of the bucket
+     *         holding it and limited to the recorded minimum and maximum, or zero if no values were
+     *         recorded.
+     */
+    public long getPercentile(double percentile) {
+        if(count == 0)
+            return 0;
+
+        // Find the bucket that holds the requested rank
+        double rank = Math.max(1.0, count * percentile / 100.0);
+        long seen = 0;
+        for(int i = 0; i < buckets.length; i++) {
+            if(seen + buckets[i] >= rank) {
+                // Interpolate between the bounds of the bucket, by the position of the rank in it
+                long lower = i > 0 ? upperBoundOf(i - 1) + 1 : 0;
+                long upper = upperBoundOf(i);
+                double position = (rank - seen) / buckets[i];
+                long value = lower + (long) ((upper - lower) * position);
+                return Math.max(min, Math.min(value, max));
+            }
+            seen += buckets[i];
+        }
+        return max;
+    }
+
+    /**
+     * Reset the histogram.
+     */
+    public void reset() {
+        for(int i = 0; i < buckets.length; i++)
+            buckets[i] = 0;
+        count = 0;
+        total = 0;
+        min = Long.MAX_VALUE;
+        max = 0;
+    }
+
+    /**
+     * Determine the bucket index of the given value.
+     *
+     * @param value The value.
+     *
+     * @return The bucket index.
+     */
+    private static int bucketOf(long value) {
+        // Small values are stored in the first buckets directly
+        if(value < SUB_BUCKETS)
+            return (int) value;
+
+        // Determine the power of two, and the sub-bucket from the bits below the highest bit
+        int power = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (power - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        int index = (power - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+        return Math.min(index, POWERS * SUB_BUCKETS - 1);
+    }
+
+    /**
+     * Determine the largest value that is stored in the given bucket.
+     *
+     * @param index The bucket index.
+     *
+     * @return The upper bound of the bucket.
+     */
+    private static long upperBoundOf(int index) {
+        if(index < SUB_BUCKETS)
+            return index;
+        int power = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        int subBucket = index % SUB_BUCKETS;
+        return ((long) (SUB_BUCKETS + subBucket + 1) << (power - SUB_BUCKET_BITS)) - 1;
+    }
+}
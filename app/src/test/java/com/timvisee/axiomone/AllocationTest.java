@@ -0,0 +1,233 @@
+package com.timvisee.axiomone;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Allocation tests of the per-frame paths that don't use the Android APIs.
+ *
+ * Each path is run for a number of frames, while the JVM counts the bytes the test thread
+ * allocates, which must be none at all. The frames are measured right after a single warm-up
+ * frame, before the JIT compiles the path, so escape analysis can't hide allocations the device
+ * runtime would make. The JVM itself occasionally allocates on the test thread while the JIT
+ * installs code, but a path that allocates in each frame allocates in each round, so the round
+ * that allocated least is checked. The frame path of the renderer uses the Android graphics APIs,
+ * so it's checked on a device by the {@code FrameAllocationTest}.
+ */
+public class AllocationTest {
+
+    /**
+     * The number of measured frames of each path.
+     */
+    private static final int FRAMES = 1000;
+
+    /**
+     * The number of measured rounds of frames.
+     */
+    private static final int ROUNDS = 5;
+
+    /**
+     * The thread bean that counts the allocated bytes.
+     */
+    private com.sun.management.ThreadMXBean threads;
+
+    /**
+     * The temporary trace file, or null.
+     */
+    private File traceFile;
+
+    /**
+     * A single frame of a per-frame path.
+     */
+    private interface Frame {
+
+        /**
+         * Run the frame.
+         *
+         * @param frame The index of the frame.
+         */
+        void run(int frame);
+    }
+
+    @Before
+    public void setUp() {
+        // Allocation counting is a HotSpot extension, skip the tests on JVMs without it
+        assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+    }
+
+    @After
+    public void tearDown() {
+        if(traceFile != null)
+            traceFile.delete();
+    }
+
+    /**
+     * Assert that the given path doesn't allocate after its first frame.
+     *
+     * @param path The name of the path.
+     * @param frame The frame of the path.
+     */
+    private void assertAllocationFree(String path, Frame frame) {
+        // Warm up, so lazy initialization isn't counted
+        frame.run(0);
+
+        // Measure the bytes allocated by the frames, minus those of reading the counter itself.
+        // Keep the least of a few rounds, so a one-time allocation of the JVM isn't counted.
+        long thread = Thread.currentThread().getId();
+        long bytes = Long.MAX_VALUE;
+        for(int round = 0; round < ROUNDS; round++) {
+            long calibration = threads.getThreadAllocatedBytes(thread);
+            long start = threads.getThreadAllocatedBytes(thread);
+            for(int i = 1; i <= FRAMES; i++)
+                frame.run(round * FRAMES + i);
+            long end = threads.getThreadAllocatedBytes(thread);
+            bytes = Math.min(bytes, end - start - (start - calibration));
+        }
+
+        assertEquals(path + " allocated " + bytes + " bytes in " + FRAMES + " frames", 0, bytes);
+    }
+
+    /**
+     * The time model and digit strings of each frame, crossing a minute boundary.
+     */
+    @Test
+    public void testTime() {
+        final long[] realtime = {0};
+        final TimeModel timeModel = new TimeModel(new TimeModel.Clock() {
+            @Override
+            public long currentTimeMillis() {
+                return 1458000050000L + realtime[0];
+            }
+
+            @Override
+            public long elapsedRealtime() {
+                return realtime[0];
+            }
+        }, TimeZone.getTimeZone("GMT"));
+
+        assertAllocationFree("Time", new Frame() {
+            @Override
+            public void run(int frame) {
+                realtime[0] = frame * 16L;
+                timeModel.update();
+                DigitStrings.hour(timeModel.getHour());
+                DigitStrings.minute(timeModel.getMinute());
+            }
+        });
+    }
+
+    /**
+     * The delay until the next frame, computed when each frame is scheduled.
+     */
+    @Test
+    public void testFrameDelay() {
+        final FrameScheduler frameScheduler = new FrameScheduler(new FakeScheduler(0), FrameScheduler.SYSTEM_CLOCK, 60, null);
+
+        assertAllocationFree("Frame delay", new Frame() {
+            @Override
+            public void run(int frame) {
+                frameScheduler.getDelayUntilNextFrame(1458000000000L + frame * 7L);
+            }
+        });
+    }
+
+    /**
+     * The gleam coordinates of each frame.
+     */
+    @Test
+    public void testGleamCoords() {
+        final FaceGeometry geometry = new FaceGeometry(10f, 20f, 30f);
+        geometry.setRadius(160f);
+        final float[] coords = new float[8];
+
+        assertAllocationFree("Gleam coordinates", new Frame() {
+            @Override
+            public void run(int frame) {
+                geometry.getGleamCoords(frame * 0.016f % 60f, coords);
+            }
+        });
+    }
+
+    /**
+     * The frame statistics of each frame, with the histograms recording.
+     */
+    @Test
+    public void testFrameStats() {
+        final FrameStats frameStats = new FrameStats(true);
+        frameStats.setExpectedFrameInterval(16666666L);
+
+        assertAllocationFree("Frame statistics", new Frame() {
+            @Override
+            public void run(int frame) {
+                frameStats.beginFrame();
+                frameStats.endStage(FrameStats.STAGE_TIME);
+                frameStats.endStage(FrameStats.STAGE_CLOCK_LAYER);
+                frameStats.endStage(FrameStats.STAGE_COMPOSITE);
+                frameStats.count(FrameStats.COUNTER_CLOCK_SWAPS);
+                frameStats.endFrame(true);
+            }
+        });
+    }
+
+    /**
+     * The timing histogram across all of its buckets.
+     */
+    @Test
+    public void testTimingHistogram() {
+        final TimingHistogram histogram = new TimingHistogram();
+
+        assertAllocationFree("Timing histogram", new Frame() {
+            @Override
+            public void run(int frame) {
+                histogram.record(1L << (frame % 40) | frame);
+            }
+        });
+    }
+
+    /**
+     * The quality controller, stepping between tiers.
+     */
+    @Test
+    public void testQualityController() {
+        final QualityController controller = new QualityController(
+                new int[] {60, 30, 1, 1}, new int[] {50, 20, 10, 0}, QualityController.TIER_REDUCED, null);
+
+        assertAllocationFree("Quality controller", new Frame() {
+            @Override
+            public void run(int frame) {
+                controller.onFrame(frame % 300 < 150 ? 20000000L : 100000L);
+            }
+        });
+    }
+
+    /**
+     * The frame tracer, wrapping around its ring buffer.
+     *
+     * @throws IOException If the trace file couldn't be created.
+     */
+    @Test
+    public void testFrameTracer() throws IOException {
+        traceFile = File.createTempFile("trace", ".bin");
+        final FrameTracer tracer = new FrameTracer(traceFile, 256);
+
+        assertAllocationFree("Frame tracer", new Frame() {
+            @Override
+            public void run(int frame) {
+                tracer.record(FrameTracer.EVENT_DRAW, FrameTracer.LAYER_TICK, frame * 16000000L, 2000000L);
+            }
+        });
+        tracer.close();
+    }
+}
@@ -0,0 +1,216 @@
+package com.timvisee.axiomone;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of the debouncing and diffing of the configuration sync, fed by an in-memory source and
+ * driven by a fake scheduler.
+ */
+public class ConfigSyncTest {
+
+    /**
+     * The delay after the last configuration to apply it at, and the maximum delay, in milliseconds.
+     */
+    private static final long DEBOUNCE_DELAY = 500;
+    private static final long MAX_DELAY = 3000;
+
+    /**
+     * Target that records what is applied, and rejects colors that aren't in hexadecimal notation.
+     */
+    private static class FakeTarget implements ConfigSync.Target {
+
+        /**
+         * The applied themes, and the applied frame rates.
+         */
+        final List<String> themes = new ArrayList<String>();
+        final List<Integer> frameRates = new ArrayList<Integer>();
+
+        /**
+         * The reported failures.
+         */
+        final List<Exception> failures = new ArrayList<Exception>();
+
+        @Override
+        public void applyTheme(String theme) throws JSONException {
+            if(theme != null) {
+                JSONObject values = new JSONObject(theme);
+                Iterator<String> keys = values.keys();
+                while(keys.hasNext()) {
+                    Object value = values.get(keys.next());
+                    if(value instanceof String && !((String) value).startsWith("#"))
+                        throw new IllegalArgumentException("Unknown color: " + value);
+                }
+            }
+            themes.add(theme);
+        }
+
+        @Override
+        public void applyFrameRate(int frameRate) {
+            frameRates.add(frameRate);
+        }
+
+        @Override
+        public void reportFailure(String message, Exception e) {
+            failures.add(e);
+        }
+    }
+
+    /**
+     * The scheduler the configuration is applied on.
+     */
+    private FakeScheduler scheduler;
+
+    /**
+     * The source the configurations are pushed to.
+     */
+    private InMemoryConfigSource source;
+
+    /**
+     * The target the configurations are applied to.
+     */
+    private FakeTarget target;
+
+    /**
+     * The synchronization.
+     */
+    private ConfigSync sync;
+
+    @Before
+    public void setUp() {
+        scheduler = new FakeScheduler(0);
+        source = new InMemoryConfigSource();
+        target = new FakeTarget();
+        sync = new ConfigSync(scheduler, DEBOUNCE_DELAY, MAX_DELAY, target);
+        source.start(sync);
+    }
+
+    /**
+     * Create a configuration.
+     *
+     * @param background The background color, or null to not override the theme.
+     * @param frameRate The frame rate limit.
+     *
+     * @return The configuration.
+     */
+    private static JSONObject createConfig(String background, int frameRate) {
+        try {
+            JSONObject config = new JSONObject();
+            if(background != null)
+                config.put("background", background);
+            config.put(ConfigSync.KEY_FRAME_RATE, frameRate);
+            return config;
+        } catch(JSONException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * A burst of configurations is applied once, with the last configuration, after no
+     * configuration was received for the debounce delay.
+     */
+    @Test
+    public void testDebounce() {
+        source.push(createConfig("#000000", 10));
+        scheduler.advanceTo(100);
+        source.push(createConfig("#101010", 20));
+        scheduler.advanceTo(200);
+        source.push(createConfig("#202020", 30));
+
+        scheduler.advanceTo(200 + DEBOUNCE_DELAY - 1);
+        assertEquals(0, target.themes.size());
+        assertEquals(0, target.frameRates.size());
+
+        scheduler.advanceTo(200 + DEBOUNCE_DELAY);
+        assertEquals(1, target.themes.size());
+        assertTrue(target.themes.get(0).contains("#202020"));
+        assertEquals(1, target.frameRates.size());
+        assertEquals(30, (int) target.frameRates.get(0));
+        assertEquals(30, sync.getFrameRate());
+        assertEquals(0, scheduler.getPendingCount());
+    }
+
+    /**
+     * Configurations that keep arriving within the debounce delay are applied once the maximum
+     * delay after the first passed.
+     */
+    @Test
+    public void testMaxDelay() {
+        for(long time = 0; time < MAX_DELAY; time += 400) {
+            scheduler.advanceTo(time);
+            source.push(createConfig(null, (int) time / 100 + 1));
+        }
+
+        scheduler.advanceTo(MAX_DELAY - 1);
+        assertEquals(0, target.frameRates.size());
+
+        scheduler.advanceTo(MAX_DELAY);
+        assertEquals(1, target.frameRates.size());
+        assertEquals(29, (int) target.frameRates.get(0));
+    }
+
+    /**
+     * A configuration equal to the applied configuration doesn't apply anything.
+     */
+    @Test
+    public void testUnchanged() {
+        source.push(createConfig("#123456", 15));
+        scheduler.advanceBy(DEBOUNCE_DELAY);
+        assertEquals(1, target.themes.size());
+        assertEquals(1, target.frameRates.size());
+
+        source.push(createConfig("#123456", 15));
+        scheduler.advanceBy(DEBOUNCE_DELAY);
+        assertEquals(1, target.themes.size());
+        assertEquals(1, target.frameRates.size());
+
+        // Only the changed value is applied
+        source.push(createConfig("#123456", 24));
+        scheduler.advanceBy(DEBOUNCE_DELAY);
+        assertEquals(1, target.themes.size());
+        assertEquals(2, target.frameRates.size());
+    }
+
+    /**
+     * An invalid theme doesn't keep the frame rate of the same configuration from being applied,
+     * and is applied once it's fixed.
+     */
+    @Test
+    public void testInvalidTheme() {
+        source.push(createConfig("red", 30));
+        scheduler.advanceBy(DEBOUNCE_DELAY);
+        assertEquals(0, target.themes.size());
+        assertEquals(1, target.failures.size());
+        assertTrue(target.failures.get(0) instanceof IllegalArgumentException);
+        assertEquals(1, target.frameRates.size());
+        assertEquals(30, sync.getFrameRate());
+
+        source.push(createConfig("#ff0000", 30));
+        scheduler.advanceBy(DEBOUNCE_DELAY);
+        assertEquals(1, target.themes.size());
+        assertEquals(1, target.failures.size());
+        assertEquals(1, target.frameRates.size());
+    }
+
+    /**
+     * Cancelling drops the pending configuration.
+     */
+    @Test
+    public void testCancel() {
+        source.push(createConfig("#000000", 10));
+        sync.cancel();
+        scheduler.advanceBy(MAX_DELAY);
+        assertEquals(0, target.themes.size());
+        assertEquals(0, target.frameRates.size());
+        assertEquals(0, scheduler.getPendingCount());
+    }
+}
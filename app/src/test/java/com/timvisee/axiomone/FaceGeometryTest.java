@@ -0,0 +1,89 @@
+package com.timvisee.axiomone;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests of the gleam corners from the lookup tables of the face geometry, against the per-frame
+ * trigonometry they replaced.
+ */
+public class FaceGeometryTest {
+
+    /**
+     * The radius of the face, and the tick and gleam lengths, of a typical round watch.
+     */
+    private static final float RADIUS = 160f;
+    private static final float TICK_LENGTH_SMALL = 8f;
+    private static final float TICK_LENGTH_LARGE = 16f;
+    private static final float GLEAM_LENGTH = 24f;
+
+    /**
+     * The width of the gleam, one second of the minute, in radians.
+     */
+    private static final float GLEAM_WIDTH = (float) (1.0f / 60.0f * Math.PI * 2.0f);
+
+    /**
+     * The maximum distance between the corners of both variants, in pixels.
+     */
+    private static final float TOLERANCE = 0.01f;
+
+    /**
+     * Calculate the corners of the gleam with trigonometry, as each frame did before the tables.
+     *
+     * @param secondPrecise The precise second, 0 to 60.
+     * @param out The buffer to write the corners into, in the order of the face geometry.
+     */
+    private static void getGleamCoordsTrigonometry(float secondPrecise, float[] out) {
+        float gleamRadiusInside = RADIUS - GLEAM_LENGTH;
+        float gleamRadiusOutside = RADIUS + 2.0f;
+        float secondAngle = (float) ((secondPrecise - 15.0f) / 60.0f * Math.PI * 2.0f);
+        getCircleCoords(gleamRadiusInside, secondAngle - GLEAM_WIDTH, out, 0);
+        getCircleCoords(gleamRadiusOutside, secondAngle - GLEAM_WIDTH, out, 2);
+        getCircleCoords(gleamRadiusOutside, secondAngle, out, 4);
+        getCircleCoords(gleamRadiusInside, secondAngle, out, 6);
+    }
+
+    /**
+     * Calculate the coordinates on a circle around the center of the face.
+     *
+     * @param radius The radius of the circle.
+     * @param angle The angle.
+     * @param out The buffer to write the X and Y coordinate into.
+     * @param index The index to write the X coordinate at.
+     */
+    private static void getCircleCoords(float radius, float angle, float[] out, int index) {
+        out[index] = (float) (radius * Math.cos(angle)) + RADIUS;
+        out[index + 1] = (float) (radius * Math.sin(angle)) + RADIUS;
+    }
+
+    /**
+     * Get the precise second of the given frame, at 60 frames per second.
+     *
+     * @param frame The frame.
+     *
+     * @return The precise second, 0 to 60.
+     */
+    private static float getSecondPrecise(int frame) {
+        return frame % 3600 / 60f;
+    }
+
+    /**
+     * The table lookup gives the same corners as the trigonometry, for each frame of a minute at
+     * 60 frames per second.
+     */
+    @Test
+    public void testMatchesTrigonometry() {
+        FaceGeometry geometry = new FaceGeometry(TICK_LENGTH_SMALL, TICK_LENGTH_LARGE, GLEAM_LENGTH);
+        geometry.setRadius(RADIUS);
+        float[] tables = new float[8];
+        float[] trigonometry = new float[8];
+
+        for(int frame = 0; frame < 3600; frame++) {
+            geometry.getGleamCoords(getSecondPrecise(frame), tables);
+            getGleamCoordsTrigonometry(getSecondPrecise(frame), trigonometry);
+            for(int i = 0; i < tables.length; i++)
+                assertEquals("Frame " + frame + ", coordinate " + i, trigonometry[i], tables[i], TOLERANCE);
+        }
+    }
+}
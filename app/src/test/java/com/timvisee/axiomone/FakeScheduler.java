@@ -0,0 +1,125 @@
+package com.timvisee.axiomone;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Scheduler with a manual clock for tests.
+ * Scheduled tasks only run when the clock is advanced past their time.
+ */
+public class FakeScheduler implements Scheduler {
+
+    /**
+     * A scheduled run of a task.
+     */
+    private static class ScheduledTask {
+
+        /**
+         * The task.
+         */
+        final Runnable task;
+
+        /**
+         * The time to run the task at, in milliseconds.
+         */
+        final long time;
+
+        /**
+         * Constructor.
+         *
+         * @param task The task.
+         * @param time The time to run the task at, in milliseconds.
+         */
+        ScheduledTask(Runnable task, long time) {
+            this.task = task;
+            this.time = time;
+        }
+    }
+
+    /**
+     * The scheduled tasks, in the order they were scheduled.
+     */
+    private final List<ScheduledTask> tasks = new ArrayList<ScheduledTask>();
+
+    /**
+     * The current time in milliseconds.
+     */
+    private long time;
+
+    /**
+     * Constructor.
+     *
+     * @param time The initial time in milliseconds.
+     */
+    public FakeScheduler(long time) {
+        this.time = time;
+    }
+
+    /**
+     * Get the current time.
+     *
+     * @return The time in milliseconds.
+     */
+    public long getTime() {
+        return time;
+    }
+
+    @Override
+    public void postDelayed(Runnable task, long delayMillis) {
+        tasks.add(new ScheduledTask(task, time + Math.max(delayMillis, 0)));
+    }
+
+    @Override
+    public void remove(Runnable task) {
+        for(int i = tasks.size() - 1; i >= 0; i--)
+            if(tasks.get(i).task == task)
+                tasks.remove(i);
+    }
+
+    @Override
+    public long uptimeMillis() {
+        return time;
+    }
+
+    /**
+     * Get the number of scheduled runs that didn't run yet.
+     *
+     * @return The number of runs.
+     */
+    public int getPendingCount() {
+        return tasks.size();
+    }
+
+    /**
+     * Advance the clock by the given time, running the tasks that are due on the way.
+     *
+     * @param millis The time in milliseconds.
+     */
+    public void advanceBy(long millis) {
+        advanceTo(time + millis);
+    }
+
+    /**
+     * Advance the clock to the given time, running the tasks that are due on the way in the order
+     * of their time, and at their time.
+     *
+     * @param target The time in milliseconds.
+     */
+    public void advanceTo(long target) {
+        while(true) {
+            // Find the first due task, scheduled first if several are due at the same time
+            ScheduledTask next = null;
+            for(ScheduledTask task : tasks)
+                if(task.time <= target && (next == null || task.time < next.time))
+                    next = task;
+            if(next == null)
+                break;
+
+            // Run it at its time
+            tasks.remove(next);
+            time = next.time;
+            next.task.run();
+        }
+        time = target;
+    }
+}
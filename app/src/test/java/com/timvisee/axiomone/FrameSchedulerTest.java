@@ -0,0 +1,157 @@
+package com.timvisee.axiomone;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of the frame scheduler, driven by a fake clock.
+ */
+public class FrameSchedulerTest {
+
+    /**
+     * The wall clock time the tests start at, 123 milliseconds into a second.
+     */
+    private static final long START = 1458000000123L;
+
+    /**
+     * The fake scheduler, of which the time is also the wall clock time.
+     */
+    private FakeScheduler scheduler;
+
+    /**
+     * The wall clock that reads the time of the fake scheduler.
+     */
+    private FrameScheduler.Clock clock;
+
+    /**
+     * The wall clock times of the frames.
+     */
+    private List<Long> frames;
+
+    /**
+     * The callback that records the frames.
+     */
+    private FrameScheduler.Callback callback;
+
+    @Before
+    public void setUp() {
+        scheduler = new FakeScheduler(START);
+        clock = new FrameScheduler.Clock() {
+            @Override
+            public long currentTimeMillis() {
+                return scheduler.getTime();
+            }
+        };
+        frames = new ArrayList<Long>();
+        callback = new FrameScheduler.Callback() {
+            @Override
+            public void onFrame() {
+                frames.add(scheduler.getTime());
+            }
+        };
+    }
+
+    /**
+     * Check whether the given time is a frame boundary.
+     *
+     * @param time The wall clock time in milliseconds.
+     * @param frameRate The frame rate.
+     *
+     * @return True if it's a boundary.
+     */
+    private static boolean isFrameBoundary(long time, int frameRate) {
+        for(int frame = 0; frame < frameRate; frame++)
+            if(frame * 1000L / frameRate == time % 1000L)
+                return true;
+        return false;
+    }
+
+    /**
+     * Ten seconds hold exactly ten times the frame rate of frames, each on a frame boundary, also
+     * for frame rates that don't divide a second in whole milliseconds.
+     */
+    @Test
+    public void testFrameCount() {
+        for(int frameRate : new int[] {60, 30, 24, 7, 1}) {
+            setUp();
+            FrameScheduler frameScheduler = new FrameScheduler(scheduler, clock, frameRate, callback);
+            frameScheduler.start();
+            scheduler.advanceBy(10000);
+            frameScheduler.stop();
+
+            assertEquals(frameRate + " fps", frameRate * 10, frames.size());
+            for(long frame : frames)
+                assertTrue(frameRate + " fps frame at " + frame, isFrameBoundary(frame, frameRate));
+        }
+    }
+
+    /**
+     * The frames don't drift: after a minute at 60 frames per second the frames are still on the
+     * same boundaries as in the first second.
+     */
+    @Test
+    public void testNoDrift() {
+        FrameScheduler frameScheduler = new FrameScheduler(scheduler, clock, 60, callback);
+        frameScheduler.start();
+        scheduler.advanceBy(60000);
+
+        assertEquals(3600, frames.size());
+        for(int i = 0; i < 60; i++)
+            assertEquals(frames.get(i) + 59000L, (long) frames.get(i + 3540));
+    }
+
+    /**
+     * The delay until the next frame at 60 frames per second, of which the boundaries are 16 or
+     * 17 milliseconds apart.
+     */
+    @Test
+    public void testDelayUntilNextFrame() {
+        FrameScheduler frameScheduler = new FrameScheduler(scheduler, clock, 60, callback);
+        assertEquals(16, frameScheduler.getDelayUntilNextFrame(1458000000000L));
+        assertEquals(17, frameScheduler.getDelayUntilNextFrame(1458000000016L));
+        assertEquals(1, frameScheduler.getDelayUntilNextFrame(1458000000032L));
+        assertEquals(17, frameScheduler.getDelayUntilNextFrame(1458000000983L));
+        assertEquals(1, frameScheduler.getDelayUntilNextFrame(1458000000999L));
+        assertEquals(16666666L, frameScheduler.getFrameIntervalNanos());
+    }
+
+    /**
+     * Changing the frame rate reschedules the next frame to a boundary of the new frame rate.
+     */
+    @Test
+    public void testSetFrameRate() {
+        FrameScheduler frameScheduler = new FrameScheduler(scheduler, clock, 60, callback);
+        frameScheduler.start();
+        scheduler.advanceBy(100);
+        int count = frames.size();
+
+        frameScheduler.setFrameRate(1);
+        assertEquals(1, scheduler.getPendingCount());
+        scheduler.advanceTo(1458000001000L);
+        assertEquals(count + 1, frames.size());
+        assertEquals(1458000001000L, (long) frames.get(count));
+    }
+
+    /**
+     * A stopped scheduler doesn't render any frames, and has nothing scheduled.
+     */
+    @Test
+    public void testStop() {
+        FrameScheduler frameScheduler = new FrameScheduler(scheduler, clock, 30, callback);
+        frameScheduler.start();
+        scheduler.advanceBy(1000);
+        frameScheduler.stop();
+        int count = frames.size();
+
+        assertEquals(0, scheduler.getPendingCount());
+        scheduler.advanceBy(10000);
+        assertEquals(count, frames.size());
+        assertTrue(!frameScheduler.isRunning());
+    }
+}
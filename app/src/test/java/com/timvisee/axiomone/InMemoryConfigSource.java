@@ -0,0 +1,43 @@
+package com.timvisee.axiomone;
+
+import org.json.JSONObject;
+
+/**
+ * Configuration source that stands in for the Data Layer in tests.
+ * Configurations pushed to it are delivered to the listener right away, on the calling thread.
+ */
+public class InMemoryConfigSource implements ConfigSource {
+
+    /**
+     * The listener configurations are delivered to, or null if the source isn't started.
+     */
+    private Listener listener;
+
+    /**
+     * The current configuration, or null if none was pushed yet.
+     */
+    private JSONObject config;
+
+    @Override
+    public void start(Listener listener) {
+        this.listener = listener;
+        if(config != null)
+            listener.onConfigReceived(config);
+    }
+
+    @Override
+    public void stop() {
+        listener = null;
+    }
+
+    /**
+     * Push a new configuration, as the companion app does when the user changes it.
+     *
+     * @param config The complete configuration.
+     */
+    public void push(JSONObject config) {
+        this.config = config;
+        if(listener != null)
+            listener.onConfigReceived(config);
+    }
+}
@@ -0,0 +1,184 @@
+package com.timvisee.axiomone;
+
+import android.content.ComponentCallbacks2;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests of the releases of the layer cache manager, driven by a fake scheduler.
+ */
+public class LayerCacheManagerTest {
+
+    /**
+     * The grace period after which the caches of a hidden face are released, in milliseconds.
+     */
+    private static final long RELEASE_DELAY = 10000;
+
+    /**
+     * Layer cache that counts its releases.
+     */
+    private static class CountingCache implements LayerCache {
+
+        /**
+         * The number of bytes the cache holds until it's released.
+         */
+        private final int bytes;
+
+        /**
+         * The number of releases.
+         */
+        int releaseCount = 0;
+
+        /**
+         * Constructor.
+         *
+         * @param bytes The number of bytes the cache holds until it's released.
+         */
+        CountingCache(int bytes) {
+            this.bytes = bytes;
+        }
+
+        @Override
+        public int getByteCount() {
+            return releaseCount > 0 ? 0 : bytes;
+        }
+
+        @Override
+        public void release() {
+            releaseCount++;
+        }
+    }
+
+    /**
+     * The scheduler the delayed release runs on.
+     */
+    private FakeScheduler scheduler;
+
+    /**
+     * The caches of the interactive and the ambient face.
+     */
+    private CountingCache interactiveCache;
+    private CountingCache ambientCache;
+
+    /**
+     * The manager.
+     */
+    private LayerCacheManager manager;
+
+    @Before
+    public void setUp() {
+        scheduler = new FakeScheduler(0);
+        interactiveCache = new CountingCache(1000);
+        ambientCache = new CountingCache(200);
+        manager = new LayerCacheManager(scheduler, RELEASE_DELAY, interactiveCache, ambientCache);
+    }
+
+    /**
+     * Assert the number of releases of both caches.
+     *
+     * @param interactive The expected releases of the interactive cache.
+     * @param ambient The expected releases of the ambient cache.
+     */
+    private void assertReleases(int interactive, int ambient) {
+        assertEquals(interactive, interactiveCache.releaseCount);
+        assertEquals(ambient, ambientCache.releaseCount);
+    }
+
+    /**
+     * The caches of a hidden face are released once the grace period passed.
+     */
+    @Test
+    public void testHidden() {
+        manager.setState(true, false);
+        assertEquals(1200, manager.getByteCount());
+        manager.setState(false, false);
+
+        scheduler.advanceBy(RELEASE_DELAY - 1);
+        assertReleases(0, 0);
+        scheduler.advanceBy(1);
+        assertReleases(1, 1);
+        assertEquals(0, manager.getByteCount());
+        assertEquals(0, scheduler.getPendingCount());
+    }
+
+    /**
+     * The caches are kept if the face is shown again within the grace period.
+     */
+    @Test
+    public void testShownAgain() {
+        manager.setState(true, false);
+        manager.setState(false, false);
+        scheduler.advanceBy(RELEASE_DELAY / 2);
+        manager.setState(true, true);
+
+        scheduler.advanceBy(RELEASE_DELAY * 2);
+        assertReleases(0, 0);
+        assertEquals(0, scheduler.getPendingCount());
+    }
+
+    /**
+     * Memory pressure releases the caches of a hidden face right away, without releasing them
+     * again after the grace period.
+     */
+    @Test
+    public void testTrimHidden() {
+        manager.setState(true, false);
+        manager.setState(false, false);
+        manager.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_BACKGROUND);
+        assertReleases(1, 1);
+
+        scheduler.advanceBy(RELEASE_DELAY * 2);
+        assertReleases(1, 1);
+    }
+
+    /**
+     * Low memory releases the caches of the mode that isn't shown while the face is visible, and
+     * moderate memory pressure releases nothing.
+     */
+    @Test
+    public void testTrimVisible() {
+        manager.setState(true, false);
+        manager.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE);
+        assertReleases(0, 0);
+
+        manager.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW);
+        assertReleases(0, 1);
+
+        manager.setState(true, true);
+        manager.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL);
+        assertReleases(1, 1);
+        assertEquals(0, scheduler.getPendingCount());
+    }
+
+    /**
+     * The caches are released when the surface size changes, not when it's first set or set to
+     * the same size.
+     */
+    @Test
+    public void testResize() {
+        manager.setState(true, false);
+        manager.onSurfaceChanged(320, 320);
+        manager.onSurfaceChanged(320, 320);
+        assertReleases(0, 0);
+
+        manager.onSurfaceChanged(320, 290);
+        assertReleases(1, 1);
+        manager.onSurfaceChanged(280, 290);
+        assertReleases(2, 2);
+    }
+
+    /**
+     * Destroying releases the caches, and cancels the delayed release.
+     */
+    @Test
+    public void testDestroy() {
+        manager.setState(true, false);
+        manager.setState(false, false);
+        manager.destroy();
+        assertReleases(1, 1);
+        assertEquals(0, scheduler.getPendingCount());
+    }
+}
@@ -0,0 +1,215 @@
+package com.timvisee.axiomone;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of the tier changes of the quality controller.
+ */
+public class QualityControllerTest {
+
+    /**
+     * The number of frames of each window, as averaged by the controller.
+     */
+    private static final int WINDOW_FRAMES = 30;
+
+    /**
+     * The frame rate of each tier, and the minimum battery level to use each tier at.
+     */
+    private static final int[] FRAME_RATES = {60, 30, 1, 1};
+    private static final int[] BATTERY_LEVELS = {50, 20, 10, 0};
+
+    /**
+     * A frame cost above half of the full tier frame interval, which steps down.
+     */
+    private static final long EXPENSIVE_NANOS = 10000000L;
+
+    /**
+     * A frame cost just below half of the full tier frame interval, which keeps the tier.
+     */
+    private static final long MODERATE_NANOS = 8000000L;
+
+    /**
+     * A frame cost below a quarter of the full tier frame interval, which has headroom to step up.
+     */
+    private static final long CHEAP_NANOS = 1000000L;
+
+    /**
+     * The tiers the listener was notified of.
+     */
+    private final List<Integer> tierChanges = new ArrayList<Integer>();
+
+    /**
+     * The listener that records the tier changes.
+     */
+    private final QualityController.Listener listener = new QualityController.Listener() {
+        @Override
+        public void onTierChanged(int tier) {
+            tierChanges.add(tier);
+        }
+    };
+
+    @Before
+    public void setUp() {
+        tierChanges.clear();
+    }
+
+    /**
+     * Create a controller starting at the given tier.
+     *
+     * @param initialTier The tier to start at.
+     *
+     * @return The controller.
+     */
+    private QualityController createController(int initialTier) {
+        return new QualityController(FRAME_RATES, BATTERY_LEVELS, initialTier, listener);
+    }
+
+    /**
+     * Record a full window of frames of the given cost.
+     *
+     * @param controller The controller.
+     * @param frameNanos The cost of each frame in nanoseconds.
+     */
+    private static void recordWindow(QualityController controller, long frameNanos) {
+        for(int i = 0; i < WINDOW_FRAMES; i++)
+            controller.onFrame(frameNanos);
+    }
+
+    /**
+     * Record cheap windows until the controller steps up.
+     *
+     * @param controller The controller.
+     *
+     * @return The number of windows it took to step up.
+     */
+    private static int countWindowsToStepUp(QualityController controller) {
+        int tier = controller.getTier();
+        for(int windows = 1; windows <= 1000; windows++) {
+            recordWindow(controller, CHEAP_NANOS);
+            if(controller.getTier() != tier)
+                return windows;
+        }
+        return -1;
+    }
+
+    /**
+     * A window of frames taking more than half of the frame interval steps down a tier, a window
+     * taking less doesn't.
+     */
+    @Test
+    public void testStepDown() {
+        QualityController controller = createController(QualityController.TIER_FULL);
+
+        recordWindow(controller, MODERATE_NANOS);
+        assertEquals(QualityController.TIER_FULL, controller.getTier());
+
+        recordWindow(controller, EXPENSIVE_NANOS);
+        assertEquals(QualityController.TIER_REDUCED, controller.getTier());
+        assertEquals(30, controller.getFrameRate());
+        assertEquals(1, tierChanges.size());
+        assertEquals(QualityController.TIER_REDUCED, (int) tierChanges.get(0));
+    }
+
+    /**
+     * Frames are only evaluated once a full window is collected.
+     */
+    @Test
+    public void testWindow() {
+        QualityController controller = createController(QualityController.TIER_FULL);
+
+        for(int i = 0; i < WINDOW_FRAMES - 1; i++)
+            controller.onFrame(EXPENSIVE_NANOS);
+        assertEquals(QualityController.TIER_FULL, controller.getTier());
+
+        controller.onFrame(EXPENSIVE_NANOS);
+        assertEquals(QualityController.TIER_REDUCED, controller.getTier());
+    }
+
+    /**
+     * The controller only steps up after four consecutive windows with headroom, and a window
+     * without headroom starts counting again.
+     */
+    @Test
+    public void testStepUp() {
+        QualityController controller = createController(QualityController.TIER_REDUCED);
+
+        for(int window = 0; window < 3; window++)
+            recordWindow(controller, CHEAP_NANOS);
+        recordWindow(controller, MODERATE_NANOS);
+        for(int window = 0; window < 3; window++)
+            recordWindow(controller, CHEAP_NANOS);
+        assertEquals(QualityController.TIER_REDUCED, controller.getTier());
+
+        recordWindow(controller, CHEAP_NANOS);
+        assertEquals(QualityController.TIER_FULL, controller.getTier());
+        assertEquals(60, controller.getFrameRate());
+    }
+
+    /**
+     * Each step down doubles the number of windows with headroom required to step up, up to 64.
+     */
+    @Test
+    public void testBackoff() {
+        QualityController controller = createController(QualityController.TIER_FULL);
+
+        int[] expected = {8, 16, 32, 64, 64};
+        for(int windows : expected) {
+            recordWindow(controller, EXPENSIVE_NANOS);
+            assertEquals(QualityController.TIER_REDUCED, controller.getTier());
+            assertEquals(windows, countWindowsToStepUp(controller));
+            assertEquals(QualityController.TIER_FULL, controller.getTier());
+        }
+    }
+
+    /**
+     * A low battery caps the best tier, however cheap the frames are.
+     */
+    @Test
+    public void testBatteryCap() {
+        QualityController controller = createController(QualityController.TIER_FULL);
+
+        controller.setBatteryState(30, false);
+        assertEquals(QualityController.TIER_REDUCED, controller.getTier());
+        controller.setBatteryState(15, false);
+        assertEquals(QualityController.TIER_TICK, controller.getTier());
+        assertFalse(controller.isGleamEnabled());
+        controller.setBatteryState(5, false);
+        assertEquals(QualityController.TIER_MINIMAL, controller.getTier());
+        assertFalse(controller.isAntiAliasEnabled());
+
+        // Cheap frames don't lift the cap
+        for(int window = 0; window < 10; window++)
+            recordWindow(controller, CHEAP_NANOS);
+        assertEquals(QualityController.TIER_MINIMAL, controller.getTier());
+
+        // A charged battery lifts the cap, back to the tier the load allows
+        controller.setBatteryState(80, false);
+        assertEquals(QualityController.TIER_FULL, controller.getTier());
+        assertTrue(controller.isGleamEnabled());
+    }
+
+    /**
+     * Charging overrides the battery cap, whatever the battery level.
+     */
+    @Test
+    public void testCharging() {
+        QualityController controller = createController(QualityController.TIER_FULL);
+
+        controller.setBatteryState(5, false);
+        assertEquals(QualityController.TIER_MINIMAL, controller.getTier());
+        controller.setBatteryState(5, true);
+        assertEquals(QualityController.TIER_FULL, controller.getTier());
+
+        // The load still steps down while charging
+        recordWindow(controller, EXPENSIVE_NANOS);
+        assertEquals(QualityController.TIER_REDUCED, controller.getTier());
+    }
+}
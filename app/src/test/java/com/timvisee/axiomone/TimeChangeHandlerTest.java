@@ -0,0 +1,143 @@
+package com.timvisee.axiomone;
+
+import android.content.Intent;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of the time change handler, driven by the actions and extras of synthetic broadcasts.
+ */
+public class TimeChangeHandlerTest {
+
+    /**
+     * 2016-03-15T10:29:30Z, halfway a minute.
+     */
+    private static final long WALL_TIME = 1458037770000L;
+
+    /**
+     * The default time zone of the tests.
+     */
+    private static final String DEFAULT_TIME_ZONE = "Asia/Tokyo";
+
+    /**
+     * The wall clock time at monotonic time zero, and the monotonic time.
+     */
+    private long wallBase;
+    private long realtime;
+
+    /**
+     * The fake clock.
+     */
+    private final TimeModel.Clock clock = new TimeModel.Clock() {
+        @Override
+        public long currentTimeMillis() {
+            return wallBase + realtime;
+        }
+
+        @Override
+        public long elapsedRealtime() {
+            return realtime;
+        }
+    };
+
+    /**
+     * The default time zone before the test, which is restored after it.
+     */
+    private TimeZone previousDefault;
+
+    /**
+     * The time model, and the handler that applies the changes to it.
+     */
+    private TimeModel model;
+    private TimeChangeHandler handler;
+
+    @Before
+    public void setUp() {
+        previousDefault = TimeZone.getDefault();
+        TimeZone.setDefault(TimeZone.getTimeZone(DEFAULT_TIME_ZONE));
+
+        realtime = 100000L;
+        wallBase = WALL_TIME - realtime;
+        model = new TimeModel(clock, TimeZone.getTimeZone("UTC"));
+        handler = new TimeChangeHandler(model);
+        model.update();
+    }
+
+    @After
+    public void tearDown() {
+        TimeZone.setDefault(previousDefault);
+    }
+
+    /**
+     * A time zone change sets the time zone of the extra.
+     */
+    @Test
+    public void testTimeZoneChanged() {
+        assertTrue(handler.onReceive(Intent.ACTION_TIMEZONE_CHANGED, "Europe/Amsterdam"));
+        assertEquals("Europe/Amsterdam", model.getTimeZone().getID());
+
+        model.update();
+        assertEquals(11, model.getHour());
+        assertEquals(29, model.getMinute());
+    }
+
+    /**
+     * A time zone change without the extra falls back to the default time zone.
+     */
+    @Test
+    public void testTimeZoneMissing() {
+        assertTrue(handler.onReceive(Intent.ACTION_TIMEZONE_CHANGED, null));
+        assertEquals(DEFAULT_TIME_ZONE, model.getTimeZone().getID());
+
+        model.update();
+        assertEquals(19, model.getHour());
+    }
+
+    /**
+     * A time zone change with an unknown time zone falls back to the default time zone.
+     */
+    @Test
+    public void testTimeZoneUnknown() {
+        assertTrue(handler.onReceive(Intent.ACTION_TIMEZONE_CHANGED, "Mars/Olympus_Mons"));
+        assertEquals(DEFAULT_TIME_ZONE, model.getTimeZone().getID());
+    }
+
+    /**
+     * A change of the wall clock within the minute is applied once it's received.
+     */
+    @Test
+    public void testTimeChanged() {
+        assertEquals(10, model.getHour());
+
+        wallBase += 3600000L;
+        realtime += 1000;
+        model.update();
+        assertEquals(10, model.getHour());
+
+        assertTrue(handler.onReceive(Intent.ACTION_TIME_CHANGED, null));
+        model.update();
+        assertEquals(11, model.getHour());
+        assertEquals(29, model.getMinute());
+        assertEquals("UTC", model.getTimeZone().getID());
+    }
+
+    /**
+     * Other broadcasts don't change the time model.
+     */
+    @Test
+    public void testOtherAction() {
+        wallBase += 3600000L;
+        assertFalse(handler.onReceive(Intent.ACTION_BATTERY_CHANGED, "Europe/Amsterdam"));
+        model.update();
+        assertEquals(10, model.getHour());
+        assertEquals("UTC", model.getTimeZone().getID());
+    }
+}
@@ -0,0 +1,180 @@
+package com.timvisee.axiomone;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests of the time model, driven by a fake clock.
+ */
+public class TimeModelTest {
+
+    /**
+     * 2016-03-15T10:29:59.999Z, one millisecond before a minute boundary.
+     */
+    private static final long MINUTE_BOUNDARY = 1458037799999L;
+
+    /**
+     * 2016-03-27T00:59:59Z, one second before the start of summer time in Europe/Amsterdam.
+     */
+    private static final long SUMMER_TIME_START = 1459040399000L;
+
+    /**
+     * 2016-10-30T00:59:59Z, one second before the end of summer time in Europe/Amsterdam.
+     */
+    private static final long SUMMER_TIME_END = 1477789199000L;
+
+    /**
+     * The wall clock time at monotonic time zero, and the monotonic time.
+     */
+    private long wallBase;
+    private long realtime;
+
+    /**
+     * The number of times the wall clock was read.
+     */
+    private int wallReads;
+
+    /**
+     * The fake clock.
+     */
+    private final TimeModel.Clock clock = new TimeModel.Clock() {
+        @Override
+        public long currentTimeMillis() {
+            wallReads++;
+            return wallBase + realtime;
+        }
+
+        @Override
+        public long elapsedRealtime() {
+            return realtime;
+        }
+    };
+
+    @Before
+    public void setUp() {
+        realtime = 100000L;
+        wallReads = 0;
+    }
+
+    /**
+     * Create a time model of which the wall clock is at the given time now.
+     *
+     * @param wallTime The wall clock time.
+     * @param timeZone The time zone ID.
+     *
+     * @return The time model.
+     */
+    private TimeModel createModel(long wallTime, String timeZone) {
+        wallBase = wallTime - realtime;
+        return new TimeModel(clock, TimeZone.getTimeZone(timeZone));
+    }
+
+    /**
+     * Assert the time of the model.
+     *
+     * @param model The time model.
+     * @param hour The expected hour.
+     * @param minute The expected minute.
+     * @param second The expected second.
+     * @param millisecond The expected millisecond.
+     */
+    private static void assertTime(TimeModel model, int hour, int minute, int second, int millisecond) {
+        assertEquals("hour", hour, model.getHour());
+        assertEquals("minute", minute, model.getMinute());
+        assertEquals("second", second, model.getSecond());
+        assertEquals("millisecond", millisecond, model.getMillisecond());
+    }
+
+    /**
+     * The time rolls over to the next minute exactly at the boundary, and the wall clock is only
+     * read again at the boundary.
+     */
+    @Test
+    public void testMinuteBoundary() {
+        TimeModel model = createModel(MINUTE_BOUNDARY - 59999, "UTC");
+        model.update();
+        assertTime(model, 10, 29, 0, 0);
+
+        // Frames within the minute are derived from the monotonic clock
+        long start = realtime;
+        for(long frame = 16; frame < 59999; frame += 16) {
+            realtime = start + frame;
+            model.update();
+        }
+        realtime = start + 59999;
+        model.update();
+        assertTime(model, 10, 29, 59, 999);
+        assertEquals(1, wallReads);
+
+        realtime++;
+        model.update();
+        assertTime(model, 10, 30, 0, 0);
+        assertEquals(2, wallReads);
+    }
+
+    /**
+     * The time jumps from 01:59:59 to 03:00:00 when summer time starts.
+     */
+    @Test
+    public void testSummerTimeStart() {
+        TimeModel model = createModel(SUMMER_TIME_START, "Europe/Amsterdam");
+        model.update();
+        assertTime(model, 1, 59, 59, 0);
+
+        realtime += 1000;
+        model.update();
+        assertTime(model, 3, 0, 0, 0);
+    }
+
+    /**
+     * The time jumps from 02:59:59 back to 02:00:00 when summer time ends.
+     */
+    @Test
+    public void testSummerTimeEnd() {
+        TimeModel model = createModel(SUMMER_TIME_END, "Europe/Amsterdam");
+        model.update();
+        assertTime(model, 2, 59, 59, 0);
+
+        realtime += 1000;
+        model.update();
+        assertTime(model, 2, 0, 0, 0);
+    }
+
+    /**
+     * A new time zone is applied on the next update.
+     */
+    @Test
+    public void testTimeZoneChange() {
+        TimeModel model = createModel(MINUTE_BOUNDARY, "UTC");
+        model.update();
+        assertTime(model, 10, 29, 59, 999);
+
+        model.setTimeZone(TimeZone.getTimeZone("Asia/Tokyo"));
+        model.update();
+        assertTime(model, 19, 29, 59, 999);
+        assertEquals(2, wallReads);
+    }
+
+    /**
+     * A wall clock change within the minute is only applied once the model is invalidated.
+     */
+    @Test
+    public void testWallClockChange() {
+        TimeModel model = createModel(MINUTE_BOUNDARY - 30000, "UTC");
+        model.update();
+        assertTime(model, 10, 29, 29, 999);
+
+        wallBase += 3600000L;
+        realtime += 1000;
+        model.update();
+        assertTime(model, 10, 29, 30, 999);
+
+        model.invalidate();
+        model.update();
+        assertTime(model, 11, 29, 30, 999);
+    }
+}
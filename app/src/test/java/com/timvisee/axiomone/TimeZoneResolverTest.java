@@ -0,0 +1,107 @@
+package com.timvisee.axiomone;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Tests of the time zone resolver.
+ */
+public class TimeZoneResolverTest {
+
+    /**
+     * The number of milliseconds in a day.
+     */
+    private static final long DAY_MILLIS = 24L * 60L * 60L * 1000L;
+
+    /**
+     * 2016-03-01T00:00:00Z.
+     */
+    private static final long MARCH_2016 = 1456790400000L;
+
+    /**
+     * 2016-03-27T01:00:00Z, the start of summer time in Europe/Amsterdam.
+     */
+    private static final long SUMMER_TIME_START = 1459040400000L;
+
+    /**
+     * 2016-10-30T01:00:00Z, the end of summer time in Europe/Amsterdam.
+     */
+    private static final long SUMMER_TIME_END = 1477789200000L;
+
+    /**
+     * The default time zone before the test, which is restored afterwards.
+     */
+    private TimeZone defaultTimeZone;
+
+    /**
+     * The resolver.
+     */
+    private TimeZoneResolver resolver;
+
+    @Before
+    public void setUp() {
+        defaultTimeZone = TimeZone.getDefault();
+        TimeZone.setDefault(TimeZone.getTimeZone("America/New_York"));
+        resolver = new TimeZoneResolver();
+    }
+
+    @After
+    public void tearDown() {
+        TimeZone.setDefault(defaultTimeZone);
+    }
+
+    /**
+     * A resolved time zone is cached, so the same instance is returned again.
+     */
+    @Test
+    public void testCacheHit() {
+        TimeZone timeZone = resolver.resolve("Europe/Amsterdam");
+        assertEquals("Europe/Amsterdam", timeZone.getID());
+        assertSame(timeZone, resolver.resolve("Europe/Amsterdam"));
+    }
+
+    /**
+     * An unknown ID falls back to the default time zone.
+     */
+    @Test
+    public void testUnknownId() {
+        assertEquals("America/New_York", resolver.resolve("Nowhere/Unknown").getID());
+    }
+
+    /**
+     * No ID resolves to the default time zone, while GMT itself resolves to GMT.
+     */
+    @Test
+    public void testDefault() {
+        assertEquals("America/New_York", resolver.resolve(null).getID());
+        assertEquals("GMT", resolver.resolve("GMT").getID());
+    }
+
+    /**
+     * The next transition is found to the millisecond, across the start and end of summer time.
+     */
+    @Test
+    public void testNextTransition() {
+        TimeZone amsterdam = TimeZone.getTimeZone("Europe/Amsterdam");
+        assertEquals(SUMMER_TIME_START, TimeZoneResolver.findNextTransition(amsterdam, MARCH_2016));
+        assertEquals(SUMMER_TIME_START, TimeZoneResolver.findNextTransition(amsterdam, SUMMER_TIME_START - 1));
+        assertEquals(SUMMER_TIME_END, TimeZoneResolver.findNextTransition(amsterdam, SUMMER_TIME_START));
+    }
+
+    /**
+     * A zone without transitions is checked again after the searched year.
+     */
+    @Test
+    public void testNoTransition() {
+        assertEquals(MARCH_2016 + 366 * DAY_MILLIS,
+                TimeZoneResolver.findNextTransition(TimeZone.getTimeZone("Asia/Tokyo"), MARCH_2016));
+        assertEquals(MARCH_2016 + 366 * DAY_MILLIS,
+                TimeZoneResolver.findNextTransition(TimeZone.getTimeZone("UTC"), MARCH_2016));
+    }
+}
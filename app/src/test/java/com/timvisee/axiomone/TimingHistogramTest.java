@@ -0,0 +1,69 @@
+package com.timvisee.axiomone;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of the percentiles of the timing histogram.
+ */
+public class TimingHistogramTest {
+
+    /**
+     * Percentiles of evenly spread values are interpolated within their bucket, instead of
+     * reporting the upper bound of the bucket.
+     */
+    @Test
+    public void testInterpolation() {
+        TimingHistogram histogram = new TimingHistogram();
+        for(long nanos = 1000000; nanos <= 2000000; nanos += 1000)
+            histogram.record(nanos);
+
+        // The buckets are 25% wide, the interpolated percentiles are much closer
+        assertEquals(1500000, histogram.getPercentile(50), 1500000 * 0.05);
+        assertEquals(1950000, histogram.getPercentile(95), 1950000 * 0.05);
+    }
+
+    /**
+     * Percentiles are limited to the smallest and the largest recorded value.
+     */
+    @Test
+    public void testLimits() {
+        TimingHistogram histogram = new TimingHistogram();
+        histogram.record(1100000);
+        histogram.record(1200000);
+
+        assertEquals(1100000, histogram.getMin());
+        assertTrue(histogram.getPercentile(0) >= 1100000);
+        assertTrue(histogram.getPercentile(50) >= 1100000 && histogram.getPercentile(50) <= 1200000);
+        assertEquals(1200000, histogram.getPercentile(100));
+    }
+
+    /**
+     * A single value is reported exactly for every percentile.
+     */
+    @Test
+    public void testSingleValue() {
+        TimingHistogram histogram = new TimingHistogram();
+        histogram.record(3333333);
+
+        assertEquals(3333333, histogram.getPercentile(50));
+        assertEquals(3333333, histogram.getPercentile(95));
+    }
+
+    /**
+     * An empty or reset histogram reports zero.
+     */
+    @Test
+    public void testEmpty() {
+        TimingHistogram histogram = new TimingHistogram();
+        assertEquals(0, histogram.getPercentile(50));
+        assertEquals(0, histogram.getMin());
+
+        histogram.record(5000);
+        histogram.reset();
+        assertEquals(0, histogram.getPercentile(50));
+        assertEquals(0, histogram.getMin());
+    }
+}
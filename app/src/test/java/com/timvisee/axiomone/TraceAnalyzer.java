@@ -0,0 +1,564 @@
+package com.timvisee.axiomone;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Offline analyzer of the traces recorded by the {@link FrameTracer}.
+ *
+ * The analyzer reports the frame intervals and the late frames of the animation with the layers
+ * their previous frame updated, bursts of frames that rebuilt whole layers, draws that were
+ * invalidated without changing anything, and the cost of the first frame after each transition.
+ * It lives in the unit test sources so it isn't shipped with the app, and only uses the Java
+ * runtime, so it runs on a desktop JVM along with the tracer and the histogram of the app sources:
+ *
+ * <pre>
+ * javac -d out FrameTracer.java TimingHistogram.java TraceAnalyzer.java
+ * java -cp out com.timvisee.axiomone.TraceAnalyzer frames.trace
+ * </pre>
+ *
+ * Pull a trace from the watch with {@code adb shell run-as com.timvisee.axiomone cat files/frames.trace}.
+ * With {@code --synthetic} a trace of a known scenario is written and replayed first, to check
+ * the analyzer without a watch.
+ */
+public class TraceAnalyzer {
+
+    /**
+     * The factor of the expected frame interval after which a frame counts as late.
+     */
+    private static final float LATE_FRAME_FACTOR = 1.5f;
+
+    /**
+     * The largest gap between draws that rebuild layers to count as the same burst.
+     */
+    private static final long BURST_GAP_NANOS = 500000000L;
+
+    /**
+     * The largest interval between a transition and the draw that follows to link them.
+     */
+    private static final long TRANSITION_LINK_NANOS = 1000000000L;
+
+    /**
+     * The number of late frames and bursts listed in the report.
+     */
+    private static final int MAX_LISTED = 10;
+
+    /**
+     * The capacity of the synthetic trace, small enough for the ring buffer to wrap.
+     */
+    private static final int SYNTHETIC_CAPACITY = 4096;
+
+    /**
+     * The timestamps, durations, event types and layer flags of the records, from old to new.
+     */
+    private final long[] timestamps;
+    private final int[] durations;
+    private final int[] events;
+    private final int[] layers;
+
+    /**
+     * The number of records in the trace.
+     */
+    private final int count;
+
+    /**
+     * The number of records that were overwritten by the ring buffer.
+     */
+    private final long overwritten;
+
+    /**
+     * Constructor, reading the records of a trace.
+     *
+     * @param buffer The content of the trace file.
+     *
+     * @throws IOException If the trace is invalid.
+     */
+    public TraceAnalyzer(ByteBuffer buffer) throws IOException {
+        // Validate the header
+        if(buffer.limit() < FrameTracer.HEADER_SIZE || buffer.getInt(FrameTracer.HEADER_MAGIC) != FrameTracer.MAGIC)
+            throw new IOException("Not a frame trace");
+        if(buffer.getShort(FrameTracer.HEADER_VERSION) != FrameTracer.VERSION
+                || buffer.getShort(FrameTracer.HEADER_RECORD_SIZE) != FrameTracer.RECORD_SIZE)
+            throw new IOException("Unsupported frame trace version " + buffer.getShort(FrameTracer.HEADER_VERSION));
+        int capacity = buffer.getInt(FrameTracer.HEADER_CAPACITY);
+        long written = buffer.getLong(FrameTracer.HEADER_WRITTEN);
+        if(capacity <= 0 || written < 0 || buffer.limit() < FrameTracer.HEADER_SIZE + (long) capacity * FrameTracer.RECORD_SIZE)
+            throw new IOException("Truncated frame trace");
+
+        // Read the records that weren't overwritten, starting at the oldest
+        count = (int) Math.min(written, capacity);
+        overwritten = written - count;
+        timestamps = new long[count];
+        durations = new int[count];
+        events = new int[count];
+        layers = new int[count];
+        for(int i = 0; i < count; i++) {
+            int offset = FrameTracer.HEADER_SIZE + (int) ((overwritten + i) % capacity) * FrameTracer.RECORD_SIZE;
+            timestamps[i] = buffer.getLong(offset + FrameTracer.RECORD_TIMESTAMP);
+            durations[i] = buffer.getInt(offset + FrameTracer.RECORD_DURATION);
+            events[i] = buffer.getShort(offset + FrameTracer.RECORD_EVENT);
+            layers[i] = buffer.getShort(offset + FrameTracer.RECORD_LAYERS) & 0xFFFF;
+        }
+    }
+
+    /**
+     * Load a trace file.
+     *
+     * @param file The trace file.
+     *
+     * @return The analyzer of the trace.
+     *
+     * @throws IOException If the file couldn't be read, or isn't a valid trace.
+     */
+    public static TraceAnalyzer load(File file) throws IOException {
+        FileInputStream input = new FileInputStream(file);
+        try {
+            FileChannel channel = input.getChannel();
+            return new TraceAnalyzer(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } finally {
+            input.close();
+        }
+    }
+
+    /**
+     * Write the report of the trace.
+     *
+     * @param writer The writer to write the report to.
+     */
+    public void report(PrintWriter writer) {
+        writer.println("Frame trace: " + count + " records, " + overwritten + " overwritten"
+                + (count > 0 ? String.format(", %.3f s", (timestamps[count - 1] - timestamps[0]) / 1e9) : ""));
+        if(count == 0)
+            return;
+        reportEvents(writer);
+        reportFrameIntervals(writer);
+        reportRebuildBursts(writer);
+        reportWastedDraws(writer);
+        reportTransitions(writer);
+    }
+
+    /**
+     * Report the number of events of each type, the draw durations and the layers updated.
+     *
+     * @param writer The writer to write the report to.
+     */
+    private void reportEvents(PrintWriter writer) {
+        int[] eventCounts = new int[FrameTracer.EVENT_COUNT];
+        int[] layerCounts = new int[FrameTracer.LAYER_NAMES.length];
+        TimingHistogram interactive = new TimingHistogram();
+        TimingHistogram ambient = new TimingHistogram();
+        for(int i = 0; i < count; i++) {
+            if(events[i] >= 0 && events[i] < FrameTracer.EVENT_COUNT)
+                eventCounts[events[i]]++;
+            if(events[i] != FrameTracer.EVENT_DRAW)
+                continue;
+            ((layers[i] & FrameTracer.FLAG_AMBIENT) != 0 ? ambient : interactive).record(durations[i]);
+            for(int layer = 0; layer < layerCounts.length; layer++)
+                if((layers[i] & (1 << layer)) != 0)
+                    layerCounts[layer]++;
+        }
+
+        writer.println();
+        writer.println("Events:");
+        for(int event = 0; event < FrameTracer.EVENT_COUNT; event++)
+            writer.println("  " + FrameTracer.EVENT_NAMES[event] + ": " + eventCounts[event]);
+        writer.println("Layer updates:");
+        for(int layer = 0; layer < layerCounts.length; layer++)
+            writer.println("  " + FrameTracer.LAYER_NAMES[layer] + ": " + layerCounts[layer]);
+        writer.println(String.format("  %-12s %8s %8s %8s %8s %8s", "draw (us)", "count", "mean", "p50", "p95", "max"));
+        printHistogram(writer, "interactive", interactive);
+        printHistogram(writer, "ambient", ambient);
+    }
+
+    /**
+     * Report the intervals between the frames of the animation, and list the late frames.
+     * Only intervals between interactive draws without another event in between are included.
+     *
+     * @param writer The writer to write the report to.
+     */
+    private void reportFrameIntervals(PrintWriter writer) {
+        // Collect the intervals, by the index of the draw that ends them
+        List<Integer> intervalEnds = new ArrayList<Integer>();
+        for(int i = 1; i < count; i++)
+            if(isInteractiveDraw(i) && isInteractiveDraw(i - 1))
+                intervalEnds.add(i);
+
+        writer.println();
+        writer.println("Frame intervals: " + intervalEnds.size());
+        if(intervalEnds.isEmpty())
+            return;
+
+        // Take the median interval as the expected interval
+        long[] intervals = new long[intervalEnds.size()];
+        TimingHistogram histogram = new TimingHistogram();
+        for(int i = 0; i < intervals.length; i++) {
+            intervals[i] = getInterval(intervalEnds.get(i));
+            histogram.record(intervals[i]);
+        }
+        Arrays.sort(intervals);
+        long expected = intervals[intervals.length / 2];
+        writer.println(String.format("  %-12s %8s %8s %8s %8s %8s", "interval (us)", "count", "mean", "p50", "p95", "max"));
+        printHistogram(writer, "interactive", histogram);
+
+        // Find the late frames, and list the latest with the previous frame, which delayed them
+        List<Integer> late = new ArrayList<Integer>();
+        for(int end : intervalEnds)
+            if(getInterval(end) > expected * LATE_FRAME_FACTOR)
+                late.add(end);
+        Collections.sort(late, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return Long.valueOf(getInterval(b)).compareTo(getInterval(a));
+            }
+        });
+        writer.println(String.format("  Late frames: %d (over %.1f ms)", late.size(), expected * LATE_FRAME_FACTOR / 1e6));
+        for(int i = 0; i < Math.min(late.size(), MAX_LISTED); i++) {
+            int end = late.get(i);
+            writer.println(String.format("    at %9.3f s: %7.1f ms interval, previous draw %6.1f ms [%s]",
+                    getOffsetSeconds(end), getInterval(end) / 1e6, durations[end - 1] / 1e6, describeLayers(layers[end - 1])));
+        }
+    }
+
+    /**
+     * Report the bursts of draws that rebuilt whole layers shortly after each other.
+     *
+     * @param writer The writer to write the report to.
+     */
+    private void reportRebuildBursts(PrintWriter writer) {
+        List<String> listedBursts = new ArrayList<String>();
+        int rebuilds = 0;
+        int bursts = 0;
+        for(int i = 0; i < count; i++) {
+            if(!isRebuild(i))
+                continue;
+            rebuilds++;
+
+            // Collect the draws of the burst starting at this draw
+            int end = i;
+            int burstDraws = 1;
+            long burstNanos = durations[i];
+            int burstLayers = layers[i];
+            for(int next = i + 1; next < count; next++) {
+                if(timestamps[next] - timestamps[end] > BURST_GAP_NANOS)
+                    break;
+                if(!isRebuild(next))
+                    continue;
+                end = next;
+                burstDraws++;
+                burstNanos += durations[next];
+                burstLayers |= layers[next];
+            }
+            if(burstDraws < 2)
+                continue;
+
+            // List the burst with the event that triggered it
+            bursts++;
+            rebuilds += burstDraws - 1;
+            if(listedBursts.size() < MAX_LISTED) {
+                int trigger = findTrigger(i);
+                listedBursts.add(String.format("  at %9.3f s: %d draws, %6.1f ms total [%s]%s",
+                        getOffsetSeconds(i), burstDraws, burstNanos / 1e6, describeLayers(burstLayers),
+                        trigger >= 0 ? ", after " + FrameTracer.EVENT_NAMES[events[trigger]] : ""));
+            }
+            i = end;
+        }
+
+        // Print the totals before the listed bursts
+        writer.println();
+        writer.println("Rebuild bursts: " + bursts + " (" + rebuilds + " draws rebuilt layers)");
+        for(String burst : listedBursts)
+            writer.println(burst);
+    }
+
+    /**
+     * Report the draws that didn't change anything on the screen.
+     * An interactive draw is wasted if it redrew no pixels, an ambient draw if it blitted the same
+     * frame again without a transition since the previous draw.
+     *
+     * @param writer The writer to write the report to.
+     */
+    private void reportWastedDraws(PrintWriter writer) {
+        int draws = 0;
+        int wasted = 0;
+        long wastedNanos = 0;
+        boolean transition = true;
+        for(int i = 0; i < count; i++) {
+            if(events[i] != FrameTracer.EVENT_DRAW) {
+                transition |= isTransition(events[i]);
+                continue;
+            }
+            draws++;
+            boolean waste = (layers[i] & FrameTracer.FLAG_AMBIENT) != 0
+                    ? !transition && (layers[i] & FrameTracer.LAYER_AMBIENT_FRAME) == 0
+                    : (layers[i] & FrameTracer.FLAG_REDRAWN) == 0;
+            if(waste) {
+                wasted++;
+                wastedNanos += durations[i];
+            }
+            transition = false;
+        }
+
+        writer.println();
+        writer.println(String.format("Wasted invalidations: %d of %d draws (%.1f%%), %.1f ms",
+                wasted, draws, draws > 0 ? wasted * 100.0 / draws : 0.0, wastedNanos / 1e6));
+    }
+
+    /**
+     * Report the latency and the duration of the first draw after each transition.
+     *
+     * @param writer The writer to write the report to.
+     */
+    private void reportTransitions(PrintWriter writer) {
+        writer.println();
+        writer.println(String.format("Transitions:  %8s %12s %12s %12s", "count", "latency (us)", "draw (us)", "max draw (us)"));
+        for(int event = 0; event < FrameTracer.EVENT_COUNT; event++) {
+            if(!isTransition(event))
+                continue;
+
+            // Link each transition to the next draw, unless another transition comes first
+            int transitions = 0;
+            long latency = 0;
+            long drawNanos = 0;
+            long maxDrawNanos = 0;
+            for(int i = 0; i < count; i++) {
+                if(events[i] != event)
+                    continue;
+                int draw = i + 1;
+                while(draw < count && events[draw] != FrameTracer.EVENT_DRAW && !isTransition(events[draw]))
+                    draw++;
+                if(draw >= count || events[draw] != FrameTracer.EVENT_DRAW || timestamps[draw] - timestamps[i] > TRANSITION_LINK_NANOS)
+                    continue;
+                transitions++;
+                latency += timestamps[draw] - timestamps[i];
+                drawNanos += durations[draw];
+                maxDrawNanos = Math.max(maxDrawNanos, durations[draw]);
+            }
+            writer.println(String.format("  %-11s %8d %12d %12d %12d",
+                    FrameTracer.EVENT_NAMES[event],
+                    transitions,
+                    transitions > 0 ? latency / transitions / 1000 : 0,
+                    transitions > 0 ? drawNanos / transitions / 1000 : 0,
+                    maxDrawNanos / 1000
+            ));
+        }
+    }
+
+    /**
+     * Print a row of timings in microseconds.
+     *
+     * @param writer The writer to print to.
+     * @param name The name of the row.
+     * @param histogram The timings.
+     */
+    private static void printHistogram(PrintWriter writer, String name, TimingHistogram histogram) {
+        writer.println(String.format("  %-12s %8d %8d %8d %8d %8d",
+                name,
+                histogram.getCount(),
+                histogram.getMean() / 1000,
+                histogram.getPercentile(50) / 1000,
+                histogram.getPercentile(95) / 1000,
+                histogram.getMax() / 1000
+        ));
+    }
+
+    /**
+     * Check whether the given record is a draw of the interactive face.
+     *
+     * @param index The record index.
+     *
+     * @return True if it's an interactive draw.
+     */
+    private boolean isInteractiveDraw(int index) {
+        return events[index] == FrameTracer.EVENT_DRAW && (layers[index] & FrameTracer.FLAG_AMBIENT) == 0;
+    }
+
+    /**
+     * Check whether the given record is a draw that rebuilt whole layers.
+     *
+     * @param index The record index.
+     *
+     * @return True if it rebuilt layers.
+     */
+    private boolean isRebuild(int index) {
+        return events[index] == FrameTracer.EVENT_DRAW && (layers[index] & FrameTracer.LAYERS_REBUILT) != 0;
+    }
+
+    /**
+     * Check whether the given event type is a visibility or mode transition.
+     *
+     * @param event The event type.
+     *
+     * @return True if it's a transition.
+     */
+    private static boolean isTransition(int event) {
+        return event == FrameTracer.EVENT_VISIBLE || event == FrameTracer.EVENT_INVISIBLE
+                || event == FrameTracer.EVENT_AMBIENT || event == FrameTracer.EVENT_INTERACTIVE;
+    }
+
+    /**
+     * Find the event shortly before the given draw that triggered it.
+     *
+     * @param index The record index of the draw.
+     *
+     * @return The record index of the event, or -1 if no event preceded the draw.
+     */
+    private int findTrigger(int index) {
+        for(int i = index - 1; i >= 0 && timestamps[index] - timestamps[i] <= TRANSITION_LINK_NANOS; i--)
+            if(events[i] != FrameTracer.EVENT_DRAW)
+                return i;
+        return -1;
+    }
+
+    /**
+     * Get the interval between the given draw and the record before it.
+     *
+     * @param index The record index of the draw.
+     *
+     * @return The interval in nanoseconds.
+     */
+    private long getInterval(int index) {
+        return timestamps[index] - timestamps[index - 1];
+    }
+
+    /**
+     * Get the time of the given record since the start of the trace.
+     *
+     * @param index The record index.
+     *
+     * @return The time in seconds.
+     */
+    private double getOffsetSeconds(int index) {
+        return (timestamps[index] - timestamps[0]) / 1e9;
+    }
+
+    /**
+     * Describe the given layer flags.
+     *
+     * @param flags The layer flags.
+     *
+     * @return The names of the layers, separated by commas.
+     */
+    private static String describeLayers(int flags) {
+        StringBuilder builder = new StringBuilder();
+        for(int layer = 0; layer < FrameTracer.LAYER_NAMES.length; layer++)
+            if((flags & (1 << layer)) != 0)
+                builder.append(builder.length() > 0 ? ", " : "").append(FrameTracer.LAYER_NAMES[layer]);
+        return builder.length() > 0 ? builder.toString() : "none";
+    }
+
+    /**
+     * Write a synthetic trace of a known scenario.
+     * The face animates at 30 frames per second with a slow synchronous clock rebuild at each
+     * minute boundary, is hidden and shown again, which rebuilds all layers, and spends three minutes in
+     * ambient mode. Every twentieth second an extra draw changes nothing. The trace is longer than
+     * the ring buffer, so the oldest records are overwritten.
+     *
+     * @param file The trace file.
+     *
+     * @throws IOException If the trace couldn't be written.
+     */
+    public static void writeSynthetic(File file) throws IOException {
+        FrameTracer tracer = new FrameTracer(file, SYNTHETIC_CAPACITY);
+        Random random = new Random(0);
+        long frameInterval = 1000000000L / 30;
+        long time = 0;
+
+        // Animate for 150 seconds, starting 10 seconds before a minute boundary
+        tracer.record(FrameTracer.EVENT_VISIBLE, 0, time, 0);
+        int lastSecond = -1;
+        for(long frame = 0; time < 150000000000L; frame++) {
+            int second = (int) ((time / 1000000000L + 50) % 3600);
+
+            // Hide the face for five seconds after 40 seconds, the layers are released meanwhile so
+            // the first frames rebuild the tick ring and the clock
+            if(second == 90 && lastSecond != second) {
+                tracer.record(FrameTracer.EVENT_INVISIBLE, 0, time, 0);
+                time += 5000000000L;
+                tracer.record(FrameTracer.EVENT_VISIBLE, 0, time, 0);
+                tracer.record(FrameTracer.EVENT_DRAW, FrameTracer.LAYER_TICK_RING | FrameTracer.LAYER_GLEAM
+                        | FrameTracer.FLAG_REDRAWN, time + 2000000L, 25000000L);
+                time += 2000000L + 25000000L + frameInterval;
+                tracer.record(FrameTracer.EVENT_DRAW, FrameTracer.LAYER_CLOCK | FrameTracer.LAYER_GLEAM
+                        | FrameTracer.FLAG_REDRAWN, time, 15000000L);
+                time += frameInterval;
+                lastSecond = second + 5;
+                continue;
+            }
+
+            // Rebuild the clock at each minute boundary, and update the highlighted tick each second
+            int frameLayers = FrameTracer.LAYER_GLEAM | FrameTracer.FLAG_REDRAWN;
+            long duration = 1500000L + random.nextInt(1000000);
+            if(second != lastSecond) {
+                frameLayers |= FrameTracer.LAYER_TICK;
+                if(second % 60 == 0) {
+                    frameLayers |= FrameTracer.LAYER_CLOCK;
+                    duration += 45000000L;
+                }
+            }
+            tracer.record(FrameTracer.EVENT_DRAW, frameLayers, time, duration);
+
+            // Invalidate once more without any change every twentieth second
+            if(second != lastSecond && second % 20 == 10)
+                tracer.record(FrameTracer.EVENT_DRAW, 0, time + duration + 100000L, 300000L);
+            lastSecond = second;
+
+            // Schedule the next frame, frames are dropped while this frame takes longer than the interval
+            time += Math.max(1, (duration + frameInterval - 1) / frameInterval) * frameInterval + random.nextInt(500000);
+        }
+
+        // Spend three minutes in ambient mode, drawing a new frame at each time tick
+        tracer.record(FrameTracer.EVENT_AMBIENT, 0, time, 0);
+        tracer.record(FrameTracer.EVENT_DRAW, FrameTracer.FLAG_AMBIENT | FrameTracer.LAYER_AMBIENT_ATLAS
+                | FrameTracer.LAYER_AMBIENT_FRAME, time + 3000000L, 12000000L);
+        for(int minute = 0; minute < 3; minute++) {
+            time += 60000000000L;
+            tracer.record(FrameTracer.EVENT_TIME_TICK, 0, time, 0);
+            tracer.record(FrameTracer.EVENT_DRAW, FrameTracer.FLAG_AMBIENT | FrameTracer.LAYER_AMBIENT_FRAME, time + 1000000L, 4000000L);
+            if(minute == 1)
+                tracer.record(FrameTracer.EVENT_DRAW, FrameTracer.FLAG_AMBIENT, time + 8000000L, 1000000L);
+        }
+
+        // Leave ambient mode, which redraws the clock in interactive mode
+        time += 20000000000L;
+        tracer.record(FrameTracer.EVENT_INTERACTIVE, 0, time, 0);
+        tracer.record(FrameTracer.EVENT_DRAW, FrameTracer.LAYER_CLOCK | FrameTracer.LAYER_TICK
+                | FrameTracer.LAYER_GLEAM | FrameTracer.FLAG_REDRAWN, time + 2000000L, 16000000L);
+        tracer.close();
+    }
+
+    /**
+     * Analyze a trace file, and write the report to the standard output.
+     * Usage: {@code TraceAnalyzer [--synthetic] <trace file>}, where {@code --synthetic} first
+     * writes a synthetic trace to the file.
+     *
+     * @param args The arguments.
+     */
+    public static void main(String[] args) {
+        PrintWriter writer = new PrintWriter(System.out, true);
+        boolean synthetic = args.length == 2 && "--synthetic".equals(args[0]);
+        if(args.length != 1 && !synthetic) {
+            writer.println("Usage: TraceAnalyzer [--synthetic] <trace file>");
+            System.exit(2);
+        }
+
+        File file = new File(args[args.length - 1]);
+        try {
+            if(synthetic)
+                writeSynthetic(file);
+            load(file).report(writer);
+        } catch(IOException e) {
+            writer.println("Failed to analyze " + file + ": " + e.getMessage());
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package com.timvisee.axiomone;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Replay tests of the trace analyzer, reading traces written by the frame tracer.
+ */
+public class TraceAnalyzerTest {
+
+    /**
+     * The interval between the frames of the traces, at 30 frames per second.
+     */
+    private static final long FRAME_NANOS = 1000000000L / 30;
+
+    /**
+     * The duration of each draw of the traces.
+     */
+    private static final long DRAW_NANOS = 2000000L;
+
+    /**
+     * The capacity of the traces written by the tests.
+     */
+    private static final int CAPACITY = 256;
+
+    /**
+     * The trace file.
+     */
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("frames", ".trace");
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    /**
+     * Load the trace file, and get its report.
+     *
+     * @return The report.
+     *
+     * @throws IOException If the trace couldn't be read.
+     */
+    private String report() throws IOException {
+        StringWriter report = new StringWriter();
+        PrintWriter writer = new PrintWriter(report);
+        TraceAnalyzer.load(file).report(writer);
+        writer.flush();
+        return report.toString();
+    }
+
+    /**
+     * Assert the report contains the given line.
+     *
+     * @param report The report.
+     * @param line The expected line, without its indent.
+     */
+    private static void assertReports(String report, String line) {
+        assertTrue("Missing \"" + line + "\" in:\n" + report, report.contains(line));
+    }
+
+    /**
+     * Record the given number of interactive frames that redraw the gleam.
+     *
+     * @param tracer The tracer.
+     * @param time The time of the first frame in nanoseconds.
+     * @param frames The number of frames.
+     *
+     * @return The time of the frame after the last.
+     */
+    private static long recordFrames(FrameTracer tracer, long time, int frames) {
+        for(int i = 0; i < frames; i++) {
+            tracer.record(FrameTracer.EVENT_DRAW, FrameTracer.LAYER_GLEAM | FrameTracer.FLAG_REDRAWN, time, DRAW_NANOS);
+            time += FRAME_NANOS;
+        }
+        return time;
+    }
+
+    /**
+     * A frame that took more than one and a half intervals is listed as late, with the layers of
+     * the draw before it.
+     */
+    @Test
+    public void testLateFrames() throws IOException {
+        FrameTracer tracer = new FrameTracer(file, CAPACITY);
+        long time = recordFrames(tracer, 0, 20);
+        tracer.record(FrameTracer.EVENT_DRAW, FrameTracer.LAYER_CLOCK | FrameTracer.LAYER_GLEAM
+                | FrameTracer.FLAG_REDRAWN, time, 40000000L);
+        recordFrames(tracer, time + 3 * FRAME_NANOS, 20);
+        tracer.close();
+
+        String report = report();
+        assertReports(report, "Frame intervals: 40");
+        assertReports(report, "Late frames: 1 (over 50.0 ms)");
+        assertReports(report, "100.0 ms interval, previous draw   40.0 ms [clock, gleam]");
+    }
+
+    /**
+     * Draws that rebuild layers shortly after each other are reported as one burst, listed below
+     * the totals with the event that triggered it, and a single rebuild isn't a burst.
+     */
+    @Test
+    public void testRebuildBursts() throws IOException {
+        FrameTracer tracer = new FrameTracer(file, CAPACITY);
+        long time = recordFrames(tracer, 0, 10);
+        tracer.record(FrameTracer.EVENT_VISIBLE, 0, time, 0);
+        tracer.record(FrameTracer.EVENT_DRAW, FrameTracer.LAYER_TICK_RING | FrameTracer.FLAG_REDRAWN, time, 20000000L);
+        time = recordFrames(tracer, time + FRAME_NANOS, 3);
+        tracer.record(FrameTracer.EVENT_DRAW, FrameTracer.LAYER_CLOCK | FrameTracer.FLAG_REDRAWN, time, 10000000L);
+        time = recordFrames(tracer, time + FRAME_NANOS, 60);
+        tracer.record(FrameTracer.EVENT_DRAW, FrameTracer.LAYER_CLOCK | FrameTracer.FLAG_REDRAWN, time, 10000000L);
+        recordFrames(tracer, time + FRAME_NANOS, 10);
+        tracer.close();
+
+        String report = report();
+        String totals = "Rebuild bursts: 1 (3 draws rebuilt layers)";
+        String burst = "2 draws,   30.0 ms total [clock, tick ring], after visible";
+        assertReports(report, totals);
+        assertReports(report, burst);
+        assertTrue(report.indexOf(totals) < report.indexOf(burst));
+    }
+
+    /**
+     * Interactive draws that redrew nothing, and ambient draws that blitted the same frame without
+     * a transition since the previous draw, are wasted.
+     */
+    @Test
+    public void testWastedDraws() throws IOException {
+        FrameTracer tracer = new FrameTracer(file, CAPACITY);
+        long time = recordFrames(tracer, 0, 5);
+        tracer.record(FrameTracer.EVENT_DRAW, 0, time, 1000000L);
+        time = recordFrames(tracer, time + FRAME_NANOS, 5);
+
+        // The first ambient draw after the transition isn't wasted, the one after it is
+        tracer.record(FrameTracer.EVENT_AMBIENT, 0, time, 0);
+        tracer.record(FrameTracer.EVENT_DRAW, FrameTracer.FLAG_AMBIENT, time, 3000000L);
+        tracer.record(FrameTracer.EVENT_DRAW, FrameTracer.FLAG_AMBIENT, time + FRAME_NANOS, 2000000L);
+        tracer.record(FrameTracer.EVENT_DRAW, FrameTracer.FLAG_AMBIENT | FrameTracer.LAYER_AMBIENT_FRAME,
+                time + 2 * FRAME_NANOS, 4000000L);
+        tracer.close();
+
+        assertReports(report(), "Wasted invalidations: 2 of 14 draws (14.3%), 3.0 ms");
+    }
+
+    /**
+     * Once the ring buffer wraps, only the newest records are read, from old to new.
+     */
+    @Test
+    public void testOverwritten() throws IOException {
+        FrameTracer tracer = new FrameTracer(file, 8);
+        recordFrames(tracer, 0, 20);
+        tracer.close();
+
+        String report = report();
+        assertReports(report, "Frame trace: 8 records, 12 overwritten, 0.233 s");
+        assertReports(report, "Frame intervals: 7");
+        assertReports(report, "Late frames: 0");
+    }
+
+    /**
+     * The synthetic scenario reports its slow minute rollovers, the burst after the face is shown
+     * again, its extra draws and the overwritten records.
+     */
+    @Test
+    public void testSynthetic() throws IOException {
+        TraceAnalyzer.writeSynthetic(file);
+
+        String report = report();
+        assertReports(report, "Frame trace: 4096 records, 239 overwritten");
+        assertReports(report, "Late frames: 4 (over 50.4 ms)");
+        assertReports(report, "Rebuild bursts: 1 (10 draws rebuilt layers)");
+        assertReports(report, "2 draws,   40.0 ms total [clock, tick ring, gleam], after visible");
+        assertReports(report, "Wasted invalidations: 7 of 4089 draws");
+    }
+
+    /**
+     * A file that isn't a frame trace is rejected.
+     */
+    @Test
+    public void testInvalidTrace() throws IOException {
+        FileOutputStream output = new FileOutputStream(file);
+        try {
+            output.write(new byte[64]);
+        } finally {
+            output.close();
+        }
+
+        try {
+            TraceAnalyzer.load(file);
+            fail("Loaded an invalid trace");
+        } catch(IOException e) {
+            // Expected
+        }
+    }
+}